@@ -0,0 +1,78 @@
+package com.beryoza.urlshortener;
+
+import java.util.Arrays;
+
+/**
+ * Кодирование чисел в короткие идентификаторы base62 фиксированной длины и обратно.
+ * Декодирование не создаёт объектов, поэтому годится для "горячего" пути перехода по ссылке.
+ * <p>
+ * Идентификатор всегда состоит из {@link #LENGTH} символов алфавита
+ * {@code a-z A-Z 0-9}, поэтому он однозначно соответствует числу
+ * из диапазона {@code [0, 62^6)}.
+ */
+public final class Base62 {
+
+    /** Длина короткого идентификатора. */
+    public static final int LENGTH = 6;
+
+    /** Количество различных идентификаторов: 62^6. */
+    public static final long KEYSPACE = 62L * 62 * 62 * 62 * 62 * 62;
+
+    /** Алфавит: тот же порядок символов, что и в исходном генераторе. */
+    private static final char[] ALPHABET =
+            "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789".toCharArray();
+
+    /** Обратная таблица: символ → цифра base62 или -1. */
+    private static final byte[] DIGITS = new byte[128];
+
+    static {
+        Arrays.fill(DIGITS, (byte) -1);
+        for (int i = 0; i < ALPHABET.length; i++) {
+            DIGITS[ALPHABET[i]] = (byte) i;
+        }
+    }
+
+    private Base62() {
+    }
+
+    /**
+     * Декодирует идентификатор в число без создания промежуточных объектов.
+     *
+     * @param shortId идентификатор (может быть null)
+     * @return число из диапазона {@code [0, 62^6)} или -1, если строка
+     *         не является корректным идентификатором из шести символов base62
+     */
+    public static long decode(CharSequence shortId) {
+        if (shortId == null || shortId.length() != LENGTH) {
+            return -1;
+        }
+        long value = 0;
+        for (int i = 0; i < LENGTH; i++) {
+            char c = shortId.charAt(i);
+            int digit = c < DIGITS.length ? DIGITS[c] : -1;
+            if (digit < 0) {
+                return -1;
+            }
+            value = value * 62 + digit;
+        }
+        return value;
+    }
+
+    /**
+     * Кодирует число в идентификатор из шести символов (старшие разряды слева).
+     *
+     * @param value число из диапазона {@code [0, 62^6)}
+     * @return идентификатор длиной {@link #LENGTH}
+     */
+    public static String encode(long value) {
+        if (value < 0 || value >= KEYSPACE) {
+            throw new IllegalArgumentException("Число вне диапазона base62: " + value);
+        }
+        char[] chars = new char[LENGTH];
+        for (int i = LENGTH - 1; i >= 0; i--) {
+            chars[i] = ALPHABET[(int) (value % 62)];
+            value /= 62;
+        }
+        return new String(chars);
+    }
+}
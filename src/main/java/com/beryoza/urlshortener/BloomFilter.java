@@ -0,0 +1,81 @@
+package com.beryoza.urlshortener;
+
+/**
+ * Фильтр Блума над ключами {@code long}: отвечает "ключа точно нет" или "ключ, возможно, есть".
+ * <p>
+ * В отличие от {@link CuckooFilter} не поддерживает удаление, зато компактнее и проще:
+ * он строится один раз для неизменяемого набора ключей (сегмента или замороженной
+ * памятной таблицы {@link LsmLinkStore}) и дальше только читается. Позиции битов получаются
+ * двойным хешированием из двух 64-битных хешей ключа ({@link LongObjectMap#hash(long)})
+ * и переводятся в номер бита умножением, без деления. При {@code bitsPerKey} = 10 доля
+ * ложноположительных ответов — около 1%.
+ * <p>
+ * Добавление не потокобезопасно; после построения фильтр можно читать из любых потоков.
+ */
+public class BloomFilter {
+
+    // Биты фильтра
+    private final long[] bits;
+    // Число битов (кратно 64)
+    private final long bitCount;
+    // Число хеш-функций
+    private final int hashCount;
+
+    /**
+     * Создаёт пустой фильтр.
+     *
+     * @param expectedKeys ожидаемое число ключей
+     * @param bitsPerKey   битов на ключ (больше нуля)
+     */
+    public BloomFilter(long expectedKeys, int bitsPerKey) {
+        if (bitsPerKey <= 0) {
+            throw new IllegalArgumentException("Число битов на ключ должно быть положительным");
+        }
+        long words = Math.max(1, (Math.max(1, expectedKeys) * bitsPerKey + 63) >>> 6);
+        if (words > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Слишком большой фильтр: " + expectedKeys + " ключей");
+        }
+        this.bits = new long[(int) words];
+        this.bitCount = words << 6;
+        this.hashCount = Math.max(1, (int) Math.round(bitsPerKey * Math.log(2)));
+    }
+
+    /**
+     * Добавляет ключ.
+     *
+     * @param key ключ
+     */
+    public void add(long key) {
+        long h1 = LongObjectMap.hash(key);
+        long h2 = LongObjectMap.hash(h1) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Math.unsignedMultiplyHigh(h1 + i * h2, bitCount);
+            bits[(int) (bit >>> 6)] |= 1L << bit;
+        }
+    }
+
+    /**
+     * Проверяет ключ.
+     *
+     * @param key ключ
+     * @return false, если ключа точно нет; true, если он, возможно, есть
+     */
+    public boolean mightContain(long key) {
+        long h1 = LongObjectMap.hash(key);
+        long h2 = LongObjectMap.hash(h1) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Math.unsignedMultiplyHigh(h1 + i * h2, bitCount);
+            if ((bits[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Возвращает объём фильтра в байтах.
+     */
+    public long sizeInBytes() {
+        return (long) bits.length * Long.BYTES;
+    }
+}
@@ -0,0 +1,263 @@
+package com.beryoza.urlshortener;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+
+/**
+ * Кэш ссылок со сквозным чтением перед медленным хранилищем (например, дисковым).
+ * <p>
+ * Промах загружает ссылку из нижнего хранилища и кладёт её в {@link TinyLfuCache}.
+ * Политика W-TinyLFU держит в кэше часто запрашиваемые ссылки и не даёт однократным
+ * обходам по редким ссылкам их вытеснить.
+ * <p>
+ * Запись сначала меняет нижнее хранилище, затем увеличивает номер версии своей полосы
+ * ключей и удаляет ключ из кэша. Загрузчик запоминает версию до чтения и кладёт ссылку
+ * в кэш, только если версия не изменилась (проверка идёт под блокировкой сегмента кэша).
+ * Поэтому загрузка, начатая до записи, не вернёт в кэш устаревшую ссылку после неё.
+ * Отсутствующие ссылки не кэшируются.
+ * <p>
+ * Одновременные промахи по одному ключу объединяются: загрузку выполняет первый поток,
+ * остальные ждут её результата. Когда популярная ссылка выпадает из кэша, сотни
+ * параллельных запросов дают одно чтение нижнего хранилища, а не сотни. Запись снимает
+ * текущую загрузку своего ключа, чтобы чтения после неё не получили прежний результат.
+ * {@link #getWithoutWaiting(long)} чужой загрузки не ждёт: цикл событий при промахе
+ * читает нижнее хранилище сам.
+ * <p>
+ * Закрытие кэша закрывает и нижнее хранилище, если оно того требует.
+ */
+public class CachingLinkStore implements LinkStore, AutoCloseable {
+
+    /** Количество полос версий (степень двойки). */
+    private static final int STRIPE_COUNT = 1024;
+
+    /** Примерные накладные расходы на ссылку в памяти помимо строк (в байтах). */
+    private static final int LINK_OVERHEAD = 128;
+
+    /** Средний размер ссылки для оценки числа записей при бюджете в байтах. */
+    private static final int AVERAGE_LINK_BYTES = 256;
+
+    // Нижнее хранилище
+    private final LinkStore backing;
+    // Кэш ссылок
+    private final TinyLfuCache<ShortLink> cache;
+    // Версии полос ключей: меняются при каждой записи
+    private final AtomicLongArray versions = new AtomicLongArray(STRIPE_COUNT);
+    // Загрузки, выполняющиеся сейчас: ключ → результат загрузки
+    private final Map<Long, CompletableFuture<ShortLink>> inFlight = new ConcurrentHashMap<>();
+
+    // Счётчики загрузок
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+
+    /**
+     * Создаёт кэш с бюджетом из {@link Config}.
+     *
+     * @param backing нижнее хранилище
+     */
+    public CachingLinkStore(LinkStore backing) {
+        this(backing, Config.getLinkCacheMaxEntries(), Config.getLinkCacheMaxBytes());
+    }
+
+    /**
+     * Создаёт кэш с заданным бюджетом.
+     *
+     * @param backing    нижнее хранилище
+     * @param maxEntries максимальное число ссылок (используется, если maxBytes равен 0)
+     * @param maxBytes   максимальный примерный объём ссылок в байтах или 0
+     */
+    public CachingLinkStore(LinkStore backing, long maxEntries, long maxBytes) {
+        this.backing = backing;
+        this.cache = maxBytes > 0
+                ? new TinyLfuCache<>(maxBytes, CachingLinkStore::estimateBytes, maxBytes / AVERAGE_LINK_BYTES)
+                : new TinyLfuCache<>(maxEntries);
+    }
+
+    @Override
+    public ShortLink get(long key) {
+        ShortLink link = cache.get(key);
+        if (link != null) {
+            return link;
+        }
+        // Присоединяемся к уже идущей загрузке этого ключа, если она есть
+        CompletableFuture<ShortLink> load = new CompletableFuture<>();
+        CompletableFuture<ShortLink> running = inFlight.putIfAbsent(key, load);
+        if (running != null) {
+            coalesced.increment();
+            return await(running);
+        }
+        return loadShared(key, load);
+    }
+
+    @Override
+    public ShortLink getWithoutWaiting(long key) {
+        ShortLink link = cache.get(key);
+        if (link != null) {
+            return link;
+        }
+        // Если ключ уже грузит другой поток, не ждём его, а читаем параллельно
+        CompletableFuture<ShortLink> load = new CompletableFuture<>();
+        if (inFlight.putIfAbsent(key, load) != null) {
+            loads.increment();
+            return load(key);
+        }
+        return loadShared(key, load);
+    }
+
+    @Override
+    public ShortLink put(long key, ShortLink link) {
+        ShortLink previous = backing.put(key, link);
+        invalidate(key);
+        return previous;
+    }
+
+    @Override
+    public ShortLink remove(long key) {
+        ShortLink previous = backing.remove(key);
+        invalidate(key);
+        return previous;
+    }
+
+    @Override
+    public void forEach(Consumer<ShortLink> action) {
+        backing.forEach(action);
+    }
+
+    @Override
+    public void setEvictionListener(Consumer<ShortLink> listener) {
+        // Выброшенная ссылка не должна остаться в кэше, иначе подписчик увидит её живой
+        backing.setEvictionListener(link -> {
+            invalidate(Base62.decode(link.getShortId()));
+            listener.accept(link);
+        });
+    }
+
+    @Override
+    public void forEachKey(LongConsumer action) {
+        backing.forEachKey(action);
+    }
+
+    @Override
+    public int size() {
+        return backing.size();
+    }
+
+    @Override
+    public void close() {
+        if (backing instanceof AutoCloseable closeable) {
+            try {
+                closeable.close();
+            } catch (Exception e) {
+                throw new IllegalStateException("Не удалось закрыть хранилище ссылок", e);
+            }
+        }
+    }
+
+    /** Возвращает число чтений, обслуженных кэшем. */
+    public long getHitCount() {
+        return cache.getHitCount();
+    }
+
+    /** Возвращает число чтений, ушедших в нижнее хранилище. */
+    public long getMissCount() {
+        return cache.getMissCount();
+    }
+
+    /** Возвращает число ссылок, вытесненных из кэша. */
+    public long getEvictionCount() {
+        return cache.getEvictionCount();
+    }
+
+    /** Возвращает число загрузок из нижнего хранилища. */
+    public long getLoadCount() {
+        return loads.sum();
+    }
+
+    /** Возвращает число промахов, которые дождались чужой загрузки вместо своей. */
+    public long getCoalescedCount() {
+        return coalesced.sum();
+    }
+
+    /** Возвращает количество ссылок в кэше. */
+    public int getCachedCount() {
+        return cache.size();
+    }
+
+    /**
+     * Оценивает объём ссылки в памяти: shortId в Latin-1 занимает байт на символ, остаток URL —
+     * свои байты UTF-8; начало URL общее у всех ссылок хоста (см. {@link UrlDictionary}) и не учитывается.
+     *
+     * @param link ссылка
+     * @return примерный размер в байтах
+     */
+    public static int estimateBytes(ShortLink link) {
+        return LINK_OVERHEAD + link.getShortId().length() + link.getUrlPath().length;
+    }
+
+    /**
+     * Загружает ссылку из нижнего хранилища и кладёт её в кэш, если за время
+     * чтения ключ не менялся.
+     */
+    private ShortLink load(long key) {
+        int stripe = stripeFor(key);
+        long version = versions.get(stripe);
+        ShortLink link = backing.get(key);
+        if (link != null) {
+            cache.put(key, link, () -> versions.get(stripe) == version);
+        }
+        return link;
+    }
+
+    /**
+     * Выполняет загрузку, зарегистрированную в {@link #inFlight}, и отдаёт её результат
+     * ждущим потокам.
+     */
+    private ShortLink loadShared(long key, CompletableFuture<ShortLink> load) {
+        try {
+            loads.increment();
+            ShortLink link = load(key);
+            load.complete(link);
+            return link;
+        } catch (RuntimeException | Error e) {
+            load.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, load);
+        }
+    }
+
+    /**
+     * Отмечает изменение ключа: устаревают и кэш, и идущая загрузка.
+     */
+    private void invalidate(long key) {
+        versions.incrementAndGet(stripeFor(key));
+        cache.invalidate(key);
+        inFlight.remove(key);
+    }
+
+    /**
+     * Дожидается чужой загрузки; её ошибка пробрасывается как есть.
+     */
+    private static ShortLink await(CompletableFuture<ShortLink> load) {
+        try {
+            return load.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private static int stripeFor(long key) {
+        return (int) LongObjectMap.hash(key) & (STRIPE_COUNT - 1);
+    }
+}
@@ -0,0 +1,620 @@
+package com.beryoza.urlshortener;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * Хранилище ссылок в куче по столбцам (struct of arrays) — для дешёвых полных проходов.
+ * <p>
+ * Вместо объекта {@link ShortLink} на ссылку поля лежат в примитивных массивах-столбцах:
+ * ключ, время создания и срок ({@code long[]}), лимит ({@code int[]}), счётчик переходов,
+ * владелец — номер из {@link UserIds} ({@code int[]}), смещение и длина URL в общем буфере байтов.
+ * Строка (номер ссылки) делит столбцы на блоки по {@code 2^}{@value #BLOCK_SHIFT} строк;
+ * блоки не перемещаются при росте хранилища, поэтому CAS по счётчику в блоке не теряется.
+ * <p>
+ * Условия вида "просрочена или исчерпала лимит" ({@link #findDue}, {@link #countDue})
+ * и выборка по владельцу ({@link #findByUser}) проверяются плотными циклами по массивам,
+ * без разыменования объектов; блоки проверяются параллельно, каждый под своей
+ * блокировкой чтения, так что запись ждёт не дольше прохода одного блока.
+ * <p>
+ * URL хранятся в UTF-8 в страницах по {@code 2^}{@value #ARENA_PAGE_SHIFT} байт, не пересекая
+ * их границ. Место удалённых и заменённых URL возвращается уплотнением буфера, когда мусора
+ * становится больше, чем живых байтов.
+ * <p>
+ * Как и у {@link MappedLinkStore}, {@link #get} возвращает ссылку-представление строки:
+ * счётчик переходов читается и увеличивается прямо в столбце. Счётчик лежит в одном
+ * {@code long} с поколением строки, которое меняется при её освобождении, поэтому
+ * представление удалённой ссылки не затронет строку, отданную другой.
+ * <p>
+ * Изменения выполняются под блокировкой записи {@link StampedLock}, чтения — оптимистично:
+ * если во время чтения шла запись, чтение повторяется под блокировкой чтения.
+ */
+public class ColumnarLinkStore implements LinkStore {
+
+    /** Размер блока строк в степени двойки. */
+    static final int BLOCK_SHIFT = 16;
+
+    /** Число строк в блоке. */
+    private static final int BLOCK_ROWS = 1 << BLOCK_SHIFT;
+
+    /** Маска номера строки внутри блока. */
+    private static final int BLOCK_MASK = BLOCK_ROWS - 1;
+
+    /** Размер страницы буфера URL в степени двойки. */
+    static final int ARENA_PAGE_SHIFT = 20;
+
+    /** Размер страницы буфера URL в байтах. */
+    private static final int ARENA_PAGE_BYTES = 1 << ARENA_PAGE_SHIFT;
+
+    /** Максимальная длина URL в байтах. */
+    static final int MAX_URL_BYTES = ARENA_PAGE_BYTES;
+
+    /** Ключ свободной строки. */
+    private static final long FREE = -1;
+
+    /** Нет строки. */
+    private static final long NO_ROW = -1;
+
+    /** Атомарный доступ к элементам {@code long[]} (для счётчика переходов). */
+    private static final VarHandle LONGS = MethodHandles.arrayElementVarHandle(long[].class);
+
+    /** Признак того, что оптимистичное чтение нужно повторить под блокировкой. */
+    private static final ShortLink RETRY = new ShortLink();
+
+    // Словарь владельцев: в столбце хранится номер, а не UUID
+    private final UserIds users;
+    // Упорядочивает изменения; чтения оптимистичные
+    private final StampedLock lock = new StampedLock();
+    // Ключ → номер строки
+    private final LongLongMap rows = new LongLongMap();
+    // Блоки столбцов; массив заменяется целиком при росте, сами блоки не перемещаются
+    private volatile Block[] blocks = new Block[0];
+    // Число когда-либо занятых строк; меняется под блокировкой записи
+    private int rowCount;
+    // Свободные строки (стек)
+    private int[] freeRows = new int[16];
+    private int freeCount;
+    // Страницы буфера URL; массив заменяется целиком при росте и уплотнении
+    private volatile byte[][] arena = new byte[0][];
+    // Конец занятой части буфера и число байтов живых URL
+    private long arenaEnd;
+    private long liveUrlBytes;
+    // Количество ссылок
+    private volatile int size;
+
+    /**
+     * Создаёт пустое хранилище со своим словарём владельцев.
+     */
+    public ColumnarLinkStore() {
+        this(new UserIds());
+    }
+
+    /**
+     * Создаёт пустое хранилище со словарём владельцев хранилища {@link Storage}.
+     *
+     * @param users словарь владельцев
+     */
+    public ColumnarLinkStore(UserIds users) {
+        this.users = users;
+    }
+
+    @Override
+    public ShortLink get(long key) {
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            try {
+                ShortLink link = read(key, stamp);
+                if (link != RETRY) {
+                    return link;
+                }
+            } catch (IndexOutOfBoundsException e) {
+                // Прочитали столбцы во время записи — повторяем под блокировкой
+            }
+        }
+        stamp = lock.readLock();
+        try {
+            return read(key, 0);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public ShortLink put(long key, ShortLink link) {
+        byte[] url = link.getOriginalUrlBytes();
+        if (url.length > MAX_URL_BYTES) {
+            throw new IllegalArgumentException("URL слишком длинный: " + url.length + " байт");
+        }
+        long stamp = lock.writeLock();
+        try {
+            long row = rows.getOrDefault(key, NO_ROW);
+            if (row != NO_ROW) {
+                ShortLink previous = materialize((int) row);
+                // Счётчик представления этой же строки уже в столбце, перезапись потеряла бы переходы
+                boolean sameRow = link instanceof ColumnarShortLink view && view.isViewOf(this, (int) row);
+                write((int) row, key, link, url, !sameRow);
+                return previous;
+            }
+            int newRow = allocateRow();
+            write(newRow, key, link, url, true);
+            rows.put(key, newRow);
+            size++;
+            return null;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public ShortLink remove(long key) {
+        long stamp = lock.writeLock();
+        try {
+            long row = rows.getOrDefault(key, NO_ROW);
+            if (row == NO_ROW) {
+                return null;
+            }
+            ShortLink previous = materialize((int) row);
+            rows.remove(key);
+            Block block = blocks[(int) (row >>> BLOCK_SHIFT)];
+            int i = (int) row & BLOCK_MASK;
+            // Новое поколение отвязывает от строки все её представления
+            long value;
+            do {
+                value = (long) LONGS.getVolatile(block.generationCounts, i);
+            } while (!LONGS.compareAndSet(block.generationCounts, i, value, ((value >>> 32) + 1) << 32));
+            block.keys[i] = FREE;
+            liveUrlBytes -= block.urlLengths[i];
+            block.urlLengths[i] = 0;
+            if (freeCount == freeRows.length) {
+                freeRows = Arrays.copyOf(freeRows, freeCount * 2);
+            }
+            freeRows[freeCount++] = (int) row;
+            size--;
+            compactArenaIfNeeded();
+            return previous;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Обходит ссылки поблочно: строки блока читаются под блокировкой чтения,
+     * а действие выполняется уже без неё.
+     */
+    @Override
+    public void forEach(Consumer<ShortLink> action) {
+        List<ShortLink> batch = new ArrayList<>();
+        for (int blockIndex = 0; ; blockIndex++) {
+            long stamp = lock.readLock();
+            try {
+                if (blockIndex >= blocks.length) {
+                    return;
+                }
+                Block block = blocks[blockIndex];
+                int end = rowsIn(blockIndex);
+                for (int i = 0; i < end; i++) {
+                    if (block.keys[i] != FREE) {
+                        batch.add(materialize((blockIndex << BLOCK_SHIFT) | i));
+                    }
+                }
+            } finally {
+                lock.unlockRead(stamp);
+            }
+            batch.forEach(action);
+            batch.clear();
+        }
+    }
+
+    /**
+     * Обходит ключи прямо по столбцу ключей, не создавая представлений ссылок и строк.
+     */
+    @Override
+    public void forEachKey(LongConsumer action) {
+        for (int blockIndex = 0; ; blockIndex++) {
+            long[] keys;
+            long stamp = lock.readLock();
+            try {
+                if (blockIndex >= blocks.length) {
+                    return;
+                }
+                keys = Arrays.copyOf(blocks[blockIndex].keys, rowsIn(blockIndex));
+            } finally {
+                lock.unlockRead(stamp);
+            }
+            for (long key : keys) {
+                if (key != FREE) {
+                    action.accept(key);
+                }
+            }
+        }
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Возвращает ключи ссылок, которые на момент {@code now} пора удалить: с истёкшим
+     * сроком ({@code expiryTime < now}) или исчерпанным лимитом. Блоки проверяются параллельно.
+     *
+     * @param now        текущий момент (в мс)
+     * @param maxResults максимальное количество ключей в ответе
+     * @return ключи ссылок
+     */
+    public long[] findDue(long now, int maxResults) {
+        return concat(IntStream.range(0, blocks.length).parallel()
+                .mapToObj(blockIndex -> scanDue(blockIndex, now, maxResults))
+                .toArray(long[][]::new), maxResults);
+    }
+
+    /**
+     * Считает ссылки, которые на момент {@code now} пора удалить (см. {@link #findDue}).
+     * Для тестов и бенчмарков.
+     *
+     * @param now текущий момент (в мс)
+     * @return число ссылок
+     */
+    long countDue(long now) {
+        return IntStream.range(0, blocks.length).parallel()
+                .mapToLong(blockIndex -> countDueInBlock(blockIndex, now))
+                .sum();
+    }
+
+    /**
+     * Возвращает ключи ссылок владельца, проверяя столбец номеров владельцев.
+     *
+     * @param userUuid UUID владельца
+     * @return ключи ссылок (пустой массив, если ссылок нет)
+     */
+    public long[] findByUser(UUID userUuid) {
+        int userId = users.find(userUuid);
+        if (userId == UserIds.NONE) {
+            return new long[0];
+        }
+        return concat(IntStream.range(0, blocks.length).parallel()
+                .mapToObj(blockIndex -> scanUser(blockIndex, userId))
+                .toArray(long[][]::new), Integer.MAX_VALUE);
+    }
+
+    /**
+     * Проверяет условие "просрочена или исчерпала лимит" по строкам одного блока.
+     */
+    private long[] scanDue(int blockIndex, long now, int maxResults) {
+        long stamp = lock.readLock();
+        try {
+            Block block = blocks[blockIndex];
+            long[] keys = block.keys;
+            long[] expiryTimes = block.expiryTimes;
+            int[] limits = block.limits;
+            long[] generationCounts = block.generationCounts;
+            int end = rowsIn(blockIndex);
+            long[] due = new long[16];
+            int count = 0;
+            for (int i = 0; i < end && count < maxResults; i++) {
+                if (keys[i] != FREE && (expiryTimes[i] < now || (int) generationCounts[i] >= limits[i])) {
+                    if (count == due.length) {
+                        due = Arrays.copyOf(due, count * 2);
+                    }
+                    due[count++] = keys[i];
+                }
+            }
+            return Arrays.copyOf(due, count);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private long countDueInBlock(int blockIndex, long now) {
+        long stamp = lock.readLock();
+        try {
+            Block block = blocks[blockIndex];
+            long[] keys = block.keys;
+            long[] expiryTimes = block.expiryTimes;
+            int[] limits = block.limits;
+            long[] generationCounts = block.generationCounts;
+            int end = rowsIn(blockIndex);
+            long count = 0;
+            for (int i = 0; i < end; i++) {
+                if (keys[i] != FREE && (expiryTimes[i] < now || (int) generationCounts[i] >= limits[i])) {
+                    count++;
+                }
+            }
+            return count;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private long[] scanUser(int blockIndex, int userId) {
+        long stamp = lock.readLock();
+        try {
+            Block block = blocks[blockIndex];
+            long[] keys = block.keys;
+            int[] owners = block.users;
+            int end = rowsIn(blockIndex);
+            long[] found = new long[16];
+            int count = 0;
+            for (int i = 0; i < end; i++) {
+                if (owners[i] == userId && keys[i] != FREE) {
+                    if (count == found.length) {
+                        found = Arrays.copyOf(found, count * 2);
+                    }
+                    found[count++] = keys[i];
+                }
+            }
+            return Arrays.copyOf(found, count);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Склеивает результаты блоков, обрезая до {@code maxResults}.
+     */
+    private static long[] concat(long[][] parts, int maxResults) {
+        long total = 0;
+        for (long[] part : parts) {
+            total += part.length;
+        }
+        long[] result = new long[(int) Math.min(total, maxResults)];
+        int position = 0;
+        for (long[] part : parts) {
+            int length = Math.min(part.length, result.length - position);
+            System.arraycopy(part, 0, result, position, length);
+            position += length;
+        }
+        return result;
+    }
+
+    /**
+     * Число когда-либо занятых строк в блоке. Вызывается под блокировкой.
+     */
+    private int rowsIn(int blockIndex) {
+        return Math.min(BLOCK_ROWS, rowCount - (blockIndex << BLOCK_SHIFT));
+    }
+
+    /**
+     * Читает ссылку. При оптимистичном чтении (stamp не 0) проверяет, что за время
+     * чтения ничего не менялось, и иначе возвращает {@link #RETRY}.
+     */
+    private ShortLink read(long key, long stamp) {
+        long row = rows.getOrDefault(key, NO_ROW);
+        if (row == NO_ROW) {
+            return stamp == 0 || lock.validate(stamp) ? null : RETRY;
+        }
+        Block block = blocks[(int) (row >>> BLOCK_SHIFT)];
+        int i = (int) row & BLOCK_MASK;
+        int urlLength = block.urlLengths[i];
+        long urlOffset = block.urlOffsets[i];
+        if (urlLength < 0 || urlLength > MAX_URL_BYTES) {
+            return RETRY; // Возможно только при оптимистичном чтении посреди записи
+        }
+        long generationCount = (long) LONGS.getVolatile(block.generationCounts, i);
+        long createdAt = block.createdAts[i];
+        long expiryTime = block.expiryTimes[i];
+        int limit = block.limits[i];
+        UUID owner = users.uuidOf(block.users[i]);
+        int position = (int) (urlOffset & (ARENA_PAGE_BYTES - 1));
+        byte[] url = Arrays.copyOfRange(arena[(int) (urlOffset >>> ARENA_PAGE_SHIFT)], position, position + urlLength);
+        if (stamp != 0 && !lock.validate(stamp)) {
+            return RETRY;
+        }
+        return new ColumnarShortLink(block, i, (int) (generationCount >>> 32), Base62.encode(key),
+                url, createdAt, expiryTime, limit, (int) generationCount, owner);
+    }
+
+    /**
+     * Читает ссылку из строки. Вызывается под блокировкой.
+     */
+    private ShortLink materialize(int row) {
+        return read(blocks[row >>> BLOCK_SHIFT].keys[row & BLOCK_MASK], 0);
+    }
+
+    /**
+     * Записывает поля ссылки в строку. Вызывается под блокировкой записи.
+     *
+     * @param writeCount записывать ли счётчик переходов
+     */
+    private void write(int row, long key, ShortLink link, byte[] url, boolean writeCount) {
+        Block block = blocks[row >>> BLOCK_SHIFT];
+        int i = row & BLOCK_MASK;
+        boolean occupied = block.keys[i] != FREE;
+        if (!occupied || !sameUrl(block, i, url)) {
+            if (occupied) {
+                liveUrlBytes -= block.urlLengths[i];
+            }
+            block.urlOffsets[i] = appendUrl(url);
+            block.urlLengths[i] = url.length;
+            liveUrlBytes += url.length;
+        }
+        block.createdAts[i] = link.getCreatedAt();
+        block.expiryTimes[i] = link.getExpiryTime();
+        block.limits[i] = link.getLimit();
+        block.users[i] = users.idOf(link.getUserUuid());
+        if (writeCount) {
+            long value;
+            do {
+                value = (long) LONGS.getVolatile(block.generationCounts, i);
+            } while (!LONGS.compareAndSet(block.generationCounts, i, value,
+                    (value & 0xFFFFFFFF00000000L) | (link.getCurrentCount() & 0xFFFFFFFFL)));
+        }
+        block.keys[i] = key;
+        compactArenaIfNeeded();
+    }
+
+    /**
+     * Проверяет, что в строке уже записан тот же URL (например, при изменении лимита).
+     */
+    private boolean sameUrl(Block block, int i, byte[] url) {
+        if (block.urlLengths[i] != url.length) {
+            return false;
+        }
+        long offset = block.urlOffsets[i];
+        int position = (int) (offset & (ARENA_PAGE_BYTES - 1));
+        return Arrays.equals(arena[(int) (offset >>> ARENA_PAGE_SHIFT)], position, position + url.length,
+                url, 0, url.length);
+    }
+
+    /**
+     * Дописывает URL в конец буфера так, чтобы он не пересекал границу страницы.
+     *
+     * @return смещение URL
+     */
+    private long appendUrl(byte[] url) {
+        long offset = arenaEnd;
+        if ((offset & (ARENA_PAGE_BYTES - 1)) + url.length > ARENA_PAGE_BYTES) {
+            offset = (offset | (ARENA_PAGE_BYTES - 1)) + 1;
+        }
+        int page = (int) (offset >>> ARENA_PAGE_SHIFT);
+        byte[][] pages = arena;
+        if (page >= pages.length) {
+            pages = Arrays.copyOf(pages, page + 1);
+            pages[page] = new byte[ARENA_PAGE_BYTES];
+            arena = pages;
+        }
+        System.arraycopy(url, 0, pages[page], (int) (offset & (ARENA_PAGE_BYTES - 1)), url.length);
+        arenaEnd = offset + url.length;
+        return offset;
+    }
+
+    /**
+     * Переписывает живые URL в новый буфер, когда мусора в буфере больше, чем живых байтов.
+     * Вызывается под блокировкой записи; оптимистичные чтения, попавшие на уплотнение,
+     * повторяются.
+     */
+    private void compactArenaIfNeeded() {
+        long garbage = arenaEnd - liveUrlBytes;
+        if (garbage <= Math.max(liveUrlBytes, ARENA_PAGE_BYTES)) {
+            return;
+        }
+        byte[][] old = arena;
+        arena = new byte[0][];
+        arenaEnd = 0;
+        for (int blockIndex = 0; blockIndex < blocks.length; blockIndex++) {
+            Block block = blocks[blockIndex];
+            int end = rowsIn(blockIndex);
+            for (int i = 0; i < end; i++) {
+                if (block.keys[i] != FREE) {
+                    long offset = block.urlOffsets[i];
+                    int position = (int) (offset & (ARENA_PAGE_BYTES - 1));
+                    byte[] url = Arrays.copyOfRange(old[(int) (offset >>> ARENA_PAGE_SHIFT)], position,
+                            position + block.urlLengths[i]);
+                    block.urlOffsets[i] = appendUrl(url);
+                }
+            }
+        }
+    }
+
+    /**
+     * Занимает свободную строку или новую в конце. Вызывается под блокировкой записи.
+     */
+    private int allocateRow() {
+        if (freeCount > 0) {
+            return freeRows[--freeCount];
+        }
+        int row = rowCount;
+        if (row == Integer.MAX_VALUE) {
+            throw new IllegalStateException("Хранилище ссылок заполнено");
+        }
+        int blockIndex = row >>> BLOCK_SHIFT;
+        if (blockIndex >= blocks.length) {
+            Block[] grown = Arrays.copyOf(blocks, blockIndex + 1);
+            grown[blockIndex] = new Block();
+            blocks = grown;
+        }
+        rowCount = row + 1;
+        return row;
+    }
+
+    /**
+     * Блок столбцов на {@value #BLOCK_ROWS} строк.
+     */
+    private static final class Block {
+        final long[] keys = new long[BLOCK_ROWS];
+        final long[] createdAts = new long[BLOCK_ROWS];
+        final long[] expiryTimes = new long[BLOCK_ROWS];
+        final int[] limits = new int[BLOCK_ROWS];
+        // Поколение строки (старшие 32 бита) и счётчик переходов (младшие)
+        final long[] generationCounts = new long[BLOCK_ROWS];
+        // Номер владельца в словаре
+        final int[] users = new int[BLOCK_ROWS];
+        final long[] urlOffsets = new long[BLOCK_ROWS];
+        final int[] urlLengths = new int[BLOCK_ROWS];
+
+        Block() {
+            Arrays.fill(keys, FREE);
+        }
+    }
+
+    /**
+     * Ссылка-представление строки: счётчик переходов живёт в столбце, пока строка
+     * принадлежит этой ссылке (совпадает поколение), а после удаления ссылки —
+     * в самом объекте.
+     */
+    private static final class ColumnarShortLink extends ShortLink {
+        private final Block block;
+        private final int index;
+        private final int generation;
+
+        ColumnarShortLink(Block block, int index, int generation, String shortId, byte[] originalUrl,
+                          long createdAt, long expiryTime, int limit, int currentCount, UUID owner) {
+            super(shortId, createdAt, expiryTime, limit, currentCount, owner, originalUrl);
+            this.block = block;
+            this.index = index;
+            this.generation = generation;
+        }
+
+        boolean isViewOf(ColumnarLinkStore owner, int row) {
+            return owner.blocks[row >>> BLOCK_SHIFT] == block && (row & BLOCK_MASK) == index
+                    && (int) ((long) LONGS.getVolatile(block.generationCounts, index) >>> 32) == generation;
+        }
+
+        @Override
+        public int getCurrentCount() {
+            long value = (long) LONGS.getVolatile(block.generationCounts, index);
+            return (int) (value >>> 32) == generation ? (int) value : super.getCurrentCount();
+        }
+
+        @Override
+        public void setCurrentCount(int currentCount) {
+            super.setCurrentCount(currentCount);
+            long value;
+            do {
+                value = (long) LONGS.getVolatile(block.generationCounts, index);
+                if ((int) (value >>> 32) != generation) {
+                    return;
+                }
+            } while (!LONGS.compareAndSet(block.generationCounts, index, value,
+                    (value & 0xFFFFFFFF00000000L) | (currentCount & 0xFFFFFFFFL)));
+        }
+
+        @Override
+        public boolean tryReserveClick() {
+            long value;
+            do {
+                value = (long) LONGS.getVolatile(block.generationCounts, index);
+                if ((int) (value >>> 32) != generation) {
+                    return super.tryReserveClick(); // Ссылку удалили — строка уже не её
+                }
+                if ((int) value >= getLimit()) {
+                    return false;
+                }
+            } while (!LONGS.compareAndSet(block.generationCounts, index, value, value + 1));
+            return true;
+        }
+
+        @Override
+        public boolean isExhausted() {
+            return getCurrentCount() >= getLimit();
+        }
+    }
+}
@@ -78,5 +78,445 @@ public class Config {
     public static int getMaxLimit() {
         return Integer.parseInt(properties.getProperty("config.limit.max", "100"));
     }
-}
 
+    /**
+     * Возвращает период фоновой очистки устаревших ссылок в секундах.
+     * <p>
+     * Значение считывается из свойства <code>config.cleanup.period.seconds</code>.
+     * Если свойство отсутствует, используется значение по умолчанию <code>60</code>.
+     *
+     * @return период фоновой очистки (в секундах).
+     */
+    public static int getCleanupPeriodSeconds() {
+        return Integer.parseInt(properties.getProperty("config.cleanup.period.seconds", "60"));
+    }
+
+    /**
+     * Возвращает максимальное количество ссылок, удаляемых за один проход фоновой очистки.
+     * <p>
+     * Значение считывается из свойства <code>config.cleanup.max.per.tick</code>.
+     * Если свойство отсутствует, используется значение по умолчанию <code>10000</code>.
+     *
+     * @return максимальное количество удалений за один проход.
+     */
+    public static int getCleanupMaxPerTick() {
+        return Integer.parseInt(properties.getProperty("config.cleanup.max.per.tick", "10000"));
+    }
+
+    /**
+     * Возвращает ключ перестановки, которой генерируются короткие идентификаторы.
+     * <p>
+     * Значение считывается из свойства <code>config.shortid.key</code>.
+     * Если свойство отсутствует, используется значение по умолчанию <code>20250101</code>.
+     *
+     * @return ключ генератора коротких идентификаторов.
+     */
+    public static long getShortIdKey() {
+        return Long.parseLong(properties.getProperty("config.shortid.key", "20250101"));
+    }
+
+    /**
+     * Возвращает минимальный уровень сообщений журнала (DEBUG, INFO, WARN или ERROR).
+     * <p>
+     * Значение считывается из свойства <code>config.log.level</code>.
+     * Если свойство отсутствует, используется значение по умолчанию <code>INFO</code>.
+     *
+     * @return минимальный уровень журнала.
+     */
+    public static String getLogLevel() {
+        return properties.getProperty("config.log.level", "INFO");
+    }
+
+    /**
+     * Возвращает ёмкость кольцевого буфера асинхронного журнала.
+     * <p>
+     * Значение считывается из свойства <code>config.log.buffer.size</code>.
+     * Если свойство отсутствует, используется значение по умолчанию <code>8192</code>.
+     *
+     * @return ёмкость буфера журнала (в сообщениях).
+     */
+    public static int getLogBufferSize() {
+        return Integer.parseInt(properties.getProperty("config.log.buffer.size", "8192"));
+    }
+
+    /**
+     * Возвращает порт встроенного HTTP-сервера.
+     * <p>
+     * Значение считывается из свойства <code>config.http.port</code>.
+     * Если свойство отсутствует, используется значение по умолчанию <code>8080</code>.
+     *
+     * @return порт HTTP-сервера.
+     */
+    public static int getHttpPort() {
+        return Integer.parseInt(properties.getProperty("config.http.port", "8080"));
+    }
+
+    /**
+     * Возвращает число потоков обработки HTTP-запросов.
+     * <p>
+     * Значение считывается из свойства <code>config.http.threads</code>.
+     * Если свойство отсутствует, используется значение по умолчанию <code>16</code>.
+     *
+     * @return число потоков HTTP-сервера.
+     */
+    public static int getHttpThreads() {
+        return Integer.parseInt(properties.getProperty("config.http.threads", "16"));
+    }
+
+    /**
+     * Возвращает длину очереди входящих соединений HTTP-сервера.
+     * <p>
+     * Значение считывается из свойства <code>config.http.backlog</code>.
+     * Если свойство отсутствует, используется значение по умолчанию <code>1024</code>.
+     *
+     * @return длина очереди входящих соединений.
+     */
+    public static int getHttpBacklog() {
+        return Integer.parseInt(properties.getProperty("config.http.backlog", "1024"));
+    }
+
+    /**
+     * Возвращает способ выполнения обработчиков HTTP-запросов.
+     * <p>
+     * Значение считывается из свойства <code>config.http.executor</code>:
+     * <code>virtual</code> — виртуальный поток на запрос, <code>platform</code> — фиксированный пул.
+     * Если свойство отсутствует, используется значение по умолчанию <code>virtual</code>.
+     *
+     * @return режим выполнения обработчиков.
+     */
+    public static String getHttpExecutor() {
+        return properties.getProperty("config.http.executor", "virtual");
+    }
+
+    /**
+     * Возвращает максимальное число простаивающих keep-alive соединений HTTP-сервера.
+     * <p>
+     * Значение считывается из свойства <code>config.http.max.idle.connections</code>.
+     * Если свойство отсутствует, используется значение по умолчанию <code>10000</code>.
+     *
+     * @return максимальное число простаивающих соединений.
+     */
+    public static int getHttpMaxIdleConnections() {
+        return Integer.parseInt(properties.getProperty("config.http.max.idle.connections", "10000"));
+    }
+
+    /**
+     * Возвращает порт NIO-сервера перенаправлений.
+     * <p>
+     * Значение считывается из свойства <code>config.nio.port</code>.
+     * Если свойство отсутствует, используется значение по умолчанию <code>8081</code>.
+     *
+     * @return порт NIO-сервера.
+     */
+    public static int getNioPort() {
+        return Integer.parseInt(properties.getProperty("config.nio.port", "8081"));
+    }
+
+    /**
+     * Возвращает число циклов событий NIO-сервера перенаправлений.
+     * <p>
+     * Значение считывается из свойства <code>config.nio.threads</code>.
+     * Значение <code>0</code> (по умолчанию) означает "по числу ядер".
+     *
+     * @return число циклов событий или 0.
+     */
+    public static int getNioThreads() {
+        return Integer.parseInt(properties.getProperty("config.nio.threads", "0"));
+    }
+
+    /**
+     * Возвращает максимальный суммарный размер кэша готовых ответов 302.
+     * <p>
+     * Значение считывается из свойства <code>config.redirect.cache.max.bytes</code>.
+     * Если свойство отсутствует, используется значение по умолчанию <code>67108864</code> (64 МБ).
+     *
+     * @return размер кэша ответов в байтах.
+     */
+    public static long getRedirectCacheMaxBytes() {
+        return Long.parseLong(properties.getProperty("config.redirect.cache.max.bytes", "67108864"));
+    }
+
+    /**
+     * Возвращает максимальное число ссылок в кэше перед хранилищем ({@link CachingLinkStore}).
+     * <p>
+     * Значение считывается из свойства <code>config.link.cache.max.entries</code>.
+     * Если свойство отсутствует, используется значение по умолчанию <code>100000</code>.
+     *
+     * @return максимальное число ссылок в кэше.
+     */
+    public static long getLinkCacheMaxEntries() {
+        return Long.parseLong(properties.getProperty("config.link.cache.max.entries", "100000"));
+    }
+
+    /**
+     * Возвращает максимальный примерный объём кэша ссылок в байтах.
+     * <p>
+     * Значение считывается из свойства <code>config.link.cache.max.bytes</code>.
+     * Значение <code>0</code> (по умолчанию) означает ограничение только по числу ссылок.
+     *
+     * @return объём кэша ссылок в байтах или 0.
+     */
+    public static long getLinkCacheMaxBytes() {
+        return Long.parseLong(properties.getProperty("config.link.cache.max.bytes", "0"));
+    }
+
+    /**
+     * Возвращает начальную ёмкость фильтра существующих идентификаторов.
+     * <p>
+     * Значение считывается из свойства <code>config.shortid.filter.capacity</code>.
+     * Если свойство отсутствует, используется значение по умолчанию <code>1048576</code>.
+     * При переполнении фильтр пересобирается с удвоенной ёмкостью.
+     *
+     * @return ёмкость фильтра (число ссылок).
+     */
+    public static long getShortIdFilterCapacity() {
+        return Long.parseLong(properties.getProperty("config.shortid.filter.capacity", "1048576"));
+    }
+
+    /**
+     * Возвращает число ячеек кэша недавних промахов.
+     * <p>
+     * Значение считывается из свойства <code>config.negative.cache.size</code>.
+     * Если свойство отсутствует, используется значение по умолчанию <code>4096</code>.
+     *
+     * @return размер кэша промахов.
+     */
+    public static int getNegativeCacheSize() {
+        return Integer.parseInt(properties.getProperty("config.negative.cache.size", "4096"));
+    }
+
+    /**
+     * Возвращает время жизни записи в кэше недавних промахов.
+     * <p>
+     * Значение считывается из свойства <code>config.negative.cache.ttl.millis</code>.
+     * Если свойство отсутствует, используется значение по умолчанию <code>1000</code>.
+     *
+     * @return время жизни записи в мс.
+     */
+    public static long getNegativeCacheTtlMillis() {
+        return Long.parseLong(properties.getProperty("config.negative.cache.ttl.millis", "1000"));
+    }
+
+    /**
+     * Возвращает предельное число хостов (схема и хост URL) в словаре {@link UrlDictionary}.
+     * <p>
+     * Значение считывается из свойства <code>config.url.origin.dictionary.size</code>.
+     * Если свойство отсутствует, используется значение по умолчанию <code>65536</code>.
+     *
+     * @return число хостов.
+     */
+    public static int getUrlOriginDictionarySize() {
+        return Integer.parseInt(properties.getProperty("config.url.origin.dictionary.size", "65536"));
+    }
+
+    /**
+     * Возвращает число ячеек таблицы недавних URL, по которой одинаковые URL ссылок
+     * делят один массив байтов (см. {@link UrlDictionary}).
+     * <p>
+     * Значение считывается из свойства <code>config.url.dedup.size</code>.
+     * Если свойство отсутствует, используется значение по умолчанию <code>65536</code>.
+     *
+     * @return число ячеек.
+     */
+    public static int getUrlDedupSize() {
+        return Integer.parseInt(properties.getProperty("config.url.dedup.size", "65536"));
+    }
+
+    /**
+     * Возвращает каталог хранилища: снимок и файлы журнала изменений.
+     * <p>
+     * Значение считывается из свойства <code>config.storage.dir</code>.
+     * Если свойство отсутствует, используется значение по умолчанию <code>data</code>.
+     *
+     * @return путь к каталогу.
+     */
+    public static String getStorageDir() {
+        return properties.getProperty("config.storage.dir", "data");
+    }
+
+    /**
+     * Возвращает вид хранилища ссылок и пользователей.
+     * <p>
+     * Значение считывается из свойства <code>config.storage.backend</code>:
+     * <code>memory</code> (в памяти, без сохранения), <code>file</code> (по умолчанию, снимок
+     * и журнал изменений в каталоге хранилища) или <code>jdbc</code> (база данных <code>config.jdbc.url</code>).
+     *
+     * @return вид хранилища.
+     */
+    public static String getStorageBackend() {
+        return properties.getProperty("config.storage.backend", "file");
+    }
+
+    /**
+     * Возвращает адрес базы данных для хранилища <code>jdbc</code>.
+     * <p>
+     * Значение считывается из свойства <code>config.jdbc.url</code>.
+     * Если свойство отсутствует, используется значение по умолчанию <code>jdbc:h2:./data/urlshortener</code>.
+     *
+     * @return JDBC URL.
+     */
+    public static String getJdbcUrl() {
+        return properties.getProperty("config.jdbc.url", "jdbc:h2:./data/urlshortener");
+    }
+
+    /**
+     * Возвращает имя пользователя базы данных.
+     * <p>
+     * Значение считывается из свойства <code>config.jdbc.user</code>.
+     * Если свойство отсутствует, используется пустая строка.
+     *
+     * @return имя пользователя.
+     */
+    public static String getJdbcUser() {
+        return properties.getProperty("config.jdbc.user", "");
+    }
+
+    /**
+     * Возвращает пароль пользователя базы данных.
+     * <p>
+     * Значение считывается из свойства <code>config.jdbc.password</code>.
+     * Если свойство отсутствует, используется пустая строка.
+     *
+     * @return пароль.
+     */
+    public static String getJdbcPassword() {
+        return properties.getProperty("config.jdbc.password", "");
+    }
+
+    /**
+     * Возвращает число соединений с базой данных для чтения.
+     * <p>
+     * Значение считывается из свойства <code>config.jdbc.pool.size</code>.
+     * Если свойство отсутствует, используется значение по умолчанию <code>8</code>.
+     *
+     * @return число соединений.
+     */
+    public static int getJdbcPoolSize() {
+        return Integer.parseInt(properties.getProperty("config.jdbc.pool.size", "8"));
+    }
+
+    /**
+     * Возвращает наибольшее число изменений, которые записываются в базу данных одной транзакцией.
+     * <p>
+     * Значение считывается из свойства <code>config.jdbc.batch.size</code>.
+     * Если свойство отсутствует, используется значение по умолчанию <code>256</code>.
+     *
+     * @return размер пакета.
+     */
+    public static int getJdbcBatchSize() {
+        return Integer.parseInt(properties.getProperty("config.jdbc.batch.size", "256"));
+    }
+
+    /**
+     * Возвращает вид хранилища ссылок.
+     * <p>
+     * Значение считывается из свойства <code>config.link.store</code>:
+     * <code>memory</code> (по умолчанию, в куче), <code>columnar</code>
+     * (в куче по столбцам, см. {@link ColumnarLinkStore}), <code>mapped</code>
+     * (вне кучи, в файлах, отображённых в память, в подкаталоге <code>links</code> каталога хранилища)
+     * или <code>lsm</code> (LSM-дерево в подкаталоге <code>lsm</code>, см. {@link LsmLinkStore}).
+     *
+     * @return вид хранилища.
+     */
+    public static String getLinkStore() {
+        return properties.getProperty("config.link.store", "memory");
+    }
+
+    /**
+     * Возвращает порог, при котором памятная таблица LSM-хранилища сбрасывается в сегмент.
+     * <p>
+     * Значение считывается из свойства <code>config.lsm.memtable.bytes</code>.
+     * Если свойство отсутствует, используется значение по умолчанию <code>67108864</code> (64 МБ).
+     *
+     * @return порог в байтах.
+     */
+    public static long getLsmMemtableBytes() {
+        return Long.parseLong(properties.getProperty("config.lsm.memtable.bytes", "67108864"));
+    }
+
+    /**
+     * Возвращает, сколько сегментов одного яруса LSM-хранилища сливаются при сжатии в один.
+     * <p>
+     * Значение считывается из свойства <code>config.lsm.compaction.width</code>.
+     * Если свойство отсутствует, используется значение по умолчанию <code>4</code>.
+     *
+     * @return число сегментов.
+     */
+    public static int getLsmCompactionWidth() {
+        return Integer.parseInt(properties.getProperty("config.lsm.compaction.width", "4"));
+    }
+
+    /**
+     * Возвращает число битов фильтра Блума на ключ в сегментах LSM-хранилища.
+     * <p>
+     * Значение считывается из свойства <code>config.lsm.bloom.bits.per.key</code>.
+     * Если свойство отсутствует, используется значение по умолчанию <code>10</code> (около 1% ложных срабатываний).
+     *
+     * @return битов на ключ.
+     */
+    public static int getLsmBloomBitsPerKey() {
+        return Integer.parseInt(properties.getProperty("config.lsm.bloom.bits.per.key", "10"));
+    }
+
+    /**
+     * Возвращает интервал между снимками хранилища.
+     * <p>
+     * Значение считывается из свойства <code>config.snapshot.interval.seconds</code>.
+     * Если свойство отсутствует, используется значение по умолчанию <code>3600</code>.
+     * Значение <code>0</code> отключает периодические снимки.
+     *
+     * @return интервал в секундах.
+     */
+    public static long getSnapshotIntervalSeconds() {
+        return Long.parseLong(properties.getProperty("config.snapshot.interval.seconds", "3600"));
+    }
+
+    /**
+     * Возвращает политику сброса журнала изменений на диск.
+     * <p>
+     * Значение считывается из свойства <code>config.wal.fsync</code>:
+     * <code>always</code>, <code>interval</code> (по умолчанию) или <code>never</code>.
+     *
+     * @return название политики.
+     */
+    public static String getWalFsync() {
+        return properties.getProperty("config.wal.fsync", "interval");
+    }
+
+    /**
+     * Возвращает интервал фонового сброса журнала изменений.
+     * <p>
+     * Значение считывается из свойства <code>config.wal.fsync.interval.millis</code>.
+     * Если свойство отсутствует, используется значение по умолчанию <code>10</code>.
+     *
+     * @return интервал в мс.
+     */
+    public static long getWalFsyncIntervalMillis() {
+        return Long.parseLong(properties.getProperty("config.wal.fsync.interval.millis", "10"));
+    }
+
+    /**
+     * Возвращает размер группы фиксации журнала (для политики <code>always</code>).
+     * <p>
+     * Значение считывается из свойства <code>config.wal.group.commit.size</code>.
+     * Если свойство отсутствует, используется значение по умолчанию <code>64</code>.
+     *
+     * @return число записей, после которого группа сбрасывается на диск, не дожидаясь конца ожидания.
+     */
+    public static int getWalGroupCommitSize() {
+        return Integer.parseInt(properties.getProperty("config.wal.group.commit.size", "64"));
+    }
+
+    /**
+     * Возвращает наибольшее время, которое группа фиксации журнала ждёт новых записей.
+     * <p>
+     * Значение считывается из свойства <code>config.wal.group.commit.linger.micros</code>.
+     * Если свойство отсутствует, используется значение по умолчанию <code>0</code>
+     * (сбрасывается сразу всё, что накопилось за время предыдущего сброса).
+     *
+     * @return время ожидания в мкс.
+     */
+    public static long getWalGroupCommitLingerMicros() {
+        return Long.parseLong(properties.getProperty("config.wal.group.commit.linger.micros", "0"));
+    }
+}
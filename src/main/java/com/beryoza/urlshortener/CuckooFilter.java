@@ -0,0 +1,259 @@
+package com.beryoza.urlshortener;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Фильтр Cuckoo над ключами {@code long}: быстро отвечает "ключа точно нет" или "ключ,
+ * возможно, есть" и, в отличие от фильтра Блума, поддерживает удаление.
+ * <p>
+ * Для ключа хранится 16-битный отпечаток в одной из двух корзин по четыре ячейки;
+ * корзина целиком занимает один {@code long}. Вторая корзина вычисляется из первой
+ * и отпечатка, поэтому при вставке отпечатки можно перекладывать между корзинами,
+ * не зная исходных ключей. Доля ложноположительных ответов — около 0,01%.
+ * <p>
+ * Фильтр разбит на сегменты со своей {@link StampedLock}; проверка выполняется
+ * оптимистично. Если вставка не нашла места, один из отпечатков теряется, и сегмент
+ * помечается переполненным: с этого момента он отвечает "возможно, есть" на любой ключ,
+ * пока владелец не пересоберёт фильтр большего размера (см. {@link #add(long)}).
+ * <p>
+ * Удалять можно только ключи, которые были добавлены, иначе можно стереть
+ * совпавший отпечаток другого ключа. В переполненном сегменте удаление ничего не делает:
+ * отпечаток удаляемого ключа мог оказаться потерянным, и тогда стёрся бы совпавший
+ * отпечаток живого ключа. Лишние отпечатки уйдут при пересборке фильтра.
+ */
+public class CuckooFilter {
+
+    /** Количество сегментов (степень двойки). */
+    private static final int SEGMENT_COUNT = 64;
+
+    /** Ячеек в корзине. */
+    private static final int SLOTS = 4;
+
+    /** Целевая заполненность при выборе размера. */
+    private static final double LOAD_FACTOR = 0.9;
+
+    /** Максимум перекладываний при вставке. */
+    private static final int MAX_KICKS = 500;
+
+    // Сегменты фильтра
+    private final Segment[] segments = new Segment[SEGMENT_COUNT];
+    // Ёмкость, под которую выбран размер
+    private final long capacity;
+
+    /**
+     * Создаёт пустой фильтр.
+     *
+     * @param capacity ожидаемое число ключей
+     */
+    public CuckooFilter(long capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Ёмкость фильтра должна быть положительной");
+        }
+        this.capacity = capacity;
+        long buckets = (long) Math.ceil(capacity / (SLOTS * LOAD_FACTOR) / SEGMENT_COUNT);
+        int bucketCount = (int) Math.min(1 << 30, Long.highestOneBit(Math.max(2, buckets - 1) << 1));
+        for (int i = 0; i < SEGMENT_COUNT; i++) {
+            segments[i] = new Segment(bucketCount);
+        }
+    }
+
+    /**
+     * Проверяет, может ли ключ быть в фильтре.
+     *
+     * @param key ключ
+     * @return false, если ключа точно нет; true, если он, возможно, есть
+     */
+    public boolean mightContain(long key) {
+        long hash = LongObjectMap.hash(key);
+        Segment segment = segmentFor(hash);
+        int fingerprint = fingerprint(hash);
+        long stamp = segment.lock.tryOptimisticRead();
+        if (stamp != 0) {
+            boolean result = segment.contains(hash, fingerprint);
+            if (segment.lock.validate(stamp)) {
+                return result;
+            }
+        }
+        stamp = segment.lock.readLock();
+        try {
+            return segment.contains(hash, fingerprint);
+        } finally {
+            segment.lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Добавляет ключ.
+     *
+     * @param key ключ
+     * @return false, если места не нашлось и сегмент переполнен — фильтр по-прежнему
+     *         не даёт ложноотрицательных ответов, но его пора пересобрать с большей ёмкостью
+     */
+    public boolean add(long key) {
+        long hash = LongObjectMap.hash(key);
+        Segment segment = segmentFor(hash);
+        long stamp = segment.lock.writeLock();
+        try {
+            return segment.add(hash, fingerprint(hash));
+        } finally {
+            segment.lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Удаляет ранее добавленный ключ. Если сегмент ключа переполнен, ничего не делает.
+     *
+     * @param key ключ
+     */
+    public void remove(long key) {
+        long hash = LongObjectMap.hash(key);
+        Segment segment = segmentFor(hash);
+        long stamp = segment.lock.writeLock();
+        try {
+            segment.remove(hash, fingerprint(hash));
+        } finally {
+            segment.lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Возвращает число хранимых отпечатков (для тестов и диагностики).
+     */
+    long countFingerprints() {
+        long count = 0;
+        for (Segment segment : segments) {
+            long stamp = segment.lock.readLock();
+            try {
+                for (long bucket : segment.buckets) {
+                    for (int slot = 0; slot < SLOTS; slot++) {
+                        if (Segment.get(bucket, slot) != 0) {
+                            count++;
+                        }
+                    }
+                }
+            } finally {
+                segment.lock.unlockRead(stamp);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Возвращает ёмкость, под которую создан фильтр.
+     */
+    public long getCapacity() {
+        return capacity;
+    }
+
+    private Segment segmentFor(long hash) {
+        return segments[(int) (hash >>> 58) & (SEGMENT_COUNT - 1)];
+    }
+
+    /** Ненулевой 16-битный отпечаток (ноль обозначает пустую ячейку). */
+    private static int fingerprint(long hash) {
+        int fingerprint = (int) (hash >>> 32) & 0xffff;
+        return fingerprint != 0 ? fingerprint : 1;
+    }
+
+    /**
+     * Сегмент фильтра: таблица корзин. Изменяется только под блокировкой записи.
+     */
+    private static final class Segment {
+        final StampedLock lock = new StampedLock();
+        final long[] buckets;
+        final int mask;
+        // Отпечаток потерян при вставке — сегмент отвечает "возможно, есть" на всё
+        boolean saturated;
+
+        Segment(int bucketCount) {
+            this.buckets = new long[bucketCount];
+            this.mask = bucketCount - 1;
+        }
+
+        boolean contains(long hash, int fingerprint) {
+            int first = (int) hash & mask;
+            return saturated
+                    || slotOf(buckets[first], fingerprint) >= 0
+                    || slotOf(buckets[alternate(first, fingerprint)], fingerprint) >= 0;
+        }
+
+        boolean add(long hash, int fingerprint) {
+            if (saturated) {
+                return false;
+            }
+            int index = (int) hash & mask;
+            if (tryInsert(index, fingerprint) || tryInsert(alternate(index, fingerprint), fingerprint)) {
+                return true;
+            }
+            // Обе корзины заняты: вытесняем случайный отпечаток в его другую корзину
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            if (random.nextBoolean()) {
+                index = alternate(index, fingerprint);
+            }
+            for (int kick = 0; kick < MAX_KICKS; kick++) {
+                int slot = random.nextInt(SLOTS);
+                int evicted = get(buckets[index], slot);
+                buckets[index] = set(buckets[index], slot, fingerprint);
+                fingerprint = evicted;
+                index = alternate(index, fingerprint);
+                if (tryInsert(index, fingerprint)) {
+                    return true;
+                }
+            }
+            saturated = true;
+            return false;
+        }
+
+        void remove(long hash, int fingerprint) {
+            if (saturated) {
+                return; // Отпечаток мог быть потерян: можно стереть чужой совпавший
+            }
+            int first = (int) hash & mask;
+            if (!tryRemove(first, fingerprint)) {
+                tryRemove(alternate(first, fingerprint), fingerprint);
+            }
+        }
+
+        private boolean tryInsert(int index, int fingerprint) {
+            int slot = slotOf(buckets[index], 0);
+            if (slot < 0) {
+                return false;
+            }
+            buckets[index] = set(buckets[index], slot, fingerprint);
+            return true;
+        }
+
+        private boolean tryRemove(int index, int fingerprint) {
+            int slot = slotOf(buckets[index], fingerprint);
+            if (slot < 0) {
+                return false;
+            }
+            buckets[index] = set(buckets[index], slot, 0);
+            return true;
+        }
+
+        /** Вторая корзина отпечатка; операция обратима: alternate(alternate(i)) == i. */
+        private int alternate(int index, int fingerprint) {
+            return (index ^ (fingerprint * 0x5bd1e995)) & mask;
+        }
+
+        private static int slotOf(long bucket, int fingerprint) {
+            for (int slot = 0; slot < SLOTS; slot++) {
+                if (get(bucket, slot) == fingerprint) {
+                    return slot;
+                }
+            }
+            return -1;
+        }
+
+        private static int get(long bucket, int slot) {
+            return (int) (bucket >>> (slot << 4)) & 0xffff;
+        }
+
+        private static long set(long bucket, int slot, int fingerprint) {
+            int shift = slot << 4;
+            return (bucket & ~(0xffffL << shift)) | ((long) fingerprint << shift);
+        }
+    }
+}
@@ -0,0 +1,342 @@
+package com.beryoza.urlshortener;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Хранилища ссылок и пользователей, сохраняемые на диск: снимок плюс журнал изменений
+ * (вид {@code file} в <code>config.storage.backend</code>, см. {@link Storage}).
+ * <p>
+ * В каталоге хранилища лежат снимок ({@value #SNAPSHOT_FILE}) и файлы журнала
+ * {@code log-<номер>.wal}. При открытии загружается снимок, затем по порядку
+ * воспроизводятся файлы журнала начиная с указанного в снимке; запись продолжается
+ * в новый файл. После этого репозитории создаются поверх восстановленного состояния
+ * и дальше записывают в журнал каждое изменение.
+ * <p>
+ * Снимок ({@link #snapshot()}) делается периодически без остановки записи:
+ * журнал переключается на новый файл, снимок пишется по текущему состоянию,
+ * а файлы журнала до переключения удаляются. Поэтому время запуска определяется
+ * размером данных, а не историей изменений.
+ * <p>
+ * Ссылки восстанавливаются в хранилище, выбранное в <code>config.link.store</code>:
+ * в памяти ({@link MemoryLinkStore}) или вне кучи в подкаталоге {@code links}
+ * ({@link MappedLinkStore}).
+ * <p>
+ * Счётчик {@link FeistelShortIdGenerator} восстанавливается за самым большим
+ * из когда-либо выданных идентификаторов (включая удалённые ссылки), поэтому после
+ * перезапуска идентификаторы не повторяются.
+ * <p>
+ * Пример:
+ * {@code
+ * try (DurableStorage storage = DurableStorage.open()) {
+ *     ShortLinkService service = new ShortLinkService(storage.getShortLinkRepository(), storage.getShortIdGenerator());
+ * }
+ * }
+ */
+public class DurableStorage implements Storage {
+
+    /** Имя файла снимка. */
+    static final String SNAPSHOT_FILE = "snapshot.dat";
+
+    // Каталог хранилища
+    private final Path directory;
+    // Журнал изменений
+    private final WriteAheadLog writeAheadLog;
+    // Хранилище ссылок под репозиторием
+    private final LinkStore linkStore;
+    // Репозитории поверх восстановленного состояния
+    private final InMemoryShortLinkRepository shortLinkRepository;
+    private final InMemoryUserRepository userRepository;
+    // Генератор идентификаторов с восстановленным счётчиком
+    private final FeistelShortIdGenerator shortIdGenerator;
+    // Не даёт снимкам выполняться одновременно
+    private final ReentrantLock snapshotLock = new ReentrantLock();
+    // Номер текущего файла журнала; меняется под snapshotLock
+    private long logGeneration;
+    // Периодические снимки (null, если отключены)
+    private final ScheduledExecutorService snapshotter;
+
+    private DurableStorage(Path directory, long logGeneration, WriteAheadLog writeAheadLog, LinkStore linkStore,
+                           InMemoryShortLinkRepository shortLinkRepository, InMemoryUserRepository userRepository,
+                           FeistelShortIdGenerator shortIdGenerator, long snapshotIntervalMillis) {
+        this.directory = directory;
+        this.logGeneration = logGeneration;
+        this.writeAheadLog = writeAheadLog;
+        this.linkStore = linkStore;
+        this.shortLinkRepository = shortLinkRepository;
+        this.userRepository = userRepository;
+        this.shortIdGenerator = shortIdGenerator;
+        if (snapshotIntervalMillis > 0) {
+            this.snapshotter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "snapshot");
+                thread.setDaemon(true);
+                return thread;
+            });
+            snapshotter.scheduleWithFixedDelay(this::scheduledSnapshot, snapshotIntervalMillis,
+                    snapshotIntervalMillis, TimeUnit.MILLISECONDS);
+        } else {
+            this.snapshotter = null;
+        }
+    }
+
+    /**
+     * Открывает хранилище с параметрами из {@link Config}.
+     *
+     * @return открытое хранилище
+     * @throws IOException если снимок или журнал не удалось прочитать или открыть
+     */
+    public static DurableStorage open() throws IOException {
+        return open(Path.of(Config.getStorageDir()),
+                WriteAheadLog.FsyncPolicy.valueOf(Config.getWalFsync().toUpperCase()),
+                Config.getWalFsyncIntervalMillis(),
+                Config.getSnapshotIntervalSeconds() * 1000L);
+    }
+
+    /**
+     * Открывает хранилище: загружает снимок, воспроизводит хвост журнала
+     * и открывает новый файл журнала на запись.
+     *
+     * @param directory              каталог хранилища (создаётся, если его нет)
+     * @param policy                 политика сброса журнала на диск
+     * @param syncIntervalMillis     интервал фонового сброса журнала (в мс)
+     * @param snapshotIntervalMillis интервал между снимками (в мс); 0 — только по вызову {@link #snapshot()}
+     * @return открытое хранилище
+     * @throws IOException если снимок или журнал не удалось прочитать или открыть
+     */
+    public static DurableStorage open(Path directory, WriteAheadLog.FsyncPolicy policy, long syncIntervalMillis,
+                                      long snapshotIntervalMillis) throws IOException {
+        return open(directory, policy, syncIntervalMillis, snapshotIntervalMillis, Config.getLinkStore());
+    }
+
+    /**
+     * Открывает хранилище с заданным видом хранилища ссылок (см. <code>config.link.store</code>).
+     */
+    static DurableStorage open(Path directory, WriteAheadLog.FsyncPolicy policy, long syncIntervalMillis,
+                               long snapshotIntervalMillis, String linkStore) throws IOException {
+        long startedAt = System.nanoTime();
+        Files.createDirectories(directory);
+        UserIds userIds = new UserIds();
+        Replay replay = new Replay(createLinkStore(directory, linkStore, userIds), new FeistelShortIdGenerator(Config.getShortIdKey(), 0));
+
+        // Загружаем снимок
+        long firstGeneration = 0;
+        Snapshot.Header header = Snapshot.load(directory.resolve(SNAPSHOT_FILE), replay);
+        if (header != null) {
+            firstGeneration = header.firstLogGeneration();
+            replay.nextCounter = Math.max(replay.nextCounter, header.nextCounter());
+        }
+        long snapshotMillis = (System.nanoTime() - startedAt) / 1_000_000;
+
+        // Воспроизводим хвост журнала; файлы старше снимка уже не нужны
+        long records = 0;
+        long lastGeneration = firstGeneration - 1;
+        for (long generation : listLogGenerations(directory)) {
+            if (generation < firstGeneration) {
+                Files.delete(logPath(directory, generation));
+            } else {
+                records += WriteAheadLog.replay(logPath(directory, generation), replay);
+                lastGeneration = generation;
+            }
+        }
+        Log.info("Хранилище {} восстановлено: снимок за {} мс, {} записей журнала, {} ссылок, {} пользователей за {} мс",
+                directory, snapshotMillis, records, replay.links.size(), replay.users.size(),
+                (System.nanoTime() - startedAt) / 1_000_000);
+
+        long generation = lastGeneration + 1;
+        WriteAheadLog writeAheadLog = new WriteAheadLog(logPath(directory, generation), policy, syncIntervalMillis,
+                Config.getWalGroupCommitSize(), Config.getWalGroupCommitLingerMicros());
+        return new DurableStorage(directory, generation, writeAheadLog, replay.links,
+                new InMemoryShortLinkRepository(replay.links, writeAheadLog, userIds),
+                new InMemoryUserRepository(replay.users.values(), writeAheadLog, userIds),
+                new FeistelShortIdGenerator(Config.getShortIdKey(), replay.nextCounter),
+                snapshotIntervalMillis);
+    }
+
+    /**
+     * Снимает снимок и удаляет файлы журнала, которые он заменяет.
+     * <p>
+     * Запись не останавливается: журнал переключается на новый файл, после чего
+     * дожидаемся изменений, уже записанных в старый файл, но ещё не применённых.
+     * Всё, что не попало в снимок, окажется в новом файле.
+     *
+     * @throws IOException если снимок не удалось записать (журнал при этом остаётся целым)
+     */
+    public void snapshot() throws IOException {
+        snapshotLock.lock();
+        try {
+            long startedAt = System.nanoTime();
+            long generation = logGeneration + 1;
+            writeAheadLog.rotate(logPath(directory, generation));
+            logGeneration = generation;
+            shortLinkRepository.awaitInFlightWrites();
+            userRepository.awaitInFlightWrites();
+
+            Snapshot.Header header = new Snapshot.Header(generation, shortIdGenerator.getNextCounter());
+            long records = Snapshot.write(directory.resolve(SNAPSHOT_FILE), header, shortLinkRepository, userRepository);
+            for (long old : listLogGenerations(directory)) {
+                if (old < generation) {
+                    Files.delete(logPath(directory, old));
+                }
+            }
+            Log.info("Снимок хранилища записан: {} записей за {} мс", records, (System.nanoTime() - startedAt) / 1_000_000);
+        } finally {
+            snapshotLock.unlock();
+        }
+    }
+
+    /** Возвращает репозиторий ссылок. */
+    @Override
+    public ShortLinkRepository getShortLinkRepository() {
+        return shortLinkRepository;
+    }
+
+    /** Возвращает репозиторий пользователей. */
+    @Override
+    public UserRepository getUserRepository() {
+        return userRepository;
+    }
+
+    /** Возвращает генератор идентификаторов, продолжающий выдачу после перезапуска. */
+    @Override
+    public ShortIdGenerator getShortIdGenerator() {
+        return shortIdGenerator;
+    }
+
+    /** Возвращает журнал изменений. */
+    public WriteAheadLog getWriteAheadLog() {
+        return writeAheadLog;
+    }
+
+    /**
+     * Дожидается текущего снимка (если он идёт), сбрасывает журнал на диск и закрывает его,
+     * затем закрывает хранилище ссылок.
+     */
+    @Override
+    public void close() {
+        if (snapshotter != null) {
+            snapshotter.shutdown(); // Без прерывания: прерванная запись закрыла бы файл журнала
+        }
+        snapshotLock.lock();
+        try {
+            writeAheadLog.close();
+            if (linkStore instanceof AutoCloseable closeable) {
+                closeable.close();
+            }
+        } catch (Exception e) {
+            throw new IllegalStateException("Не удалось закрыть хранилище ссылок", e);
+        } finally {
+            snapshotLock.unlock();
+        }
+    }
+
+    /**
+     * Периодический снимок. Ошибки перехватываются, иначе планировщик перестал бы его запускать.
+     */
+    private void scheduledSnapshot() {
+        try {
+            snapshot();
+        } catch (IOException | RuntimeException e) {
+            Log.error("Ошибка записи снимка хранилища: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Создаёт пустое хранилище ссылок заданного вида: {@code memory}, {@code columnar},
+     * {@code mapped} или {@code lsm}.
+     * <p>
+     * Перед хранилищем вне кучи ставится кэш {@link CachingLinkStore} с бюджетом
+     * <code>config.link.cache.max.entries</code> / <code>config.link.cache.max.bytes</code>:
+     * частые ссылки читаются из кучи готовыми объектами, без разбора ячейки файла.
+     * Ссылки в куче в кэше не нуждаются. Хранилища, записывающие владельца номером,
+     * получают словарь {@code userIds}, общий с репозиториями.
+     */
+    private static LinkStore createLinkStore(Path directory, String kind, UserIds userIds) throws IOException {
+        return switch (kind) {
+            case "memory" -> new MemoryLinkStore();
+            case "columnar" -> new ColumnarLinkStore(userIds);
+            case "mapped" -> new CachingLinkStore(new MappedLinkStore(directory.resolve("links"), userIds));
+            case "lsm" -> new CachingLinkStore(new LsmLinkStore(directory.resolve("lsm"), userIds));
+            default -> throw new IllegalArgumentException("Неизвестное хранилище ссылок: " + kind);
+        };
+    }
+
+    private static Path logPath(Path directory, long generation) {
+        return directory.resolve(String.format("log-%012d.wal", generation));
+    }
+
+    /**
+     * Возвращает номера файлов журнала в каталоге по возрастанию.
+     */
+    private static List<Long> listLogGenerations(Path directory) throws IOException {
+        List<Long> generations = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "log-*.wal")) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                try {
+                    generations.add(Long.parseLong(name.substring("log-".length(), name.length() - ".wal".length())));
+                } catch (NumberFormatException e) {
+                    Log.warn("Посторонний файл в каталоге хранилища пропущен: {}", file);
+                }
+            }
+        }
+        generations.sort(null);
+        return generations;
+    }
+
+    /**
+     * Применяет записи снимка и журнала к состоянию в памяти.
+     */
+    private static final class Replay implements WriteAheadLog.Visitor {
+        final LinkStore links;
+        final Map<UUID, User> users = new HashMap<>();
+        final FeistelShortIdGenerator generator;
+        // Следующее значение счётчика генератора
+        long nextCounter;
+
+        Replay(LinkStore links, FeistelShortIdGenerator generator) {
+            this.links = links;
+            this.generator = generator;
+        }
+
+        @Override
+        public void linkSaved(ShortLink link) {
+            long key = Base62.decode(link.getShortId());
+            links.put(key, link);
+            nextCounter = Math.max(nextCounter, generator.counterOf(key) + 1);
+        }
+
+        @Override
+        public void linkDeleted(long key) {
+            links.remove(key);
+        }
+
+        @Override
+        public void linkClicked(long key, int count) {
+            ShortLink link = links.get(key);
+            if (link != null && link.getCurrentCount() < count) {
+                link.setCurrentCount(count);
+            }
+        }
+
+        @Override
+        public void userSaved(User user) {
+            users.put(user.getUserUuid(), user);
+        }
+
+        @Override
+        public void userDeleted(UUID userUuid) {
+            users.remove(userUuid);
+        }
+    }
+}
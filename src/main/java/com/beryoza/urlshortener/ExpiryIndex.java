@@ -0,0 +1,211 @@
+package com.beryoza.urlshortener;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Индекс сроков действия коротких ссылок.
+ * <p>
+ * Ссылки раскладываются по "корзинам" фиксированной ширины (по умолчанию одна секунда)
+ * в порядке возрастания момента, когда их пора удалять. Благодаря этому очистка
+ * затрагивает только те корзины, время которых уже наступило, а не всё хранилище.
+ * <p>
+ * Ссылки хранятся по ключу — shortId, декодированному из base62, — в примитивных
+ * структурах: корзина — это {@link LongHashSet}, а текущие сроки ссылок лежат
+ * в {@link LongLongMap}. Для каждой ссылки запоминается её текущий срок, поэтому
+ * повторное планирование (например, после изменения времени жизни) корректно
+ * переносит ссылку в другую корзину.
+ * <p>
+ * Общей блокировки нет. Сроки разбиты на полосы по хешу ключа, корзины лежат
+ * в {@link ConcurrentSkipListMap} и защищены полосой по номеру корзины, поэтому
+ * записи разных ссылок и очистка идут параллельно. Блокировки полос никогда
+ * не берутся вложенно. Изменения одной и той же ссылки вызывающий код должен
+ * упорядочивать сам (репозиторий делает это блокировкой полосы ключа).
+ */
+public class ExpiryIndex {
+
+    /** Ширина корзины по умолчанию (в мс). */
+    public static final long DEFAULT_BUCKET_MILLIS = 1000L;
+
+    /** Количество полос (степень двойки). */
+    private static final int STRIPE_COUNT = 64;
+
+    /** Ширина одной корзины (в мс). */
+    private final long bucketMillis;
+
+    /** Корзины: номер корзины → ключи ссылок, срок которых в неё попадает. */
+    private final NavigableMap<Long, LongHashSet> buckets = new ConcurrentSkipListMap<>();
+
+    /** Блокировки корзин: корзина защищена полосой по своему номеру. */
+    private final Object[] bucketLocks = new Object[STRIPE_COUNT];
+
+    /** Текущий срок (в мс) каждой запланированной ссылки, по полосам ключей. */
+    private final LongLongMap[] deadlines = new LongLongMap[STRIPE_COUNT];
+
+    /**
+     * Создаёт индекс с корзинами шириной в одну секунду.
+     */
+    public ExpiryIndex() {
+        this(DEFAULT_BUCKET_MILLIS);
+    }
+
+    /**
+     * Создаёт индекс с заданной шириной корзины.
+     *
+     * @param bucketMillis ширина корзины в мс (больше нуля)
+     */
+    public ExpiryIndex(long bucketMillis) {
+        if (bucketMillis <= 0) {
+            throw new IllegalArgumentException("Ширина корзины должна быть положительной");
+        }
+        this.bucketMillis = bucketMillis;
+        for (int i = 0; i < STRIPE_COUNT; i++) {
+            bucketLocks[i] = new Object();
+            deadlines[i] = new LongLongMap();
+        }
+    }
+
+    /**
+     * Планирует (или переносит) ссылку на удаление после указанного момента.
+     *
+     * @param key      ключ ссылки (shortId, декодированный из base62)
+     * @param deadline момент (в мс), после которого ссылку можно удалять
+     */
+    public void schedule(long key, long deadline) {
+        LongLongMap stripe = deadlinesOf(key);
+        boolean scheduled;
+        long previous;
+        synchronized (stripe) {
+            scheduled = stripe.containsKey(key);
+            previous = stripe.getOrDefault(key, 0);
+            stripe.put(key, deadline);
+        }
+        if (scheduled) {
+            if (bucketOf(previous) == bucketOf(deadline)) {
+                return; // Корзина не меняется — достаточно обновить срок
+            }
+            removeFromBucket(bucketOf(previous), key);
+        }
+        long bucket = bucketOf(deadline);
+        synchronized (bucketLock(bucket)) {
+            LongHashSet keys = buckets.get(bucket);
+            if (keys == null) {
+                keys = new LongHashSet();
+                buckets.put(bucket, keys);
+            }
+            keys.add(key);
+        }
+    }
+
+    /**
+     * Убирает ссылку из индекса. Если её там нет — ничего не произойдёт.
+     *
+     * @param key ключ ссылки
+     */
+    public void remove(long key) {
+        LongLongMap stripe = deadlinesOf(key);
+        long previous;
+        synchronized (stripe) {
+            if (!stripe.containsKey(key)) {
+                return;
+            }
+            previous = stripe.getOrDefault(key, 0);
+            stripe.remove(key);
+        }
+        removeFromBucket(bucketOf(previous), key);
+    }
+
+    /**
+     * Возвращает ключи ссылок, срок которых строго меньше {@code now}.
+     * <p>
+     * Полностью просроченные корзины отдаются целиком, а в корзине текущего момента
+     * срок проверяется для каждой ссылки отдельно. Сами ссылки из индекса не удаляются:
+     * это происходит при удалении ссылки из репозитория.
+     *
+     * @param now        текущий момент (в мс)
+     * @param maxResults максимальное число ключей в ответе
+     * @return массив ключей просроченных ссылок
+     */
+    public long[] findDue(long now, int maxResults) {
+        long[] due = new long[Math.min(maxResults, 64)];
+        int count = 0;
+        long currentBucket = bucketOf(now);
+        for (Map.Entry<Long, LongHashSet> entry : buckets.headMap(currentBucket, true).entrySet()) {
+            long bucket = entry.getKey();
+            long[] keys;
+            synchronized (bucketLock(bucket)) {
+                keys = entry.getValue().toArray();
+            }
+            for (long key : keys) {
+                if (count >= maxResults) {
+                    return due;
+                }
+                if (bucket < currentBucket || deadlineOf(key) < now) {
+                    if (count == due.length) {
+                        due = Arrays.copyOf(due, (int) Math.min(maxResults, 2L * count));
+                    }
+                    due[count++] = key;
+                }
+            }
+        }
+        return count == due.length ? due : Arrays.copyOf(due, count);
+    }
+
+    /**
+     * Возвращает количество запланированных ссылок.
+     */
+    public int size() {
+        int size = 0;
+        for (LongLongMap stripe : deadlines) {
+            synchronized (stripe) {
+                size += stripe.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Вычисляет номер корзины для момента времени.
+     */
+    private long bucketOf(long time) {
+        return Math.floorDiv(time, bucketMillis);
+    }
+
+    /**
+     * Полоса сроков, которой принадлежит ключ.
+     */
+    private LongLongMap deadlinesOf(long key) {
+        return deadlines[(int) LongObjectMap.hash(key) & (STRIPE_COUNT - 1)];
+    }
+
+    /**
+     * Блокировка, защищающая корзину.
+     */
+    private Object bucketLock(long bucket) {
+        return bucketLocks[(int) LongObjectMap.hash(bucket) & (STRIPE_COUNT - 1)];
+    }
+
+    /**
+     * Текущий срок ссылки; для уже удалённой — "никогда".
+     */
+    private long deadlineOf(long key) {
+        LongLongMap stripe = deadlinesOf(key);
+        synchronized (stripe) {
+            return stripe.getOrDefault(key, Long.MAX_VALUE);
+        }
+    }
+
+    /**
+     * Удаляет ключ из корзины; пустые корзины выбрасываются.
+     */
+    private void removeFromBucket(long bucket, long key) {
+        synchronized (bucketLock(bucket)) {
+            LongHashSet keys = buckets.get(bucket);
+            if (keys != null && keys.remove(key) && keys.isEmpty()) {
+                buckets.remove(bucket);
+            }
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.beryoza.urlshortener;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Фоновый планировщик очистки устаревших ссылок.
+ * <p>
+ * Раз в заданный период вызывает {@link ShortLinkService#cleanUpExpiredLinks(int)}
+ * в отдельном потоке-демоне, поэтому создание ссылок больше не тратит время на очистку.
+ * Количество удалений за один проход ограничено, чтобы один проход не занимал
+ * поток надолго; оставшиеся ссылки будут удалены на следующих проходах.
+ */
+public class ExpiryScheduler implements AutoCloseable {
+
+    // Сервис, выполняющий очистку
+    private final ShortLinkService shortLinkService;
+    // Период между проходами (в мс)
+    private final long periodMillis;
+    // Максимум удалений за один проход
+    private final int maxDeletionsPerTick;
+    // Поток, в котором выполняется очистка
+    private final ScheduledExecutorService executor;
+
+    /**
+     * Создаёт планировщик с параметрами из {@link Config}.
+     *
+     * @param shortLinkService сервис коротких ссылок
+     */
+    public ExpiryScheduler(ShortLinkService shortLinkService) {
+        this(shortLinkService, Config.getCleanupPeriodSeconds() * 1000L, Config.getCleanupMaxPerTick());
+    }
+
+    /**
+     * Создаёт планировщик с явными параметрами.
+     *
+     * @param shortLinkService    сервис коротких ссылок
+     * @param periodMillis        период между проходами очистки (в мс)
+     * @param maxDeletionsPerTick максимальное количество удалений за один проход
+     */
+    public ExpiryScheduler(ShortLinkService shortLinkService, long periodMillis, int maxDeletionsPerTick) {
+        if (periodMillis <= 0) {
+            throw new IllegalArgumentException("Период очистки должен быть положительным");
+        }
+        if (maxDeletionsPerTick <= 0) {
+            throw new IllegalArgumentException("Лимит удалений за проход должен быть положительным");
+        }
+        this.shortLinkService = shortLinkService;
+        this.periodMillis = periodMillis;
+        this.maxDeletionsPerTick = maxDeletionsPerTick;
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "expiry-scheduler");
+            thread.setDaemon(true); // Не мешаем завершению приложения
+            return thread;
+        });
+    }
+
+    /**
+     * Запускает периодическую очистку.
+     */
+    public void start() {
+        executor.scheduleWithFixedDelay(this::tick, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Один проход очистки. Ошибки перехватываются, иначе планировщик
+     * перестал бы запускать последующие проходы.
+     */
+    private void tick() {
+        try {
+            shortLinkService.cleanUpExpiredLinks(maxDeletionsPerTick);
+        } catch (RuntimeException e) {
+            Log.error("Ошибка фоновой очистки ссылок: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Останавливает планировщик. Текущий проход (если идёт) будет прерван.
+     */
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+}
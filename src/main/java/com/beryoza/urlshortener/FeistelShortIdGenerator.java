@@ -0,0 +1,177 @@
+package com.beryoza.urlshortener;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Генератор коротких идентификаторов без коллизий.
+ * <p>
+ * Берёт значение монотонного счётчика и пропускает его через биективную перестановку
+ * пространства {@code [0, 62^6)}: сеть Фейстеля на 36 битах (две половины по 18 бит)
+ * с "обходом цикла" (cycle walking) — если результат выходит за 62^6, перестановка
+ * применяется повторно. Так разные значения счётчика всегда дают разные идентификаторы,
+ * а соседние значения не выглядят последовательными. Проверка по репозиторию не нужна.
+ * <p>
+ * Ключ перестановки задаётся свойством <code>config.shortid.key</code>; при смене ключа
+ * меняется порядок выдачи идентификаторов.
+ * <p>
+ * Перестановка обратима ({@link #counterOf(long)}), поэтому после перезапуска счётчик
+ * восстанавливается по уже выданным идентификаторам, и они не выдаются повторно.
+ */
+public class FeistelShortIdGenerator implements ShortIdGenerator {
+
+    /** Количество раундов сети Фейстеля. */
+    private static final int ROUNDS = 4;
+
+    /** Размер половины блока в битах: 2 * 18 = 36 бит покрывают 62^6. */
+    private static final int HALF_BITS = 18;
+
+    /** Маска половины блока. */
+    private static final long HALF_MASK = (1L << HALF_BITS) - 1;
+
+    /** Ключи раундов, выведенные из основного ключа. */
+    private final long[] roundKeys = new long[ROUNDS];
+
+    /** Монотонный счётчик выданных идентификаторов. */
+    private final AtomicLong counter;
+
+    /**
+     * Создаёт генератор с ключом из {@link Config}; счётчик начинается с нуля.
+     */
+    public FeistelShortIdGenerator() {
+        this(Config.getShortIdKey(), 0);
+    }
+
+    /**
+     * Создаёт генератор с явным ключом и начальным значением счётчика.
+     *
+     * @param key          ключ перестановки
+     * @param initialValue начальное значение счётчика
+     */
+    public FeistelShortIdGenerator(long key, long initialValue) {
+        if (initialValue < 0 || initialValue >= Base62.KEYSPACE) {
+            throw new IllegalArgumentException("Начальное значение счётчика вне диапазона: " + initialValue);
+        }
+        long seed = key;
+        for (int i = 0; i < ROUNDS; i++) {
+            seed += 0x9E3779B97F4A7C15L;
+            roundKeys[i] = mix(seed);
+        }
+        this.counter = new AtomicLong(initialValue);
+    }
+
+    /**
+     * Создаёт генератор с ключом из {@link Config}, счётчик которого продолжает
+     * идентификаторы, уже лежащие в репозитории: следующий после самого большого
+     * восстановленного значения счётчика. Так генератор над непустым репозиторием
+     * не выдаёт занятые идентификаторы повторно.
+     *
+     * @param repository репозиторий с уже выданными ссылками
+     * @return генератор, продолжающий счётчик
+     */
+    public static FeistelShortIdGenerator resumingAfter(ShortLinkRepository repository) {
+        FeistelShortIdGenerator generator = new FeistelShortIdGenerator();
+        long[] nextCounter = new long[1];
+        repository.forEachLink(link -> nextCounter[0] =
+                Math.max(nextCounter[0], generator.counterOf(Base62.decode(link.getShortId())) + 1));
+        return nextCounter[0] == 0 ? generator : new FeistelShortIdGenerator(Config.getShortIdKey(), nextCounter[0]);
+    }
+
+    /**
+     * Возвращает следующий идентификатор.
+     *
+     * @return уникальный идентификатор из шести символов base62
+     * @throws IllegalStateException если пространство идентификаторов исчерпано
+     */
+    @Override
+    public String nextId() {
+        long value = counter.getAndIncrement();
+        if (value >= Base62.KEYSPACE) {
+            throw new IllegalStateException("Пространство коротких идентификаторов исчерпано");
+        }
+        return Base62.encode(permute(value));
+    }
+
+    /**
+     * Возвращает значение счётчика, из которого будет получен следующий идентификатор.
+     */
+    public long getNextCounter() {
+        return counter.get();
+    }
+
+    /**
+     * Биективно переставляет число внутри диапазона {@code [0, 62^6)}.
+     *
+     * @param value число из диапазона {@code [0, 62^6)}
+     * @return переставленное число из того же диапазона
+     */
+    long permute(long value) {
+        // Обход цикла: сеть Фейстеля переставляет все 2^36 значений,
+        // поэтому, повторяя её, мы рано или поздно вернёмся в нужный диапазон
+        do {
+            value = feistel(value);
+        } while (value >= Base62.KEYSPACE);
+        return value;
+    }
+
+    /**
+     * Возвращает значение счётчика, из которого получен идентификатор, — обратная
+     * перестановка к {@link #permute(long)}.
+     *
+     * @param key идентификатор, декодированный из base62 (число из диапазона {@code [0, 62^6)})
+     * @return значение счётчика
+     */
+    public long counterOf(long key) {
+        if (key < 0 || key >= Base62.KEYSPACE) {
+            throw new IllegalArgumentException("Идентификатор вне диапазона: " + key);
+        }
+        long value = key;
+        do {
+            value = inverseFeistel(value);
+        } while (value >= Base62.KEYSPACE);
+        return value;
+    }
+
+    /**
+     * Один проход сети Фейстеля по 36-битному блоку.
+     */
+    private long feistel(long value) {
+        long left = value >>> HALF_BITS;
+        long right = value & HALF_MASK;
+        for (int i = 0; i < ROUNDS; i++) {
+            long next = left ^ (round(right, roundKeys[i]) & HALF_MASK);
+            left = right;
+            right = next;
+        }
+        return (left << HALF_BITS) | right;
+    }
+
+    /**
+     * Обратный проход сети Фейстеля: раунды в обратном порядке.
+     */
+    private long inverseFeistel(long value) {
+        long left = value >>> HALF_BITS;
+        long right = value & HALF_MASK;
+        for (int i = ROUNDS - 1; i >= 0; i--) {
+            long previous = right ^ (round(left, roundKeys[i]) & HALF_MASK);
+            right = left;
+            left = previous;
+        }
+        return (left << HALF_BITS) | right;
+    }
+
+    /**
+     * Раундовая функция: перемешивание половины блока с ключом раунда.
+     */
+    private static long round(long half, long roundKey) {
+        return mix(half ^ roundKey) >>> 20;
+    }
+
+    /**
+     * Финализатор SplitMix64: хорошо перемешивает биты числа.
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,692 @@
+package com.beryoza.urlshortener;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Репозиторий для хранения коротких ссылок в памяти (in-memory).
+ * Ключом будет shortId, а значением — объект ShortLink.
+ * <p>
+ * Короткий идентификатор — это шесть символов base62, то есть число меньше 62^6,
+ * которое помещается в 36 бит. Сами ссылки лежат в {@link LinkStore} под этим числом:
+ * по умолчанию в памяти ({@link MemoryLinkStore}), но хранилище можно заменить, например
+ * на дисковое с кэшем {@link CachingLinkStore} перед ним.
+ * <p>
+ * Репозиторий потокобезопасен: чтения идут прямо в хранилище, а изменения одного shortId
+ * упорядочиваются блокировкой его полосы (по хешу ключа), под которой вместе с хранилищем
+ * обновляются индексы. Это {@link ReentrantLock}, а не {@code synchronized}: под ней может
+ * идти ввод-вывод дискового хранилища, и виртуальный поток не должен занимать поток-носитель.
+ * <p>
+ * Дополнительно ведётся вторичный индекс владелец → набор shortId, чтобы
+ * получать ссылки одного пользователя без обхода всего хранилища, и индекс
+ * сроков действия ({@link ExpiryIndex}), чтобы очистка затрагивала только
+ * просроченные или исчерпавшие лимит ссылки. Оба индекса хранят числовые ключи
+ * в примитивных множествах ({@link LongHashSet}), а не строки shortId. Владелец в индексе —
+ * плотный номер из словаря {@link UserIds}, а не UUID: UUID переводится в номер только в
+ * {@link #findByUserUuid(UUID)}. Словарь общий с хранилищем ссылок и репозиторием
+ * пользователей ({@link Storage}); репозиторий учитывает в нём ссылки каждого владельца,
+ * и номер владельца без ссылок и без регистрации освобождается вместе с его последней ссылкой.
+ * <p>
+ * Поверх {@link ColumnarLinkStore} индексы не ведутся: хранилище само находит ссылки
+ * по сроку и владельцу параллельным проходом по столбцам ({@link ColumnarLinkStore#findDue},
+ * {@link ColumnarLinkStore#findByUser}), и на каждую ссылку в куче не остаётся записей индексов.
+ * <p>
+ * Поиск несуществующих идентификаторов (сканеры, опечатки) отсекается до обращения
+ * к хранилищу фильтром {@link CuckooFilter} по всем живым ссылкам. Редкие ложные
+ * срабатывания фильтра, дошедшие до хранилища, запоминаются в {@link NegativeLookupCache},
+ * и повторный запрос того же идентификатора хранилище уже не затрагивает.
+ * <p>
+ * Если задан журнал изменений ({@link WriteAheadLog}), каждое изменение записывается
+ * в него под блокировкой полосы до изменения хранилища, поэтому порядок записей
+ * по одному shortId в журнале совпадает с порядком изменений. Сброса записи на диск
+ * метод ждёт уже после снятия блокировки ({@link WriteAheadLog#awaitDurable(long)}),
+ * чтобы одновременные изменения попадали в одну группу фиксации.
+ */
+public class InMemoryShortLinkRepository implements ShortLinkRepository {
+
+    /** Количество полос блокировок записи (степень двойки). */
+    private static final int STRIPE_COUNT = 64;
+
+    /** Размер блока индекса пользователей в степени двойки. */
+    private static final int USER_CHUNK_SHIFT = 10;
+
+    /** Маска номера пользователя внутри блока. */
+    private static final int USER_CHUNK_MASK = (1 << USER_CHUNK_SHIFT) - 1;
+
+    /** Атомарный доступ к ячейкам блока индекса пользователей. */
+    private static final VarHandle USER_SETS = MethodHandles.arrayElementVarHandle(LongHashSet[].class);
+
+    /**
+     * Хранилище коротких ссылок. Ключ — shortId, декодированный из base62 в число,
+     * значение — объект ShortLink.
+     */
+    private final LinkStore store;
+
+    /** Блокировки записи по полосам ключей. */
+    private final ReentrantLock[] stripes = new ReentrantLock[STRIPE_COUNT];
+
+    /**
+     * Вторичный индекс: номер пользователя → ключи его ссылок.
+     * Номера плотные, поэтому индекс — блоки массивов наборов по номеру, а не хеш-таблица.
+     * Обновляется под блокировкой полосы вместе с основным хранилищем, поэтому всегда
+     * с ним согласован. Блоки не перемещаются при росте (копируется только массив блоков),
+     * поэтому набор ставится в ячейку CAS-ом. Набор меняется и читается под своим монитором,
+     * под ним же опустевший набор снимается с ячейки.
+     */
+    private volatile LongHashSet[][] userIndex = new LongHashSet[0][];
+
+    /** Рост массива блоков индекса пользователей. */
+    private final Object userIndexGrowth = new Object();
+
+    /** Индекс сроков: по нему очистка находит ссылки, которые пора удалить. */
+    private final ExpiryIndex expiryIndex = new ExpiryIndex();
+
+    /** Словарь владельцев: номера для индекса и общие экземпляры UUID для ссылок. */
+    private final UserIds users;
+
+    /** Хранилище, которое ищет ссылки по сроку и владельцу само, или null — тогда ведутся индексы. */
+    private final ColumnarLinkStore columns;
+
+    /**
+     * Фильтр живых ключей. Изменяется под блокировкой полосы ключа, а пересобирается
+     * под блокировками всех полос, поэтому заменяется целиком.
+     */
+    private volatile CuckooFilter filter;
+
+    /** Недавние промахи, прошедшие через фильтр. */
+    private final NegativeLookupCache negativeCache =
+            new NegativeLookupCache(Config.getNegativeCacheSize(), Config.getNegativeCacheTtlMillis());
+
+    /** Журнал изменений или null, если репозиторий не сохраняется на диск. */
+    private final WriteAheadLog writeAheadLog;
+
+    /** Переносит в индексе сроков ссылку, срок которой изменили на месте. */
+    private final Consumer<ShortLink> expiryListener = this::reschedule;
+
+    /** Подписчики на удаление и замену ссылок (например, кэши производных данных). */
+    private final List<Consumer<String>> removalListeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Создаёт пустой репозиторий в памяти.
+     */
+    public InMemoryShortLinkRepository() {
+        this(new MemoryLinkStore());
+    }
+
+    /**
+     * Создаёт репозиторий поверх заданного хранилища. Индексы строятся по ссылкам,
+     * которые в хранилище уже есть.
+     *
+     * @param store хранилище ссылок
+     */
+    public InMemoryShortLinkRepository(LinkStore store) {
+        this(store, Config.getShortIdFilterCapacity());
+    }
+
+    /**
+     * Создаёт репозиторий поверх заданного хранилища, записывающий изменения в журнал.
+     * Хранилище уже должно содержать состояние, восстановленное из этого журнала.
+     *
+     * @param store         хранилище ссылок
+     * @param writeAheadLog журнал изменений
+     */
+    public InMemoryShortLinkRepository(LinkStore store, WriteAheadLog writeAheadLog) {
+        this(store, Config.getShortIdFilterCapacity(), writeAheadLog, new UserIds());
+    }
+
+    /**
+     * Создаёт репозиторий поверх заданного хранилища со словарём владельцев, общим
+     * с хранилищем ссылок и репозиторием пользователей.
+     *
+     * @param store         хранилище ссылок
+     * @param writeAheadLog журнал изменений или null
+     * @param users         словарь владельцев
+     */
+    public InMemoryShortLinkRepository(LinkStore store, WriteAheadLog writeAheadLog, UserIds users) {
+        this(store, Config.getShortIdFilterCapacity(), writeAheadLog, users);
+    }
+
+    /**
+     * Создаёт репозиторий поверх заданного хранилища с заданной начальной ёмкостью фильтра.
+     *
+     * @param store          хранилище ссылок
+     * @param filterCapacity начальная ёмкость фильтра идентификаторов
+     */
+    public InMemoryShortLinkRepository(LinkStore store, long filterCapacity) {
+        this(store, filterCapacity, null, new UserIds());
+    }
+
+    private InMemoryShortLinkRepository(LinkStore store, long filterCapacity, WriteAheadLog writeAheadLog,
+                                        UserIds users) {
+        this.store = store;
+        this.writeAheadLog = writeAheadLog;
+        this.users = users;
+        this.columns = store instanceof ColumnarLinkStore columnar ? columnar : null;
+        for (int i = 0; i < STRIPE_COUNT; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+        store.forEach(link -> {
+            int userId = users.acquire(link.getUserUuid());
+            link.shareUserUuid(users.uuidOf(userId));
+            if (columns == null) {
+                long key = Base62.decode(link.getShortId());
+                addToUserIndex(userId, key);
+                expiryIndex.schedule(key, cleanupDeadline(link));
+            }
+        });
+        long capacity = Math.max(filterCapacity, 2L * store.size());
+        CuckooFilter built;
+        while ((built = buildFilter(capacity)) == null) {
+            capacity *= 2;
+        }
+        this.filter = built;
+        store.setEvictionListener(this::evicted);
+    }
+
+    /**
+     * Сохраняем/обновляем короткую ссылку в хранилище.
+     *
+     * @param link объект ShortLink, где shortId должен быть уникальным
+     * @throws IllegalArgumentException если shortId не является идентификатором из шести символов base62
+     */
+    @Override
+    public void save(ShortLink link) {
+        String shortId = link.getShortId();
+        long key = Base62.decode(shortId);
+        if (key < 0) {
+            throw new IllegalArgumentException("Некорректный идентификатор ссылки: " + shortId);
+        }
+        ReentrantLock stripe = stripeFor(key);
+        ShortLink previous;
+        CuckooFilter filterToRebuild = null;
+        long sequence = 0;
+        stripe.lock();
+        try {
+            if (writeAheadLog != null) {
+                sequence = writeAheadLog.logLinkSave(key, link);
+            }
+            int userId = users.acquire(link.getUserUuid());
+            link.shareUserUuid(users.uuidOf(userId));
+            previous = store.put(key, link);
+            negativeCache.invalidate(key);
+            if (previous == null) {
+                CuckooFilter current = filter;
+                if (!current.add(key)) {
+                    filterToRebuild = current;
+                }
+            }
+            int previousUserId = previous != null ? users.find(previous.getUserUuid()) : UserIds.NONE;
+            if (columns == null) {
+                // Если ссылка сменила владельца, убираем её из индекса прежнего
+                if (previous != null && previousUserId != userId) {
+                    removeFromUserIndex(previousUserId, key);
+                }
+                addToUserIndex(userId, key);
+                expiryIndex.schedule(key, cleanupDeadline(link));
+            }
+            users.release(previousUserId);
+            link.setExpiryListener(expiryListener);
+        } finally {
+            stripe.unlock();
+        }
+        if (writeAheadLog != null) {
+            writeAheadLog.awaitDurable(sequence);
+        }
+        // Фильтр переполнен: пока он отвечает "возможно, есть" на всё, пересобираем его
+        if (filterToRebuild != null) {
+            rebuildFilter(filterToRebuild);
+        }
+        // Под тем же shortId теперь другой объект — прежний считается удалённым
+        if (previous != null && previous != link) {
+            notifyRemoval(shortId);
+        }
+    }
+
+    /**
+     * Ищем ShortLink по его короткому идентификатору (shortId).
+     * <p>
+     * Строки, которые не могут быть идентификатором (не та длина или символы),
+     * отсекаются сразу, без обращения к хранилищу. Отсутствующие идентификаторы
+     * отсекаются фильтром и кэшем недавних промахов.
+     *
+     * Принимает любую {@link CharSequence}, чтобы сетевой код мог искать ссылку
+     * прямо по байтам запроса, не создавая строку.
+     *
+     * @param shortId короткий идентификатор (например, "abc123")
+     * @return ShortLink или null, если не найден
+     */
+    @Override
+    public ShortLink findByShortId(CharSequence shortId) {
+        return find(shortId, true);
+    }
+
+    /**
+     * Ищет ссылку так же, как {@link #findByShortId(CharSequence)}, но читает хранилище
+     * через {@link LinkStore#getWithoutWaiting(long)}.
+     */
+    @Override
+    public ShortLink findByShortIdWithoutWaiting(CharSequence shortId) {
+        return find(shortId, false);
+    }
+
+    /**
+     * Общая часть поиска.
+     *
+     * @param wait можно ли ждать других потоков при чтении хранилища
+     */
+    private ShortLink find(CharSequence shortId, boolean wait) {
+        long key = Base62.decode(shortId);
+        if (key < 0 || !filter.mightContain(key) || negativeCache.contains(key)) {
+            return null;
+        }
+        ShortLink link = wait ? store.get(key) : store.getWithoutWaiting(key);
+        if (link == null) {
+            // Запоминаем промах и перепроверяем хранилище: если ссылку сохранили между
+            // чтением и записью промаха, запись промаха снимаем здесь же
+            negativeCache.add(key);
+            link = wait ? store.get(key) : store.getWithoutWaiting(key);
+            if (link != null) {
+                negativeCache.invalidate(key);
+            }
+        }
+        if (link != null) {
+            link.setExpiryListener(expiryListener);
+        }
+        return link;
+    }
+
+    /**
+     * Удаляем ссылку из хранилища по shortId.
+     * Если нет такой — ничего не произойдет.
+     *
+     * @param shortId короткий идентификатор ссылки
+     */
+    @Override
+    public void deleteByShortId(String shortId) {
+        long key = Base62.decode(shortId);
+        if (key < 0) {
+            return;
+        }
+        ReentrantLock stripe = stripeFor(key);
+        ShortLink previous;
+        long sequence = 0;
+        stripe.lock();
+        try {
+            if (writeAheadLog != null) {
+                if (store.get(key) == null) {
+                    return;
+                }
+                sequence = writeAheadLog.logLinkDelete(key);
+            }
+            previous = store.remove(key);
+            if (previous != null) {
+                filter.remove(key);
+                unindex(previous, key);
+            }
+        } finally {
+            stripe.unlock();
+        }
+        if (writeAheadLog != null) {
+            writeAheadLog.awaitDurable(sequence);
+        }
+        if (previous != null) {
+            notifyRemoval(shortId);
+        }
+    }
+
+    /**
+     * Убирает из индексов ссылку, которую хранилище выбросило само (например, просроченную
+     * при сжатии). Если под её shortId уже сохранили ссылку заново, ничего не делает.
+     * В журнал удаление не пишется: после перезапуска такую ссылку удалит очистка.
+     */
+    private void evicted(ShortLink link) {
+        long key = Base62.decode(link.getShortId());
+        ReentrantLock stripe = stripeFor(key);
+        stripe.lock();
+        try {
+            if (store.get(key) != null) {
+                return;
+            }
+            filter.remove(key);
+            unindex(link, key);
+        } finally {
+            stripe.unlock();
+        }
+        notifyRemoval(link.getShortId());
+    }
+
+    /**
+     * Записывает в журнал переход по ссылке, уже учтённый в её счётчике
+     * ({@link ShortLink#tryReserveClick()}). Без журнала ничего не делает.
+     * <p>
+     * Блокировка полосы не берётся: в журнал пишется достигнутое значение счётчика,
+     * а при воспроизведении берётся максимум, поэтому порядок записей о переходах
+     * между собой и относительно сохранений ссылки не важен.
+     *
+     * @param link ссылка, по которой выполнен переход
+     */
+    @Override
+    public void recordClick(ShortLink link) {
+        if (writeAheadLog != null) {
+            writeAheadLog.awaitDurable(writeAheadLog.logClick(Base62.decode(link.getShortId()), link.getCurrentCount()));
+        }
+    }
+
+    /**
+     * Как {@link #recordClick(ShortLink)}, но без ожидания сброса журнала на диск:
+     * сброс поручается фоновому потоку журнала ({@link WriteAheadLog#requestDurable(long)}).
+     * Для циклов событий, которым нельзя блокироваться. Переход становится устойчивым
+     * с задержкой одной группы фиксации; при падении процесса до неё счётчик
+     * восстановится меньшим, но никогда не больше фактического.
+     * <p>
+     * Ссылку, исчерпавшую лимит, метод сразу ставит в очередь на очистку в индексе сроков.
+     *
+     * @param link ссылка, по которой выполнен переход
+     */
+    @Override
+    public void recordClickEventually(ShortLink link) {
+        if (writeAheadLog != null) {
+            writeAheadLog.requestDurable(writeAheadLog.logClick(Base62.decode(link.getShortId()), link.getCurrentCount()));
+        }
+        if (link.isExhausted()) {
+            reschedule(link);
+        }
+    }
+
+    /**
+     * Обходит все ссылки без копирования (для снимка). Параллельные изменения
+     * могут быть видны или не видны обходу.
+     */
+    @Override
+    public void forEachLink(Consumer<ShortLink> action) {
+        store.forEach(action);
+    }
+
+    /**
+     * Дожидается изменений, которые уже записаны в журнал, но ещё применяются к хранилищу:
+     * по очереди берёт и отпускает блокировку каждой полосы.
+     */
+    void awaitInFlightWrites() {
+        for (ReentrantLock stripe : stripes) {
+            stripe.lock();
+            stripe.unlock();
+        }
+    }
+
+    /**
+     * Подписывает на удаление ссылок из хранилища.
+     * <p>
+     * Подписчик получает shortId после удаления ссылки (пользователем, по истечении срока
+     * или при очистке) и после замены ссылки другим объектом с тем же shortId.
+     * Вызывается в потоке, выполнившем изменение, уже без блокировок хранилища.
+     *
+     * @param listener подписчик
+     */
+    @Override
+    public void addRemovalListener(Consumer<String> listener) {
+        removalListeners.add(listener);
+    }
+
+    /**
+     * Возвращает ссылки указанного пользователя.
+     * <p>
+     * Работает через вторичный индекс, поэтому стоимость пропорциональна
+     * количеству ссылок пользователя, а не размеру всего хранилища.
+     *
+     * @param userUuid UUID владельца ссылок
+     * @return список ссылок пользователя (пустой, если ссылок нет)
+     */
+    @Override
+    public List<ShortLink> findByUserUuid(UUID userUuid) {
+        if (columns != null) {
+            return findByKeys(columns.findByUser(userUuid));
+        }
+        int userId = users.find(userUuid);
+        LongHashSet[] chunk = userId != UserIds.NONE ? userChunk(userId, false) : null;
+        LongHashSet keys = chunk != null ? (LongHashSet) USER_SETS.getVolatile(chunk, userId & USER_CHUNK_MASK) : null;
+        if (keys == null) {
+            return Collections.emptyList();
+        }
+        long[] snapshot;
+        synchronized (keys) {
+            snapshot = keys.toArray();
+        }
+        return findByKeys(snapshot);
+    }
+
+    /**
+     * Возвращает ссылки, которые на момент {@code now} пора удалить:
+     * с истёкшим сроком действия или исчерпанным лимитом переходов.
+     * <p>
+     * Кандидаты берутся из индекса сроков, поэтому стоимость зависит только
+     * от количества просроченных ссылок. Состояние ссылки фиксируется в индексе
+     * при вызове {@link #save(ShortLink)} и при изменении срока ссылки, полученной
+     * из репозитория, через {@link ShortLink#setExpiryTime(long)}. Кандидата всё равно
+     * нужно перепроверить: его могли продлить между поиском и удалением.
+     *
+     * @param now        текущий момент (в мс)
+     * @param maxResults максимальное количество ссылок в ответе
+     * @return список ссылок-кандидатов на удаление
+     */
+    @Override
+    public List<ShortLink> findExpired(long now, int maxResults) {
+        return findByKeys(columns != null ? columns.findDue(now, maxResults) : expiryIndex.findDue(now, maxResults));
+    }
+
+    /**
+     * Читает ссылки по ключам из индексов. Фильтр не нужен: ключи заведомо
+     * были в хранилище; ссылки, удалённые после чтения индекса, пропускаются.
+     */
+    private List<ShortLink> findByKeys(long[] keys) {
+        List<ShortLink> links = new ArrayList<>(keys.length);
+        for (long key : keys) {
+            ShortLink link = store.get(key);
+            if (link != null) {
+                link.setExpiryListener(expiryListener);
+                links.add(link);
+            }
+        }
+        return links;
+    }
+
+    /**
+     * Возвращает все ссылки для отладки или статистики.
+     * <p>
+     * Возвращается копия, поэтому обход безопасен при параллельных записях.
+     *
+     * @return коллекция ShortLink из внутреннего хранилища
+     */
+    @Override
+    public Collection<ShortLink> findAll() {
+        List<ShortLink> links = new ArrayList<>();
+        store.forEach(links::add);
+        return links;
+    }
+
+    /**
+     * Оповещает подписчиков об удалении ссылки.
+     */
+    private void notifyRemoval(String shortId) {
+        for (Consumer<String> listener : removalListeners) {
+            listener.accept(shortId);
+        }
+    }
+
+    /**
+     * Строит фильтр по всем ссылкам хранилища.
+     *
+     * @return фильтр или null, если ёмкости не хватило
+     */
+    private CuckooFilter buildFilter(long capacity) {
+        CuckooFilter built = new CuckooFilter(capacity);
+        boolean[] full = new boolean[1];
+        store.forEachKey(key -> {
+            if (!built.add(key)) {
+                full[0] = true;
+            }
+        });
+        return full[0] ? null : built;
+    }
+
+    /**
+     * Пересобирает переполненный фильтр с удвоенной ёмкостью. На время сборки берутся
+     * блокировки всех полос, чтобы ни одно изменение не прошло мимо нового фильтра.
+     *
+     * @param full переполненный фильтр; если его уже заменили, ничего не делаем
+     */
+    private void rebuildFilter(CuckooFilter full) {
+        for (ReentrantLock stripe : stripes) {
+            stripe.lock();
+        }
+        try {
+            if (filter != full) {
+                return;
+            }
+            long capacity = Math.max(full.getCapacity(), store.size()) * 2;
+            CuckooFilter built;
+            while ((built = buildFilter(capacity)) == null) {
+                capacity *= 2;
+            }
+            filter = built;
+            Log.info("Фильтр идентификаторов пересобран, ёмкость: {}", capacity);
+        } finally {
+            for (ReentrantLock stripe : stripes) {
+                stripe.unlock();
+            }
+        }
+    }
+
+    /**
+     * Выбирает полосу блокировки по хешу ключа.
+     */
+    private ReentrantLock stripeFor(long key) {
+        return stripes[(int) LongObjectMap.hash(key) & (STRIPE_COUNT - 1)];
+    }
+
+    /**
+     * Момент, после которого ссылку можно удалять. Ссылка с исчерпанным лимитом
+     * переходов подлежит удалению сразу, поэтому для неё срок — "всегда в прошлом".
+     */
+    private static long cleanupDeadline(ShortLink link) {
+        return link.isExhausted() ? Long.MIN_VALUE : link.getExpiryTime();
+    }
+
+    /**
+     * Переносит ссылку в индексе сроков после изменения срока на месте. Выполняется
+     * под блокировкой полосы, чтобы не гоняться с сохранением и удалением той же ссылки;
+     * уже удалённую ссылку в индекс не возвращаем.
+     */
+    private void reschedule(ShortLink link) {
+        if (columns != null) {
+            return; // Срок и счётчик и так в столбцах хранилища
+        }
+        long key = Base62.decode(link.getShortId());
+        ReentrantLock stripe = stripeFor(key);
+        stripe.lock();
+        try {
+            if (store.get(key) != null) {
+                expiryIndex.schedule(key, cleanupDeadline(link));
+            }
+        } finally {
+            stripe.unlock();
+        }
+    }
+
+    /**
+     * Убирает удалённую ссылку из индексов владельца и сроков, если они ведутся,
+     * и снимает её учёт в словаре владельцев. Вызывается под блокировкой полосы ключа.
+     */
+    private void unindex(ShortLink link, long key) {
+        int userId = users.find(link.getUserUuid());
+        if (columns == null) {
+            removeFromUserIndex(userId, key);
+            expiryIndex.remove(key);
+        }
+        users.release(userId);
+    }
+
+    /**
+     * Возвращает блок индекса пользователей с номером пользователя, при необходимости
+     * увеличивая массив блоков.
+     *
+     * @param create создавать ли недостающие блоки
+     * @return блок или null, если его нет и create = false
+     */
+    private LongHashSet[] userChunk(int userId, boolean create) {
+        int chunk = userId >>> USER_CHUNK_SHIFT;
+        LongHashSet[][] chunks = userIndex;
+        if (chunk < chunks.length) {
+            return chunks[chunk];
+        }
+        if (!create) {
+            return null;
+        }
+        synchronized (userIndexGrowth) {
+            chunks = userIndex;
+            if (chunk >= chunks.length) {
+                LongHashSet[][] grown = Arrays.copyOf(chunks, Math.max(chunk + 1, chunks.length * 2));
+                for (int i = chunks.length; i < grown.length; i++) {
+                    grown[i] = new LongHashSet[1 << USER_CHUNK_SHIFT];
+                }
+                userIndex = grown;
+                chunks = grown;
+            }
+            return chunks[chunk];
+        }
+    }
+
+    /**
+     * Добавляет ключ в индекс пользователя. Пустая ячейка занимается новым набором через CAS;
+     * под монитором набора ячейка перепроверяется, потому что опустевший набор могли
+     * одновременно снять.
+     */
+    private void addToUserIndex(int userId, long key) {
+        if (userId == UserIds.NONE) {
+            return;
+        }
+        LongHashSet[] chunk = userChunk(userId, true);
+        int slot = userId & USER_CHUNK_MASK;
+        while (true) {
+            LongHashSet keys = (LongHashSet) USER_SETS.getVolatile(chunk, slot);
+            if (keys == null) {
+                keys = new LongHashSet();
+                if (!USER_SETS.compareAndSet(chunk, slot, null, keys)) {
+                    continue;
+                }
+            }
+            synchronized (keys) {
+                if (USER_SETS.getVolatile(chunk, slot) == keys) {
+                    keys.add(key);
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Убирает ключ из индекса пользователя. Опустевший набор снимается с ячейки,
+     * чтобы индекс не разрастался из-за пользователей без ссылок.
+     */
+    private void removeFromUserIndex(int userId, long key) {
+        LongHashSet[] chunk = userId != UserIds.NONE ? userChunk(userId, false) : null;
+        if (chunk == null) {
+            return;
+        }
+        int slot = userId & USER_CHUNK_MASK;
+        LongHashSet keys = (LongHashSet) USER_SETS.getVolatile(chunk, slot);
+        if (keys == null) {
+            return;
+        }
+        synchronized (keys) {
+            // Набор, уже снятый с ячейки, пуст, и ключа в нём нет
+            keys.remove(key);
+            if (keys.isEmpty()) {
+                USER_SETS.compareAndSet(chunk, slot, keys, null);
+            }
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package com.beryoza.urlshortener;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Репозиторий для хранения пользователей в памяти (in-memory).
+ * Используем Map, где ключ — UUID пользователя, а значение — сам User.
+ * <p>
+ * Если задан журнал изменений ({@link WriteAheadLog}), сохранения и удаления
+ * записываются в него до изменения хранилища. Изменения выполняются под одной
+ * блокировкой, чтобы порядок записей в журнале совпадал с порядком изменений,
+ * а чтение (в том числе при снятии снимка) идёт без блокировок.
+ * <p>
+ * Пользователи регистрируются в словаре номеров {@link UserIds}, общем с репозиторием ссылок
+ * того же хранилища: номер зарегистрированного пользователя не освобождается, даже когда
+ * у него нет ссылок.
+ */
+public class InMemoryUserRepository implements UserRepository {
+
+    /**
+     * Хранилище. Ключ — это userUuid (UUID),
+     * значение — объект User.
+     */
+    private final Map<UUID, User> storage = new ConcurrentHashMap<>();
+
+    /** Упорядочивает изменения и записи в журнал. */
+    private final ReentrantLock writeLock = new ReentrantLock();
+
+    /** Журнал изменений или null, если пользователи не сохраняются на диск. */
+    private final WriteAheadLog writeAheadLog;
+
+    /** Словарь номеров пользователей. */
+    private final UserIds userIds;
+
+    /**
+     * Создаёт пустой репозиторий в памяти со своим словарём номеров.
+     */
+    public InMemoryUserRepository() {
+        this(new UserIds());
+    }
+
+    /**
+     * Создаёт пустой репозиторий в памяти со словарём номеров хранилища.
+     *
+     * @param userIds словарь номеров, общий с репозиторием ссылок
+     */
+    public InMemoryUserRepository(UserIds userIds) {
+        this.writeAheadLog = null;
+        this.userIds = userIds;
+    }
+
+    /**
+     * Создаёт репозиторий с пользователями, восстановленными из журнала,
+     * и записывает в этот журнал дальнейшие изменения.
+     *
+     * @param users         восстановленные пользователи
+     * @param writeAheadLog журнал изменений
+     * @param userIds       словарь номеров, общий с репозиторием ссылок
+     */
+    public InMemoryUserRepository(Collection<User> users, WriteAheadLog writeAheadLog, UserIds userIds) {
+        this.writeAheadLog = writeAheadLog;
+        this.userIds = userIds;
+        for (User user : users) {
+            storage.put(user.getUserUuid(), user);
+            userIds.register(user.getUserUuid());
+        }
+    }
+
+    /**
+     * Сохраняем пользователя в хранилище. Если пользователь
+     * с таким UUID уже есть, он будет перезаписан.
+     *
+     * @param user объект пользователя, должен иметь уникальный userUuid
+     * @return тот же user (просто возвращаем для удобства)
+     */
+    @Override
+    public User saveUser(User user) {
+        long sequence = 0;
+        writeLock.lock();
+        try {
+            if (writeAheadLog != null) {
+                sequence = writeAheadLog.logUserSave(user);
+            }
+            storage.put(user.getUserUuid(), user);
+            // Номер выдаётся при регистрации, чтобы ссылки пользователя получали уже готовый
+            userIds.register(user.getUserUuid());
+        } finally {
+            writeLock.unlock();
+        }
+        if (writeAheadLog != null) {
+            writeAheadLog.awaitDurable(sequence);
+        }
+        return user;
+    }
+
+    /**
+     * Ищем пользователя по его UUID.
+     *
+     * @param uuid идентификатор пользователя
+     * @return найденный User или null, если такого нет
+     */
+    @Override
+    public User findUser(UUID uuid) {
+        return storage.get(uuid);
+    }
+
+    /**
+     * Удаляем пользователя по его UUID.
+     * Если не нашли — ничего страшного, просто ничего не удалится.
+     *
+     * @param uuid идентификатор пользователя
+     */
+    @Override
+    public void deleteUser(UUID uuid) {
+        long sequence = 0;
+        writeLock.lock();
+        try {
+            if (writeAheadLog != null && storage.containsKey(uuid)) {
+                sequence = writeAheadLog.logUserDelete(uuid);
+            }
+            if (storage.remove(uuid) != null) {
+                userIds.unregister(uuid);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+        if (writeAheadLog != null) {
+            writeAheadLog.awaitDurable(sequence);
+        }
+    }
+
+    /**
+     * Возвращает всех пользователей (например, для отладки или снимка).
+     *
+     * @return коллекция User из внутреннего хранилища
+     */
+    @Override
+    public Collection<User> findAll() {
+        return storage.values();
+    }
+
+    @Override
+    public int getUserId(UUID uuid) {
+        return userIds.idOf(uuid);
+    }
+
+    @Override
+    public UUID getUserUuid(int userId) {
+        return userIds.uuidOf(userId);
+    }
+
+    /**
+     * Дожидается изменения, которое уже записано в журнал, но ещё не применено.
+     */
+    void awaitInFlightWrites() {
+        writeLock.lock();
+        writeLock.unlock();
+    }
+}
@@ -0,0 +1,243 @@
+package com.beryoza.urlshortener;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Репозиторий коротких ссылок в таблице {@code short_links} базы данных ({@link JdbcStorage}).
+ * <p>
+ * Ключ строки — shortId, декодированный из base62 в число. Рядом со ссылкой хранится
+ * момент, после которого её можно удалять ({@code cleanup_deadline}, индексирован):
+ * срок действия или "всегда в прошлом" для ссылки с исчерпанным лимитом. По нему
+ * {@link #findExpired(long, int)} находит кандидатов на очистку без обхода таблицы.
+ * <p>
+ * Каждое чтение возвращает новые объекты ссылок. Поэтому счётчик переходов ведёт база:
+ * {@link ShortLink#tryReserveClick()} у прочитанной ссылки выполняет условный
+ * {@code UPDATE} (увеличить счётчик, если лимит не исчерпан), и сколько бы процессов
+ * ни работало с базой, переходов не будет больше лимита. Сохранение ссылки не уменьшает
+ * счётчик в базе: берётся наибольшее из двух значений, как при воспроизведении журнала.
+ * <p>
+ * Переход — это запрос к базе, поэтому с этим хранилищем обработка перехода
+ * блокирует поток, в том числе в {@link #recordClickEventually(ShortLink)}.
+ */
+public class JdbcShortLinkRepository implements ShortLinkRepository {
+
+    /** Сколько строк читает за раз {@link #forEachLink(Consumer)}. */
+    private static final int PAGE_SIZE = 1000;
+
+    private static final String COLUMNS =
+            "link_key, original_url, created_at, expiry_time, link_limit, current_count, user_uuid";
+
+    /**
+     * Вставка или обновление. У той же ссылки (тот же момент создания) счётчик не уменьшается;
+     * срок очистки пересчитывается по итоговому счётчику.
+     */
+    private static final String UPSERT = "MERGE INTO short_links t USING (SELECT "
+            + "CAST(? AS BIGINT) AS link_key, CAST(? AS VARCHAR(65535)) AS original_url, "
+            + "CAST(? AS BIGINT) AS created_at, CAST(? AS BIGINT) AS expiry_time, CAST(? AS INT) AS link_limit, "
+            + "CAST(? AS INT) AS current_count, CAST(? AS VARCHAR(36)) AS user_uuid, "
+            + "CAST(? AS BIGINT) AS exhausted_deadline) AS s "
+            + "ON (t.link_key = s.link_key) "
+            + "WHEN MATCHED THEN UPDATE SET original_url = s.original_url, expiry_time = s.expiry_time, "
+            + "link_limit = s.link_limit, user_uuid = s.user_uuid, "
+            + "current_count = CASE WHEN t.created_at = s.created_at AND t.current_count > s.current_count "
+            + "THEN t.current_count ELSE s.current_count END, "
+            + "cleanup_deadline = CASE WHEN (CASE WHEN t.created_at = s.created_at AND t.current_count > s.current_count "
+            + "THEN t.current_count ELSE s.current_count END) >= s.link_limit THEN s.exhausted_deadline ELSE s.expiry_time END, "
+            + "created_at = s.created_at "
+            + "WHEN NOT MATCHED THEN INSERT (" + COLUMNS + ", cleanup_deadline) VALUES (s.link_key, s.original_url, "
+            + "s.created_at, s.expiry_time, s.link_limit, s.current_count, s.user_uuid, "
+            + "CASE WHEN s.current_count >= s.link_limit THEN s.exhausted_deadline ELSE s.expiry_time END)";
+
+    /** Резервирование перехода: счётчик растёт, только пока лимит не исчерпан. */
+    private static final String RESERVE_CLICK = "UPDATE short_links SET current_count = current_count + 1, "
+            + "cleanup_deadline = CASE WHEN current_count + 1 >= link_limit THEN ? ELSE cleanup_deadline END "
+            + "WHERE link_key = ? AND created_at = ? AND current_count < link_limit";
+
+    private static final String DELETE = "DELETE FROM short_links WHERE link_key = ?";
+    private static final String SELECT_BY_KEY = "SELECT " + COLUMNS + " FROM short_links WHERE link_key = ?";
+    private static final String SELECT_BY_USER = "SELECT " + COLUMNS + " FROM short_links WHERE user_uuid = ?";
+    private static final String SELECT_EXPIRED = "SELECT " + COLUMNS + " FROM short_links "
+            + "WHERE cleanup_deadline < ? ORDER BY cleanup_deadline FETCH FIRST ? ROWS ONLY";
+    private static final String SELECT_ALL = "SELECT " + COLUMNS + " FROM short_links";
+    private static final String SELECT_PAGE = "SELECT " + COLUMNS + " FROM short_links "
+            + "WHERE link_key > ? ORDER BY link_key FETCH FIRST " + PAGE_SIZE + " ROWS ONLY";
+
+    // Хранилище, выполняющее запросы
+    private final JdbcStorage storage;
+
+    /** Подписчики на удаление и замену ссылок (например, кэши производных данных). */
+    private final List<Consumer<String>> removalListeners = new CopyOnWriteArrayList<>();
+
+    JdbcShortLinkRepository(JdbcStorage storage) {
+        this.storage = storage;
+    }
+
+    @Override
+    public void save(ShortLink link) {
+        String shortId = link.getShortId();
+        long key = Base62.decode(shortId);
+        if (key < 0) {
+            throw new IllegalArgumentException("Некорректный идентификатор ссылки: " + shortId);
+        }
+        storage.execute(UPSERT, statement -> {
+            statement.setLong(1, key);
+            statement.setString(2, link.getOriginalUrl());
+            statement.setLong(3, link.getCreatedAt());
+            statement.setLong(4, link.getExpiryTime());
+            statement.setInt(5, link.getLimit());
+            statement.setInt(6, link.getCurrentCount());
+            statement.setString(7, link.getUserUuid().toString());
+            statement.setLong(8, Long.MIN_VALUE);
+        });
+        // Прочитанные раньше копии ссылки могли устареть
+        notifyRemoval(shortId);
+    }
+
+    @Override
+    public ShortLink findByShortId(CharSequence shortId) {
+        long key = Base62.decode(shortId);
+        if (key < 0) {
+            return null;
+        }
+        return storage.query(SELECT_BY_KEY, statement -> statement.setLong(1, key),
+                resultSet -> resultSet.next() ? readLink(resultSet) : null);
+    }
+
+    @Override
+    public void deleteByShortId(String shortId) {
+        long key = Base62.decode(shortId);
+        if (key < 0) {
+            return;
+        }
+        if (storage.execute(DELETE, statement -> statement.setLong(1, key)) > 0) {
+            notifyRemoval(shortId);
+        }
+    }
+
+    /**
+     * Ничего не делает: переход уже записан в базу при резервировании.
+     */
+    @Override
+    public void recordClick(ShortLink link) {
+    }
+
+    /**
+     * Ничего не делает: переход уже записан в базу при резервировании.
+     */
+    @Override
+    public void recordClickEventually(ShortLink link) {
+    }
+
+    @Override
+    public List<ShortLink> findByUserUuid(UUID userUuid) {
+        return storage.query(SELECT_BY_USER, statement -> statement.setString(1, userUuid.toString()),
+                this::readLinks);
+    }
+
+    @Override
+    public List<ShortLink> findExpired(long now, int maxResults) {
+        return storage.query(SELECT_EXPIRED, statement -> {
+            statement.setLong(1, now);
+            statement.setInt(2, maxResults);
+        }, this::readLinks);
+    }
+
+    @Override
+    public Collection<ShortLink> findAll() {
+        return storage.query(SELECT_ALL, statement -> {
+        }, this::readLinks);
+    }
+
+    /**
+     * Обходит таблицу страницами по {@value #PAGE_SIZE} ссылок в порядке ключей;
+     * соединение не занимается, пока выполняется действие.
+     */
+    @Override
+    public void forEachLink(Consumer<ShortLink> action) {
+        long after = -1;
+        while (true) {
+            long from = after;
+            List<ShortLink> page = storage.query(SELECT_PAGE, statement -> statement.setLong(1, from),
+                    this::readLinks);
+            for (ShortLink link : page) {
+                action.accept(link);
+            }
+            if (page.size() < PAGE_SIZE) {
+                return;
+            }
+            after = Base62.decode(page.get(page.size() - 1).getShortId());
+        }
+    }
+
+    @Override
+    public void addRemovalListener(Consumer<String> listener) {
+        removalListeners.add(listener);
+    }
+
+    /**
+     * Резервирует переход в базе.
+     *
+     * @return true, если счётчик увеличен; false, если лимит исчерпан или ссылку удалили
+     */
+    private boolean reserveClick(ShortLink link) {
+        long key = Base62.decode(link.getShortId());
+        return storage.execute(RESERVE_CLICK, statement -> {
+            statement.setLong(1, Long.MIN_VALUE);
+            statement.setLong(2, key);
+            statement.setLong(3, link.getCreatedAt());
+        }) > 0;
+    }
+
+    /**
+     * Оповещает подписчиков об удалении ссылки.
+     */
+    private void notifyRemoval(String shortId) {
+        for (Consumer<String> listener : removalListeners) {
+            listener.accept(shortId);
+        }
+    }
+
+    private List<ShortLink> readLinks(ResultSet resultSet) throws SQLException {
+        List<ShortLink> links = new ArrayList<>();
+        while (resultSet.next()) {
+            links.add(readLink(resultSet));
+        }
+        return links;
+    }
+
+    private ShortLink readLink(ResultSet resultSet) throws SQLException {
+        return new JdbcShortLink(Base62.encode(resultSet.getLong(1)), resultSet.getString(2), resultSet.getLong(3),
+                resultSet.getLong(4), resultSet.getInt(5), resultSet.getInt(6), UUID.fromString(resultSet.getString(7)));
+    }
+
+    /**
+     * Ссылка, прочитанная из базы: переход резервируется в базе, а не только в этом объекте.
+     */
+    private final class JdbcShortLink extends ShortLink {
+
+        JdbcShortLink(String shortId, String originalUrl, long createdAt, long expiryTime, int limit,
+                      int currentCount, UUID userUuid) {
+            super(shortId, originalUrl, createdAt, expiryTime, limit, currentCount, userUuid);
+        }
+
+        /**
+         * Резервирует переход в базе; при успехе счётчик этого объекта тоже растёт
+         * (если прочитанный лимит его ещё пускает).
+         */
+        @Override
+        public boolean tryReserveClick() {
+            if (!reserveClick(this)) {
+                return false;
+            }
+            super.tryReserveClick();
+            return true;
+        }
+    }
+}
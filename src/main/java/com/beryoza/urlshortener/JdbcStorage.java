@@ -0,0 +1,481 @@
+package com.beryoza.urlshortener;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Хранилище ссылок и пользователей в реляционной базе данных через JDBC
+ * (вид {@code jdbc} в <code>config.storage.backend</code>, см. {@link Storage}).
+ * <p>
+ * При открытии создаются таблицы, если их ещё нет: {@code short_links}, {@code users}
+ * и {@code storage_meta} (резерв счётчика идентификаторов). Изменения записываются
+ * стандартными {@code MERGE}, {@code UPDATE} и {@code DELETE} (проверено на встроенной H2);
+ * драйвер базы данных должен быть в classpath.
+ * <p>
+ * Чтение идёт через небольшой пул соединений (<code>config.jdbc.pool.size</code>), у каждого
+ * из которых свои подготовленные запросы. Все изменения выполняет один поток записи:
+ * вызывающий поток ставит запрос с параметрами в очередь и ждёт результата, а поток записи
+ * забирает из очереди до <code>config.jdbc.batch.size</code> изменений и выполняет их одной
+ * транзакцией, собирая подряд идущие одинаковые запросы в пакеты JDBC
+ * ({@link PreparedStatement#addBatch()}). Так одновременные изменения разделяют одну фиксацию,
+ * как группа фиксации в {@link WriteAheadLog}. Если пакет не удался, транзакция откатывается,
+ * и изменения повторяются по одному, чтобы ошибка досталась только своему вызывающему.
+ * <p>
+ * Счётчик {@link FeistelShortIdGenerator} резервируется в базе блоками по {@value #ID_BLOCK}
+ * значений: после перезапуска выдача продолжается за резервом, поэтому идентификаторы
+ * не повторяются (неиспользованный остаток блока пропускается).
+ */
+public class JdbcStorage implements Storage {
+
+    /** Сколько значений счётчика идентификаторов резервируется одной записью. */
+    static final int ID_BLOCK = 1024;
+
+    /** Ключ резерва счётчика в таблице storage_meta. */
+    private static final String COUNTER_KEY = "next_counter";
+
+    /** Схема: выполняется при каждом открытии. */
+    private static final String[] SCHEMA = {
+            "CREATE TABLE IF NOT EXISTS short_links ("
+                    + "link_key BIGINT PRIMARY KEY, "
+                    + "original_url VARCHAR(65535) NOT NULL, "
+                    + "created_at BIGINT NOT NULL, "
+                    + "expiry_time BIGINT NOT NULL, "
+                    + "link_limit INT NOT NULL, "
+                    + "current_count INT NOT NULL, "
+                    + "user_uuid VARCHAR(36) NOT NULL, "
+                    + "cleanup_deadline BIGINT NOT NULL)",
+            "CREATE INDEX IF NOT EXISTS short_links_user ON short_links (user_uuid)",
+            "CREATE INDEX IF NOT EXISTS short_links_cleanup ON short_links (cleanup_deadline)",
+            "CREATE TABLE IF NOT EXISTS users ("
+                    + "user_uuid VARCHAR(36) PRIMARY KEY, "
+                    + "user_name VARCHAR(1024))",
+            "CREATE TABLE IF NOT EXISTS storage_meta ("
+                    + "meta_key VARCHAR(64) PRIMARY KEY, "
+                    + "meta_value BIGINT NOT NULL)"
+    };
+
+    private static final String SELECT_COUNTER = "SELECT meta_value FROM storage_meta WHERE meta_key = ?";
+    private static final String INSERT_COUNTER = "INSERT INTO storage_meta (meta_key, meta_value) VALUES (?, ?)";
+    private static final String RESERVE_COUNTER =
+            "UPDATE storage_meta SET meta_value = ? WHERE meta_key = ? AND meta_value < ?";
+
+    /**
+     * Подставляет параметры в подготовленный запрос.
+     */
+    @FunctionalInterface
+    interface Binder {
+        void bind(PreparedStatement statement) throws SQLException;
+    }
+
+    /**
+     * Читает результат запроса.
+     */
+    @FunctionalInterface
+    interface Reader<T> {
+        T read(ResultSet resultSet) throws SQLException;
+    }
+
+    /**
+     * Изменение в очереди потока записи.
+     *
+     * @param sql    текст запроса
+     * @param binder параметры запроса
+     * @param result число изменённых строк
+     */
+    private record Write(String sql, Binder binder, CompletableFuture<Integer> result) {
+    }
+
+    /**
+     * Соединение со своими подготовленными запросами. Используется одним потоком за раз.
+     */
+    private static final class Session {
+
+        private final Connection connection;
+        private final Map<String, PreparedStatement> statements = new HashMap<>();
+
+        Session(Connection connection) {
+            this.connection = connection;
+        }
+
+        PreparedStatement prepare(String sql) throws SQLException {
+            PreparedStatement statement = statements.get(sql);
+            if (statement == null) {
+                statement = connection.prepareStatement(sql);
+                statements.put(sql, statement);
+            }
+            return statement;
+        }
+
+        void close() {
+            try {
+                connection.close(); // Закрывает и подготовленные запросы
+            } catch (SQLException e) {
+                Log.warn("Не удалось закрыть соединение с базой данных: {}", e.getMessage());
+            }
+        }
+    }
+
+    // Соединения для чтения
+    private final BlockingQueue<Session> readers;
+    // Все соединения для чтения (для закрытия)
+    private final List<Session> allReaders = new ArrayList<>();
+    // Соединение потока записи (без автофиксации)
+    private final Session writerSession;
+    // Очередь изменений
+    private final BlockingQueue<Write> writes = new LinkedBlockingQueue<>();
+    // Наибольшее число изменений в одной транзакции
+    private final int batchSize;
+    // Поток записи
+    private final Thread writer;
+    // Закрыто ли хранилище
+    private volatile boolean closed;
+    // Репозитории и генератор идентификаторов
+    private final JdbcShortLinkRepository shortLinkRepository;
+    private final JdbcUserRepository userRepository;
+    private final ReservingShortIdGenerator shortIdGenerator;
+
+    private JdbcStorage(String url, String user, String password, int poolSize, int batchSize) throws SQLException {
+        if (poolSize <= 0 || batchSize <= 0) {
+            throw new IllegalArgumentException("Размер пула и пакета должны быть положительными");
+        }
+        this.batchSize = batchSize;
+        this.readers = new ArrayBlockingQueue<>(poolSize);
+        this.writerSession = new Session(DriverManager.getConnection(url, user, password));
+        try {
+            Connection connection = writerSession.connection;
+            try (Statement statement = connection.createStatement()) {
+                for (String sql : SCHEMA) {
+                    statement.execute(sql);
+                }
+            }
+            connection.setAutoCommit(false);
+            long nextCounter = readOrCreateCounter(connection);
+            connection.commit();
+            for (int i = 0; i < poolSize; i++) {
+                Session reader = new Session(DriverManager.getConnection(url, user, password));
+                allReaders.add(reader);
+                readers.add(reader);
+            }
+            this.shortIdGenerator = new ReservingShortIdGenerator(nextCounter);
+        } catch (SQLException | RuntimeException e) {
+            writerSession.close();
+            allReaders.forEach(Session::close);
+            throw e;
+        }
+        this.shortLinkRepository = new JdbcShortLinkRepository(this);
+        this.userRepository = new JdbcUserRepository(this);
+        this.writer = new Thread(this::runWriter, "jdbc-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Открывает хранилище с параметрами из {@link Config}.
+     *
+     * @return открытое хранилище
+     * @throws IllegalStateException если к базе данных не удалось подключиться
+     */
+    public static JdbcStorage open() {
+        return open(Config.getJdbcUrl(), Config.getJdbcUser(), Config.getJdbcPassword(),
+                Config.getJdbcPoolSize(), Config.getJdbcBatchSize());
+    }
+
+    /**
+     * Открывает хранилище: подключается к базе данных и создаёт недостающие таблицы.
+     *
+     * @param url       JDBC URL базы данных
+     * @param user      имя пользователя базы данных
+     * @param password  пароль
+     * @param poolSize  число соединений для чтения
+     * @param batchSize наибольшее число изменений в одной транзакции
+     * @return открытое хранилище
+     * @throws IllegalStateException если к базе данных не удалось подключиться
+     */
+    public static JdbcStorage open(String url, String user, String password, int poolSize, int batchSize) {
+        try {
+            JdbcStorage storage = new JdbcStorage(url, user, password, poolSize, batchSize);
+            Log.info("Хранилище в базе данных {} открыто", url);
+            return storage;
+        } catch (SQLException e) {
+            throw new IllegalStateException("Не удалось подключиться к базе данных " + url + ": " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public ShortLinkRepository getShortLinkRepository() {
+        return shortLinkRepository;
+    }
+
+    @Override
+    public UserRepository getUserRepository() {
+        return userRepository;
+    }
+
+    @Override
+    public ShortIdGenerator getShortIdGenerator() {
+        return shortIdGenerator;
+    }
+
+    /**
+     * Нет: поиск ссылки — запрос к базе, а учёт перехода ждёт потока записи.
+     */
+    @Override
+    public boolean supportsNonBlockingResolve() {
+        return false;
+    }
+
+    /**
+     * Выполняет изменение в потоке записи и ждёт фиксации транзакции, в которую оно попало.
+     *
+     * @param sql    текст запроса; одинаковые запросы собираются в пакеты
+     * @param binder параметры запроса
+     * @return число изменённых строк
+     * @throws IllegalStateException если изменение не удалось или хранилище закрыто
+     */
+    int execute(String sql, Binder binder) {
+        if (closed) {
+            throw new IllegalStateException("Хранилище закрыто");
+        }
+        Write write = new Write(sql, binder, new CompletableFuture<>());
+        writes.add(write);
+        // Поток записи мог завершиться между проверкой и постановкой в очередь
+        if (closed && writes.remove(write)) {
+            throw new IllegalStateException("Хранилище закрыто");
+        }
+        try {
+            return write.result().join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException("Ошибка записи в базу данных: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    /**
+     * Выполняет запрос на чтение на свободном соединении из пула.
+     *
+     * @param sql    текст запроса
+     * @param binder параметры запроса
+     * @param reader чтение результата; выполняется, пока соединение занято
+     * @return прочитанное значение
+     * @throws IllegalStateException если запрос не удался
+     */
+    <T> T query(String sql, Binder binder, Reader<T> reader) {
+        Session session;
+        try {
+            session = readers.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Ожидание соединения с базой данных прервано", e);
+        }
+        try {
+            PreparedStatement statement = session.prepare(sql);
+            binder.bind(statement);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                return reader.read(resultSet);
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("Ошибка чтения из базы данных: " + e.getMessage(), e);
+        } finally {
+            readers.add(session);
+        }
+    }
+
+    /**
+     * Цикл потока записи: забирает изменения из очереди пачками и записывает их.
+     */
+    private void runWriter() {
+        List<Write> batch = new ArrayList<>(batchSize);
+        while (!closed || !writes.isEmpty()) {
+            try {
+                Write first = writes.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                writes.drainTo(batch, batchSize - 1);
+                writeBatch(batch);
+            } catch (InterruptedException e) {
+                // Поток записи остановлен: новые изменения не принимаются, а ждущим
+                // в очереди сообщаем об отказе, иначе они ждали бы вечно
+                Thread.currentThread().interrupt();
+                closed = true;
+                failPending("Поток записи в базу данных прерван");
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Завершает ошибкой все изменения, оставшиеся в очереди.
+     *
+     * @param message сообщение ошибки
+     */
+    private void failPending(String message) {
+        Write write;
+        while ((write = writes.poll()) != null) {
+            write.result().completeExceptionally(new IllegalStateException(message));
+        }
+    }
+
+    /**
+     * Записывает изменения одной транзакцией. Подряд идущие одинаковые запросы
+     * выполняются одним пакетом JDBC.
+     */
+    private void writeBatch(List<Write> batch) {
+        int[] counts = new int[batch.size()];
+        try {
+            int start = 0;
+            while (start < batch.size()) {
+                String sql = batch.get(start).sql();
+                PreparedStatement statement = writerSession.prepare(sql);
+                int end = start;
+                while (end < batch.size() && batch.get(end).sql().equals(sql)) {
+                    batch.get(end).binder().bind(statement);
+                    statement.addBatch();
+                    end++;
+                }
+                int[] result = statement.executeBatch();
+                System.arraycopy(result, 0, counts, start, end - start);
+                start = end;
+            }
+            writerSession.connection.commit();
+        } catch (SQLException | RuntimeException e) {
+            rollback();
+            if (batch.size() == 1) {
+                batch.get(0).result().completeExceptionally(e instanceof RuntimeException
+                        ? e : new IllegalStateException("Ошибка записи в базу данных: " + e.getMessage(), e));
+            } else {
+                // Повторяем по одному: ошибка должна достаться только своему изменению
+                for (Write write : batch) {
+                    writeBatch(List.of(write));
+                }
+            }
+            return;
+        }
+        for (int i = 0; i < counts.length; i++) {
+            batch.get(i).result().complete(counts[i]);
+        }
+    }
+
+    /**
+     * Откатывает транзакцию потока записи и сбрасывает недописанные пакеты.
+     */
+    private void rollback() {
+        try {
+            for (PreparedStatement statement : writerSession.statements.values()) {
+                statement.clearBatch();
+            }
+            writerSession.connection.rollback();
+        } catch (SQLException e) {
+            Log.error("Не удалось откатить транзакцию: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Читает резерв счётчика идентификаторов, создавая его при первом открытии.
+     */
+    private static long readOrCreateCounter(Connection connection) throws SQLException {
+        try (PreparedStatement select = connection.prepareStatement(SELECT_COUNTER)) {
+            select.setString(1, COUNTER_KEY);
+            try (ResultSet resultSet = select.executeQuery()) {
+                if (resultSet.next()) {
+                    return resultSet.getLong(1);
+                }
+            }
+        }
+        try (PreparedStatement insert = connection.prepareStatement(INSERT_COUNTER)) {
+            insert.setString(1, COUNTER_KEY);
+            insert.setLong(2, 0);
+            insert.executeUpdate();
+        }
+        return 0;
+    }
+
+    /**
+     * Дожидается записи изменений, уже стоящих в очереди, и закрывает соединения.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        failPending("Хранилище закрыто");
+        writerSession.close();
+        allReaders.forEach(Session::close);
+    }
+
+    /**
+     * Генератор, резервирующий значения счётчика в базе блоками: перед выдачей значения
+     * за пределами резерва резерв продлевается на {@value #ID_BLOCK} значений.
+     */
+    private final class ReservingShortIdGenerator implements ShortIdGenerator {
+
+        // Генератор идентификаторов
+        private final FeistelShortIdGenerator generator;
+        // Упорядочивает продление резерва
+        private final ReentrantLock reserveLock = new ReentrantLock();
+        // Значения счётчика ниже этого уже зарезервированы в базе
+        private volatile long reservedUntil;
+
+        ReservingShortIdGenerator(long nextCounter) {
+            this.generator = new FeistelShortIdGenerator(Config.getShortIdKey(), nextCounter);
+            this.reservedUntil = nextCounter;
+        }
+
+        @Override
+        public String nextId() {
+            String id = generator.nextId();
+            long counter = generator.counterOf(Base62.decode(id));
+            if (counter >= reservedUntil) {
+                reserve(counter + 1);
+            }
+            return id;
+        }
+
+        /**
+         * Продлевает резерв так, чтобы он покрывал значения ниже {@code needed}.
+         */
+        private void reserve(long needed) {
+            reserveLock.lock();
+            try {
+                if (needed <= reservedUntil) {
+                    return;
+                }
+                long until = Math.min(Base62.KEYSPACE, needed - 1 + ID_BLOCK);
+                execute(RESERVE_COUNTER, statement -> {
+                    statement.setLong(1, until);
+                    statement.setString(2, COUNTER_KEY);
+                    statement.setLong(3, until);
+                });
+                reservedUntil = until;
+            } finally {
+                reserveLock.unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.beryoza.urlshortener;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Репозиторий пользователей в таблице {@code users} базы данных ({@link JdbcStorage}).
+ * Сохранения и удаления выполняются потоком записи хранилища пакетами.
+ * <p>
+ * Номера пользователей ({@link #getUserId(UUID)}) выдаёт свой словарь {@link UserIds}:
+ * в базе владелец хранится UUID, и номера нужны только на время жизни репозитория.
+ */
+public class JdbcUserRepository implements UserRepository {
+
+    private static final String UPSERT = "MERGE INTO users t USING (SELECT "
+            + "CAST(? AS VARCHAR(36)) AS user_uuid, CAST(? AS VARCHAR(1024)) AS user_name) AS s "
+            + "ON (t.user_uuid = s.user_uuid) "
+            + "WHEN MATCHED THEN UPDATE SET user_name = s.user_name "
+            + "WHEN NOT MATCHED THEN INSERT (user_uuid, user_name) VALUES (s.user_uuid, s.user_name)";
+    private static final String DELETE = "DELETE FROM users WHERE user_uuid = ?";
+    private static final String SELECT_BY_UUID = "SELECT user_uuid, user_name FROM users WHERE user_uuid = ?";
+    private static final String SELECT_ALL = "SELECT user_uuid, user_name FROM users";
+
+    // Хранилище, выполняющее запросы
+    private final JdbcStorage storage;
+    // Номера пользователей
+    private final UserIds userIds = new UserIds();
+
+    JdbcUserRepository(JdbcStorage storage) {
+        this.storage = storage;
+    }
+
+    @Override
+    public User saveUser(User user) {
+        storage.execute(UPSERT, statement -> {
+            statement.setString(1, user.getUserUuid().toString());
+            statement.setString(2, user.getUserName());
+        });
+        return user;
+    }
+
+    @Override
+    public User findUser(UUID uuid) {
+        return storage.query(SELECT_BY_UUID, statement -> statement.setString(1, uuid.toString()),
+                resultSet -> resultSet.next() ? readUser(resultSet) : null);
+    }
+
+    @Override
+    public void deleteUser(UUID uuid) {
+        storage.execute(DELETE, statement -> statement.setString(1, uuid.toString()));
+    }
+
+    @Override
+    public Collection<User> findAll() {
+        return storage.query(SELECT_ALL, statement -> {
+        }, resultSet -> {
+            List<User> users = new ArrayList<>();
+            while (resultSet.next()) {
+                users.add(readUser(resultSet));
+            }
+            return users;
+        });
+    }
+
+    @Override
+    public int getUserId(UUID uuid) {
+        return userIds.idOf(uuid);
+    }
+
+    @Override
+    public UUID getUserUuid(int userId) {
+        return userIds.uuidOf(userId);
+    }
+
+    private static User readUser(ResultSet resultSet) throws SQLException {
+        return new User(UUID.fromString(resultSet.getString(1)), resultSet.getString(2));
+    }
+}
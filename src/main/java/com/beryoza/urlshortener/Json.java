@@ -0,0 +1,221 @@
+package com.beryoza.urlshortener;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Минимальная поддержка JSON для HTTP API.
+ * <p>
+ * API принимает и отдаёт только плоские объекты: строки, числа, true/false и null.
+ * Этого достаточно для запросов на создание, изменение и удаление ссылок,
+ * поэтому внешняя библиотека не нужна.
+ */
+public final class Json {
+
+    private Json() {
+    }
+
+    /**
+     * Разбирает плоский JSON-объект.
+     *
+     * @param text текст JSON
+     * @return поля объекта: String, Long, Double, Boolean или null
+     * @throws IllegalArgumentException если текст не является плоским JSON-объектом
+     */
+    public static Map<String, Object> parseObject(String text) {
+        Parser parser = new Parser(text);
+        Map<String, Object> result = parser.object();
+        parser.skipWhitespace();
+        if (parser.position != text.length()) {
+            throw new IllegalArgumentException("Лишние символы после JSON-объекта");
+        }
+        return result;
+    }
+
+    /**
+     * Формирует плоский JSON-объект из полей.
+     *
+     * @param fields поля объекта (значения: строки, числа, логические или null)
+     * @return текст JSON
+     */
+    public static String toJson(Map<String, ?> fields) {
+        StringBuilder out = new StringBuilder("{");
+        for (Map.Entry<String, ?> field : fields.entrySet()) {
+            if (out.length() > 1) {
+                out.append(',');
+            }
+            appendString(out, field.getKey());
+            out.append(':');
+            Object value = field.getValue();
+            if (value == null || value instanceof Number || value instanceof Boolean) {
+                out.append(value);
+            } else {
+                appendString(out, value.toString());
+            }
+        }
+        return out.append('}').toString();
+    }
+
+    /**
+     * Дописывает строку в кавычках с экранированием спецсимволов.
+     */
+    private static void appendString(StringBuilder out, String value) {
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> out.append("\\\"");
+                case '\\' -> out.append("\\\\");
+                case '\n' -> out.append("\\n");
+                case '\r' -> out.append("\\r");
+                case '\t' -> out.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        out.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        out.append(c);
+                    }
+                }
+            }
+        }
+        out.append('"');
+    }
+
+    /**
+     * Рекурсивный спуск по тексту JSON (без вложенных объектов и массивов).
+     */
+    private static final class Parser {
+        private final String text;
+        private int position;
+
+        Parser(String text) {
+            this.text = text;
+        }
+
+        Map<String, Object> object() {
+            Map<String, Object> fields = new LinkedHashMap<>();
+            expect('{');
+            skipWhitespace();
+            if (peek() == '}') {
+                position++;
+                return fields;
+            }
+            while (true) {
+                skipWhitespace();
+                String key = string();
+                skipWhitespace();
+                expect(':');
+                skipWhitespace();
+                fields.put(key, value());
+                skipWhitespace();
+                char c = next();
+                if (c == '}') {
+                    return fields;
+                }
+                if (c != ',') {
+                    throw error("ожидалась ',' или '}'");
+                }
+            }
+        }
+
+        Object value() {
+            char c = peek();
+            if (c == '"') {
+                return string();
+            }
+            if (text.startsWith("true", position)) {
+                position += 4;
+                return Boolean.TRUE;
+            }
+            if (text.startsWith("false", position)) {
+                position += 5;
+                return Boolean.FALSE;
+            }
+            if (text.startsWith("null", position)) {
+                position += 4;
+                return null;
+            }
+            if (c == '-' || (c >= '0' && c <= '9')) {
+                return number();
+            }
+            throw error("неподдерживаемое значение");
+        }
+
+        String string() {
+            expect('"');
+            StringBuilder out = new StringBuilder();
+            while (true) {
+                char c = next();
+                if (c == '"') {
+                    return out.toString();
+                }
+                if (c != '\\') {
+                    out.append(c);
+                    continue;
+                }
+                char escaped = next();
+                switch (escaped) {
+                    case '"', '\\', '/' -> out.append(escaped);
+                    case 'b' -> out.append('\b');
+                    case 'f' -> out.append('\f');
+                    case 'n' -> out.append('\n');
+                    case 'r' -> out.append('\r');
+                    case 't' -> out.append('\t');
+                    case 'u' -> {
+                        if (position + 4 > text.length()) {
+                            throw error("обрывается \\u-последовательность");
+                        }
+                        out.append((char) Integer.parseInt(text.substring(position, position + 4), 16));
+                        position += 4;
+                    }
+                    default -> throw error("неизвестная escape-последовательность");
+                }
+            }
+        }
+
+        Object number() {
+            int start = position;
+            while (position < text.length() && "+-0123456789.eE".indexOf(text.charAt(position)) >= 0) {
+                position++;
+            }
+            String literal = text.substring(start, position);
+            try {
+                if (literal.indexOf('.') >= 0 || literal.indexOf('e') >= 0 || literal.indexOf('E') >= 0) {
+                    return Double.parseDouble(literal);
+                }
+                return Long.parseLong(literal);
+            } catch (NumberFormatException e) {
+                throw error("некорректное число");
+            }
+        }
+
+        void skipWhitespace() {
+            while (position < text.length() && Character.isWhitespace(text.charAt(position))) {
+                position++;
+            }
+        }
+
+        void expect(char expected) {
+            if (next() != expected) {
+                throw error("ожидался символ '" + expected + "'");
+            }
+        }
+
+        char peek() {
+            if (position >= text.length()) {
+                throw error("неожиданный конец текста");
+            }
+            return text.charAt(position);
+        }
+
+        char next() {
+            char c = peek();
+            position++;
+            return c;
+        }
+
+        IllegalArgumentException error(String reason) {
+            return new IllegalArgumentException("Некорректный JSON (позиция " + position + "): " + reason);
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.beryoza.urlshortener;
+
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+
+/**
+ * Хранилище ссылок по числовому ключу — shortId, декодированному из base62 ({@link Base62#decode}).
+ * <p>
+ * Это нижний уровень {@link ShortLinkRepository}: репозиторий ведёт индексы и порядок
+ * изменений, а хранилище только хранит ссылки. Реализации должны быть потокобезопасными:
+ * чтения идут без блокировок репозитория, а изменения одного ключа репозиторий
+ * упорядочивает сам.
+ */
+public interface LinkStore {
+
+    /**
+     * Возвращает ссылку по ключу.
+     *
+     * @param key ключ из диапазона {@code [0, 62^6)}
+     * @return ссылка или null, если её нет
+     */
+    ShortLink get(long key);
+
+    /**
+     * Возвращает ссылку так же, как {@link #get(long)}, но не ждёт других потоков
+     * (например, чужой загрузки того же ключа): для циклов событий, которым нельзя
+     * блокироваться. По умолчанию — {@link #get(long)}.
+     *
+     * @param key ключ из диапазона {@code [0, 62^6)}
+     * @return ссылка или null, если её нет
+     */
+    default ShortLink getWithoutWaiting(long key) {
+        return get(key);
+    }
+
+    /**
+     * Сохраняет ссылку под ключом.
+     *
+     * @param key  ключ
+     * @param link ссылка
+     * @return прежняя ссылка или null
+     */
+    ShortLink put(long key, ShortLink link);
+
+    /**
+     * Удаляет ссылку.
+     *
+     * @param key ключ
+     * @return удалённая ссылка или null
+     */
+    ShortLink remove(long key);
+
+    /**
+     * Обходит все ссылки. Параллельные изменения могут быть видны или не видны обходу.
+     *
+     * @param action действие для каждой ссылки
+     */
+    void forEach(Consumer<ShortLink> action);
+
+    /**
+     * Обходит ключи всех ссылок. По умолчанию — через {@link #forEach(Consumer)};
+     * хранилища, которым дорого создавать объекты ссылок, обходят ключи напрямую.
+     *
+     * @param action действие для каждого ключа
+     */
+    default void forEachKey(LongConsumer action) {
+        forEach(link -> action.accept(Base62.decode(link.getShortId())));
+    }
+
+    /**
+     * Подписывает на ссылки, которые хранилище выбросило само, без вызова {@link #remove(long)}
+     * (например, просроченные ссылки при сжатии {@link LsmLinkStore}). Подписчик вызывается,
+     * когда ссылка уже не видна чтениям. По умолчанию хранилище ничего не выбрасывает.
+     *
+     * @param listener подписчик
+     */
+    default void setEvictionListener(Consumer<ShortLink> listener) {
+    }
+
+    /**
+     * Возвращает количество ссылок.
+     */
+    int size();
+}
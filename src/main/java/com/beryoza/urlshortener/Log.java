@@ -0,0 +1,257 @@
+package com.beryoza.urlshortener;
+
+import java.io.PrintStream;
+import java.time.Instant;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Асинхронный журнал с уровнями.
+ * <p>
+ * Вызывающий поток только кладёт событие (шаблон сообщения и аргументы) в кольцевой буфер
+ * {@link LogRingBuffer} и сразу возвращается. Подстановка аргументов в шаблон и вывод
+ * в консоль выполняются отдельным фоновым потоком, который выводит накопившиеся сообщения
+ * пачкой. Если буфер переполнен, сообщение отбрасывается, а число потерянных сообщений
+ * выводится позже — журнал никогда не тормозит обработку запросов.
+ * <p>
+ * Сообщения ниже уровня <code>config.log.level</code> отбрасываются до создания события.
+ * Для сообщений уровня DEBUG с несколькими аргументами вызов стоит обернуть в
+ * {@link #isDebugEnabled()}, чтобы при выключенной отладке не тратиться даже на упаковку аргументов.
+ * <p>
+ * Пример:
+ * {@code
+ * Log.info("Ссылка создана: {}", shortId);
+ * }
+ */
+public final class Log {
+
+    /**
+     * Уровни журнала в порядке возрастания важности.
+     */
+    public enum Level {
+        DEBUG, INFO, WARN, ERROR
+    }
+
+    /** Формат времени в строке журнала. */
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("HH:mm:ss.SSS");
+
+    /** Пустой набор аргументов, чтобы не создавать массив для сообщений без аргументов. */
+    private static final Object[] NO_ARGS = new Object[0];
+
+    /** Минимальный выводимый уровень. */
+    private static volatile Level threshold = Level.valueOf(Config.getLogLevel().toUpperCase());
+
+    /** Буфер событий между вызывающими потоками и потоком вывода. */
+    private static final LogRingBuffer<Event> BUFFER = new LogRingBuffer<>(Config.getLogBufferSize());
+
+    /** Количество сообщений, отброшенных из-за переполнения буфера. */
+    private static final AtomicLong DROPPED = new AtomicLong();
+
+    /** Фоновый поток вывода. */
+    private static final Thread WRITER = new Thread(Log::writeLoop, "log-writer");
+
+    /**
+     * Гарантирует, что буфер в каждый момент читает только один поток. Это не {@code synchronized}:
+     * под блокировкой идёт вывод в консоль, а виртуальный поток, вызвавший {@link #flush()},
+     * внутри {@code synchronized} занял бы поток-носитель на всё время вывода.
+     */
+    private static final ReentrantLock DRAIN_LOCK = new ReentrantLock();
+
+    /** Признак того, что поток вывода заснул и его нужно разбудить. */
+    private static volatile boolean writerParked;
+
+    static {
+        WRITER.setDaemon(true);
+        WRITER.start();
+        // Перед завершением JVM выводим всё, что осталось в буфере
+        Runtime.getRuntime().addShutdownHook(new Thread(Log::drain, "log-flush"));
+    }
+
+    private Log() {
+    }
+
+    /** Возвращает true, если сообщения уровня DEBUG выводятся. */
+    public static boolean isDebugEnabled() {
+        return threshold == Level.DEBUG;
+    }
+
+    /** Возвращает true, если сообщения указанного уровня выводятся. */
+    public static boolean isEnabled(Level level) {
+        return level.compareTo(threshold) >= 0;
+    }
+
+    /**
+     * Меняет минимальный выводимый уровень во время работы.
+     *
+     * @param level новый уровень
+     */
+    public static void setLevel(Level level) {
+        threshold = level;
+    }
+
+    /** Отладочное сообщение без аргументов. */
+    public static void debug(String message) {
+        if (threshold == Level.DEBUG) {
+            publish(Level.DEBUG, message, NO_ARGS);
+        }
+    }
+
+    /** Отладочное сообщение; {@code {}} в шаблоне заменяются аргументами. */
+    public static void debug(String template, Object... args) {
+        if (threshold == Level.DEBUG) {
+            publish(Level.DEBUG, template, args);
+        }
+    }
+
+    /** Информационное сообщение без аргументов. */
+    public static void info(String message) {
+        if (isEnabled(Level.INFO)) {
+            publish(Level.INFO, message, NO_ARGS);
+        }
+    }
+
+    /** Информационное сообщение; {@code {}} в шаблоне заменяются аргументами. */
+    public static void info(String template, Object... args) {
+        if (isEnabled(Level.INFO)) {
+            publish(Level.INFO, template, args);
+        }
+    }
+
+    /** Предупреждение; {@code {}} в шаблоне заменяются аргументами. */
+    public static void warn(String template, Object... args) {
+        if (isEnabled(Level.WARN)) {
+            publish(Level.WARN, template, args);
+        }
+    }
+
+    /** Сообщение об ошибке; {@code {}} в шаблоне заменяются аргументами. */
+    public static void error(String template, Object... args) {
+        if (isEnabled(Level.ERROR)) {
+            publish(Level.ERROR, template, args);
+        }
+    }
+
+    /**
+     * Выводит все уже поставленные сообщения в вызывающем потоке.
+     * Полезно перед выводом в консоль напрямую, чтобы сохранить порядок строк.
+     */
+    public static void flush() {
+        drain();
+    }
+
+    /**
+     * Кладёт событие в буфер и при необходимости будит поток вывода.
+     */
+    private static void publish(Level level, String template, Object[] args) {
+        if (!BUFFER.offer(new Event(System.currentTimeMillis(), level, template, args))) {
+            DROPPED.incrementAndGet();
+            return;
+        }
+        if (writerParked) {
+            LockSupport.unpark(WRITER);
+        }
+    }
+
+    /**
+     * Основной цикл потока вывода: выводит всё накопившееся, затем засыпает до нового события.
+     */
+    private static void writeLoop() {
+        while (true) {
+            drain();
+            writerParked = true;
+            if (BUFFER.isEmpty()) {
+                LockSupport.parkNanos(100_000_000L); // Страховка на случай пропущенного пробуждения
+            }
+            writerParked = false;
+        }
+    }
+
+    /**
+     * Выводит все события из буфера одной пачкой.
+     */
+    private static void drain() {
+        DRAIN_LOCK.lock();
+        try {
+            drainLocked();
+        } finally {
+            DRAIN_LOCK.unlock();
+        }
+    }
+
+    /**
+     * Выводит события; вызывается только под {@link #DRAIN_LOCK}.
+     */
+    private static void drainLocked() {
+        StringBuilder out = new StringBuilder();
+        StringBuilder err = new StringBuilder();
+        long dropped = DROPPED.getAndSet(0);
+        if (dropped > 0) {
+            err.append("Журнал: потеряно сообщений из-за переполнения буфера: ").append(dropped).append('\n');
+        }
+        // Не больше одного "круга" буфера за раз, чтобы вывод не откладывался при постоянном потоке событий
+        int budget = BUFFER.capacity();
+        while (budget > 0 && !BUFFER.isEmpty()) {
+            Event event = BUFFER.poll();
+            if (event == null) {
+                Thread.onSpinWait(); // Писатель занял позицию, но ещё не опубликовал событие
+                continue;
+            }
+            budget--;
+            StringBuilder target = event.level.compareTo(Level.WARN) >= 0 ? err : out;
+            event.appendTo(target);
+            target.append('\n');
+        }
+        writeTo(System.out, out);
+        writeTo(System.err, err);
+    }
+
+    /**
+     * Выводит накопленный текст в поток одним вызовом.
+     */
+    private static void writeTo(PrintStream stream, StringBuilder text) {
+        if (!text.isEmpty()) {
+            stream.print(text);
+            stream.flush();
+        }
+    }
+
+    /**
+     * Событие журнала. Строка сообщения собирается только в потоке вывода.
+     */
+    private static final class Event {
+        final long timestamp;
+        final Level level;
+        final String template;
+        final Object[] args;
+
+        Event(long timestamp, Level level, String template, Object[] args) {
+            this.timestamp = timestamp;
+            this.level = level;
+            this.template = template;
+            this.args = args;
+        }
+
+        /**
+         * Дописывает строку журнала: время, уровень и сообщение с подставленными аргументами.
+         */
+        void appendTo(StringBuilder target) {
+            TIME_FORMAT.formatTo(LocalTime.ofInstant(Instant.ofEpochMilli(timestamp), ZoneId.systemDefault()), target);
+            target.append(' ').append(level.name());
+            for (int i = level.name().length(); i < 6; i++) {
+                target.append(' ');
+            }
+            int argIndex = 0;
+            int start = 0;
+            int placeholder;
+            while (argIndex < args.length && (placeholder = template.indexOf("{}", start)) >= 0) {
+                target.append(template, start, placeholder).append(args[argIndex++]);
+                start = placeholder + 2;
+            }
+            target.append(template, start, template.length());
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.beryoza.urlshortener;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Ограниченный кольцевой буфер "много писателей — один читатель" без блокировок.
+ * <p>
+ * У каждой ячейки есть порядковый номер, по которому писатель понимает, свободна ли ячейка,
+ * а читатель — заполнена ли она (схема Д. Вьюкова). Писатели захватывают позицию через CAS
+ * и никогда не ждут: если буфер полон, {@link #offer(Object)} сразу возвращает false.
+ * Используется асинхронным журналом {@link Log}.
+ *
+ * @param <T> тип элементов
+ */
+public final class LogRingBuffer<T> {
+
+    /** Маска индекса (ёмкость — степень двойки). */
+    private final int mask;
+
+    /** Элементы буфера. */
+    private final AtomicReferenceArray<T> elements;
+
+    /** Порядковые номера ячеек. */
+    private final AtomicLongArray sequences;
+
+    /** Следующая позиция для записи. */
+    private final AtomicLong tail = new AtomicLong();
+
+    /** Следующая позиция для чтения (меняет только читатель). */
+    private volatile long head;
+
+    /**
+     * Создаёт буфер. Ёмкость округляется вверх до степени двойки.
+     *
+     * @param capacity минимальная ёмкость буфера
+     */
+    public LogRingBuffer(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Ёмкость буфера должна быть положительной");
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        this.mask = size - 1;
+        this.elements = new AtomicReferenceArray<>(size);
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * Добавляет элемент. Может вызываться из любого числа потоков.
+     *
+     * @param element элемент (не null)
+     * @return true, если элемент добавлен; false, если буфер полон
+     */
+    public boolean offer(T element) {
+        while (true) {
+            long position = tail.get();
+            int index = (int) position & mask;
+            long difference = sequences.get(index) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    elements.lazySet(index, element);
+                    sequences.set(index, position + 1); // Публикуем ячейку читателю
+                    return true;
+                }
+            } else if (difference < 0) {
+                return false; // Ячейку ещё не освободил читатель — буфер полон
+            }
+            // Иначе позицию уже занял другой писатель — пробуем следующую
+        }
+    }
+
+    /**
+     * Забирает следующий элемент. Должен вызываться только из одного потока.
+     *
+     * @return элемент или null, если буфер пуст
+     */
+    public T poll() {
+        long position = head;
+        int index = (int) position & mask;
+        if (sequences.get(index) != position + 1) {
+            return null;
+        }
+        T element = elements.get(index);
+        elements.lazySet(index, null);
+        sequences.set(index, position + mask + 1); // Освобождаем ячейку для следующего круга
+        head = position + 1;
+        return element;
+    }
+
+    /**
+     * Возвращает true, если в буфере нет элементов, в том числе ещё не опубликованных
+     * писателями, которые уже захватили позицию.
+     */
+    public boolean isEmpty() {
+        return tail.get() == head;
+    }
+
+    /**
+     * Возвращает ёмкость буфера.
+     */
+    public int capacity() {
+        return mask + 1;
+    }
+}
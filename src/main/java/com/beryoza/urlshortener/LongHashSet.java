@@ -0,0 +1,201 @@
+package com.beryoza.urlshortener;
+
+import java.util.Arrays;
+import java.util.function.LongConsumer;
+
+/**
+ * Множество неотрицательных чисел {@code long} с открытой адресацией (Robin Hood hashing).
+ * <p>
+ * Устроено так же, как {@link LongObjectMap}, но без массива значений: элементы лежат
+ * прямо в {@code long[]}, свободная ячейка помечается числом -1. На элемент уходит
+ * 8 байт (с учётом заполненности — 11–21 байт) вместо узла, обёртки {@code Long}
+ * или строки идентификатора в {@link java.util.HashSet}.
+ * <p>
+ * Используется индексами репозитория, где элементы — ключи коротких ссылок
+ * (shortId, декодированный из base62). Класс не потокобезопасен.
+ */
+public final class LongHashSet {
+
+    /** Начальная ёмкость (степень двойки). */
+    private static final int DEFAULT_CAPACITY = 4;
+
+    /** Максимальная заполненность перед увеличением таблицы. */
+    private static final double MAX_LOAD_FACTOR = 0.75;
+
+    /** Метка свободной ячейки. */
+    private static final long EMPTY = -1L;
+
+    /** Ячейки таблицы. */
+    private long[] keys;
+
+    /** Сдвиг для получения домашней ячейки из хеша. */
+    private int shift;
+
+    /** Количество элементов. */
+    private int size;
+
+    /**
+     * Создаёт пустое множество.
+     */
+    public LongHashSet() {
+        allocate(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Добавляет элемент.
+     *
+     * @param key неотрицательное число
+     * @return true, если элемента ещё не было
+     */
+    public boolean add(long key) {
+        if (key < 0) {
+            throw new IllegalArgumentException("Элемент множества не может быть отрицательным: " + key);
+        }
+        if (indexOf(key) >= 0) {
+            return false;
+        }
+        if (size + 1 > keys.length * MAX_LOAD_FACTOR) {
+            long[] old = keys;
+            allocate(old.length << 1);
+            for (long existing : old) {
+                if (existing != EMPTY) {
+                    insert(existing);
+                }
+            }
+        }
+        insert(key);
+        size++;
+        return true;
+    }
+
+    /**
+     * Удаляет элемент.
+     *
+     * @param key число
+     * @return true, если элемент был в множестве
+     */
+    public boolean remove(long key) {
+        int index = indexOf(key);
+        if (index < 0) {
+            return false;
+        }
+        // Сдвигаем последующие элементы цепочки назад, без "надгробий"
+        int mask = keys.length - 1;
+        int next = (index + 1) & mask;
+        while (keys[next] != EMPTY && ((next - home(keys[next])) & mask) != 0) {
+            keys[index] = keys[next];
+            index = next;
+            next = (next + 1) & mask;
+        }
+        keys[index] = EMPTY;
+        size--;
+        return true;
+    }
+
+    /**
+     * Проверяет наличие элемента.
+     *
+     * @param key число
+     * @return true, если элемент есть
+     */
+    public boolean contains(long key) {
+        return indexOf(key) >= 0;
+    }
+
+    /**
+     * Возвращает количество элементов.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Возвращает true, если множество пусто.
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Передаёт все элементы обработчику.
+     *
+     * @param action обработчик элементов
+     */
+    public void forEach(LongConsumer action) {
+        for (long key : keys) {
+            if (key != EMPTY) {
+                action.accept(key);
+            }
+        }
+    }
+
+    /**
+     * Возвращает копию элементов в виде массива.
+     */
+    public long[] toArray() {
+        long[] result = new long[size];
+        int count = 0;
+        for (long key : keys) {
+            if (key != EMPTY) {
+                result[count++] = key;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Создаёт пустую таблицу заданной ёмкости.
+     */
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        Arrays.fill(keys, EMPTY);
+        shift = 64 - Integer.numberOfTrailingZeros(capacity);
+    }
+
+    /** Домашняя ячейка элемента: старшие биты хеша. */
+    private int home(long key) {
+        return (int) (LongObjectMap.hash(key) >>> shift);
+    }
+
+    /** Индекс ячейки с элементом или -1. */
+    private int indexOf(long key) {
+        int mask = keys.length - 1;
+        int index = home(key);
+        for (int distance = 0; distance <= mask; distance++) {
+            long candidate = keys[index];
+            if (candidate == EMPTY) {
+                return -1;
+            }
+            if (candidate == key) {
+                return index;
+            }
+            if (((index - home(candidate)) & mask) < distance) {
+                return -1;
+            }
+            index = (index + 1) & mask;
+        }
+        return -1;
+    }
+
+    /** Вставка заведомо отсутствующего элемента с вытеснением "богатых" элементов. */
+    private void insert(long key) {
+        int mask = keys.length - 1;
+        int index = home(key);
+        int distance = 0;
+        while (true) {
+            long existing = keys[index];
+            if (existing == EMPTY) {
+                keys[index] = key;
+                return;
+            }
+            int existingDistance = (index - home(existing)) & mask;
+            if (existingDistance < distance) {
+                keys[index] = key;
+                key = existing;
+                distance = existingDistance;
+            }
+            index = (index + 1) & mask;
+            distance++;
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package com.beryoza.urlshortener;
+
+import java.util.Arrays;
+
+/**
+ * Хеш-таблица {@code long → long} с открытой адресацией (Robin Hood hashing)
+ * для неотрицательных ключей.
+ * <p>
+ * Устроена так же, как {@link LongObjectMap}, но значения тоже примитивы, поэтому
+ * на запись уходит 16 байт в двух массивах и ни одного объекта. Свободная ячейка
+ * помечается ключом -1. Класс не потокобезопасен.
+ */
+public final class LongLongMap {
+
+    /** Начальная ёмкость (степень двойки). */
+    private static final int DEFAULT_CAPACITY = 16;
+
+    /** Максимальная заполненность перед увеличением таблицы. */
+    private static final double MAX_LOAD_FACTOR = 0.75;
+
+    /** Метка свободной ячейки. */
+    private static final long EMPTY = -1L;
+
+    /** Ключи. */
+    private long[] keys;
+
+    /** Значения, параллельно ключам. */
+    private long[] values;
+
+    /** Сдвиг для получения домашней ячейки из хеша. */
+    private int shift;
+
+    /** Количество записей. */
+    private int size;
+
+    /**
+     * Создаёт пустую таблицу.
+     */
+    public LongLongMap() {
+        allocate(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Проверяет наличие ключа.
+     *
+     * @param key ключ
+     * @return true, если ключ есть
+     */
+    public boolean containsKey(long key) {
+        return indexOf(key) >= 0;
+    }
+
+    /**
+     * Ищет значение по ключу.
+     *
+     * @param key          ключ
+     * @param defaultValue что вернуть, если ключа нет
+     * @return значение или defaultValue
+     */
+    public long getOrDefault(long key, long defaultValue) {
+        int index = indexOf(key);
+        return index >= 0 ? values[index] : defaultValue;
+    }
+
+    /**
+     * Сохраняет значение по ключу.
+     *
+     * @param key   неотрицательный ключ
+     * @param value значение
+     */
+    public void put(long key, long value) {
+        if (key < 0) {
+            throw new IllegalArgumentException("Ключ не может быть отрицательным: " + key);
+        }
+        int index = indexOf(key);
+        if (index >= 0) {
+            values[index] = value;
+            return;
+        }
+        if (size + 1 > keys.length * MAX_LOAD_FACTOR) {
+            long[] oldKeys = keys;
+            long[] oldValues = values;
+            allocate(oldKeys.length << 1);
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != EMPTY) {
+                    insert(oldKeys[i], oldValues[i]);
+                }
+            }
+        }
+        insert(key, value);
+        size++;
+    }
+
+    /**
+     * Удаляет ключ.
+     *
+     * @param key ключ
+     * @return true, если ключ был в таблице
+     */
+    public boolean remove(long key) {
+        int index = indexOf(key);
+        if (index < 0) {
+            return false;
+        }
+        int mask = keys.length - 1;
+        int next = (index + 1) & mask;
+        while (keys[next] != EMPTY && ((next - home(keys[next])) & mask) != 0) {
+            keys[index] = keys[next];
+            values[index] = values[next];
+            index = next;
+            next = (next + 1) & mask;
+        }
+        keys[index] = EMPTY;
+        values[index] = 0;
+        size--;
+        return true;
+    }
+
+    /**
+     * Возвращает количество записей.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Создаёт пустую таблицу заданной ёмкости.
+     */
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new long[capacity];
+        Arrays.fill(keys, EMPTY);
+        shift = 64 - Integer.numberOfTrailingZeros(capacity);
+    }
+
+    /** Домашняя ячейка ключа: старшие биты хеша. */
+    private int home(long key) {
+        return (int) (LongObjectMap.hash(key) >>> shift);
+    }
+
+    /** Индекс ячейки с ключом или -1. */
+    private int indexOf(long key) {
+        int mask = keys.length - 1;
+        int index = home(key);
+        for (int distance = 0; distance <= mask; distance++) {
+            long candidate = keys[index];
+            if (candidate == EMPTY) {
+                return -1;
+            }
+            if (candidate == key) {
+                return index;
+            }
+            if (((index - home(candidate)) & mask) < distance) {
+                return -1;
+            }
+            index = (index + 1) & mask;
+        }
+        return -1;
+    }
+
+    /** Вставка заведомо отсутствующего ключа с вытеснением "богатых" записей. */
+    private void insert(long key, long value) {
+        int mask = keys.length - 1;
+        int index = home(key);
+        int distance = 0;
+        while (true) {
+            long existing = keys[index];
+            if (existing == EMPTY) {
+                keys[index] = key;
+                values[index] = value;
+                return;
+            }
+            int existingDistance = (index - home(existing)) & mask;
+            if (existingDistance < distance) {
+                long displacedValue = values[index];
+                keys[index] = key;
+                values[index] = value;
+                key = existing;
+                value = displacedValue;
+                distance = existingDistance;
+            }
+            index = (index + 1) & mask;
+            distance++;
+        }
+    }
+}
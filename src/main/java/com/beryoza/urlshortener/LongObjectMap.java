@@ -0,0 +1,265 @@
+package com.beryoza.urlshortener;
+
+import java.util.function.Consumer;
+
+/**
+ * Хеш-таблица с ключами-примитивами {@code long} и открытой адресацией (Robin Hood hashing).
+ * <p>
+ * Ключи и значения лежат в двух параллельных массивах, поэтому на запись не создаётся
+ * ни объекта-ключа, ни узла, как в {@link java.util.HashMap}. При вставке элемент,
+ * ушедший от своей "домашней" ячейки дальше, чем встреченный, занимает его место
+ * (принцип Робин Гуда) — это выравнивает длину цепочек и позволяет прекращать поиск
+ * отсутствующего ключа досрочно. Удаление выполняется сдвигом назад, без "надгробий".
+ * <p>
+ * Класс не потокобезопасен. Для конкурентного доступа таблицу оборачивают в блокировку
+ * (см. {@link MemoryLinkStore}); чтение при этом допускает оптимистичную проверку:
+ * метод {@link #get(long)} никогда не зацикливается и не выходит за границы массивов,
+ * даже если таблица одновременно меняется, — он лишь может вернуть неверный результат,
+ * который нужно отбросить после проверки блокировки.
+ *
+ * @param <V> тип значений
+ */
+public final class LongObjectMap<V> {
+
+    /** Начальная ёмкость (степень двойки). */
+    private static final int DEFAULT_CAPACITY = 16;
+
+    /** Максимальная заполненность перед увеличением таблицы. */
+    private static final double MAX_LOAD_FACTOR = 0.75;
+
+    /**
+     * Текущая таблица. Массивы ключей и значений заменяются одним присваиванием,
+     * поэтому читатель всегда видит массивы одинаковой длины.
+     */
+    private Table table;
+
+    /** Количество элементов. */
+    private int size;
+
+    /**
+     * Создаёт пустую таблицу.
+     */
+    public LongObjectMap() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Создаёт пустую таблицу, рассчитанную на указанное количество элементов.
+     *
+     * @param expectedSize ожидаемое количество элементов
+     */
+    public LongObjectMap(int expectedSize) {
+        int capacity = DEFAULT_CAPACITY;
+        while (capacity * MAX_LOAD_FACTOR < expectedSize) {
+            capacity <<= 1;
+        }
+        this.table = new Table(capacity);
+    }
+
+    /**
+     * Перемешивает биты ключа (финализатор SplitMix64). Хорошо распределены
+     * как старшие, так и младшие биты, поэтому результат годится и для выбора сегмента.
+     *
+     * @param key ключ
+     * @return хеш ключа
+     */
+    public static long hash(long key) {
+        long z = key;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Ищет значение по ключу.
+     *
+     * @param key ключ
+     * @return значение или null, если ключа нет
+     */
+    @SuppressWarnings("unchecked")
+    public V get(long key) {
+        Table t = table;
+        long[] keys = t.keys;
+        Object[] values = t.values;
+        int mask = keys.length - 1;
+        int index = t.home(key);
+        for (int distance = 0; distance <= mask; distance++) {
+            Object value = values[index];
+            if (value == null) {
+                return null;
+            }
+            long candidate = keys[index];
+            if (candidate == key) {
+                return (V) value;
+            }
+            // Встреченный элемент ближе к своей ячейке, чем искомый был бы — дальше искать бессмысленно
+            if (((index - t.home(candidate)) & mask) < distance) {
+                return null;
+            }
+            index = (index + 1) & mask;
+        }
+        return null;
+    }
+
+    /**
+     * Сохраняет значение по ключу.
+     *
+     * @param key   ключ
+     * @param value значение (не null)
+     * @return предыдущее значение или null
+     */
+    @SuppressWarnings("unchecked")
+    public V put(long key, V value) {
+        if (value == null) {
+            throw new IllegalArgumentException("Значение не может быть null");
+        }
+        Table t = table;
+        int index = t.indexOf(key);
+        if (index >= 0) {
+            // Ключ уже есть — просто заменяем значение на месте
+            Object previous = t.values[index];
+            t.values[index] = value;
+            return (V) previous;
+        }
+        if (size + 1 > table.keys.length * MAX_LOAD_FACTOR) {
+            resize(table.keys.length << 1);
+        }
+        table.insert(key, value);
+        size++;
+        return null;
+    }
+
+    /**
+     * Удаляет ключ из таблицы.
+     *
+     * @param key ключ
+     * @return удалённое значение или null, если ключа не было
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(long key) {
+        Table t = table;
+        int index = t.indexOf(key);
+        if (index < 0) {
+            return null;
+        }
+        Object previous = t.values[index];
+        t.removeAt(index);
+        size--;
+        return (V) previous;
+    }
+
+    /**
+     * Возвращает количество элементов.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Передаёт все значения обработчику.
+     *
+     * @param action обработчик значений
+     */
+    @SuppressWarnings("unchecked")
+    public void forEachValue(Consumer<? super V> action) {
+        for (Object value : table.values) {
+            if (value != null) {
+                action.accept((V) value);
+            }
+        }
+    }
+
+    /**
+     * Переносит все элементы в таблицу новой ёмкости.
+     */
+    private void resize(int newCapacity) {
+        Table old = table;
+        Table resized = new Table(newCapacity);
+        for (int i = 0; i < old.keys.length; i++) {
+            if (old.values[i] != null) {
+                resized.insert(old.keys[i], old.values[i]);
+            }
+        }
+        table = resized;
+    }
+
+    /**
+     * Пара массивов ключей и значений одной ёмкости.
+     */
+    private static final class Table {
+        final long[] keys;
+        final Object[] values;
+        final int shift;
+
+        Table(int capacity) {
+            this.keys = new long[capacity];
+            this.values = new Object[capacity];
+            this.shift = 64 - Integer.numberOfTrailingZeros(capacity);
+        }
+
+        /** Домашняя ячейка ключа: старшие биты хеша. */
+        int home(long key) {
+            return (int) (hash(key) >>> shift);
+        }
+
+        /** Индекс ячейки с ключом или -1. */
+        int indexOf(long key) {
+            int mask = keys.length - 1;
+            int index = home(key);
+            for (int distance = 0; distance <= mask; distance++) {
+                if (values[index] == null) {
+                    return -1;
+                }
+                if (keys[index] == key) {
+                    return index;
+                }
+                if (((index - home(keys[index])) & mask) < distance) {
+                    return -1;
+                }
+                index = (index + 1) & mask;
+            }
+            return -1;
+        }
+
+        /** Вставка заведомо отсутствующего ключа с вытеснением "богатых" элементов. */
+        void insert(long key, Object value) {
+            int mask = keys.length - 1;
+            int index = home(key);
+            int distance = 0;
+            while (true) {
+                if (values[index] == null) {
+                    keys[index] = key;
+                    values[index] = value;
+                    return;
+                }
+                int existingDistance = (index - home(keys[index])) & mask;
+                if (existingDistance < distance) {
+                    // Меняемся местами с элементом, который ближе к своей ячейке
+                    long displacedKey = keys[index];
+                    Object displacedValue = values[index];
+                    keys[index] = key;
+                    values[index] = value;
+                    key = displacedKey;
+                    value = displacedValue;
+                    distance = existingDistance;
+                }
+                index = (index + 1) & mask;
+                distance++;
+            }
+        }
+
+        /** Удаление со сдвигом последующих элементов назад. */
+        void removeAt(int index) {
+            int mask = keys.length - 1;
+            int next = (index + 1) & mask;
+            while (values[next] != null && ((next - home(keys[next])) & mask) != 0) {
+                keys[index] = keys[next];
+                values[index] = values[next];
+                index = next;
+                next = (next + 1) & mask;
+            }
+            values[index] = null;
+            keys[index] = 0;
+        }
+    }
+}
@@ -0,0 +1,1387 @@
+package com.beryoza.urlshortener;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+
+/**
+ * Хранилище ссылок на LSM-дереве (log-structured merge tree) — для сотен миллионов ссылок,
+ * когда запись должна оставаться последовательной, а куча — маленькой.
+ * <ul>
+ *   <li>Изменения попадают в памятную таблицу — {@link ConcurrentSkipListMap} ключ → запись
+ *       в байтах. Записи бывают трёх видов: ссылка целиком, надгробие (ссылку удалили)
+ *       и счётчик переходов, который перекрывает счётчик более старой версии ссылки.</li>
+ *   <li>Заполненная таблица ({@code config.lsm.memtable.bytes}) замораживается, остаётся
+ *       доступной для чтения и фоновым потоком сбрасывается в неизменяемый сегмент
+ *       {@code segment-N.sst}: записи по возрастанию ключа, блоками по {@value #BLOCK_BYTES}
+ *       байт. В куче от сегмента остаются только разреженный индекс (первый ключ и смещение
+ *       каждого блока) и фильтр Блума ({@link BloomFilter}), сам файл отображается в память.</li>
+ *   <li>Чтение идёт от новых данных к старым: памятные таблицы, затем сегменты. Сегмент,
+ *       которому фильтр отвечает "точно нет", не читается вовсе, иначе просматривается
+ *       один блок.</li>
+ *   <li>Тот же фоновый поток сжимает сегменты по ярусам: как только подряд набирается
+ *       {@code config.lsm.compaction.width} сегментов одного яруса (размер яруса растёт
+ *       в это же число раз), они сливаются в один. При слиянии остаётся только новейшая
+ *       версия ключа, а просроченные ссылки выбрасываются. Надгробия и одинокие счётчики
+ *       выбрасываются, когда в слияние попал самый старый сегмент: скрывать под ними уже нечего.</li>
+ * </ul>
+ * Просроченную ссылку, выброшенную сжатием, хранилище передаёт подписчику
+ * ({@link #setEvictionListener(Consumer)}), чтобы репозиторий убрал её из своих индексов.
+ * Если сброс отстаёт и замороженных таблиц набирается больше {@value #MAX_FROZEN},
+ * запись ждёт фонового потока.
+ * <p>
+ * Как и в {@link MappedLinkStore}, сохранность обеспечивает журнал ({@link DurableStorage}),
+ * поэтому сегменты — рабочие файлы и при открытии создаются заново, а {@link #get} возвращает
+ * ссылку-представление. Переходы ({@link ShortLink#tryReserveClick()}) не пишут в дерево:
+ * при первом переходе представление получает живой счётчик ключа — один на ключ, общий для всех
+ * представлений, — и дальше каждый переход — это CAS этого счётчика, без блокировок, поиска
+ * и записей в памятную таблицу. Чтения и обход подставляют живой счётчик в найденную запись.
+ * В дерево счётчики записываются при заморозке памятной таблицы (и при изменении или удалении
+ * ссылки), после чего счётчик "выводится": представления, которые переходят дальше, заводят
+ * новый по записи дерева. Поэтому переходы не тормозятся отстающим сбросом — ждать фонового
+ * потока могут только {@link #put} и {@link #remove}.
+ * <p>
+ * Изменения одного ключа упорядочиваются блокировкой его полосы. Смена памятной таблицы
+ * и установка новых сегментов берут блокировку записи структуры, а изменения — её блокировку
+ * чтения; читатели блокировок не берут и работают с неизменяемым снимком состояния.
+ */
+public class LsmLinkStore implements LinkStore, AutoCloseable {
+
+    /** Размер блока сегмента: разреженный индекс хранит первый ключ каждого блока. */
+    static final int BLOCK_BYTES = 4096;
+
+    /** Сколько замороженных памятных таблиц может ждать сброса, прежде чем запись притормозит. */
+    static final int MAX_FROZEN = 2;
+
+    /** Размер окна отображения сегмента в степени двойки. */
+    private static final int WINDOW_SHIFT = 30;
+
+    /** Размер окна отображения сегмента в байтах. */
+    private static final long WINDOW_BYTES = 1L << WINDOW_SHIFT;
+
+    /**
+     * Перекрытие соседних окон: блок не длиннее {@value #BLOCK_BYTES} байт плюс одна запись
+     * с URL до {@link MappedLinkStore#MAX_URL_BYTES}, поэтому начавшийся в окне блок
+     * целиком в нём и помещается.
+     */
+    private static final long WINDOW_OVERLAP = 2L << 20;
+
+    /** Размер буфера записи сегмента (больше любой записи). */
+    private static final int WRITE_BUFFER_BYTES = 4 << 20;
+
+    /** Виды записей. */
+    private static final byte LINK = 1;
+    private static final byte TOMBSTONE = 2;
+    private static final byte COUNT = 3;
+
+    /** Смещения полей в записи ссылки (после байта вида). */
+    private static final int CREATED_AT = 1;
+    private static final int EXPIRY_TIME = 9;
+    private static final int LIMIT = 17;
+    private static final int CURRENT_COUNT = 21;
+    private static final int OWNER = 25;
+    private static final int URL = 29;
+
+    /** Заголовок записи в сегменте: ключ и длина записи. */
+    private static final int ENTRY_HEADER_BYTES = 12;
+
+    /** Примерные накладные расходы записи памятной таблицы в куче (узлы, ключ, массив). */
+    private static final int MEMTABLE_ENTRY_OVERHEAD = 96;
+
+    /** Количество полос блокировок (степень двойки). */
+    private static final int STRIPE_COUNT = 64;
+
+    /** Запись надгробия. */
+    private static final byte[] TOMBSTONE_RECORD = {TOMBSTONE};
+
+    /** Порядок версий при слиянии: по ключу, а для одного ключа — от новой к старой. */
+    private static final Comparator<Head> HEAD_ORDER =
+            Comparator.comparingLong((Head head) -> head.source.key()).thenComparingInt(head -> head.rank);
+
+    // Каталог сегментов
+    private final Path directory;
+    // Словарь владельцев: в записи хранится номер, а не UUID
+    private final UserIds users;
+    // Порог заморозки памятной таблицы (в байтах)
+    private final long memtableBytes;
+    // Сколько сегментов одного яруса сливаются в один
+    private final int compactionWidth;
+    // Битов фильтра Блума на ключ
+    private final int bloomBitsPerKey;
+    // Блокировки изменений по полосам ключей
+    private final ReentrantLock[] stripes = new ReentrantLock[STRIPE_COUNT];
+    // Изменения берут блокировку чтения, смена таблицы и установка сегментов — записи
+    private final ReentrantReadWriteLock structure = new ReentrantReadWriteLock();
+    // Фоновый сброс и сжатие — в одном потоке, поэтому сегменты меняет только он
+    private final ExecutorService background;
+    // Оповещения о выброшенных ссылках: подписчик берёт свои блокировки, а писатель,
+    // держащий их, может ждать фонового потока
+    private final ExecutorService notifier;
+    // Живые счётчики переходов по ключам; меняются под блокировкой полосы ключа
+    private final ConcurrentHashMap<Long, LiveCount> liveCounts = new ConcurrentHashMap<>();
+    // Количество ссылок
+    private final AtomicInteger size = new AtomicInteger();
+    // Счётчики для статистики
+    private final AtomicLong flushes = new AtomicLong();
+    private final AtomicLong compactions = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    // Номер следующего сегмента; меняется только фоновым потоком
+    private long nextSegmentId;
+    // Текущее состояние дерева; заменяется целиком под блокировкой записи структуры
+    private volatile State state = new State(List.of(new Memtable()), List.of());
+    // Последняя поставленная фоновая работа; меняется под блокировкой записи структуры
+    private Future<?> pendingWork;
+    // Подписчик на выброшенные ссылки
+    private volatile Consumer<ShortLink> evictionListener = link -> {
+    };
+
+    /**
+     * Создаёт пустое хранилище с параметрами из конфигурации
+     * (прежние сегменты в каталоге удаляются).
+     *
+     * @param directory каталог сегментов (создаётся, если его нет)
+     * @throws IOException если каталог не удалось подготовить
+     */
+    public LsmLinkStore(Path directory) throws IOException {
+        this(directory, new UserIds());
+    }
+
+    /**
+     * Создаёт пустое хранилище с параметрами из конфигурации и словарём владельцев
+     * хранилища {@link Storage} (прежние сегменты в каталоге удаляются).
+     *
+     * @param directory каталог сегментов (создаётся, если его нет)
+     * @param users     словарь владельцев
+     * @throws IOException если каталог не удалось подготовить
+     */
+    public LsmLinkStore(Path directory, UserIds users) throws IOException {
+        this(directory, Config.getLsmMemtableBytes(), Config.getLsmCompactionWidth(), Config.getLsmBloomBitsPerKey(),
+                users);
+    }
+
+    /**
+     * Создаёт пустое хранилище (прежние сегменты в каталоге удаляются).
+     *
+     * @param directory       каталог сегментов (создаётся, если его нет)
+     * @param memtableBytes   порог заморозки памятной таблицы в байтах
+     * @param compactionWidth сколько сегментов одного яруса сливаются в один (не меньше двух)
+     * @param bloomBitsPerKey битов фильтра Блума на ключ
+     * @throws IOException если каталог не удалось подготовить
+     */
+    public LsmLinkStore(Path directory, long memtableBytes, int compactionWidth, int bloomBitsPerKey) throws IOException {
+        this(directory, memtableBytes, compactionWidth, bloomBitsPerKey, new UserIds());
+    }
+
+    /**
+     * Создаёт пустое хранилище со словарём владельцев (прежние сегменты в каталоге удаляются).
+     *
+     * @param directory       каталог сегментов (создаётся, если его нет)
+     * @param memtableBytes   порог заморозки памятной таблицы в байтах
+     * @param compactionWidth сколько сегментов одного яруса сливаются в один (не меньше двух)
+     * @param bloomBitsPerKey битов фильтра Блума на ключ
+     * @param users           словарь владельцев
+     * @throws IOException если каталог не удалось подготовить
+     */
+    public LsmLinkStore(Path directory, long memtableBytes, int compactionWidth, int bloomBitsPerKey, UserIds users)
+            throws IOException {
+        if (memtableBytes <= 0) {
+            throw new IllegalArgumentException("Размер памятной таблицы должен быть положительным");
+        }
+        if (compactionWidth < 2) {
+            throw new IllegalArgumentException("Сжатие должно сливать хотя бы два сегмента");
+        }
+        if (bloomBitsPerKey <= 0) {
+            throw new IllegalArgumentException("Число битов фильтра на ключ должно быть положительным");
+        }
+        Files.createDirectories(directory);
+        try (var stale = Files.newDirectoryStream(directory, "segment-*.sst")) {
+            for (Path file : stale) {
+                Files.delete(file);
+            }
+        }
+        this.directory = directory;
+        this.users = users;
+        this.memtableBytes = memtableBytes;
+        this.compactionWidth = compactionWidth;
+        this.bloomBitsPerKey = bloomBitsPerKey;
+        for (int i = 0; i < STRIPE_COUNT; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+        this.background = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "lsm-compaction");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.notifier = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "lsm-evictions");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public ShortLink get(long key) {
+        byte[] record = lookup(state, key);
+        return record == null ? null : toLink(key, record);
+    }
+
+    @Override
+    public ShortLink put(long key, ShortLink link) {
+        byte[] url = link.getOriginalUrlBytes();
+        if (url.length > MappedLinkStore.MAX_URL_BYTES) {
+            throw new IllegalArgumentException("URL слишком длинный: " + url.length + " байт");
+        }
+        ReentrantLock stripe = stripeFor(key);
+        byte[] previous;
+        stripe.lock();
+        structure.readLock().lock();
+        try {
+            State current = state;
+            Memtable active = current.active();
+            byte[] record = encode(link, url, link.getCurrentCount());
+            // Прежнюю версию ищем после записи: запись в таблицу и так проходит её ключи,
+            // а более старые слои полоса ключа от изменений защищает
+            byte[] replaced = active.put(key, record);
+            previous = withLiveCount(retireLiveCount(key), replaced != null && replaced[0] != COUNT
+                    ? visible(replaced, null) : lookup(current, key, 1, replaced));
+            // Счётчик представления этой же ссылки уже в хранилище, перезапись потеряла бы переходы
+            if (previous != null && link instanceof LsmShortLink view && view.isViewOf(this, key, previous)) {
+                active.put(key, withCount(record, intAt(previous, CURRENT_COUNT)));
+            }
+            if (previous == null) {
+                size.incrementAndGet();
+            }
+        } finally {
+            structure.readLock().unlock();
+            stripe.unlock();
+        }
+        freezeIfFull();
+        return previous == null ? null : toLink(key, previous);
+    }
+
+    @Override
+    public ShortLink remove(long key) {
+        ReentrantLock stripe = stripeFor(key);
+        byte[] previous;
+        stripe.lock();
+        structure.readLock().lock();
+        try {
+            State current = state;
+            previous = withLiveCount(retireLiveCount(key), lookup(current, key));
+            if (previous == null) {
+                return null;
+            }
+            current.active().put(key, TOMBSTONE_RECORD);
+            size.decrementAndGet();
+        } finally {
+            structure.readLock().unlock();
+            stripe.unlock();
+        }
+        freezeIfFull();
+        return toLink(key, previous);
+    }
+
+    @Override
+    public void forEach(Consumer<ShortLink> action) {
+        Merge merge = new Merge(sources(state));
+        while (merge.next()) {
+            byte[] record = resolve(merge.versions);
+            if (record[0] == LINK) {
+                action.accept(toLink(merge.key, record));
+            }
+        }
+    }
+
+    @Override
+    public void forEachKey(LongConsumer action) {
+        Merge merge = new Merge(sources(state));
+        while (merge.next()) {
+            if (resolve(merge.versions)[0] == LINK) {
+                action.accept(merge.key);
+            }
+        }
+    }
+
+    @Override
+    public int size() {
+        return size.get();
+    }
+
+    /**
+     * Подписывает на просроченные ссылки, выброшенные сжатием. Подписчик вызывается
+     * в отдельном потоке, после того как ссылка перестала быть видна чтениям.
+     *
+     * @param listener подписчик
+     */
+    @Override
+    public void setEvictionListener(Consumer<ShortLink> listener) {
+        this.evictionListener = listener;
+    }
+
+    /**
+     * Останавливает фоновые потоки, дождавшись начатых сброса и сжатия.
+     * Сегменты остаются на диске до следующего открытия.
+     */
+    @Override
+    public void close() {
+        awaitTermination(background);
+        awaitTermination(notifier);
+    }
+
+    /**
+     * Замораживает текущую памятную таблицу (если в ней что-то есть) и ждёт, пока фоновый
+     * поток сбросит её и закончит сжатие. Для тестов и бенчмарков.
+     */
+    void flush() {
+        Future<?> work;
+        structure.writeLock().lock();
+        try {
+            if (state.active().entries.isEmpty() && liveCounts.isEmpty()) {
+                work = pendingWork != null ? pendingWork : background.submit(() -> {
+                });
+            } else {
+                work = freeze();
+            }
+        } finally {
+            structure.writeLock().unlock();
+        }
+        await(work);
+        // Оповещения о выброшенных ссылках отправлены до конца работы — дожидаемся и их
+        await(notifier.submit(() -> {
+        }));
+    }
+
+    /**
+     * Сбрасывает памятную таблицу и сливает все сегменты в один: надгробия и просроченные
+     * ссылки уходят сразу, не дожидаясь, пока сжатие по ярусам дойдёт до самого старого
+     * сегмента. Для тестов и бенчмарков.
+     */
+    void compactFully() {
+        flush();
+        await(background.submit(() -> {
+            try {
+                List<Segment> segments = state.segments;
+                if (!segments.isEmpty()) {
+                    merge(segments, true);
+                }
+            } catch (IOException | RuntimeException e) {
+                Log.error("Ошибка сжатия хранилища {}: {}", directory, e.getMessage());
+            }
+        }));
+        await(notifier.submit(() -> {
+        }));
+    }
+
+    /**
+     * Возвращает количество сегментов на диске.
+     */
+    int segmentCount() {
+        return state.segments.size();
+    }
+
+    /**
+     * Возвращает краткую статистику: таблицы, сегменты, сбросы, сжатия и выброшенные ссылки.
+     */
+    String stats() {
+        State current = state;
+        long bytes = 0;
+        long blooms = 0;
+        for (Segment segment : current.segments) {
+            bytes += segment.fileBytes;
+            blooms += segment.bloom.sizeInBytes();
+        }
+        return String.format("таблиц в памяти: %d, сегментов: %d (%d МБ на диске, фильтры %d МБ), "
+                        + "сбросов: %d, сжатий: %d, выброшено просроченных: %d",
+                current.tables.size(), current.segments.size(), bytes >> 20, blooms >> 20,
+                flushes.get(), compactions.get(), evictions.get());
+    }
+
+    /**
+     * Возвращает живой счётчик ссылки, заводя его по записи дерева, если его ещё нет
+     * или прежний уже выведен. Быстрый путь — одно чтение таблицы счётчиков.
+     *
+     * @param key       ключ ссылки
+     * @param createdAt время создания ссылки представления (отличает её от новой под тем же ключом)
+     * @return счётчик или null, если этой ссылки в хранилище уже нет
+     */
+    private LiveCount attachLiveCount(long key, long createdAt) {
+        LiveCount live = liveCounts.get(key);
+        if (live != null && live.createdAt == createdAt && live.get() >= 0) {
+            return live;
+        }
+        ReentrantLock stripe = stripeFor(key);
+        stripe.lock();
+        structure.readLock().lock();
+        try {
+            live = liveCounts.get(key);
+            if (live != null && live.createdAt == createdAt && live.get() >= 0) {
+                return live;
+            }
+            byte[] record = lookup(state, key);
+            if (record == null || longAt(record, CREATED_AT) != createdAt) {
+                return null;
+            }
+            live = new LiveCount(createdAt, intAt(record, CURRENT_COUNT));
+            liveCounts.put(key, live);
+            return live;
+        } finally {
+            structure.readLock().unlock();
+            stripe.unlock();
+        }
+    }
+
+    /**
+     * Выводит живой счётчик ключа: дальнейшие переходы через него невозможны.
+     * Вызывается под блокировкой полосы ключа (или блокировкой записи структуры).
+     *
+     * @return выведенный счётчик или null, если его не было
+     */
+    private LiveCount retireLiveCount(long key) {
+        LiveCount live = liveCounts.remove(key);
+        if (live != null) {
+            live.retire();
+        }
+        return live;
+    }
+
+    /**
+     * Подставляет в запись ссылки итог выведенного счётчика, если счётчик был у этой же ссылки.
+     */
+    private static byte[] withLiveCount(LiveCount live, byte[] record) {
+        if (live == null || record == null || longAt(record, CREATED_AT) != live.createdAt) {
+            return record;
+        }
+        return withCount(record, live.retiredCount());
+    }
+
+    /**
+     * Записывает живые счётчики в дерево и выводит их, чтобы таблица счётчиков не росла.
+     * Вызывается под блокировкой записи структуры перед заморозкой: счётчики попадают
+     * в замораживаемую таблицу и сбрасываются вместе с ней.
+     */
+    private void foldLiveCounts(Memtable active) {
+        for (Long key : liveCounts.keySet()) {
+            LiveCount live = retireLiveCount(key);
+            if (live != null) {
+                writeCount(active, key, live.retiredCount());
+            }
+        }
+    }
+
+    /**
+     * Записывает счётчик переходов ссылки, если она (с тем же временем создания) всё ещё в хранилище.
+     */
+    private void updateCount(long key, long createdAt, int count) {
+        ReentrantLock stripe = stripeFor(key);
+        stripe.lock();
+        structure.readLock().lock();
+        try {
+            State current = state;
+            retireLiveCount(key);
+            byte[] record = lookup(current, key);
+            if (record == null || longAt(record, CREATED_AT) != createdAt) {
+                return;
+            }
+            writeCount(current.active(), key, count);
+        } finally {
+            structure.readLock().unlock();
+            stripe.unlock();
+        }
+        freezeIfFull();
+    }
+
+    /**
+     * Пишет счётчик в памятную таблицу: правит ссылку, если она уже в таблице,
+     * иначе добавляет запись счётчика. Вызывается под блокировкой полосы ключа.
+     */
+    private static void writeCount(Memtable active, long key, int count) {
+        byte[] own = active.entries.get(key);
+        byte[] record;
+        if (own != null && own[0] == LINK) {
+            record = own.clone(); // Массив могут читать, поэтому не меняем его на месте
+        } else {
+            record = new byte[1 + Integer.BYTES];
+            record[0] = COUNT;
+        }
+        ByteBuffer.wrap(record).putInt(record[0] == LINK ? CURRENT_COUNT : 1, count);
+        active.put(key, record);
+    }
+
+    /**
+     * Ищет новейшую версию ключа. Счётчик, записанный поверх более старой версии ссылки,
+     * подставляется в неё.
+     *
+     * @return запись ссылки или null, если ссылки нет
+     */
+    private static byte[] lookup(State state, long key) {
+        return lookup(state, key, 0, null);
+    }
+
+    /**
+     * Ищет новейшую версию ключа, начиная с памятной таблицы {@code firstTable}.
+     *
+     * @param count уже найденная в более новых таблицах запись счётчика или null
+     */
+    private static byte[] lookup(State state, long key, int firstTable, byte[] count) {
+        List<Memtable> tables = state.tables;
+        for (int i = firstTable; i < tables.size(); i++) {
+            byte[] record = tables.get(i).get(key);
+            if (record != null) {
+                if (record[0] != COUNT) {
+                    return visible(record, count);
+                }
+                if (count == null) {
+                    count = record;
+                }
+            }
+        }
+        for (Segment segment : state.segments) {
+            byte[] record = segment.find(key);
+            if (record != null) {
+                if (record[0] != COUNT) {
+                    return visible(record, count);
+                }
+                if (count == null) {
+                    count = record;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Превращает найденную версию в ответ чтения: надгробие — null, ссылка — ссылка
+     * со счётчиком из более новой записи счётчика, если такая есть.
+     */
+    private static byte[] visible(byte[] record, byte[] count) {
+        if (record[0] == TOMBSTONE) {
+            return null;
+        }
+        return count == null ? record : withCount(record, intAt(count, 1));
+    }
+
+    /**
+     * Сводит версии ключа (от новой к старой) в одну запись: ссылку со свежим счётчиком,
+     * надгробие или, если в версиях нет ни того, ни другого, новейший счётчик.
+     */
+    private static byte[] resolve(List<byte[]> versions) {
+        byte[] newest = versions.get(0);
+        if (newest[0] != COUNT) {
+            return newest;
+        }
+        for (int i = 1; i < versions.size(); i++) {
+            byte[] version = versions.get(i);
+            if (version[0] != COUNT) {
+                return version[0] == TOMBSTONE ? version : withCount(version, intAt(newest, 1));
+            }
+        }
+        return newest;
+    }
+
+    /**
+     * Если памятная таблица заполнена, замораживает её и ставит сброс в очередь.
+     * Если сброс отстаёт, ждёт его. Вызывается без блокировок хранилища.
+     */
+    private void freezeIfFull() {
+        if (state.active().bytes.get() < memtableBytes) {
+            return;
+        }
+        Future<?> wait = null;
+        structure.writeLock().lock();
+        try {
+            if (state.active().bytes.get() < memtableBytes) {
+                return; // Таблицу уже заморозил другой поток
+            }
+            Future<?> previous = pendingWork;
+            freeze();
+            if (state.tables.size() > MAX_FROZEN + 1) {
+                wait = previous;
+            }
+        } finally {
+            structure.writeLock().unlock();
+        }
+        if (wait != null) {
+            await(wait);
+        }
+    }
+
+    /**
+     * Заменяет активную памятную таблицу пустой и ставит сброс в очередь.
+     * Вызывается под блокировкой записи структуры.
+     */
+    private Future<?> freeze() {
+        State current = state;
+        foldLiveCounts(current.active());
+        List<Memtable> tables = new ArrayList<>(current.tables.size() + 1);
+        tables.add(new Memtable());
+        tables.addAll(current.tables);
+        state = new State(List.copyOf(tables), current.segments);
+        pendingWork = background.submit(this::flushAndCompact);
+        return pendingWork;
+    }
+
+    /**
+     * Фоновая работа: сбрасывает замороженные таблицы (от старой к новой), затем сжимает сегменты.
+     */
+    private void flushAndCompact() {
+        try {
+            List<Memtable> tables;
+            while ((tables = state.tables).size() > 1) {
+                flush(tables.get(tables.size() - 1));
+            }
+            compact();
+        } catch (IOException | RuntimeException e) {
+            Log.error("Ошибка сброса или сжатия хранилища {}: {}", directory, e.getMessage());
+        }
+    }
+
+    /**
+     * Сбрасывает замороженную таблицу в новый сегмент.
+     */
+    private void flush(Memtable table) throws IOException {
+        if (table.filter == null) {
+            BloomFilter filter = new BloomFilter(table.entries.size(), bloomBitsPerKey);
+            for (long key : table.entries.keySet()) {
+                filter.add(key);
+            }
+            table.filter = filter;
+        }
+        boolean bottom = state.segments.isEmpty();
+        Rewrite rewrite = rewrite(List.of(new MemtableSource(table)), table.entries.size(), bottom);
+        install(rewrite, table, List.of());
+        flushes.incrementAndGet();
+    }
+
+    /**
+     * Сливает подряд идущие сегменты одного яруса, пока такие находятся.
+     */
+    private void compact() throws IOException {
+        List<Segment> run;
+        while ((run = findRun(state.segments)) != null) {
+            List<Segment> segments = state.segments;
+            merge(run, run.get(run.size() - 1) == segments.get(segments.size() - 1));
+        }
+    }
+
+    /**
+     * Сливает подряд идущие сегменты в один и ставит его на их место.
+     *
+     * @param run    сегменты от нового к старому
+     * @param bottom среди них самый старый сегмент
+     */
+    private void merge(List<Segment> run, boolean bottom) throws IOException {
+        List<Source> sources = new ArrayList<>(run.size());
+        long expectedKeys = 0;
+        for (Segment segment : run) {
+            sources.add(new SegmentSource(segment));
+            expectedKeys += segment.entries;
+        }
+        Rewrite rewrite = rewrite(sources, expectedKeys, bottom);
+        install(rewrite, null, run);
+        compactions.incrementAndGet();
+        Log.debug("Сжатие {}: {} сегментов → {} записей, выброшено просроченных: {}", directory, run.size(),
+                rewrite.segment != null ? rewrite.segment.entries : 0, rewrite.evictedKeys.length);
+    }
+
+    /**
+     * Ищет самую новую серию из {@code compactionWidth} и более подряд идущих сегментов одного яруса.
+     */
+    private List<Segment> findRun(List<Segment> segments) {
+        int start = 0;
+        for (int i = 1; i <= segments.size(); i++) {
+            if (i == segments.size() || tier(segments.get(i)) != tier(segments.get(start))) {
+                if (i - start >= compactionWidth) {
+                    return List.copyOf(segments.subList(start, i));
+                }
+                start = i;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Ярус сегмента: 0 — до {@code compactionWidth} памятных таблиц, дальше каждый ярус
+     * в {@code compactionWidth} раз больше предыдущего.
+     */
+    private int tier(Segment segment) {
+        int tier = 0;
+        for (long bound = memtableBytes * compactionWidth; segment.fileBytes >= bound && tier < 62; bound *= compactionWidth) {
+            tier++;
+        }
+        return tier;
+    }
+
+    /**
+     * Сливает источники (от нового к старому) в новый сегмент, оставляя по ключу одну запись.
+     * Просроченные ссылки выбрасываются; если источники — не самые старые данные, вместо них
+     * пишется надгробие, скрывающее прежние версии.
+     *
+     * @param sources      источники от нового к старому
+     * @param expectedKeys сколько ключей может быть в сегменте (для фильтра Блума)
+     * @param bottom       источники — самые старые данные: надгробия и одинокие счётчики не нужны
+     */
+    private Rewrite rewrite(List<Source> sources, long expectedKeys, boolean bottom) throws IOException {
+        long now = System.currentTimeMillis();
+        long[] evictedKeys = new long[16];
+        List<byte[]> evictedLinks = new ArrayList<>();
+        SegmentWriter writer = new SegmentWriter(directory.resolve(String.format("segment-%08d.sst", nextSegmentId++)),
+                expectedKeys);
+        try {
+            Merge merge = new Merge(sources);
+            while (merge.next()) {
+                byte[] record = resolve(merge.versions);
+                if (record[0] == LINK && longAt(record, EXPIRY_TIME) < now) {
+                    if (evictedLinks.size() == evictedKeys.length) {
+                        evictedKeys = Arrays.copyOf(evictedKeys, evictedKeys.length * 2);
+                    }
+                    evictedKeys[evictedLinks.size()] = merge.key;
+                    evictedLinks.add(record);
+                    record = TOMBSTONE_RECORD;
+                }
+                if (record[0] != LINK && bottom) {
+                    continue;
+                }
+                writer.append(merge.key, record);
+            }
+            return new Rewrite(writer.finish(), Arrays.copyOf(evictedKeys, evictedLinks.size()), evictedLinks);
+        } catch (IOException | RuntimeException e) {
+            writer.abort();
+            throw e;
+        }
+    }
+
+    /**
+     * Устанавливает результат сброса или сжатия: убирает слитые таблицу и сегменты, ставит
+     * на их место новый сегмент. Выброшенные ссылки, которые не перекрыты более новыми
+     * версиями, перестают считаться и передаются подписчику.
+     *
+     * @param rewrite  результат слияния
+     * @param table    сброшенная таблица или null
+     * @param replaced слитые сегменты (пусто при сбросе: новый сегмент — самый новый)
+     */
+    private void install(Rewrite rewrite, Memtable table, List<Segment> replaced) {
+        List<ShortLink> evicted = new ArrayList<>();
+        structure.writeLock().lock();
+        try {
+            State before = state;
+            List<Memtable> tables = new ArrayList<>(before.tables);
+            if (table != null) {
+                tables.remove(table);
+            }
+            int at = replaced.isEmpty() ? 0 : before.segments.indexOf(replaced.get(0));
+            List<Segment> newer = before.segments.subList(0, at);
+            List<Segment> segments = new ArrayList<>(newer);
+            if (rewrite.segment != null) {
+                segments.add(rewrite.segment);
+            }
+            segments.addAll(before.segments.subList(at + replaced.size(), before.segments.size()));
+            for (int i = 0; i < rewrite.evictedKeys.length; i++) {
+                long key = rewrite.evictedKeys[i];
+                if (!shadowed(key, tables, newer)) {
+                    size.decrementAndGet();
+                    evicted.add(toLink(key, rewrite.evictedLinks.get(i)));
+                }
+            }
+            state = new State(List.copyOf(tables), List.copyOf(segments));
+        } finally {
+            structure.writeLock().unlock();
+        }
+        for (Segment segment : replaced) {
+            segment.delete(); // Отображение переживает удаление файла, поэтому читатели не мешают
+        }
+        if (!evicted.isEmpty()) {
+            evictions.addAndGet(evicted.size());
+            Consumer<ShortLink> listener = evictionListener;
+            notifier.execute(() -> evicted.forEach(listener));
+        }
+    }
+
+    /**
+     * Проверяет, перекрыт ли ключ более новой ссылкой или надгробием.
+     */
+    private static boolean shadowed(long key, List<Memtable> tables, List<Segment> segments) {
+        for (Memtable table : tables) {
+            byte[] record = table.get(key);
+            if (record != null && record[0] != COUNT) {
+                return true;
+            }
+        }
+        for (Segment segment : segments) {
+            byte[] record = segment.find(key);
+            if (record != null && record[0] != COUNT) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Источники состояния от нового к старому.
+     */
+    private static List<Source> sources(State state) {
+        List<Source> sources = new ArrayList<>(state.tables.size() + state.segments.size());
+        for (Memtable table : state.tables) {
+            sources.add(new MemtableSource(table));
+        }
+        for (Segment segment : state.segments) {
+            sources.add(new SegmentSource(segment));
+        }
+        return sources;
+    }
+
+    /**
+     * Кодирует ссылку в запись.
+     */
+    private byte[] encode(ShortLink link, byte[] url, int count) {
+        byte[] record = new byte[URL + url.length];
+        ByteBuffer.wrap(record)
+                .put(LINK)
+                .putLong(link.getCreatedAt())
+                .putLong(link.getExpiryTime())
+                .putInt(link.getLimit())
+                .putInt(count)
+                .putInt(users.idOf(link.getUserUuid()))
+                .put(url);
+        return record;
+    }
+
+    /**
+     * Создаёт ссылку-представление записи.
+     */
+    private ShortLink toLink(long key, byte[] record) {
+        ByteBuffer buffer = ByteBuffer.wrap(record);
+        long createdAt = buffer.getLong(CREATED_AT);
+        LiveCount live = liveCounts.get(key);
+        LsmShortLink link = new LsmShortLink(this, key, Base62.encode(key),
+                Arrays.copyOfRange(record, URL, record.length),
+                createdAt, buffer.getLong(EXPIRY_TIME), buffer.getInt(LIMIT),
+                buffer.getInt(CURRENT_COUNT),
+                users.uuidOf(buffer.getInt(OWNER)));
+        if (live != null && live.createdAt == createdAt) {
+            link.liveCount = live;
+        }
+        return link;
+    }
+
+    /**
+     * Копия записи ссылки с другим счётчиком.
+     */
+    private static byte[] withCount(byte[] record, int count) {
+        byte[] copy = record.clone();
+        ByteBuffer.wrap(copy).putInt(CURRENT_COUNT, count);
+        return copy;
+    }
+
+    private static int intAt(byte[] record, int offset) {
+        return ByteBuffer.wrap(record).getInt(offset);
+    }
+
+    private static long longAt(byte[] record, int offset) {
+        return ByteBuffer.wrap(record).getLong(offset);
+    }
+
+    private ReentrantLock stripeFor(long key) {
+        return stripes[(int) LongObjectMap.hash(key) & (STRIPE_COUNT - 1)];
+    }
+
+    /**
+     * Дожидается фоновой работы, не прерываясь: её ошибки уже записаны в журнал событий.
+     */
+    private static void await(Future<?> work) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                work.get();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            } catch (ExecutionException e) {
+                break;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Останавливает исполнитель, не прерывая его: прерывание посреди записи в FileChannel
+     * закрыло бы файл.
+     */
+    private static void awaitTermination(ExecutorService executor) {
+        executor.shutdown();
+        boolean interrupted = false;
+        while (true) {
+            try {
+                if (executor.awaitTermination(1, TimeUnit.SECONDS)) {
+                    break;
+                }
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Состояние дерева: памятные таблицы (первая — активная, остальные заморожены)
+     * и сегменты, и то и другое от новых к старым.
+     */
+    private record State(List<Memtable> tables, List<Segment> segments) {
+        Memtable active() {
+            return tables.get(0);
+        }
+    }
+
+    /**
+     * Результат слияния: новый сегмент (null, если ничего не осталось) и выброшенные
+     * просроченные ссылки — ключи и записи.
+     */
+    private record Rewrite(Segment segment, long[] evictedKeys, List<byte[]> evictedLinks) {
+    }
+
+    /**
+     * Памятная таблица: ключ → запись и примерный занятый ею объём кучи. Замороженная
+     * таблица перед сбросом получает фильтр Блума, чтобы промахи не проходили список с пропусками.
+     */
+    private static final class Memtable {
+        final ConcurrentSkipListMap<Long, byte[]> entries = new ConcurrentSkipListMap<>();
+        final AtomicLong bytes = new AtomicLong();
+        volatile BloomFilter filter;
+
+        byte[] get(long key) {
+            BloomFilter current = filter;
+            return current != null && !current.mightContain(key) ? null : entries.get(key);
+        }
+
+        byte[] put(long key, byte[] record) {
+            byte[] replaced = entries.put(key, record);
+            bytes.addAndGet(replaced == null ? MEMTABLE_ENTRY_OVERHEAD + record.length : record.length - replaced.length);
+            return replaced;
+        }
+    }
+
+    /**
+     * Неизменяемый сегмент: файл, отображённый в память окнами, разреженный индекс блоков
+     * и фильтр Блума по ключам.
+     */
+    private static final class Segment {
+        final Path file;
+        final long fileBytes;
+        final long entries;
+        final BloomFilter bloom;
+        // Первый ключ и смещение каждого блока
+        private final long[] blockKeys;
+        private final long[] blockOffsets;
+        private final long minKey;
+        private final long maxKey;
+        private final MappedByteBuffer[] windows;
+
+        Segment(Path file, long fileBytes, long entries, BloomFilter bloom, long[] blockKeys, long[] blockOffsets,
+                long minKey, long maxKey) throws IOException {
+            this.file = file;
+            this.fileBytes = fileBytes;
+            this.entries = entries;
+            this.bloom = bloom;
+            this.blockKeys = blockKeys;
+            this.blockOffsets = blockOffsets;
+            this.minKey = minKey;
+            this.maxKey = maxKey;
+            this.windows = new MappedByteBuffer[(int) ((fileBytes + WINDOW_BYTES - 1) >>> WINDOW_SHIFT)];
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                for (int i = 0; i < windows.length; i++) {
+                    long start = (long) i << WINDOW_SHIFT;
+                    windows[i] = channel.map(FileChannel.MapMode.READ_ONLY, start,
+                            Math.min(fileBytes - start, WINDOW_BYTES + WINDOW_OVERLAP));
+                }
+            }
+        }
+
+        int blockCount() {
+            return blockKeys.length;
+        }
+
+        long blockEnd(int block) {
+            return block + 1 < blockOffsets.length ? blockOffsets[block + 1] : fileBytes;
+        }
+
+        /**
+         * Ищет запись ключа: фильтр Блума, затем один блок по разреженному индексу.
+         *
+         * @return запись или null, если ключа в сегменте нет
+         */
+        byte[] find(long key) {
+            if (key < minKey || key > maxKey || !bloom.mightContain(key)) {
+                return null;
+            }
+            int block = Arrays.binarySearch(blockKeys, key);
+            if (block < 0) {
+                block = -block - 2;
+            }
+            MappedByteBuffer window = window(block);
+            int position = position(blockOffsets[block]);
+            int end = position + (int) (blockEnd(block) - blockOffsets[block]);
+            while (position < end) {
+                long entryKey = window.getLong(position);
+                int length = window.getInt(position + 8);
+                if (entryKey == key) {
+                    byte[] record = new byte[length];
+                    window.get(position + ENTRY_HEADER_BYTES, record);
+                    return record;
+                }
+                if (entryKey > key) {
+                    return null;
+                }
+                position += ENTRY_HEADER_BYTES + length;
+            }
+            return null;
+        }
+
+        MappedByteBuffer window(int block) {
+            return windows[(int) (blockOffsets[block] >>> WINDOW_SHIFT)];
+        }
+
+        static int position(long offset) {
+            return (int) (offset & (WINDOW_BYTES - 1));
+        }
+
+        void delete() {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                Log.warn("Не удалось удалить сегмент {}: {}", file, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Пишет сегмент: записи по возрастанию ключа, попутно строя разреженный индекс и фильтр.
+     */
+    private final class SegmentWriter {
+        private final Path file;
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(WRITE_BUFFER_BYTES);
+        private final BloomFilter bloom;
+        private long[] blockKeys = new long[64];
+        private long[] blockOffsets = new long[64];
+        private int blockCount;
+        private long offset;
+        private long entries;
+        private long minKey;
+        private long maxKey;
+
+        SegmentWriter(Path file, long expectedKeys) throws IOException {
+            this.file = file;
+            this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.WRITE);
+            this.bloom = new BloomFilter(expectedKeys, bloomBitsPerKey);
+        }
+
+        void append(long key, byte[] record) throws IOException {
+            if (blockCount == 0 || offset - blockOffsets[blockCount - 1] >= BLOCK_BYTES) {
+                if (blockCount == blockKeys.length) {
+                    blockKeys = Arrays.copyOf(blockKeys, blockCount * 2);
+                    blockOffsets = Arrays.copyOf(blockOffsets, blockCount * 2);
+                }
+                blockKeys[blockCount] = key;
+                blockOffsets[blockCount++] = offset;
+            }
+            if (buffer.remaining() < ENTRY_HEADER_BYTES + record.length) {
+                drain();
+            }
+            buffer.putLong(key).putInt(record.length).put(record);
+            offset += ENTRY_HEADER_BYTES + record.length;
+            bloom.add(key);
+            if (entries++ == 0) {
+                minKey = key;
+            }
+            maxKey = key;
+        }
+
+        /**
+         * Дописывает файл и открывает сегмент.
+         *
+         * @return сегмент или null, если записей не было (файл удаляется)
+         */
+        Segment finish() throws IOException {
+            drain();
+            channel.close();
+            if (entries == 0) {
+                Files.delete(file);
+                return null;
+            }
+            return new Segment(file, offset, entries, bloom, Arrays.copyOf(blockKeys, blockCount),
+                    Arrays.copyOf(blockOffsets, blockCount), minKey, maxKey);
+        }
+
+        void abort() {
+            try {
+                channel.close();
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                Log.warn("Не удалось удалить недописанный сегмент {}: {}", file, e.getMessage());
+            }
+        }
+
+        private void drain() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+
+    /**
+     * Упорядоченный по ключу источник записей для слияния.
+     */
+    private interface Source {
+        /** Переходит к следующей записи; false, если записи кончились. */
+        boolean next();
+
+        long key();
+
+        byte[] record();
+    }
+
+    /**
+     * Записи памятной таблицы. Обход активной таблицы видит или не видит параллельные изменения.
+     */
+    private static final class MemtableSource implements Source {
+        private final Iterator<Map.Entry<Long, byte[]>> iterator;
+        private long key;
+        private byte[] record;
+
+        MemtableSource(Memtable table) {
+            this.iterator = table.entries.entrySet().iterator();
+        }
+
+        @Override
+        public boolean next() {
+            if (!iterator.hasNext()) {
+                return false;
+            }
+            Map.Entry<Long, byte[]> entry = iterator.next();
+            key = entry.getKey();
+            record = entry.getValue();
+            return true;
+        }
+
+        @Override
+        public long key() {
+            return key;
+        }
+
+        @Override
+        public byte[] record() {
+            return record;
+        }
+    }
+
+    /**
+     * Записи сегмента, блок за блоком.
+     */
+    private static final class SegmentSource implements Source {
+        private final Segment segment;
+        private int block = -1;
+        private MappedByteBuffer window;
+        private int position;
+        private int end;
+        private long key;
+        private byte[] record;
+
+        SegmentSource(Segment segment) {
+            this.segment = segment;
+        }
+
+        @Override
+        public boolean next() {
+            while (position >= end) {
+                if (++block >= segment.blockCount()) {
+                    return false;
+                }
+                window = segment.window(block);
+                position = Segment.position(segment.blockOffsets[block]);
+                end = position + (int) (segment.blockEnd(block) - segment.blockOffsets[block]);
+            }
+            key = window.getLong(position);
+            record = new byte[window.getInt(position + 8)];
+            window.get(position + ENTRY_HEADER_BYTES, record);
+            position += ENTRY_HEADER_BYTES + record.length;
+            return true;
+        }
+
+        @Override
+        public long key() {
+            return key;
+        }
+
+        @Override
+        public byte[] record() {
+            return record;
+        }
+    }
+
+    /**
+     * Текущая запись источника и его место в порядке от нового к старому.
+     */
+    private record Head(Source source, int rank) {
+    }
+
+    /**
+     * Слияние источников: ключи по возрастанию, для каждого — все версии от новой к старой.
+     */
+    private static final class Merge {
+        private final PriorityQueue<Head> queue = new PriorityQueue<>(HEAD_ORDER);
+        final List<byte[]> versions = new ArrayList<>();
+        long key;
+
+        Merge(List<Source> sources) {
+            for (int i = 0; i < sources.size(); i++) {
+                if (sources.get(i).next()) {
+                    queue.add(new Head(sources.get(i), i));
+                }
+            }
+        }
+
+        /** Переходит к следующему ключу; false, если ключи кончились. */
+        boolean next() {
+            versions.clear();
+            Head head = queue.poll();
+            if (head == null) {
+                return false;
+            }
+            key = head.source.key();
+            do {
+                versions.add(head.source.record());
+                if (head.source.next()) {
+                    queue.add(head);
+                }
+                head = queue.peek() != null && queue.peek().source.key() == key ? queue.poll() : null;
+            } while (head != null);
+            return true;
+        }
+    }
+
+    /**
+     * Ссылка-представление записи: переходы и изменения счётчика идут через хранилище,
+     * а после удаления ссылки — в самом объекте.
+     */
+    private static final class LsmShortLink extends ShortLink {
+        private final LsmLinkStore store;
+        private final long key;
+        // Живой счётчик ключа, через который идут переходы; null — ещё не заведён
+        private volatile LiveCount liveCount;
+
+        LsmShortLink(LsmLinkStore store, long key, String shortId, byte[] originalUrl,
+                     long createdAt, long expiryTime, int limit, int currentCount, UUID owner) {
+            super(shortId, createdAt, expiryTime, limit, currentCount, owner, originalUrl);
+            this.store = store;
+            this.key = key;
+        }
+
+        boolean isViewOf(LsmLinkStore owner, long ownerKey, byte[] record) {
+            return store == owner && key == ownerKey && longAt(record, CREATED_AT) == getCreatedAt();
+        }
+
+        @Override
+        public int getCurrentCount() {
+            LiveCount live = liveCount;
+            if (live == null) {
+                return super.getCurrentCount();
+            }
+            int value = live.get();
+            return value >= 0 ? value : ~value;
+        }
+
+        @Override
+        public void setCurrentCount(int currentCount) {
+            super.setCurrentCount(currentCount);
+            liveCount = null;
+            store.updateCount(key, getCreatedAt(), currentCount);
+        }
+
+        @Override
+        public boolean tryReserveClick() {
+            while (true) {
+                LiveCount live = liveCount;
+                if (live == null || live.get() < 0) {
+                    live = store.attachLiveCount(key, getCreatedAt());
+                    if (live == null) {
+                        liveCount = null;
+                        return super.tryReserveClick(); // Ссылку удалили — счётчик живёт в объекте
+                    }
+                    liveCount = live;
+                }
+                int count = live.get();
+                if (count < 0) {
+                    continue; // Счётчик выведен между чтениями — заводим новый
+                }
+                if (count >= getLimit()) {
+                    return false;
+                }
+                if (live.compareAndSet(count, count + 1)) {
+                    return true;
+                }
+            }
+        }
+
+        @Override
+        public boolean isExhausted() {
+            return getCurrentCount() >= getLimit();
+        }
+    }
+
+    /**
+     * Живой счётчик переходов ссылки: неотрицательное значение — текущий счётчик,
+     * отрицательное ({@code ~счётчик}) — счётчик выведен и его итог записан в дерево.
+     */
+    private static final class LiveCount extends AtomicInteger {
+        final long createdAt;
+
+        LiveCount(long createdAt, int count) {
+            super(count);
+            this.createdAt = createdAt;
+        }
+
+        /** Выводит счётчик; переходы, начатые до этого, успевают его увеличить. */
+        void retire() {
+            int value;
+            do {
+                value = get();
+            } while (value >= 0 && !compareAndSet(value, ~value));
+        }
+
+        /** Итог выведенного счётчика. */
+        int retiredCount() {
+            return ~get();
+        }
+    }
+}
@@ -0,0 +1,655 @@
+package com.beryoza.urlshortener;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+
+/**
+ * Хранилище ссылок вне кучи — в файлах, отображённых в память.
+ * <p>
+ * Позволяет держать сотни миллионов ссылок без огромной кучи и пауз сборщика мусора:
+ * ссылки занимают место в страничном кэше ОС, а не объекты в куче.
+ * <ul>
+ *   <li>{@code slots.dat} — ячейки фиксированного размера ({@value #SLOT_BYTES} байт):
+ *       ключ, поколение и счётчик переходов, время создания, срок, смещение URL,
+ *       лимит, длина URL и номер владельца в словаре {@link UserIds};</li>
+ *   <li>{@code urls.dat} — URL в UTF-8 подряд, только дописывается;</li>
+ *   <li>{@code index-N.dat} — таблица с открытой адресацией (линейное пробирование)
+ *       ключ → номер ячейки, при заполнении наполовину пересобирается вдвое большей.</li>
+ * </ul>
+ * Файлы отображаются окнами по {@code 2^}{@value #WINDOW_SHIFT} байт, и хранилище растёт,
+ * добавляя окна. Освобождённые ячейки переиспользуются, а место прежних URL — нет:
+ * оно возвращается, когда хранилище заново заполняется из снимка при запуске.
+ * Сохранность на диске обеспечивает журнал ({@link DurableStorage}), поэтому файлы
+ * хранилища — рабочие и при открытии создаются заново.
+ * <p>
+ * {@link #get} возвращает ссылку-представление ячейки: неизменяемые поля скопированы,
+ * а счётчик переходов читается и увеличивается ({@link ShortLink#tryReserveClick()})
+ * прямо в ячейке одной CAS-операцией, поэтому переходы не требуют записи ссылки целиком.
+ * Счётчик лежит в одном {@code long} с поколением ячейки, которое меняется при её освобождении,
+ * поэтому представление удалённой ссылки не затронет ячейку, отданную другой.
+ * <p>
+ * Изменения выполняются под блокировкой записи {@link StampedLock}, чтения — оптимистично:
+ * если во время чтения шла запись, чтение повторяется под блокировкой чтения.
+ */
+public class MappedLinkStore implements LinkStore, AutoCloseable {
+
+    /** Размер окна отображения в степени двойки. */
+    static final int WINDOW_SHIFT = 26;
+
+    /** Размер окна отображения в байтах. */
+    private static final long WINDOW_BYTES = 1L << WINDOW_SHIFT;
+
+    /** Размер ячейки ссылки. */
+    static final int SLOT_BYTES = 56;
+
+    /** Смещения полей в ячейке. */
+    private static final int KEY = 0;
+    private static final int GENERATION_COUNT = 8;
+    private static final int CREATED_AT = 16;
+    private static final int EXPIRY_TIME = 24;
+    private static final int URL_OFFSET = 32;
+    private static final int LIMIT = 40;
+    private static final int URL_LENGTH = 44;
+    private static final int OWNER = 48;
+
+    /** Размер записи индекса: ключ + 1 (0 — пустая запись) и номер ячейки. */
+    private static final int INDEX_ENTRY_BYTES = 16;
+
+    /** Начальное число записей индекса (степень двойки). */
+    private static final long INITIAL_INDEX_CAPACITY = 1 << 16;
+
+    /** Максимальная длина URL в байтах. */
+    static final int MAX_URL_BYTES = 1 << 20;
+
+    /** Ключ свободной ячейки. */
+    private static final long FREE = -1;
+
+    /** Нет ячейки. */
+    private static final long NO_SLOT = -1;
+
+    /** Сколько ячеек обход читает под одной блокировкой. */
+    private static final int FOR_EACH_BATCH = 4096;
+
+    /** Атомарный доступ к {@code long} в отображённом буфере (для счётчика переходов). */
+    private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+    /** Признак того, что оптимистичное чтение нужно повторить под блокировкой. */
+    private static final ShortLink RETRY = new ShortLink();
+
+    // Каталог файлов хранилища
+    private final Path directory;
+    // Словарь владельцев: в ячейке хранится номер, а не UUID
+    private final UserIds users;
+    // Упорядочивает изменения; чтения оптимистичные
+    private final StampedLock lock = new StampedLock();
+    // Ячейки ссылок
+    private final MappedFile slots;
+    // URL ссылок
+    private final MappedFile urls;
+    // Индекс ключ → ячейка; заменяется целиком при росте
+    private volatile Index index;
+    // Число когда-либо занятых ячеек; меняется под блокировкой записи
+    private long slotCount;
+    // Первая свободная ячейка (список связан через поле URL_OFFSET)
+    private long freeHead = NO_SLOT;
+    // Конец занятой части файла URL
+    private long urlEnd;
+    // Номер следующего файла индекса
+    private int indexGeneration;
+    // Количество ссылок
+    private volatile int size;
+
+    /**
+     * Создаёт пустое хранилище в каталоге (прежние файлы хранилища перезаписываются).
+     *
+     * @param directory каталог файлов хранилища (создаётся, если его нет)
+     * @throws IOException если файлы не удалось создать
+     */
+    public MappedLinkStore(Path directory) throws IOException {
+        this(directory, new UserIds());
+    }
+
+    /**
+     * Создаёт пустое хранилище в каталоге со словарём владельцев хранилища {@link Storage}.
+     *
+     * @param directory каталог файлов хранилища (создаётся, если его нет)
+     * @param users     словарь владельцев
+     * @throws IOException если файлы не удалось создать
+     */
+    public MappedLinkStore(Path directory, UserIds users) throws IOException {
+        Files.createDirectories(directory);
+        try (var stale = Files.newDirectoryStream(directory, "index-*.dat")) {
+            for (Path file : stale) {
+                Files.delete(file);
+            }
+        }
+        this.directory = directory;
+        this.users = users;
+        this.slots = new MappedFile(directory.resolve("slots.dat"));
+        this.urls = new MappedFile(directory.resolve("urls.dat"));
+        this.index = newIndex(INITIAL_INDEX_CAPACITY);
+    }
+
+    @Override
+    public ShortLink get(long key) {
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            try {
+                ShortLink link = read(key, stamp);
+                if (link != RETRY) {
+                    return link;
+                }
+            } catch (IndexOutOfBoundsException e) {
+                // Прочитали смещения во время записи — повторяем под блокировкой
+            }
+        }
+        stamp = lock.readLock();
+        try {
+            return read(key, 0);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public ShortLink put(long key, ShortLink link) {
+        byte[] url = link.getOriginalUrlBytes();
+        if (url.length > MAX_URL_BYTES) {
+            throw new IllegalArgumentException("URL слишком длинный: " + url.length + " байт");
+        }
+        long stamp = lock.writeLock();
+        try {
+            long slot = findSlot(index, key);
+            if (slot != NO_SLOT) {
+                ShortLink previous = materialize(slot);
+                // Счётчик представления этой же ячейки уже в ней, перезапись потеряла бы переходы
+                boolean sameSlot = link instanceof MappedShortLink view && view.isViewOf(this, slot);
+                write(slot, key, link, url, !sameSlot);
+                return previous;
+            }
+            slot = allocateSlot();
+            write(slot, key, link, url, true);
+            indexInsert(key, slot);
+            size++;
+            return null;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public ShortLink remove(long key) {
+        long stamp = lock.writeLock();
+        try {
+            long slot = findSlot(index, key);
+            if (slot == NO_SLOT) {
+                return null;
+            }
+            ShortLink previous = materialize(slot);
+            indexRemove(key);
+            // Новое поколение отвязывает от ячейки все её представления
+            long offset = slot * SLOT_BYTES;
+            long value;
+            do {
+                value = slots.getLongVolatile(offset + GENERATION_COUNT);
+            } while (!slots.compareAndSet(offset + GENERATION_COUNT, value, ((value >>> 32) + 1) << 32));
+            slots.putLong(offset + KEY, FREE);
+            slots.putLong(offset + URL_OFFSET, freeHead);
+            freeHead = slot;
+            size--;
+            return previous;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Обходит ссылки порциями: каждая порция читается под блокировкой чтения,
+     * а действие выполняется уже без неё.
+     */
+    @Override
+    public void forEach(Consumer<ShortLink> action) {
+        List<ShortLink> batch = new ArrayList<>(FOR_EACH_BATCH);
+        for (long position = 0; ; ) {
+            long stamp = lock.readLock();
+            try {
+                long end = Math.min(slotCount, position + FOR_EACH_BATCH);
+                for (; position < end; position++) {
+                    if (slots.getLong(position * SLOT_BYTES + KEY) != FREE) {
+                        batch.add(materialize(position));
+                    }
+                }
+                if (position >= slotCount && batch.isEmpty()) {
+                    return;
+                }
+            } finally {
+                lock.unlockRead(stamp);
+            }
+            batch.forEach(action);
+            batch.clear();
+        }
+    }
+
+    /**
+     * Обходит ключи прямо по ячейкам, не создавая представлений ссылок и строк.
+     */
+    @Override
+    public void forEachKey(LongConsumer action) {
+        long[] batch = new long[FOR_EACH_BATCH];
+        for (long position = 0; ; ) {
+            int count = 0;
+            long stamp = lock.readLock();
+            try {
+                long end = Math.min(slotCount, position + FOR_EACH_BATCH);
+                for (; position < end; position++) {
+                    long key = slots.getLong(position * SLOT_BYTES + KEY);
+                    if (key != FREE) {
+                        batch[count++] = key;
+                    }
+                }
+                if (position >= slotCount && count == 0) {
+                    return;
+                }
+            } finally {
+                lock.unlockRead(stamp);
+            }
+            for (int i = 0; i < count; i++) {
+                action.accept(batch[i]);
+            }
+        }
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Закрывает файлы хранилища. Отображения освобождает сборщик мусора.
+     */
+    @Override
+    public void close() {
+        long stamp = lock.writeLock();
+        try {
+            slots.close();
+            urls.close();
+            index.file.close();
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Читает ссылку. При оптимистичном чтении (stamp не 0) проверяет, что за время
+     * чтения ничего не менялось, и иначе возвращает {@link #RETRY}.
+     */
+    private ShortLink read(long key, long stamp) {
+        long slot = findSlot(index, key);
+        if (slot == NO_SLOT) {
+            return stamp == 0 || lock.validate(stamp) ? null : RETRY;
+        }
+        long offset = slot * SLOT_BYTES;
+        int urlLength = slots.getInt(offset + URL_LENGTH);
+        if (urlLength < 0 || urlLength > MAX_URL_BYTES) {
+            return RETRY; // Возможно только при оптимистичном чтении посреди записи
+        }
+        long generationCount = slots.getLongVolatile(offset + GENERATION_COUNT);
+        long createdAt = slots.getLong(offset + CREATED_AT);
+        long expiryTime = slots.getLong(offset + EXPIRY_TIME);
+        UUID owner = users.uuidOf(slots.getInt(offset + OWNER));
+        int limit = slots.getInt(offset + LIMIT);
+        byte[] url = new byte[urlLength];
+        urls.get(slots.getLong(offset + URL_OFFSET), url);
+        if (stamp != 0 && !lock.validate(stamp)) {
+            return RETRY;
+        }
+        return new MappedShortLink(this, slot, (int) (generationCount >>> 32), Base62.encode(key),
+                url, createdAt, expiryTime, limit, (int) generationCount, owner);
+    }
+
+    /**
+     * Читает ссылку из ячейки. Вызывается под блокировкой.
+     */
+    private ShortLink materialize(long slot) {
+        return read(slots.getLong(slot * SLOT_BYTES + KEY), 0);
+    }
+
+    /**
+     * Записывает поля ссылки в ячейку. Вызывается под блокировкой записи.
+     *
+     * @param writeCount записывать ли счётчик переходов
+     */
+    private void write(long slot, long key, ShortLink link, byte[] url, boolean writeCount) {
+        long offset = slot * SLOT_BYTES;
+        if (!sameUrl(offset, url)) {
+            slots.putLong(offset + URL_OFFSET, appendUrl(url));
+            slots.putInt(offset + URL_LENGTH, url.length);
+        }
+        slots.putLong(offset + KEY, key);
+        slots.putLong(offset + CREATED_AT, link.getCreatedAt());
+        slots.putLong(offset + EXPIRY_TIME, link.getExpiryTime());
+        slots.putInt(offset + OWNER, users.idOf(link.getUserUuid()));
+        slots.putInt(offset + LIMIT, link.getLimit());
+        if (writeCount) {
+            setCount(slot, link.getCurrentCount());
+        }
+    }
+
+    /**
+     * Проверяет, что в ячейке уже записан тот же URL (например, при изменении лимита).
+     */
+    private boolean sameUrl(long offset, byte[] url) {
+        if (slots.getLong(offset + KEY) == FREE || offset >= slotCount * SLOT_BYTES
+                || slots.getInt(offset + URL_LENGTH) != url.length) {
+            return false;
+        }
+        byte[] stored = new byte[url.length];
+        urls.get(slots.getLong(offset + URL_OFFSET), stored);
+        return Arrays.equals(stored, url);
+    }
+
+    /**
+     * Дописывает URL в конец файла URL так, чтобы он не пересекал границу окна.
+     *
+     * @return смещение URL
+     */
+    private long appendUrl(byte[] url) {
+        long offset = urlEnd;
+        if ((offset & (WINDOW_BYTES - 1)) + url.length > WINDOW_BYTES) {
+            offset = (offset | (WINDOW_BYTES - 1)) + 1;
+        }
+        urls.ensureCapacity(offset + url.length);
+        urls.put(offset, url);
+        urlEnd = offset + url.length;
+        return offset;
+    }
+
+    /**
+     * Занимает свободную ячейку или новую в конце файла. Вызывается под блокировкой записи.
+     */
+    private long allocateSlot() {
+        if (freeHead != NO_SLOT) {
+            long slot = freeHead;
+            freeHead = slots.getLong(slot * SLOT_BYTES + URL_OFFSET);
+            return slot;
+        }
+        long slot = slotCount;
+        slots.ensureCapacity((slot + 1) * SLOT_BYTES);
+        slotCount = slot + 1;
+        return slot;
+    }
+
+    /**
+     * Устанавливает счётчик переходов ячейки, сохраняя её поколение.
+     */
+    private void setCount(long slot, int count) {
+        long offset = slot * SLOT_BYTES + GENERATION_COUNT;
+        long value;
+        do {
+            value = slots.getLongVolatile(offset);
+        } while (!slots.compareAndSet(offset, value, (value & 0xFFFFFFFF00000000L) | (count & 0xFFFFFFFFL)));
+    }
+
+    /**
+     * Возвращает поколение и счётчик ячейки одним значением.
+     */
+    private long generationCount(long slot) {
+        return slots.getLongVolatile(slot * SLOT_BYTES + GENERATION_COUNT);
+    }
+
+    /**
+     * Ищет ячейку ключа в индексе.
+     */
+    private static long findSlot(Index table, long key) {
+        long mask = table.capacity - 1;
+        for (long i = LongObjectMap.hash(key) & mask; ; i = (i + 1) & mask) {
+            long stored = table.file.getLong(i * INDEX_ENTRY_BYTES);
+            if (stored == 0) {
+                return NO_SLOT;
+            }
+            if (stored == key + 1) {
+                return table.file.getLong(i * INDEX_ENTRY_BYTES + 8);
+            }
+        }
+    }
+
+    /**
+     * Добавляет ключ в индекс, при заполнении наполовину сначала увеличивая его вдвое.
+     */
+    private void indexInsert(long key, long slot) {
+        if ((size + 1L) * 2 > index.capacity) {
+            Index grown = newIndex(index.capacity * 2);
+            Index old = index;
+            for (long i = 0; i < old.capacity; i++) {
+                long stored = old.file.getLong(i * INDEX_ENTRY_BYTES);
+                if (stored != 0) {
+                    insertEntry(grown, stored, old.file.getLong(i * INDEX_ENTRY_BYTES + 8));
+                }
+            }
+            index = grown;
+            old.file.close();
+            try {
+                Files.delete(old.path);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Не удалось удалить прежний индекс хранилища", e);
+            }
+        }
+        insertEntry(index, key + 1, slot);
+    }
+
+    private static void insertEntry(Index table, long storedKey, long slot) {
+        long mask = table.capacity - 1;
+        long i = LongObjectMap.hash(storedKey - 1) & mask;
+        while (table.file.getLong(i * INDEX_ENTRY_BYTES) != 0) {
+            i = (i + 1) & mask;
+        }
+        table.file.putLong(i * INDEX_ENTRY_BYTES + 8, slot);
+        table.file.putLong(i * INDEX_ENTRY_BYTES, storedKey);
+    }
+
+    /**
+     * Удаляет ключ из индекса сдвигом следующих записей назад, без надгробий.
+     */
+    private void indexRemove(long key) {
+        Index table = index;
+        long mask = table.capacity - 1;
+        long hole = LongObjectMap.hash(key) & mask;
+        while (table.file.getLong(hole * INDEX_ENTRY_BYTES) != key + 1) {
+            hole = (hole + 1) & mask;
+        }
+        for (long i = (hole + 1) & mask; ; i = (i + 1) & mask) {
+            long stored = table.file.getLong(i * INDEX_ENTRY_BYTES);
+            if (stored == 0) {
+                break;
+            }
+            long home = LongObjectMap.hash(stored - 1) & mask;
+            // Запись остаётся на месте, если её исходная позиция циклически лежит в (hole, i]
+            boolean reachable = hole <= i ? (hole < home && home <= i) : (hole < home || home <= i);
+            if (!reachable) {
+                table.file.putLong(hole * INDEX_ENTRY_BYTES + 8, table.file.getLong(i * INDEX_ENTRY_BYTES + 8));
+                table.file.putLong(hole * INDEX_ENTRY_BYTES, stored);
+                hole = i;
+            }
+        }
+        table.file.putLong(hole * INDEX_ENTRY_BYTES, 0);
+    }
+
+    private Index newIndex(long capacity) {
+        Path path = directory.resolve("index-" + indexGeneration++ + ".dat");
+        try {
+            MappedFile file = new MappedFile(path);
+            file.ensureCapacity(capacity * INDEX_ENTRY_BYTES);
+            return new Index(path, file, capacity);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось создать индекс хранилища", e);
+        }
+    }
+
+    /**
+     * Таблица индекса: файл и число записей в нём.
+     */
+    private record Index(Path path, MappedFile file, long capacity) {
+    }
+
+    /**
+     * Файл, отображённый в память окнами; растёт добавлением окон.
+     * Значения не пересекают границ окон.
+     */
+    private static final class MappedFile {
+        private final FileChannel channel;
+        // Окна; массив заменяется целиком при росте, чтобы читатели видели целый
+        private volatile MappedByteBuffer[] windows = new MappedByteBuffer[0];
+
+        MappedFile(Path path) throws IOException {
+            this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        }
+
+        /**
+         * Отображает окна, пока их не хватит на {@code bytes} байт. Вызывается под блокировкой записи.
+         */
+        void ensureCapacity(long bytes) {
+            MappedByteBuffer[] current = windows;
+            if ((long) current.length << WINDOW_SHIFT >= bytes) {
+                return;
+            }
+            int count = (int) ((bytes + WINDOW_BYTES - 1) >>> WINDOW_SHIFT);
+            MappedByteBuffer[] grown = Arrays.copyOf(current, count);
+            try {
+                for (int i = current.length; i < count; i++) {
+                    grown[i] = channel.map(FileChannel.MapMode.READ_WRITE, (long) i << WINDOW_SHIFT, WINDOW_BYTES);
+                    grown[i].order(ByteOrder.nativeOrder());
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Не удалось расширить файл хранилища", e);
+            }
+            windows = grown;
+        }
+
+        long getLong(long offset) {
+            return window(offset).getLong(position(offset));
+        }
+
+        void putLong(long offset, long value) {
+            window(offset).putLong(position(offset), value);
+        }
+
+        int getInt(long offset) {
+            return window(offset).getInt(position(offset));
+        }
+
+        void putInt(long offset, int value) {
+            window(offset).putInt(position(offset), value);
+        }
+
+        long getLongVolatile(long offset) {
+            return (long) LONGS.getVolatile(window(offset), position(offset));
+        }
+
+        boolean compareAndSet(long offset, long expected, long value) {
+            return LONGS.compareAndSet(window(offset), position(offset), expected, value);
+        }
+
+        void get(long offset, byte[] bytes) {
+            window(offset).get(position(offset), bytes);
+        }
+
+        void put(long offset, byte[] bytes) {
+            window(offset).put(position(offset), bytes);
+        }
+
+        void close() {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Не удалось закрыть файл хранилища", e);
+            }
+        }
+
+        private MappedByteBuffer window(long offset) {
+            return windows[(int) (offset >>> WINDOW_SHIFT)];
+        }
+
+        private static int position(long offset) {
+            return (int) (offset & (WINDOW_BYTES - 1));
+        }
+    }
+
+    /**
+     * Ссылка-представление ячейки: счётчик переходов живёт в ячейке, пока она
+     * принадлежит этой ссылке (совпадает поколение), а после удаления ссылки —
+     * в самом объекте.
+     */
+    private static final class MappedShortLink extends ShortLink {
+        private final MappedLinkStore store;
+        private final long slot;
+        private final int generation;
+
+        MappedShortLink(MappedLinkStore store, long slot, int generation, String shortId, byte[] originalUrl,
+                        long createdAt, long expiryTime, int limit, int currentCount, UUID owner) {
+            super(shortId, createdAt, expiryTime, limit, currentCount, owner, originalUrl);
+            this.store = store;
+            this.slot = slot;
+            this.generation = generation;
+        }
+
+        boolean isViewOf(MappedLinkStore owner, long ownerSlot) {
+            return store == owner && slot == ownerSlot && (int) (store.generationCount(slot) >>> 32) == generation;
+        }
+
+        @Override
+        public int getCurrentCount() {
+            long value = store.generationCount(slot);
+            return (int) (value >>> 32) == generation ? (int) value : super.getCurrentCount();
+        }
+
+        @Override
+        public void setCurrentCount(int currentCount) {
+            super.setCurrentCount(currentCount);
+            long offset = slot * SLOT_BYTES + GENERATION_COUNT;
+            long value;
+            do {
+                value = store.slots.getLongVolatile(offset);
+                if ((int) (value >>> 32) != generation) {
+                    return;
+                }
+            } while (!store.slots.compareAndSet(offset, value, (value & 0xFFFFFFFF00000000L) | (currentCount & 0xFFFFFFFFL)));
+        }
+
+        @Override
+        public boolean tryReserveClick() {
+            long offset = slot * SLOT_BYTES + GENERATION_COUNT;
+            long value;
+            do {
+                value = store.slots.getLongVolatile(offset);
+                if ((int) (value >>> 32) != generation) {
+                    return super.tryReserveClick(); // Ссылку удалили — ячейка уже не её
+                }
+                if ((int) value >= getLimit()) {
+                    return false;
+                }
+            } while (!store.slots.compareAndSet(offset, value, value + 1));
+            return true;
+        }
+
+        @Override
+        public boolean isExhausted() {
+            return getCurrentCount() >= getLimit();
+        }
+    }
+}
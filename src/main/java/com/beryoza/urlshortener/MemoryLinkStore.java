@@ -0,0 +1,121 @@
+package com.beryoza.urlshortener;
+
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
+
+/**
+ * Хранилище ссылок в памяти.
+ * <p>
+ * Ссылки лежат в таблицах {@link LongObjectMap} с ключом-примитивом {@code long}: на ссылку
+ * не тратятся узел HashMap и ключ-строка, а поиск при переходе хеширует число, а не строку.
+ * Хранилище разбито на сегменты по хешу ключа, у каждого сегмента своя {@link StampedLock}.
+ * Чтения выполняются оптимистично и не блокируют друг друга, запись блокирует только свой сегмент.
+ */
+public class MemoryLinkStore implements LinkStore {
+
+    /** Количество сегментов хранилища (степень двойки). */
+    private static final int SHARD_COUNT = 64;
+
+    // Сегменты хранилища
+    private final Shard[] shards = new Shard[SHARD_COUNT];
+
+    /**
+     * Создаёт пустое хранилище.
+     */
+    public MemoryLinkStore() {
+        for (int i = 0; i < SHARD_COUNT; i++) {
+            shards[i] = new Shard();
+        }
+    }
+
+    @Override
+    public ShortLink get(long key) {
+        return shardFor(key).get(key);
+    }
+
+    @Override
+    public ShortLink put(long key, ShortLink link) {
+        Shard shard = shardFor(key);
+        long stamp = shard.lock.writeLock();
+        try {
+            return shard.links.put(key, link);
+        } finally {
+            shard.lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public ShortLink remove(long key) {
+        Shard shard = shardFor(key);
+        long stamp = shard.lock.writeLock();
+        try {
+            return shard.links.remove(key);
+        } finally {
+            shard.lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Обходит ссылки; каждый сегмент обходится под своей блокировкой чтения.
+     */
+    @Override
+    public void forEach(Consumer<ShortLink> action) {
+        for (Shard shard : shards) {
+            long stamp = shard.lock.readLock();
+            try {
+                shard.links.forEachValue(action);
+            } finally {
+                shard.lock.unlockRead(stamp);
+            }
+        }
+    }
+
+    @Override
+    public int size() {
+        int size = 0;
+        for (Shard shard : shards) {
+            long stamp = shard.lock.readLock();
+            try {
+                size += shard.links.size();
+            } finally {
+                shard.lock.unlockRead(stamp);
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Выбирает сегмент по хешу ключа.
+     */
+    private Shard shardFor(long key) {
+        return shards[(int) LongObjectMap.hash(key) & (SHARD_COUNT - 1)];
+    }
+
+    /**
+     * Сегмент хранилища: таблица ссылок и её блокировка.
+     */
+    private static final class Shard {
+        final StampedLock lock = new StampedLock();
+        final LongObjectMap<ShortLink> links = new LongObjectMap<>();
+
+        /**
+         * Оптимистичное чтение: если во время поиска в сегмент никто не писал,
+         * блокировка не берётся вовсе. Иначе поиск повторяется под блокировкой чтения.
+         */
+        ShortLink get(long key) {
+            long stamp = lock.tryOptimisticRead();
+            if (stamp != 0) {
+                ShortLink link = links.get(key);
+                if (lock.validate(stamp)) {
+                    return link;
+                }
+            }
+            stamp = lock.readLock();
+            try {
+                return links.get(key);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+    }
+}
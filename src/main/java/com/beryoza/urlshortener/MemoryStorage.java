@@ -0,0 +1,42 @@
+package com.beryoza.urlshortener;
+
+/**
+ * Хранилище в памяти процесса: ссылки и пользователи живут, пока работает приложение.
+ * <p>
+ * Ссылки лежат в куче ({@link MemoryLinkStore}); дисковым хранилищам ссылок из
+ * <code>config.link.store</code> нужен журнал, поэтому они доступны только через
+ * {@link DurableStorage}. Подходит для тестов и демонстрации.
+ */
+public class MemoryStorage implements Storage {
+
+    // Словарь номеров пользователей, общий для обоих репозиториев
+    private final UserIds userIds = new UserIds();
+    // Репозитории в памяти
+    private final InMemoryShortLinkRepository shortLinkRepository =
+            new InMemoryShortLinkRepository(new MemoryLinkStore(), null, userIds);
+    private final InMemoryUserRepository userRepository = new InMemoryUserRepository(userIds);
+    // Генератор идентификаторов со счётчиком с нуля
+    private final FeistelShortIdGenerator shortIdGenerator = new FeistelShortIdGenerator();
+
+    @Override
+    public ShortLinkRepository getShortLinkRepository() {
+        return shortLinkRepository;
+    }
+
+    @Override
+    public UserRepository getUserRepository() {
+        return userRepository;
+    }
+
+    @Override
+    public ShortIdGenerator getShortIdGenerator() {
+        return shortIdGenerator;
+    }
+
+    /**
+     * Закрывать нечего: данные пропадают вместе с объектом.
+     */
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,88 @@
+package com.beryoza.urlshortener;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Небольшой кэш недавних промахов: ключи, которых не оказалось в хранилище.
+ * <p>
+ * Фильтр {@link CuckooFilter} иногда пропускает отсутствующий ключ, и тогда поиск доходит
+ * до хранилища. Повторные запросы того же ключа (сканеры, опечатки в популярной ссылке)
+ * в течение времени жизни записи отсекаются здесь.
+ * <p>
+ * Кэш — таблица прямого отображения без блокировок: ключ занимает ячейку по своему хешу
+ * и вытесняет прежний. Время жизни ограничивает устаревание, а согласованность с записью
+ * обеспечивает вызывающий: после {@link #add} он перепроверяет хранилище, а запись после
+ * изменения хранилища вызывает {@link #invalidate}.
+ */
+public class NegativeLookupCache {
+
+    /** Пустая ячейка (ключи неотрицательны). */
+    private static final long EMPTY = -1;
+
+    // Ключи в ячейках
+    private final AtomicLongArray keys;
+    // Моменты истечения записей (в мс)
+    private final AtomicLongArray deadlines;
+    // Маска номера ячейки
+    private final int mask;
+    // Время жизни записи (в мс)
+    private final long ttlMillis;
+
+    /**
+     * Создаёт кэш.
+     *
+     * @param size      число ячеек (округляется вверх до степени двойки)
+     * @param ttlMillis время жизни записи в мс
+     */
+    public NegativeLookupCache(int size, long ttlMillis) {
+        if (size <= 0 || ttlMillis <= 0) {
+            throw new IllegalArgumentException("Размер и время жизни кэша промахов должны быть положительными");
+        }
+        int capacity = Integer.highestOneBit(Math.max(1, size - 1) << 1);
+        this.keys = new AtomicLongArray(capacity);
+        this.deadlines = new AtomicLongArray(capacity);
+        this.mask = capacity - 1;
+        this.ttlMillis = ttlMillis;
+        for (int i = 0; i < capacity; i++) {
+            keys.set(i, EMPTY);
+        }
+    }
+
+    /**
+     * Проверяет, был ли ключ недавно не найден.
+     * <p>
+     * Время запрашивается, только если ключ в ячейке совпал, поэтому для
+     * большинства запросов проверка стоит одного чтения из массива.
+     *
+     * @param key ключ
+     * @return true, если запись о промахе есть и ещё не истекла
+     */
+    public boolean contains(long key) {
+        int slot = slotFor(key);
+        return keys.get(slot) == key && System.currentTimeMillis() < deadlines.get(slot);
+    }
+
+    /**
+     * Запоминает промах.
+     *
+     * @param key ключ
+     */
+    public void add(long key) {
+        int slot = slotFor(key);
+        deadlines.set(slot, System.currentTimeMillis() + ttlMillis);
+        keys.set(slot, key);
+    }
+
+    /**
+     * Удаляет запись о промахе (ключ появился в хранилище).
+     *
+     * @param key ключ
+     */
+    public void invalidate(long key) {
+        keys.compareAndSet(slotFor(key), key, EMPTY);
+    }
+
+    private int slotFor(long key) {
+        return (int) LongObjectMap.hash(key) & mask;
+    }
+}
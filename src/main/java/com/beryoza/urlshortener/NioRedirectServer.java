@@ -0,0 +1,554 @@
+package com.beryoza.urlshortener;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
+
+/**
+ * Неблокирующий сервер перенаправлений на {@code java.nio}.
+ * <p>
+ * Отвечает только на {@code GET /{shortId}} и разбирает из HTTP ровно столько, сколько нужно:
+ * строку запроса и заголовок Connection. Идентификатор ищется прямо по байтам запроса,
+ * без создания строки, а ответ 302 для каждой ссылки кодируется один раз, хранится
+ * в {@link RedirectResponseCache} и дальше только копируется в буфер соединения.
+ * Ответы 404 и 410 общие для всех ссылок и тоже подготовлены заранее. Поэтому на "горячем"
+ * пути нет ни форматирования строк, ни карт заголовков, ни объектов запроса.
+ * <p>
+ * Поддерживаются keep-alive и конвейерные (pipelined) запросы: все запросы, пришедшие одним
+ * пакетом, обрабатываются подряд, а ответы уходят одной записью в сокет. Если клиент не успевает
+ * читать ответы, сервер перестаёт читать его запросы до освобождения буфера.
+ * <p>
+ * Работает несколько циклов событий (по умолчанию по числу ядер), каждый в своём потоке
+ * со своим {@link Selector}; первый цикл также принимает соединения и раздаёт их по кругу.
+ * Создание, изменение и удаление ссылок остаются в {@link ShortLinkHttpServer}.
+ * <p>
+ * Цикл событий не должен ждать диска, поэтому переходы разрешаются через
+ * {@link ShortLinkService#resolveNonBlocking(CharSequence)}: переход попадает в журнал сразу,
+ * но на диск — с задержкой одной группы фиксации, даже при политике сброса ALWAYS.
+ */
+public class NioRedirectServer implements AutoCloseable {
+
+    /** Максимальный размер строки запроса и заголовков (в байтах). */
+    private static final int READ_BUFFER_SIZE = 4096;
+
+    /** Начальный размер буфера ответов соединения; при его заполнении чтение запросов приостанавливается. */
+    private static final int WRITE_BUFFER_SIZE = 4096;
+
+    /** Начало единственного поддерживаемого запроса. */
+    private static final byte[] GET_PREFIX = "GET /".getBytes(StandardCharsets.US_ASCII);
+
+    private static final ByteBuffer NOT_FOUND = staticResponse("404 Not Found", "");
+    private static final ByteBuffer GONE = staticResponse("410 Gone", "");
+    private static final ByteBuffer BAD_REQUEST = staticResponse("400 Bad Request", "Connection: close\r\n");
+    private static final ByteBuffer METHOD_NOT_ALLOWED =
+            staticResponse("405 Method Not Allowed", "Allow: GET\r\nConnection: close\r\n");
+    private static final ByteBuffer HEADERS_TOO_LARGE =
+            staticResponse("431 Request Header Fields Too Large", "Connection: close\r\n");
+
+    // Сервис, по которому разрешаются переходы
+    private final ShortLinkService shortLinkService;
+    // Готовые ответы 302 по shortId
+    private final RedirectResponseCache responseCache;
+    // Слушающий сокет
+    private final ServerSocketChannel serverChannel;
+    // Циклы событий
+    private final EventLoop[] loops;
+    // Признак работы сервера
+    private volatile boolean running = true;
+
+    /**
+     * Создаёт сервер на порту и с числом циклов событий из {@link Config}.
+     *
+     * @param shortLinkService сервис коротких ссылок
+     * @throws IOException если порт не удалось занять
+     */
+    public NioRedirectServer(ShortLinkService shortLinkService) throws IOException {
+        this(shortLinkService, new InetSocketAddress(Config.getNioPort()), Config.getNioThreads(),
+                new RedirectResponseCache());
+    }
+
+    /**
+     * Создаёт сервер на заданном адресе.
+     *
+     * @param shortLinkService сервис коротких ссылок
+     * @param address          адрес и порт (порт 0 — выбрать свободный)
+     * @param threads          число циклов событий (0 — по числу ядер)
+     * @param responseCache    кэш готовых ответов 302; очищается при удалении ссылок через сервис
+     * @throws IOException если порт не удалось занять
+     */
+    public NioRedirectServer(ShortLinkService shortLinkService, InetSocketAddress address, int threads,
+                             RedirectResponseCache responseCache) throws IOException {
+        this.shortLinkService = shortLinkService;
+        this.responseCache = responseCache;
+        shortLinkService.addRemovalListener(responseCache::invalidate);
+        this.serverChannel = ServerSocketChannel.open();
+        serverChannel.configureBlocking(false);
+        serverChannel.bind(address, Config.getHttpBacklog());
+
+        int count = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        this.loops = new EventLoop[count];
+        for (int i = 0; i < count; i++) {
+            loops[i] = new EventLoop(i);
+        }
+        serverChannel.register(loops[0].selector, SelectionKey.OP_ACCEPT);
+    }
+
+    /**
+     * Запускает циклы событий.
+     */
+    public void start() {
+        for (EventLoop loop : loops) {
+            loop.thread.start();
+        }
+        Log.info("NIO-сервер перенаправлений запущен на порту {} ({} циклов событий)", getPort(), loops.length);
+    }
+
+    /**
+     * Возвращает фактический порт сервера (полезно, если был запрошен порт 0).
+     */
+    public int getPort() {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    /**
+     * Останавливает сервер и закрывает все соединения.
+     */
+    @Override
+    public void close() {
+        running = false;
+        for (EventLoop loop : loops) {
+            loop.selector.wakeup();
+        }
+        for (EventLoop loop : loops) {
+            try {
+                loop.thread.join(1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        try {
+            serverChannel.close();
+        } catch (IOException e) {
+            Log.warn("Не удалось закрыть слушающий сокет: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Кодирует ответ без тела, общий для всех запросов.
+     */
+    private static ByteBuffer staticResponse(String status, String extraHeaders) {
+        return toDirectBuffer("HTTP/1.1 " + status + "\r\n" + extraHeaders + "Content-Length: 0\r\n\r\n");
+    }
+
+    private static ByteBuffer toDirectBuffer(String text) {
+        byte[] bytes = text.getBytes(StandardCharsets.US_ASCII);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length);
+        buffer.put(bytes).flip();
+        return buffer.asReadOnlyBuffer();
+    }
+
+    /**
+     * Цикл событий: свой селектор и свой поток.
+     */
+    private final class EventLoop implements Runnable {
+        final Selector selector;
+        final Thread thread;
+        // Соединения, переданные из принимающего цикла
+        final Queue<SocketChannel> pending = new ConcurrentLinkedQueue<>();
+        // Представление идентификатора из байтов запроса (используется только потоком цикла)
+        final AsciiView shortId = new AsciiView();
+        // Обработчик готовых ключей, созданный один раз
+        final Consumer<SelectionKey> handler = this::handle;
+        // Следующий цикл, получающий новое соединение (только для принимающего цикла)
+        int nextLoop;
+
+        EventLoop(int index) throws IOException {
+            this.selector = Selector.open();
+            this.thread = new Thread(this, "nio-redirect-" + (index + 1));
+            thread.setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            while (running) {
+                try {
+                    selector.select(handler);
+                    SocketChannel channel;
+                    while ((channel = pending.poll()) != null) {
+                        register(channel);
+                    }
+                } catch (IOException | RuntimeException e) {
+                    Log.error("Ошибка цикла событий {}: {}", thread.getName(), e);
+                }
+            }
+            for (SelectionKey key : selector.keys()) {
+                closeQuietly(key);
+            }
+            try {
+                selector.close();
+            } catch (IOException e) {
+                Log.warn("Не удалось закрыть селектор: {}", e.getMessage());
+            }
+        }
+
+        /**
+         * Обрабатывает один готовый ключ; ошибка закрывает только это соединение.
+         */
+        private void handle(SelectionKey key) {
+            if (key.isAcceptable()) {
+                try {
+                    accept();
+                } catch (IOException e) {
+                    // Слушающий сокет не закрываем: например, при нехватке дескрипторов примем соединение позже
+                    Log.warn("Не удалось принять соединение: {}", e.getMessage());
+                }
+                return;
+            }
+            try {
+                Connection connection = (Connection) key.attachment();
+                if (key.isReadable()) {
+                    connection.onReadable();
+                }
+                if (key.isValid() && key.isWritable()) {
+                    connection.onWritable();
+                }
+            } catch (IOException | RuntimeException e) {
+                closeQuietly(key);
+            }
+        }
+
+        /**
+         * Принимает все ожидающие соединения и раздаёт их циклам по кругу.
+         */
+        private void accept() throws IOException {
+            SocketChannel channel;
+            while ((channel = serverChannel.accept()) != null) {
+                channel.configureBlocking(false);
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                EventLoop target = loops[nextLoop];
+                nextLoop = (nextLoop + 1) % loops.length;
+                if (target == this) {
+                    register(channel);
+                } else {
+                    target.pending.add(channel);
+                    target.selector.wakeup();
+                }
+            }
+        }
+
+        private void register(SocketChannel channel) throws IOException {
+            SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+            key.attach(new Connection(this, channel, key));
+        }
+
+        private void closeQuietly(SelectionKey key) {
+            key.cancel();
+            try {
+                key.channel().close();
+            } catch (IOException ignored) {
+                // Соединение уже закрыто
+            }
+        }
+    }
+
+    /**
+     * Состояние одного соединения. Используется только потоком своего цикла событий.
+     */
+    private final class Connection {
+        final EventLoop loop;
+        final SocketChannel channel;
+        final SelectionKey key;
+        // Принятые, но ещё не обработанные байты запросов
+        final ByteBuffer in = ByteBuffer.allocate(READ_BUFFER_SIZE);
+        // Ответы, ещё не отправленные клиенту (в режиме записи в буфер)
+        ByteBuffer out = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE);
+        // С какой позиции искать конец заголовков, чтобы не просматривать байты повторно
+        int scanFrom;
+        // Закрыть соединение после отправки ответов
+        boolean closeAfterWrite;
+
+        Connection(EventLoop loop, SocketChannel channel, SelectionKey key) {
+            this.loop = loop;
+            this.channel = channel;
+            this.key = key;
+        }
+
+        void onReadable() throws IOException {
+            if (channel.read(in) < 0) {
+                loop.closeQuietly(key);
+                return;
+            }
+            processAndFlush();
+        }
+
+        void onWritable() throws IOException {
+            if (flush()) {
+                processAndFlush();
+            } else {
+                flushAndUpdateInterest();
+            }
+        }
+
+        /**
+         * Обрабатывает полученные запросы и отправляет ответы. Если обработку пришлось
+         * отложить из-за полного буфера ответов, а он успел освободиться, продолжает её.
+         */
+        private void processAndFlush() throws IOException {
+            while (processRequests() && flush()) {
+                // Буфер ответов освободился — продолжаем отложенные запросы
+            }
+            flushAndUpdateInterest();
+        }
+
+        /**
+         * Отправляет ответы и решает, ждать ли дальше чтения или возможности записи.
+         */
+        private void flushAndUpdateInterest() throws IOException {
+            if (flush()) {
+                if (closeAfterWrite) {
+                    loop.closeQuietly(key);
+                } else if (key.interestOps() != SelectionKey.OP_READ) {
+                    key.interestOps(SelectionKey.OP_READ);
+                }
+            } else if (key.interestOps() != SelectionKey.OP_WRITE) {
+                key.interestOps(SelectionKey.OP_WRITE); // Не читаем новые запросы, пока клиент не заберёт ответы
+            }
+        }
+
+        /**
+         * Пишет накопленные ответы в сокет.
+         *
+         * @return true, если всё отправлено
+         */
+        private boolean flush() throws IOException {
+            if (out.position() == 0) {
+                return true;
+            }
+            out.flip();
+            channel.write(out);
+            out.compact();
+            return out.position() == 0;
+        }
+
+        /**
+         * Обрабатывает все полностью полученные запросы из входного буфера.
+         *
+         * @return true, если обработка отложена, потому что клиент не забирает ответы
+         */
+        private boolean processRequests() throws IOException {
+            byte[] bytes = in.array();
+            int limit = in.position();
+            int start = 0;
+            boolean paused = false;
+            while (!closeAfterWrite) {
+                if (out.position() >= WRITE_BUFFER_SIZE && !flush()) {
+                    paused = true; // Клиент не читает ответы — откладываем остальные запросы
+                    break;
+                }
+                int end = indexOfHeadEnd(bytes, Math.max(start, scanFrom), limit);
+                if (end < 0) {
+                    if (start == 0 && limit == bytes.length) {
+                        append(HEADERS_TOO_LARGE);
+                        closeAfterWrite = true;
+                    }
+                    break;
+                }
+                append(respond(bytes, start, end));
+                start = end + 4;
+                scanFrom = 0;
+            }
+            // Сдвигаем необработанный остаток в начало буфера
+            if (start > 0) {
+                System.arraycopy(bytes, start, bytes, 0, limit - start);
+                in.position(limit - start);
+            }
+            // После паузы в буфере могут остаться целые запросы — тогда ищем с начала
+            scanFrom = paused ? 0 : Math.max(0, in.position() - 3);
+            return paused;
+        }
+
+        /**
+         * Формирует ответ на один запрос, заголовки которого занимают {@code [start, end)}.
+         */
+        private ByteBuffer respond(byte[] bytes, int start, int end) {
+            if (!startsWith(bytes, start, end, GET_PREFIX)) {
+                closeAfterWrite = true;
+                return METHOD_NOT_ALLOWED;
+            }
+            // Идентификатор — от "/" до пробела или "?"
+            int idStart = start + GET_PREFIX.length;
+            int idEnd = idStart;
+            while (idEnd < end && bytes[idEnd] != ' ' && bytes[idEnd] != '?' && bytes[idEnd] != '\r') {
+                idEnd++;
+            }
+            int lineEnd = indexOf(bytes, idEnd, end, (byte) '\r');
+            if (lineEnd < 0) {
+                lineEnd = end;
+            }
+            if (idEnd >= lineEnd) {
+                closeAfterWrite = true;
+                return BAD_REQUEST;
+            }
+
+            // HTTP/1.0 по умолчанию закрывает соединение, HTTP/1.1 — держит
+            boolean http10 = lineEnd - 3 > idEnd && bytes[lineEnd - 1] == '0' && bytes[lineEnd - 3] == '1';
+            int connection = findHeader(bytes, lineEnd, end, "connection:");
+            if (connection >= 0) {
+                int valueEnd = indexOf(bytes, connection, end, (byte) '\r');
+                valueEnd = valueEnd < 0 ? end : valueEnd;
+                if (containsIgnoreCase(bytes, connection, valueEnd, "close")) {
+                    closeAfterWrite = true;
+                } else if (containsIgnoreCase(bytes, connection, valueEnd, "keep-alive")) {
+                    http10 = false;
+                }
+            }
+            if (http10) {
+                closeAfterWrite = true;
+            }
+
+            loop.shortId.set(bytes, idStart, idEnd - idStart);
+            ResolveResult result = shortLinkService.resolveNonBlocking(loop.shortId);
+            return switch (result.getStatus()) {
+                case FOUND -> responseCache.get(result.getLink());
+                case NOT_FOUND -> NOT_FOUND;
+                default -> GONE;
+            };
+        }
+
+        /**
+         * Копирует готовый ответ в буфер соединения без создания объектов.
+         */
+        private void append(ByteBuffer response) {
+            int length = response.remaining();
+            if (out.remaining() < length) {
+                // Ответ не помещается (длинный URL или отложенная запись) — увеличиваем буфер
+                ByteBuffer larger = ByteBuffer.allocateDirect(Math.max(out.capacity() * 2, out.position() + length));
+                out.flip();
+                larger.put(out);
+                out = larger;
+            }
+            out.put(out.position(), response, response.position(), length);
+            out.position(out.position() + length);
+        }
+    }
+
+    /**
+     * Ищет конец заголовков ({@code \r\n\r\n}) и возвращает индекс его начала или -1.
+     */
+    private static int indexOfHeadEnd(byte[] bytes, int from, int limit) {
+        for (int i = from; i + 3 < limit; i++) {
+            if (bytes[i] == '\r' && bytes[i + 1] == '\n' && bytes[i + 2] == '\r' && bytes[i + 3] == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int indexOf(byte[] bytes, int from, int to, byte value) {
+        for (int i = from; i < to; i++) {
+            if (bytes[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean startsWith(byte[] bytes, int from, int to, byte[] prefix) {
+        if (to - from < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (bytes[from + i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Ищет заголовок (имя в нижнем регистре вместе с двоеточием) среди строк {@code [from, to)}.
+     *
+     * @return индекс начала значения или -1, если заголовка нет
+     */
+    private static int findHeader(byte[] bytes, int from, int to, String name) {
+        int line = from;
+        while (line >= 0 && line < to) {
+            line += 2; // Пропускаем \r\n предыдущей строки
+            if (line + name.length() <= to && regionMatchesIgnoreCase(bytes, line, name)) {
+                return line + name.length();
+            }
+            line = indexOf(bytes, line, to, (byte) '\r');
+        }
+        return -1;
+    }
+
+    private static boolean containsIgnoreCase(byte[] bytes, int from, int to, String token) {
+        for (int i = from; i + token.length() <= to; i++) {
+            if (regionMatchesIgnoreCase(bytes, i, token)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Сравнивает байты с образцом в нижнем регистре (только ASCII).
+     */
+    private static boolean regionMatchesIgnoreCase(byte[] bytes, int from, String lowerCase) {
+        for (int i = 0; i < lowerCase.length(); i++) {
+            int c = bytes[from + i];
+            if (c >= 'A' && c <= 'Z') {
+                c += 'a' - 'A';
+            }
+            if (c != lowerCase.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Представление участка байтов ASCII как {@link CharSequence}, переиспользуемое между запросами.
+     * Позволяет искать ссылку по идентификатору из запроса, не создавая строку.
+     */
+    private static final class AsciiView implements CharSequence {
+        private byte[] bytes;
+        private int offset;
+        private int length;
+
+        void set(byte[] bytes, int offset, int length) {
+            this.bytes = bytes;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return (char) (bytes[offset + index] & 0xff);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return toString().substring(start, end);
+        }
+
+        @Override
+        public String toString() {
+            return new String(bytes, offset, length, StandardCharsets.ISO_8859_1);
+        }
+    }
+}
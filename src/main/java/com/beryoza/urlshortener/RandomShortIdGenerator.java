@@ -0,0 +1,32 @@
+package com.beryoza.urlshortener;
+
+import java.util.Random;
+
+/**
+ * Исходный генератор: шесть случайных символов base62.
+ * <p>
+ * Не проверяет коллизии и создаёт новый {@link Random} на каждый вызов.
+ * Оставлен для сравнения в бенчмарках; в сервисе по умолчанию используется
+ * {@link FeistelShortIdGenerator}.
+ */
+public class RandomShortIdGenerator implements ShortIdGenerator {
+
+    /**
+     * Генерирует случайный короткий идентификатор ссылки.
+     *
+     * @return строка длиной 6 символов
+     */
+    @Override
+    public String nextId() {
+        String chars = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789";
+        StringBuilder shortId = new StringBuilder();
+        Random random = new Random();
+
+        // Генерируем строку длиной 6 символов
+        for (int i = 0; i < 6; i++) {
+            shortId.append(chars.charAt(random.nextInt(chars.length())));
+        }
+
+        return shortId.toString();
+    }
+}
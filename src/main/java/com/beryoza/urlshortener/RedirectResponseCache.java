@@ -0,0 +1,278 @@
+package com.beryoza.urlshortener;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Кэш готовых ответов 302 по shortId, ограниченный суммарным размером в байтах.
+ * <p>
+ * Оригинальный URL ссылки не меняется, поэтому ответ с заголовком Location для неё
+ * достаточно закодировать один раз: частые переходы по популярным ссылкам не тратят время
+ * ни на кодирование UTF-8, ни на склейку заголовков, а только копируют готовые байты.
+ * Ответы лежат в direct-буферах, которые сокет пишет без промежуточного копирования.
+ * <p>
+ * Кэш разбит на сегменты со своей {@link StampedLock}; чтение оптимистичное, как в
+ * {@link MemoryLinkStore}. Когда сегмент превышает свою долю бюджета, вытесняются
+ * записи по алгоритму "второго шанса": запись, к которой обращались после прошлой проверки,
+ * остаётся, остальные удаляются в порядке добавления.
+ * <p>
+ * Удалённые и просроченные ссылки убираются через {@link #invalidate(String)}
+ * (см. {@link ShortLinkService#addRemovalListener}). Кроме того, запись хранит URL,
+ * из которого построена (общие с ссылкой начало и остаток, см. {@link UrlDictionary}),
+ * и при несовпадении с URL ссылки считается промахом — так устаревший ответ не выдаётся,
+ * даже если сообщение об удалении ещё не дошло. Строка URL при этом не собирается:
+ * сравниваются начало и байты остатка, сначала по ссылке, затем по содержимому
+ * (хранилища вне кучи при каждом чтении создают новые массивы).
+ */
+public class RedirectResponseCache {
+
+    /** Количество сегментов (степень двойки). */
+    private static final int SEGMENT_COUNT = 16;
+
+    /** Примерные накладные расходы на запись помимо самого ответа (в байтах). */
+    private static final int ENTRY_OVERHEAD = 96;
+
+    // Сегменты кэша
+    private final Segment[] segments = new Segment[SEGMENT_COUNT];
+    // Бюджет одного сегмента (в байтах)
+    private final long segmentBudget;
+
+    /**
+     * Создаёт кэш с бюджетом из {@link Config}.
+     */
+    public RedirectResponseCache() {
+        this(Config.getRedirectCacheMaxBytes());
+    }
+
+    /**
+     * Создаёт кэш с заданным бюджетом.
+     *
+     * @param maxBytes максимальный суммарный размер ответов (в байтах)
+     */
+    public RedirectResponseCache(long maxBytes) {
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("Размер кэша ответов должен быть положительным");
+        }
+        this.segmentBudget = Math.max(1, maxBytes / SEGMENT_COUNT);
+        for (int i = 0; i < SEGMENT_COUNT; i++) {
+            segments[i] = new Segment();
+        }
+    }
+
+    /**
+     * Возвращает готовый ответ 302 для ссылки, при промахе кодирует и запоминает его.
+     *
+     * @param link ссылка, по которой выполняется переход
+     * @return ответ только для чтения; вызывающий не должен менять его позицию
+     */
+    public ByteBuffer get(ShortLink link) {
+        long key = Base62.decode(link.getShortId());
+        String origin = link.getUrlOrigin();
+        byte[] path = link.getUrlPath();
+        Segment segment = segmentFor(key);
+        Entry entry = segment.get(key);
+        if (entry != null && (entry.origin == origin || entry.origin.equals(origin))
+                && (entry.path == path || Arrays.equals(entry.path, path))) {
+            if (!entry.referenced) {
+                entry.referenced = true;
+            }
+            return entry.response;
+        }
+        ByteBuffer response = encode(link.getOriginalUrlBytes());
+        int weight = response.capacity() + ENTRY_OVERHEAD;
+        if (key >= 0 && weight <= segmentBudget) {
+            segment.put(new Entry(key, origin, path, response, weight), segmentBudget);
+        }
+        return response;
+    }
+
+    /**
+     * Удаляет ответ для ссылки (ссылка удалена или истекла).
+     *
+     * @param shortId короткий идентификатор
+     */
+    public void invalidate(String shortId) {
+        long key = Base62.decode(shortId);
+        if (key >= 0) {
+            segmentFor(key).remove(key);
+        }
+    }
+
+    /**
+     * Возвращает количество закэшированных ответов.
+     */
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            long stamp = segment.lock.readLock();
+            try {
+                size += segment.entries.size();
+            } finally {
+                segment.lock.unlockRead(stamp);
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Возвращает суммарный учтённый размер записей (в байтах).
+     */
+    public long sizeInBytes() {
+        long bytes = 0;
+        for (Segment segment : segments) {
+            long stamp = segment.lock.readLock();
+            try {
+                bytes += segment.bytes;
+            } finally {
+                segment.lock.unlockRead(stamp);
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Кодирует ответ 302 для оригинального URL.
+     * <p>
+     * Пробелы, управляющие и не-ASCII символы кодируются процентами, поэтому URL
+     * не может разорвать заголовок или добавить свой.
+     *
+     * @param originalUrl оригинальный URL
+     * @return direct-буфер только для чтения с полным ответом без тела
+     */
+    public static ByteBuffer encode(String originalUrl) {
+        return encode(originalUrl.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Кодирует ответ 302 для оригинального URL в UTF-8.
+     */
+    private static ByteBuffer encode(byte[] url) {
+        StringBuilder head = new StringBuilder(url.length + 64).append("HTTP/1.1 302 Found\r\nLocation: ");
+        UrlDictionary.appendLocation(head, url);
+        head.append("\r\nContent-Length: 0\r\n\r\n");
+        byte[] bytes = head.toString().getBytes(StandardCharsets.US_ASCII);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length);
+        buffer.put(bytes).flip();
+        return buffer.asReadOnlyBuffer();
+    }
+
+    private Segment segmentFor(long key) {
+        return segments[(int) LongObjectMap.hash(key) & (SEGMENT_COUNT - 1)];
+    }
+
+    /**
+     * Закэшированный ответ.
+     */
+    private static final class Entry {
+        final long key;
+        final String origin;
+        final byte[] path;
+        final ByteBuffer response;
+        final int weight;
+        // Было обращение после последней проверки при вытеснении
+        volatile boolean referenced;
+        // Запись уже убрана из таблицы (остаётся в очереди до её прохода); меняется под блокировкой
+        boolean removed;
+
+        Entry(long key, String origin, byte[] path, ByteBuffer response, int weight) {
+            this.key = key;
+            this.origin = origin;
+            this.path = path;
+            this.response = response;
+            this.weight = weight;
+        }
+    }
+
+    /**
+     * Сегмент кэша: таблица записей, очередь вытеснения и учёт размера.
+     */
+    private static final class Segment {
+        final StampedLock lock = new StampedLock();
+        final LongObjectMap<Entry> entries = new LongObjectMap<>();
+        // Записи в порядке добавления; удалённые вычищаются лениво
+        final ArrayDeque<Entry> queue = new ArrayDeque<>();
+        long bytes;
+        // Сколько записей в очереди уже удалены из таблицы
+        int removedInQueue;
+
+        Entry get(long key) {
+            long stamp = lock.tryOptimisticRead();
+            if (stamp != 0) {
+                Entry entry = entries.get(key);
+                if (lock.validate(stamp)) {
+                    return entry;
+                }
+            }
+            stamp = lock.readLock();
+            try {
+                return entries.get(key);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        void put(Entry entry, long budget) {
+            long stamp = lock.writeLock();
+            try {
+                detach(entries.put(entry.key, entry));
+                queue.add(entry);
+                bytes += entry.weight;
+                evict(budget);
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        void remove(long key) {
+            long stamp = lock.writeLock();
+            try {
+                detach(entries.remove(key));
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        /**
+         * Помечает запись удалённой. Из очереди она уйдёт при вытеснении, а если таких
+         * записей накопилось больше, чем живых, очередь чистится целиком, чтобы удалённые
+         * ответы не удерживали память.
+         */
+        private void detach(Entry entry) {
+            if (entry == null) {
+                return;
+            }
+            entry.removed = true;
+            bytes -= entry.weight;
+            removedInQueue++;
+            if (removedInQueue > entries.size()) {
+                queue.removeIf(queued -> queued.removed);
+                removedInQueue = 0;
+            }
+        }
+
+        /**
+         * Вытесняет записи, пока сегмент не уложится в бюджет.
+         */
+        private void evict(long budget) {
+            while (bytes > budget) {
+                Entry victim = queue.poll();
+                if (victim == null) {
+                    return;
+                }
+                if (victim.removed) {
+                    removedInQueue--;
+                } else if (victim.referenced) {
+                    victim.referenced = false; // Второй шанс
+                    queue.add(victim);
+                } else {
+                    entries.remove(victim.key);
+                    victim.removed = true;
+                    bytes -= victim.weight;
+                }
+            }
+        }
+    }
+}
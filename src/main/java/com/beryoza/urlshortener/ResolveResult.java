@@ -0,0 +1,67 @@
+package com.beryoza.urlshortener;
+
+/**
+ * Результат перехода по короткой ссылке, возвращаемый {@link ShortLinkService#resolve(CharSequence)}.
+ * <p>
+ * Для неуспешных исходов используются заранее созданные объекты, поэтому поток запросов
+ * с несуществующими или недоступными идентификаторами не создаёт ни исключений,
+ * ни строк, ни новых объектов.
+ */
+public final class ResolveResult {
+
+    /**
+     * Исход перехода.
+     */
+    public enum Status {
+        /** Ссылка найдена, переход засчитан. */
+        FOUND,
+        /** Ссылки с таким идентификатором нет. */
+        NOT_FOUND,
+        /** Срок действия ссылки истёк (ссылка удалена). */
+        EXPIRED,
+        /** Лимит переходов исчерпан. */
+        LIMIT_EXCEEDED
+    }
+
+    /** Ссылка не найдена. */
+    public static final ResolveResult NOT_FOUND = new ResolveResult(Status.NOT_FOUND, null);
+
+    /** Срок действия ссылки истёк. */
+    public static final ResolveResult EXPIRED = new ResolveResult(Status.EXPIRED, null);
+
+    /** Лимит переходов исчерпан. */
+    public static final ResolveResult LIMIT_EXCEEDED = new ResolveResult(Status.LIMIT_EXCEEDED, null);
+
+    private final Status status;
+    private final ShortLink link;
+
+    private ResolveResult(Status status, ShortLink link) {
+        this.status = status;
+        this.link = link;
+    }
+
+    /**
+     * Успешный результат с найденной ссылкой.
+     *
+     * @param link найденная ссылка
+     * @return результат со статусом {@link Status#FOUND}
+     */
+    public static ResolveResult found(ShortLink link) {
+        return new ResolveResult(Status.FOUND, link);
+    }
+
+    /** Исход перехода. */
+    public Status getStatus() {
+        return status;
+    }
+
+    /** Возвращает true, если переход успешен. */
+    public boolean isFound() {
+        return status == Status.FOUND;
+    }
+
+    /** Найденная ссылка или null, если переход не удался. */
+    public ShortLink getLink() {
+        return link;
+    }
+}
@@ -0,0 +1,17 @@
+package com.beryoza.urlshortener;
+
+/**
+ * Генератор коротких идентификаторов ссылок (shortId).
+ * <p>
+ * Реализации должны быть потокобезопасными: сервис вызывает генератор
+ * из разных потоков без дополнительной синхронизации.
+ */
+public interface ShortIdGenerator {
+
+    /**
+     * Возвращает следующий короткий идентификатор.
+     *
+     * @return строка из символов base62
+     */
+    String nextId();
+}
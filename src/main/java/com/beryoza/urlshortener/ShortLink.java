@@ -1,6 +1,10 @@
 package com.beryoza.urlshortener;
 
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.charset.StandardCharsets;
 import java.util.UUID;
+import java.util.function.Consumer;
 
 /**
  * Этот класс описывает короткую ссылку, созданную в рамках нашего сервиса.
@@ -12,15 +16,38 @@ import java.util.UUID;
  *  - expiryTime : момент, когда ссылка "протухнет" (тоже в мс). После этого времени она становится недоступной.
  *  - limit : лимит переходов (сколько раз по ней можно перейти).
  *  - currentCount : сколько раз уже перешли по ссылке. Если >= limit, ссылка блокируется.
- *  - userUuid : владелец (пользователь, которому принадлежит ссылка), идентифицируемый по UUID.
+ *  - userUuid : владелец (пользователь, которому принадлежит ссылка), идентифицируемый по UUID;
+ *    у сохранённых ссылок это общий для владельца экземпляр из {@link UserIds}.
+ * <p>
+ * Счётчик переходов изменяется атомарно через {@link #tryReserveClick()}: проверка лимита
+ * и увеличение счётчика выполняются одной CAS-операцией, без блокировок, поэтому
+ * параллельные переходы не теряют клики и никогда не превышают лимит.
+ * <p>
+ * Исходный URL хранится компактно (см. {@link UrlDictionary}): общая строка схемы и хоста
+ * и остаток в UTF-8, общий у ссылок с одинаковым URL. Строка URL целиком собирается
+ * только в {@link #getOriginalUrl()}, а ответ на переход строится прямо из байтов.
  */
 public class ShortLink {
 
+    /** Дескриптор поля currentCount для атомарных CAS-операций. */
+    private static final VarHandle CURRENT_COUNT;
+
+    static {
+        try {
+            CURRENT_COUNT = MethodHandles.lookup().findVarHandle(ShortLink.class, "currentCount", int.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
     /** Короткий идентификатор ссылки (пример: "abc123"). */
     private String shortId;
 
-    /** Исходный (длинный) URL, куда перенаправляет короткая ссылка. */
-    private String originalUrl;
+    /** Схема и хост исходного URL (общая строка из словаря), например "https://example.com". */
+    private String urlOrigin;
+
+    /** Остаток исходного URL после хоста в UTF-8; массив общий, не изменяется. */
+    private byte[] urlPath;
 
     /** Время создания ссылки (System.currentTimeMillis()), чтобы понимать, когда она появилась. */
     private long createdAt;
@@ -29,14 +56,20 @@ public class ShortLink {
     private long expiryTime;
 
     /** Лимит переходов: если достигнут, ссылка блокируется. */
-    private int limit;
+    private volatile int limit;
 
     /** Текущее число переходов — увеличиваем, когда пользователь переходит по ссылке. */
-    private int currentCount;
+    private volatile int currentCount;
 
-    /** UUID владельца (пользователя), создавшего ссылку. */
+    /** UUID владельца (пользователя, создавшего ссылку); у сохранённых ссылок — общий экземпляр. */
     private UUID userUuid;
 
+    /**
+     * Кому сообщить об изменении срока действия (репозиторий, отдавший ссылку),
+     * чтобы ссылка, изменённая на месте, попала в нужную корзину индекса сроков.
+     */
+    private Consumer<ShortLink> expiryListener;
+
     /**
      * Пустой конструктор - на всякий случай, если понадобится
      * безаргументное создание (пример: сериализация).
@@ -63,8 +96,30 @@ public class ShortLink {
                      int limit,
                      int currentCount,
                      UUID userUuid) {
+        this(shortId, createdAt, expiryTime, limit, currentCount, userUuid,
+                originalUrl != null ? originalUrl.getBytes(StandardCharsets.UTF_8) : null);
+    }
+
+    /**
+     * Конструктор для хранилищ, читающих URL в UTF-8 и номер владельца:
+     * ни строка URL целиком, ни UUID не создаются.
+     *
+     * @param userUuid    общий экземпляр UUID владельца ({@link UserIds#uuidOf(int)})
+     * @param originalUrl оригинальный URL в UTF-8 (массив не сохраняется)
+     */
+    ShortLink(String shortId,
+              long createdAt,
+              long expiryTime,
+              int limit,
+              int currentCount,
+              UUID userUuid,
+              byte[] originalUrl) {
+        if (originalUrl != null) {
+            int originLength = UrlDictionary.originLength(originalUrl);
+            this.urlOrigin = UrlDictionary.origin(originalUrl, originLength);
+            this.urlPath = UrlDictionary.path(originalUrl, originLength);
+        }
         this.shortId = shortId;
-        this.originalUrl = originalUrl;
         this.createdAt = createdAt;
         this.expiryTime = expiryTime;
         this.limit = limit;
@@ -77,9 +132,39 @@ public class ShortLink {
         return shortId;
     }
 
-    /** Возвращает исходный (длинный) URL. */
+    /**
+     * Возвращает исходный (длинный) URL. Строка собирается при каждом вызове;
+     * для записи URL в байтах есть {@link #getOriginalUrlBytes()}.
+     */
     public String getOriginalUrl() {
-        return originalUrl;
+        if (urlPath == null) {
+            return null;
+        }
+        return urlPath.length == 0 ? urlOrigin : urlOrigin + new String(urlPath, StandardCharsets.UTF_8);
+    }
+
+    /** Возвращает исходный URL в UTF-8 (новый массив). */
+    byte[] getOriginalUrlBytes() {
+        byte[] origin = urlOrigin.getBytes(StandardCharsets.UTF_8);
+        byte[] url = new byte[origin.length + urlPath.length];
+        System.arraycopy(origin, 0, url, 0, origin.length);
+        System.arraycopy(urlPath, 0, url, origin.length, urlPath.length);
+        return url;
+    }
+
+    /** Схема и хост исходного URL (общая строка). */
+    String getUrlOrigin() {
+        return urlOrigin;
+    }
+
+    /** Остаток исходного URL в UTF-8 (общий массив, изменять нельзя). */
+    byte[] getUrlPath() {
+        return urlPath;
+    }
+
+    /** Время создания ссылки (в мс). */
+    public long getCreatedAt() {
+        return createdAt;
     }
 
     /**
@@ -89,9 +174,27 @@ public class ShortLink {
         return expiryTime;
     }
 
-    /** Устанавливает время истечения. */
+    /**
+     * Устанавливает время истечения. Если ссылка получена из репозитория,
+     * он переносит её в индексе сроков, даже если ссылку не сохранят повторно.
+     */
     public void setExpiryTime(long expiryTime) {
         this.expiryTime = expiryTime;
+        Consumer<ShortLink> listener = expiryListener;
+        if (listener != null) {
+            listener.accept(this);
+        }
+    }
+
+    /**
+     * Подписывает репозиторий на изменения срока действия этой ссылки.
+     * Поле обычное, не volatile: запись выполняется при каждом чтении из репозитория
+     * и только если подписчик ещё не тот же самый.
+     */
+    void setExpiryListener(Consumer<ShortLink> listener) {
+        if (expiryListener != listener) {
+            expiryListener = listener;
+        }
     }
 
     /**
@@ -117,11 +220,44 @@ public class ShortLink {
         this.currentCount = currentCount;
     }
 
+    /**
+     * Резервирует один переход, если лимит ещё не исчерпан.
+     * <p>
+     * Проверка лимита и увеличение счётчика выполняются атомарно (CAS в цикле),
+     * поэтому при любом числе параллельных вызовов успешных резервирований
+     * будет ровно столько, сколько позволяет лимит.
+     *
+     * @return true, если переход зарезервирован; false, если лимит уже исчерпан
+     */
+    public boolean tryReserveClick() {
+        int count;
+        do {
+            count = currentCount;
+            if (count >= limit) {
+                return false;
+            }
+        } while (!CURRENT_COUNT.compareAndSet(this, count, count + 1));
+        return true;
+    }
+
+    /** Возвращает true, если лимит переходов исчерпан. */
+    public boolean isExhausted() {
+        return currentCount >= limit;
+    }
+
     /** UUID пользователя, которому принадлежит ссылка. */
     public UUID getUserUuid() {
         return userUuid;
     }
 
+    /**
+     * Заменяет UUID владельца равным ему общим экземпляром из {@link UserIds}
+     * (репозиторий при сохранении), чтобы ссылки владельца не держали свои копии.
+     */
+    void shareUserUuid(UUID shared) {
+        this.userUuid = shared;
+    }
+
     /**
      * Удобный вывод для отладки или логов.
      */
@@ -129,7 +265,7 @@ public class ShortLink {
     public String toString() {
         return "ShortLink{" +
                 "shortId='" + shortId + '\'' +
-                ", originalUrl='" + originalUrl + '\'' +
+                ", originalUrl='" + getOriginalUrl() + '\'' +
                 ", createdAt=" + createdAt +
                 ", expiryTime=" + expiryTime +
                 ", limit=" + limit +
@@ -0,0 +1,17 @@
+package com.beryoza.urlshortener;
+
+/**
+ * Исключение: пользователь не имеет прав на изменение или удаление чужой ссылки.
+ * <p>
+ * Наследуется от {@link RuntimeException}, поэтому существующий код, перехватывающий
+ * RuntimeException, продолжает работать; HTTP-сервер по типу отличает его от прочих ошибок.
+ */
+public class ShortLinkAccessDeniedException extends RuntimeException {
+
+    /**
+     * @param message текст ошибки для пользователя
+     */
+    public ShortLinkAccessDeniedException(String message) {
+        super(message);
+    }
+}
@@ -1,5 +1,7 @@
 package com.beryoza.urlshortener;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.*;
 
 /**
@@ -7,14 +9,20 @@ import java.util.*;
  */
 public class ShortLinkConsoleApp {
 
+    // Ссылки и пользователи в хранилище из config.storage.backend
+    private static final Storage AppStorage = openStorage();
     // Сервисы для работы с юзерами и ссылками
-    private static final ShortLinkService ShortLinkService = new ShortLinkService(new ShortLinkRepository());
-    private static final UserService UserService = new UserService(new UserRepository());
+    private static final ShortLinkService ShortLinkService =
+            new ShortLinkService(AppStorage.getShortLinkRepository(), AppStorage.getShortIdGenerator());
+    private static final UserService UserService = new UserService(AppStorage.getUserRepository());
+    // Фоновая очистка устаревших ссылок
+    private static final ExpiryScheduler ExpiryScheduler = new ExpiryScheduler(ShortLinkService);
     private static UUID currentUser;
 
     // Хранение текущего пользователя
     public static void main(String[] args) {
         // Инициализация консоли и приветствие пользователя
+        ExpiryScheduler.start(); // Запуск фоновой очистки устаревших ссылок
         Scanner scanner = new Scanner(System.in);
         System.out.println("Добро пожаловать в сервис сокращения ссылок!");
         printHelp(); // Вывод списка доступных команд
@@ -31,6 +39,19 @@ public class ShortLinkConsoleApp {
             handleCommand(command); // Обработка команды
         }
         scanner.close();
+        ExpiryScheduler.close();
+        AppStorage.close();
+    }
+
+    /**
+     * Открывает хранилище из config.storage.backend; без него приложение работать не может.
+     */
+    private static Storage openStorage() {
+        try {
+            return Storage.open();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось открыть хранилище: " + e.getMessage(), e);
+        }
     }
 
     /**
@@ -82,8 +103,10 @@ public class ShortLinkConsoleApp {
                     System.out.println("Неизвестная команда. Введите 'help' для списка доступных команд.");
             }
         } catch (Exception e) {
+            Log.flush(); // Сначала выводим журнал команды, чтобы сохранить порядок строк
             System.out.println("Ошибка: " + e.getMessage());
         }
+        Log.flush(); // Журнал команды должен появиться до следующего приглашения "> "
     }
 
     /**
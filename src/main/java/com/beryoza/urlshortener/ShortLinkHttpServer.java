@@ -0,0 +1,318 @@
+package com.beryoza.urlshortener;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Встроенный HTTP-сервер перед {@link ShortLinkService}.
+ * <p>
+ * Построен на {@code com.sun.net.httpserver} из JDK, поэтому не требует ни внешних
+ * библиотек, ни графической среды и запускается на "голом" Linux-сервере.
+ * <p>
+ * Перенаправление:
+ * - {@code GET /{shortId}} — 302 с заголовком Location, если переход разрешён;
+ *   404, если ссылки нет; 410, если истёк срок действия или исчерпан лимит переходов.
+ *   Используется 302, а не 301: постоянный редирект кэшируется браузером,
+ *   и повторные переходы не доходили бы до сервера и не учитывались бы в лимите.
+ * <p>
+ * JSON API:
+ * - {@code POST /api/links} с телом {@code {"url": ..., "userUuid": ..., "ttl": 24, "limit": 10}}
+ *   — создаёт ссылку, отвечает 201 и {@code {"shortId": ...}}. Поля ttl и limit необязательны.
+ * - {@code PUT /api/links/{shortId}} с телом {@code {"userUuid": ..., "ttl": ..., "limit": ...}}
+ *   — меняет время жизни и/или лимит переходов, отвечает 204.
+ * - {@code DELETE /api/links/{shortId}} с телом {@code {"userUuid": ...}} — удаляет ссылку, отвечает 204.
+ * <p>
+ * Ошибки API: 400 — некорректный запрос, 403 — чужая ссылка, 404 — ссылка не найдена.
+ * <p>
+ * По умолчанию каждый запрос обрабатывается в своём виртуальном потоке: медленный ввод-вывод
+ * хранилища или уведомлений блокирует только этот запрос, а не один из немногих потоков пула.
+ * Режим с фиксированным пулом платформенных потоков оставлен для сравнения
+ * (<code>config.http.executor=platform</code>).
+ */
+public class ShortLinkHttpServer implements AutoCloseable {
+
+    /**
+     * Способ выполнения обработчиков запросов.
+     */
+    public enum ExecutorMode {
+        /** Фиксированный пул платформенных потоков. */
+        PLATFORM,
+        /** Отдельный виртуальный поток на каждый запрос. */
+        VIRTUAL
+    }
+
+    /** Префикс путей JSON API. */
+    private static final String API_PREFIX = "/api/links";
+
+    /** Максимальный размер тела запроса API (в байтах). */
+    private static final int MAX_BODY_BYTES = 64 * 1024;
+
+    static {
+        // Сервер JDK пишет заголовки и тело ответа отдельными пакетами. Без TCP_NODELAY
+        // алгоритм Нейгла вместе с отложенным ACK клиента добавляет ~40 мс к каждому ответу
+        // на keep-alive соединении. Свойство читается один раз при загрузке сервера JDK.
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+        // Сверх этого числа простаивающих keep-alive соединений сервер JDK закрывает соединение
+        // после каждого ответа; по умолчанию их всего 200.
+        if (System.getProperty("sun.net.httpserver.maxIdleConnections") == null) {
+            System.setProperty("sun.net.httpserver.maxIdleConnections", String.valueOf(Config.getHttpMaxIdleConnections()));
+        }
+    }
+
+    // Сервис, к которому обращается сервер
+    private final ShortLinkService shortLinkService;
+    // Встроенный HTTP-сервер JDK
+    private final HttpServer server;
+    // Пул потоков обработки запросов
+    private final ExecutorService executor;
+
+    /**
+     * Создаёт сервер на порту, в режиме и с числом потоков из {@link Config}.
+     *
+     * @param shortLinkService сервис коротких ссылок
+     * @throws IOException если порт не удалось занять
+     */
+    public ShortLinkHttpServer(ShortLinkService shortLinkService) throws IOException {
+        this(shortLinkService, new InetSocketAddress(Config.getHttpPort()),
+                ExecutorMode.valueOf(Config.getHttpExecutor().toUpperCase()), Config.getHttpThreads());
+    }
+
+    /**
+     * Создаёт сервер на заданном адресе.
+     *
+     * @param shortLinkService сервис коротких ссылок
+     * @param address          адрес и порт (порт 0 — выбрать свободный)
+     * @param mode             способ выполнения обработчиков
+     * @param threads          число потоков пула (используется только в режиме {@link ExecutorMode#PLATFORM})
+     * @throws IOException если порт не удалось занять
+     */
+    public ShortLinkHttpServer(ShortLinkService shortLinkService, InetSocketAddress address,
+                               ExecutorMode mode, int threads) throws IOException {
+        this.shortLinkService = shortLinkService;
+        this.server = HttpServer.create(address, Config.getHttpBacklog());
+        if (mode == ExecutorMode.VIRTUAL) {
+            this.executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("http-", 1).factory());
+        } else {
+            AtomicInteger threadNumber = new AtomicInteger();
+            this.executor = Executors.newFixedThreadPool(threads, runnable -> {
+                Thread thread = new Thread(runnable, "http-" + threadNumber.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        server.setExecutor(executor);
+        server.createContext("/", this::handleRedirect);
+        server.createContext(API_PREFIX, this::handleApi);
+    }
+
+    /**
+     * Запускает приём запросов.
+     */
+    public void start() {
+        server.start();
+        Log.info("HTTP-сервер запущен на порту {}", getPort());
+    }
+
+    /**
+     * Возвращает фактический порт сервера (полезно, если был запрошен порт 0).
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Останавливает сервер, давая текущим запросам секунду на завершение.
+     */
+    @Override
+    public void close() {
+        server.stop(1);
+        executor.shutdownNow();
+    }
+
+    /**
+     * Обрабатывает {@code GET /{shortId}}: перенаправляет на оригинальный URL.
+     */
+    private void handleRedirect(HttpExchange exchange) throws IOException {
+        try {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                exchange.getResponseHeaders().set("Allow", "GET");
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            String shortId = exchange.getRequestURI().getRawPath().substring(1);
+            ResolveResult result = shortLinkService.resolve(shortId);
+            switch (result.getStatus()) {
+                case FOUND -> {
+                    exchange.getResponseHeaders().set("Location",
+                            UrlDictionary.toLocation(result.getLink().getOriginalUrlBytes()));
+                    exchange.sendResponseHeaders(302, -1);
+                }
+                case NOT_FOUND -> exchange.sendResponseHeaders(404, -1);
+                default -> exchange.sendResponseHeaders(410, -1);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Обрабатывает запросы JSON API и переводит исключения сервиса в коды ответа.
+     */
+    private void handleApi(HttpExchange exchange) throws IOException {
+        try {
+            String path = exchange.getRequestURI().getRawPath();
+            String method = exchange.getRequestMethod();
+            // Контекст сопоставляется по префиксу, поэтому "/api/linksXYZ" тоже попадает сюда
+            if (!path.equals(API_PREFIX) && !path.startsWith(API_PREFIX + "/")) {
+                sendError(exchange, 404, "Ресурс не найден");
+                return;
+            }
+            String shortId = path.length() > API_PREFIX.length() + 1 ? path.substring(API_PREFIX.length() + 1) : null;
+
+            if (shortId == null && "POST".equals(method)) {
+                createLink(exchange);
+            } else if (shortId != null && "PUT".equals(method)) {
+                editLink(exchange, shortId);
+            } else if (shortId != null && "DELETE".equals(method)) {
+                deleteLink(exchange, shortId);
+            } else {
+                sendError(exchange, 405, "Метод не поддерживается");
+            }
+        } catch (IllegalArgumentException e) {
+            sendError(exchange, 400, e.getMessage());
+        } catch (ShortLinkNotFoundException e) {
+            sendError(exchange, 404, e.getMessage());
+        } catch (ShortLinkAccessDeniedException e) {
+            sendError(exchange, 403, e.getMessage());
+        } catch (RuntimeException e) {
+            Log.error("Ошибка обработки запроса {} {}: {}", exchange.getRequestMethod(), exchange.getRequestURI(), e);
+            sendError(exchange, 500, "Внутренняя ошибка сервера");
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * {@code POST /api/links}: создание ссылки.
+     */
+    private void createLink(HttpExchange exchange) throws IOException {
+        Map<String, Object> request = readJson(exchange);
+        String url = requireString(request, "url");
+        UUID userUuid = requireUuid(request);
+        int ttl = optionalInt(request, "ttl", Config.getMaxTtl());
+        int limit = optionalInt(request, "limit", Config.getMaxLimit());
+
+        String shortId = shortLinkService.createShortLink(url, userUuid, ttl, limit);
+
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("shortId", shortId);
+        sendJson(exchange, 201, response);
+    }
+
+    /**
+     * {@code PUT /api/links/{shortId}}: изменение времени жизни и/или лимита переходов.
+     */
+    private void editLink(HttpExchange exchange, String shortId) throws IOException {
+        Map<String, Object> request = readJson(exchange);
+        UUID userUuid = requireUuid(request);
+        if (!request.containsKey("ttl") && !request.containsKey("limit")) {
+            throw new IllegalArgumentException("Укажите ttl и/или limit");
+        }
+        if (request.containsKey("limit")) {
+            shortLinkService.editRedirectLimit(shortId, optionalInt(request, "limit", 0), userUuid);
+        }
+        if (request.containsKey("ttl")) {
+            shortLinkService.editExpiryTime(shortId, optionalInt(request, "ttl", 0), userUuid);
+        }
+        exchange.sendResponseHeaders(204, -1);
+    }
+
+    /**
+     * {@code DELETE /api/links/{shortId}}: удаление ссылки.
+     */
+    private void deleteLink(HttpExchange exchange, String shortId) throws IOException {
+        Map<String, Object> request = readJson(exchange);
+        shortLinkService.deleteShortLink(shortId, requireUuid(request));
+        exchange.sendResponseHeaders(204, -1);
+    }
+
+    /**
+     * Читает и разбирает JSON-тело запроса.
+     */
+    private static Map<String, Object> readJson(HttpExchange exchange) throws IOException {
+        try (InputStream body = exchange.getRequestBody()) {
+            byte[] bytes = body.readNBytes(MAX_BODY_BYTES + 1);
+            if (bytes.length > MAX_BODY_BYTES) {
+                throw new IllegalArgumentException("Слишком большое тело запроса");
+            }
+            return Json.parseObject(new String(bytes, StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * Достаёт обязательное строковое поле.
+     */
+    private static String requireString(Map<String, Object> request, String field) {
+        Object value = request.get(field);
+        if (!(value instanceof String)) {
+            throw new IllegalArgumentException("Поле " + field + " обязательно и должно быть строкой");
+        }
+        return (String) value;
+    }
+
+    /**
+     * Достаёт обязательный UUID пользователя.
+     */
+    private static UUID requireUuid(Map<String, Object> request) {
+        return UUID.fromString(requireString(request, "userUuid"));
+    }
+
+    /**
+     * Достаёт необязательное целочисленное поле.
+     */
+    private static int optionalInt(Map<String, Object> request, String field, int defaultValue) {
+        Object value = request.get(field);
+        if (value == null) {
+            return defaultValue;
+        }
+        if (!(value instanceof Long) || (Long) value != ((Long) value).intValue()) {
+            throw new IllegalArgumentException("Поле " + field + " должно быть целым числом");
+        }
+        return ((Long) value).intValue();
+    }
+
+    /**
+     * Отправляет ошибку в виде {@code {"error": ...}}.
+     */
+    private static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("error", message);
+        sendJson(exchange, status, response);
+    }
+
+    /**
+     * Отправляет JSON-ответ.
+     */
+    private static void sendJson(HttpExchange exchange, int status, Map<String, Object> response) throws IOException {
+        byte[] body = Json.toJson(response).getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+}
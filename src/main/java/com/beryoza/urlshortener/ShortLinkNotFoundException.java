@@ -0,0 +1,17 @@
+package com.beryoza.urlshortener;
+
+/**
+ * Исключение: короткая ссылка с указанным идентификатором не найдена.
+ * <p>
+ * Наследуется от {@link RuntimeException}, поэтому существующий код, перехватывающий
+ * RuntimeException, продолжает работать; HTTP-сервер по типу отличает его от прочих ошибок.
+ */
+public class ShortLinkNotFoundException extends RuntimeException {
+
+    /**
+     * @param message текст ошибки для пользователя
+     */
+    public ShortLinkNotFoundException(String message) {
+        super(message);
+    }
+}
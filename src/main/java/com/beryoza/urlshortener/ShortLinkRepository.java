@@ -1,36 +1,52 @@
 package com.beryoza.urlshortener;
 
-import java.util.*;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Consumer;
 
 /**
- * Репозиторий для хранения коротких ссылок в памяти (in-memory).
- * Ключом будет shortId (String), а значением — объект ShortLink.
+ * Репозиторий коротких ссылок — то, через что {@link ShortLinkService} работает с хранилищем.
+ * <p>
+ * Реализации выбираются свойством <code>config.storage.backend</code> (см. {@link Storage}):
+ * <ul>
+ *   <li>{@link InMemoryShortLinkRepository} — ссылки в памяти процесса (над {@link LinkStore}),
+ *       без сохранения или с журналом изменений на диске ({@link DurableStorage});</li>
+ *   <li>{@link JdbcShortLinkRepository} — ссылки в реляционной базе данных.</li>
+ * </ul>
+ * Реализации должны быть потокобезопасными: сервис и серверы вызывают репозиторий
+ * из разных потоков без дополнительной синхронизации.
  */
-public class ShortLinkRepository {
-
-    /**
-     * Хранилище коротких ссылок. Ключ — это shortId (String),
-     * значение — объект ShortLink.
-     */
-    private final Map<String, ShortLink> storage = new HashMap<>();
+public interface ShortLinkRepository {
 
     /**
      * Сохраняем/обновляем короткую ссылку в хранилище.
      *
      * @param link объект ShortLink, где shortId должен быть уникальным
+     * @throws IllegalArgumentException если shortId не является идентификатором из шести символов base62
      */
-    public void save(ShortLink link) {
-        storage.put(link.getShortId(), link);
-    }
+    void save(ShortLink link);
 
     /**
      * Ищем ShortLink по его короткому идентификатору (shortId).
+     * <p>
+     * Принимает любую {@link CharSequence}, чтобы сетевой код мог искать ссылку
+     * прямо по байтам запроса, не создавая строку.
+     *
+     * @param shortId короткий идентификатор (например, "abc123")
+     * @return ShortLink или null, если не найден
+     */
+    ShortLink findByShortId(CharSequence shortId);
+
+    /**
+     * Как {@link #findByShortId(CharSequence)}, но без ожидания других потоков: для циклов
+     * событий, которым нельзя блокироваться. По умолчанию — {@link #findByShortId(CharSequence)}.
      *
      * @param shortId короткий идентификатор (например, "abc123")
      * @return ShortLink или null, если не найден
      */
-    public ShortLink findByShortId(String shortId) {
-        return storage.get(shortId);
+    default ShortLink findByShortIdWithoutWaiting(CharSequence shortId) {
+        return findByShortId(shortId);
     }
 
     /**
@@ -39,16 +55,65 @@ public class ShortLinkRepository {
      *
      * @param shortId короткий идентификатор ссылки
      */
-    public void deleteByShortId(String shortId) {
-        storage.remove(shortId);
-    }
+    void deleteByShortId(String shortId);
 
     /**
-     * Возвращает все ссылки для отладки или статистики.
+     * Сохраняет переход по ссылке, уже учтённый в её счётчике ({@link ShortLink#tryReserveClick()}),
+     * и возвращается, когда переход сохранён.
      *
-     * @return коллекция ShortLink из внутреннего хранилища
+     * @param link ссылка, по которой выполнен переход
      */
-    public Collection<ShortLink> findAll() {
-        return storage.values();
-    }
+    void recordClick(ShortLink link);
+
+    /**
+     * Как {@link #recordClick(ShortLink)}, но без ожидания: для циклов событий, которым
+     * нельзя блокироваться. Переход может сохраниться с задержкой.
+     *
+     * @param link ссылка, по которой выполнен переход
+     */
+    void recordClickEventually(ShortLink link);
+
+    /**
+     * Возвращает ссылки указанного пользователя.
+     *
+     * @param userUuid UUID владельца ссылок
+     * @return список ссылок пользователя (пустой, если ссылок нет)
+     */
+    List<ShortLink> findByUserUuid(UUID userUuid);
+
+    /**
+     * Возвращает ссылки, которые на момент {@code now} пора удалить:
+     * с истёкшим сроком действия или исчерпанным лимитом переходов.
+     * Кандидата всё равно нужно перепроверить: его могли продлить между поиском и удалением.
+     *
+     * @param now        текущий момент (в мс)
+     * @param maxResults максимальное количество ссылок в ответе
+     * @return список ссылок-кандидатов на удаление
+     */
+    List<ShortLink> findExpired(long now, int maxResults);
+
+    /**
+     * Возвращает все ссылки для отладки или статистики (копию).
+     *
+     * @return коллекция ShortLink
+     */
+    Collection<ShortLink> findAll();
+
+    /**
+     * Обходит все ссылки без копирования (для снимка и восстановления счётчика идентификаторов).
+     * Параллельные изменения могут быть видны или не видны обходу.
+     *
+     * @param action действие для каждой ссылки
+     */
+    void forEachLink(Consumer<ShortLink> action);
+
+    /**
+     * Подписывает на удаление ссылок из хранилища.
+     * <p>
+     * Подписчик получает shortId после удаления ссылки и после её замены (повторного
+     * сохранения), уже без блокировок хранилища.
+     *
+     * @param listener подписчик
+     */
+    void addRemovalListener(Consumer<String> listener);
 }
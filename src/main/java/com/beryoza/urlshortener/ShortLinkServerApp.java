@@ -0,0 +1,51 @@
+package com.beryoza.urlshortener;
+
+import java.io.IOException;
+
+/**
+ * Запуск сервиса коротких ссылок в режиме HTTP-сервера (без консоли и браузера).
+ * <p>
+ * Поднимает {@link ShortLinkHttpServer} (перенаправления и JSON API, порт <code>config.http.port</code>)
+ * и {@link NioRedirectServer} (только перенаправления, порт <code>config.nio.port</code>).
+ * Сервер на NIO запускается, только если хранилище отвечает без блокировок
+ * ({@link Storage#supportsNonBlockingResolve()}): иначе его единственный поток событий
+ * ждал бы базу данных, и перенаправления обслуживает только HTTP-сервер.
+ * Ссылки и пользователи берутся из хранилища, выбранного в <code>config.storage.backend</code> ({@link Storage}).
+ * <p>
+ * Пример:
+ * {@code
+ * mvn exec:java -Dexec.mainClass="com.beryoza.urlshortener.ShortLinkServerApp"
+ * }
+ */
+public class ShortLinkServerApp {
+
+    public static void main(String[] args) throws IOException {
+        Storage storage = Storage.open();
+        ShortLinkService shortLinkService = new ShortLinkService(storage.getShortLinkRepository(),
+                storage.getShortIdGenerator());
+        ExpiryScheduler expiryScheduler = new ExpiryScheduler(shortLinkService);
+        ShortLinkHttpServer server = new ShortLinkHttpServer(shortLinkService);
+        NioRedirectServer redirectServer = storage.supportsNonBlockingResolve()
+                ? new NioRedirectServer(shortLinkService)
+                : null;
+
+        // Корректная остановка по Ctrl+C или SIGTERM
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            if (redirectServer != null) {
+                redirectServer.close();
+            }
+            server.close();
+            expiryScheduler.close();
+            storage.close();
+            Log.info("HTTP-сервер остановлен");
+        }, "shutdown"));
+
+        expiryScheduler.start();
+        server.start();
+        if (redirectServer != null) {
+            redirectServer.start();
+        } else {
+            Log.warn("Сервер перенаправлений на NIO не запущен: хранилище {} блокирует поток", Config.getStorageBackend());
+        }
+    }
+}
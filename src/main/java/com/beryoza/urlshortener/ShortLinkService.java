@@ -7,6 +7,7 @@ import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * Сервис для управления короткими ссылками.
@@ -20,16 +21,31 @@ public class ShortLinkService {
 
     // Репозиторий для работы с хранилищем коротких ссылок.
     private final ShortLinkRepository shortLinkRepository;
-    private final List<String> notifications; // Для хранения уведомлений
+    private final List<String> notifications; // Для хранения уведомлений (потокобезопасный список)
+    // Генератор коротких идентификаторов
+    private final ShortIdGenerator shortIdGenerator;
 
     /**
      * Конструктор. Подключает репозиторий коротких ссылок.
+     * Идентификаторы генерируются {@link FeistelShortIdGenerator} с ключом из конфигурации;
+     * его счётчик продолжается за ссылками, которые уже есть в репозитории.
      *
      * @param shortLinkRepository репозиторий для работы с хранилищем
      */
     public ShortLinkService(ShortLinkRepository shortLinkRepository) {
+        this(shortLinkRepository, FeistelShortIdGenerator.resumingAfter(shortLinkRepository));
+    }
+
+    /**
+     * Конструктор с явным генератором коротких идентификаторов.
+     *
+     * @param shortLinkRepository репозиторий для работы с хранилищем
+     * @param shortIdGenerator    генератор коротких идентификаторов
+     */
+    public ShortLinkService(ShortLinkRepository shortLinkRepository, ShortIdGenerator shortIdGenerator) {
         this.shortLinkRepository = shortLinkRepository;
-        this.notifications = new ArrayList<>();
+        this.shortIdGenerator = shortIdGenerator;
+        this.notifications = Collections.synchronizedList(new ArrayList<>());
     }
 
     /**
@@ -37,14 +53,17 @@ public class ShortLinkService {
      * <p>
      * Метод генерирует уникальный идентификатор ссылки, проверяет входные данные
      * и применяет системные ограничения на время жизни и лимит переходов.
-     * Устаревшие ссылки удаляются перед созданием новой.
+     * Устаревшие ссылки здесь не удаляются: этим занимается {@link ExpiryScheduler}.
      *
      * @param originalUrl длинная ссылка, которую нужно сократить
      * @param userUuid    идентификатор пользователя, создающего ссылку
      * @param userTTL     время жизни ссылки (в часах), заданное пользователем
      * @param userLimit   лимит переходов, заданный пользователем
      * @return уникальный идентификатор короткой ссылки (shortId)
-     * @throws IllegalArgumentException если URL или UUID пользователя некорректны
+     * @throws IllegalArgumentException если URL или UUID пользователя некорректны: URL должен
+     *                                  начинаться с http:// или https:// и хоста и не содержать
+     *                                  управляющих символов (пробелы и не-ASCII допустимы,
+     *                                  при перенаправлении они кодируются как {@code %XX})
      * <p>
      * Пример:
      * {@code
@@ -52,13 +71,11 @@ public class ShortLinkService {
      * }
      */
     public String createShortLink(String originalUrl, UUID userUuid, int userTTL, int userLimit) {
-        // Очищаем устаревшие ссылки
-        cleanUpExpiredLinks();
-
         // Проверяем входные данные
         if (originalUrl == null || originalUrl.isEmpty()) {
             throw new IllegalArgumentException("URL не может быть пустым");
         }
+        validateUrl(originalUrl);
         if (userUuid == null) {
             throw new IllegalArgumentException("UUID пользователя не может быть null");
         }
@@ -68,7 +85,7 @@ public class ShortLinkService {
         int finalLimit = Math.min(Config.getMaxLimit(), Math.max(Config.getMinLimit(), userLimit));
 
         // Сгенерировать уникальный shortId
-        String shortId = generateShortId();
+        String shortId = shortIdGenerator.nextId();
 
         // Рассчитать время истечения ссылки
         long expiryTime = System.currentTimeMillis() + Math.max(1, finalTtl * 3600000L);
@@ -87,61 +104,143 @@ public class ShortLinkService {
         // Сохранить ссылку в репозитории
         shortLinkRepository.save(link);
 
-        System.out.println("Ссылка создана: " + shortId + "\nВремя жизни: " + finalTtl + " часов, Лимит переходов: " + finalLimit);
+        Log.info("Ссылка создана: {}. Время жизни: {} часов, лимит переходов: {}", shortId, finalTtl, finalLimit);
 
         // Возвратить shortId
         return shortId;
     }
 
     /**
-     * Возвращает оригинальную ссылку по её короткому идентификатору (shortId).
+     * Проверяет, что по URL можно перенаправить: схема http или https, непустой хост
+     * и ни одного управляющего символа (CR/LF разорвали бы заголовок Location).
+     *
+     * @param url оригинальный URL
+     * @throws IllegalArgumentException если URL не подходит
+     */
+    private static void validateUrl(String url) {
+        int schemeEnd = url.indexOf("://");
+        String scheme = schemeEnd > 0 ? url.substring(0, schemeEnd) : "";
+        if (!scheme.equalsIgnoreCase("http") && !scheme.equalsIgnoreCase("https")) {
+            throw new IllegalArgumentException("URL должен начинаться с http:// или https://");
+        }
+        int hostStart = schemeEnd + 3;
+        if (hostStart == url.length() || "/?#".indexOf(url.charAt(hostStart)) >= 0) {
+            throw new IllegalArgumentException("В URL не указан хост");
+        }
+        for (int i = 0; i < url.length(); i++) {
+            char c = url.charAt(i);
+            if (c < 0x20 || c == 0x7f) {
+                throw new IllegalArgumentException("URL содержит недопустимые символы");
+            }
+        }
+    }
+
+    /**
+     * Выполняет переход по короткой ссылке без исключений и уведомлений.
      * <p>
-     * Перед возвращением ссылка проверяется на:
-     * - Истечение срока действия (expiryTime).
-     * - Превышение лимита переходов (currentCount >= limit).
+     * Ссылка проверяется на:
+     * - Истечение срока действия (expiryTime). Просроченная ссылка сразу удаляется,
+     *   не дожидаясь фоновой очистки.
+     * - Превышение лимита переходов: переход резервируется атомарно, без блокировок.
      * <p>
-     * Если ссылка недоступна по одной из причин, уведомляет пользователя и бросает исключение.
+     * Неуспешные исходы возвращаются заранее созданными объектами {@link ResolveResult},
+     * поэтому поток запросов с неверными идентификаторами не строит ни стеков вызовов,
+     * ни строк сообщений. Этот метод предназначен для "горячего" пути перенаправления.
      *
-     * @param shortId короткий идентификатор ссылки
-     * @return объект ShortLink, содержащий оригинальную ссылку
-     * @throws RuntimeException если ссылка недоступна или не найдена
+     * @param shortId короткий идентификатор ссылки (строка или представление байтов запроса)
+     * @return результат перехода: статус и, если переход успешен, ссылка
      */
-    public ShortLink getOriginalUrl(String shortId) {
-        // Ищем ссылку в репозитории
-        ShortLink link = shortLinkRepository.findByShortId(shortId);
+    public ResolveResult resolve(CharSequence shortId) {
+        return resolve(shortId, true);
+    }
 
-        // Если не нашли, уведомляем пользователя и бросаем исключение
+    /**
+     * Выполняет переход так же, как {@link #resolve(CharSequence)}, но никогда не ждёт диска,
+     * поэтому годится для потока цикла событий ({@link NioRedirectServer}).
+     * <p>
+     * Отличия: переход записывается в журнал без ожидания сброса (при политике ALWAYS
+     * сброс выполняет фоновый поток журнала), то есть переходы устойчивы лишь в конечном
+     * счёте — при падении процесса последние из них могут не попасть на диск. Просроченная
+     * ссылка не удаляется здесь же, а остаётся фоновой очистке ({@link ExpiryScheduler}).
+     * Поиск не ждёт чужих загрузок той же ссылки из хранилища
+     * ({@link ShortLinkRepository#findByShortIdWithoutWaiting(CharSequence)}).
+     *
+     * @param shortId короткий идентификатор ссылки (строка или представление байтов запроса)
+     * @return результат перехода: статус и, если переход успешен, ссылка
+     */
+    public ResolveResult resolveNonBlocking(CharSequence shortId) {
+        return resolve(shortId, false);
+    }
+
+    /**
+     * Общая часть переходов.
+     *
+     * @param awaitDurable ждать ли, пока изменения окажутся на диске
+     */
+    private ResolveResult resolve(CharSequence shortId, boolean awaitDurable) {
+        // Ищем ссылку в репозитории; без ожидания — не присоединяясь к чужим загрузкам
+        ShortLink link = awaitDurable
+                ? shortLinkRepository.findByShortId(shortId)
+                : shortLinkRepository.findByShortIdWithoutWaiting(shortId);
         if (link == null) {
-            System.out.println("Ссылка не найдена");
-            notifyUser("Ссылка с идентификатором " + shortId + " не найдена.");
-            throw new RuntimeException("Ссылка с идентификатором " + shortId + " не найдена.");
+            return ResolveResult.NOT_FOUND;
         }
 
         // Проверяем срок действия ссылки
-        System.out.println("Текущая метка времени: " + System.currentTimeMillis());
-        System.out.println("Время истечения: " + link.getExpiryTime());
+        if (Log.isDebugEnabled()) {
+            Log.debug("Переход по ссылке {}: текущая метка времени {}, время истечения {}, счётчик {} из {}",
+                    link.getShortId(), System.currentTimeMillis(), link.getExpiryTime(), link.getCurrentCount(), link.getLimit());
+        }
         if (System.currentTimeMillis() > link.getExpiryTime()) {
-            notifyUser("Срок действия ссылки с идентификатором " + shortId + " истёк.");
-            throw new RuntimeException("Срок действия короткой ссылки истек");
+            if (awaitDurable) {
+                shortLinkRepository.deleteByShortId(link.getShortId());
+            }
+            return ResolveResult.EXPIRED;
         }
 
-        // Проверяем лимит переходов
-        System.out.println("Текущий счётчик: " + link.getCurrentCount());
-        System.out.println("Лимит переходов: " + link.getLimit());
-        if (link.getCurrentCount() >= link.getLimit()) {
-            notifyUser("Ссылка с идентификатором " + shortId + " превысила лимит переходов.");
-            throw new RuntimeException("Количество коротких ссылок превысило установленный лимит");
+        // Проверяем лимит и атомарно резервируем переход (без блокировок)
+        if (!link.tryReserveClick()) {
+            return ResolveResult.LIMIT_EXCEEDED;
         }
 
-        // Увеличиваем счётчик переходов
-        link.setCurrentCount(link.getCurrentCount() + 1);
-        System.out.println("Счётчик обновлён: " + link.getCurrentCount());
-
-        // Сохраняем изменения
-        shortLinkRepository.save(link);
+        // Сохраняем ссылку, только если лимит исчерпан: так она попадёт в очередь на очистку.
+        // Иначе достаточно записать переход в журнал (если он есть)
+        if (!awaitDurable) {
+            shortLinkRepository.recordClickEventually(link);
+        } else if (link.isExhausted()) {
+            shortLinkRepository.save(link);
+        } else {
+            shortLinkRepository.recordClick(link);
+        }
+        return ResolveResult.found(link);
+    }
 
-        // Возвращаем найденную ссылку
-        return link;
+    /**
+     * Возвращает оригинальную ссылку по её короткому идентификатору (shortId).
+     * <p>
+     * Обёртка над {@link #resolve(CharSequence)} для совместимости: если ссылка недоступна
+     * (не найдена, истёк срок действия или превышен лимит переходов), уведомляет
+     * пользователя и бросает исключение.
+     *
+     * @param shortId короткий идентификатор ссылки
+     * @return объект ShortLink, содержащий оригинальную ссылку
+     * @throws RuntimeException если ссылка недоступна или не найдена
+     */
+    public ShortLink getOriginalUrl(String shortId) {
+        ResolveResult result = resolve(shortId);
+        switch (result.getStatus()) {
+            case NOT_FOUND:
+                notifyUser("Ссылка с идентификатором " + shortId + " не найдена.");
+                throw new ShortLinkNotFoundException("Ссылка с идентификатором " + shortId + " не найдена.");
+            case EXPIRED:
+                notifyUser("Срок действия ссылки с идентификатором " + shortId + " истёк.");
+                throw new RuntimeException("Срок действия короткой ссылки истек");
+            case LIMIT_EXCEEDED:
+                notifyUser("Ссылка с идентификатором " + shortId + " превысила лимит переходов.");
+                throw new RuntimeException("Количество коротких ссылок превысило установленный лимит");
+            default:
+                return result.getLink();
+        }
     }
 
     /**
@@ -150,7 +249,8 @@ public class ShortLinkService {
      * @param shortId  идентификатор короткой ссылки
      * @param newLimit новый лимит переходов
      * @param userUuid UUID пользователя, инициировавшего запрос
-     * @throws RuntimeException если ссылка не найдена, пользователь не имеет доступа или новый лимит недопустим
+     * @throws ShortLinkNotFoundException     если ссылка не найдена
+     * @throws ShortLinkAccessDeniedException если пользователь не имеет доступа к ссылке
      */
     public void editRedirectLimit(String shortId, int newLimit, UUID userUuid) {
         // Проверяем входные данные
@@ -166,12 +266,12 @@ public class ShortLinkService {
 
         // Если ссылка не найдена, бросаем исключение
         if (link == null) {
-            throw new RuntimeException("Ссылка с идентификатором " + shortId + " не найдена.");
+            throw new ShortLinkNotFoundException("Ссылка с идентификатором " + shortId + " не найдена.");
         }
 
         // Проверяем права доступа
         if (!link.getUserUuid().equals(userUuid)) {
-            throw new RuntimeException("Пользователь с UUID " + userUuid + " не имеет прав на изменение ссылки " + shortId + ".");
+            throw new ShortLinkAccessDeniedException("Пользователь с UUID " + userUuid + " не имеет прав на изменение ссылки " + shortId + ".");
         }
 
         // Проверяем новый лимит на соответствие системным ограничениям
@@ -196,7 +296,8 @@ public class ShortLinkService {
      * @param shortId  идентификатор короткой ссылки
      * @param newTTL   новый срок действия в часах
      * @param userUuid UUID пользователя, инициировавшего запрос
-     * @throws RuntimeException если ссылка не найдена, пользователь не имеет прав или новый срок недопустим
+     * @throws ShortLinkNotFoundException     если ссылка не найдена
+     * @throws ShortLinkAccessDeniedException если пользователь не имеет прав на изменение ссылки
      */
     public void editExpiryTime(String shortId, int newTTL, UUID userUuid) {
         // Проверяем входные данные
@@ -212,12 +313,12 @@ public class ShortLinkService {
 
         // Если ссылка не найдена, бросаем исключение
         if (link == null) {
-            throw new RuntimeException("Ссылка с идентификатором " + shortId + " не найдена.");
+            throw new ShortLinkNotFoundException("Ссылка с идентификатором " + shortId + " не найдена.");
         }
 
         // Проверяем права доступа
         if (!link.getUserUuid().equals(userUuid)) {
-            throw new RuntimeException("Пользователь с UUID " + userUuid + " не имеет прав на изменение ссылки " + shortId + ".");
+            throw new ShortLinkAccessDeniedException("Пользователь с UUID " + userUuid + " не имеет прав на изменение ссылки " + shortId + ".");
         }
 
         // Проверяем новый срок действия на соответствие ограничениям
@@ -241,7 +342,8 @@ public class ShortLinkService {
      *
      * @param shortId  идентификатор короткой ссылки
      * @param userUuid UUID пользователя, инициировавшего запрос
-     * @throws RuntimeException если ссылка не найдена или пользователь не имеет прав на удаление
+     * @throws ShortLinkNotFoundException     если ссылка не найдена
+     * @throws ShortLinkAccessDeniedException если пользователь не имеет прав на удаление
      */
     public void deleteShortLink(String shortId, UUID userUuid) {
         // Проверяем, что userUuid не null
@@ -255,13 +357,13 @@ public class ShortLinkService {
         // Если ссылка не найдена, бросаем исключение
         if (link == null) {
             notifyUser("Ссылка с идентификатором " + shortId + " не найдена.");
-            throw new RuntimeException("Короткая ссылка не найдена");
+            throw new ShortLinkNotFoundException("Короткая ссылка не найдена");
         }
 
         // Проверяем права доступа
         if (!link.getUserUuid().equals(userUuid)) {
             notifyUser("Пользователь с UUID " + userUuid + " не имеет прав на удаление ссылки с идентификатором " + shortId + ".");
-            throw new RuntimeException("Нет доступа к удалению ссылки");
+            throw new ShortLinkAccessDeniedException("Нет доступа к удалению ссылки");
         }
 
         // Удаляем ссылку из репозитория
@@ -274,40 +376,21 @@ public class ShortLinkService {
     /**
      * Удаляет устаревшие ссылки.
      * <p>
-     * Метод проверяет все ссылки в репозитории и удаляет те, у которых истёк срок действия
-     * или превышен лимит переходов. Если указан UUID пользователя, очищаются только его ссылки.
+     * Метод удаляет ссылки, у которых истёк срок действия или превышен лимит переходов.
+     * Если указан UUID пользователя, проверяются только его ссылки (через индекс пользователя).
+     * Иначе кандидаты берутся из индекса сроков репозитория, и просматриваются только
+     * ссылки, которые действительно пора удалить.
      *
      * @param userUuid UUID пользователя (если null, очищаются все ссылки)
      */
     public void cleanUpExpiredLinks(UUID userUuid) {
-        // Преобразуем коллекцию в список
-        List<ShortLink> allLinks = new ArrayList<>(shortLinkRepository.findAll());
-        long currentTime = System.currentTimeMillis();
-        int removedCount = 0;
-
-        for (ShortLink link : allLinks) {
-            // Проверяем принадлежность пользователя (если указан UUID)
-            if (userUuid != null && !link.getUserUuid().equals(userUuid)) {
-                continue; // Пропускаем ссылки других пользователей
-            }
-
-            // Проверяем срок действия и лимит переходов
-            if (currentTime > link.getExpiryTime() || link.getCurrentCount() >= link.getLimit()) {
-                // Уведомляем пользователя об удалении
-                notifyUser("Удалена ссылка с идентификатором " + link.getShortId() +
-                        (currentTime > link.getExpiryTime() ? " (истёк срок действия)." : " (достигнут лимит переходов)."));
-
-                // Удаляем ссылку
-                shortLinkRepository.deleteByShortId(link.getShortId());
-                removedCount++;
-            }
-        }
+        int removedCount = cleanUp(userUuid, Integer.MAX_VALUE);
 
         // Вывод итогового сообщения
         if (removedCount > 0) {
-            System.out.println("Очистка завершена. Удалено " + removedCount + " устаревших ссылок.");
+            Log.info("Очистка завершена. Удалено {} устаревших ссылок.", removedCount);
         } else {
-            System.out.println("Очистка завершена. Устаревших ссылок не найдено.");
+            Log.info("Очистка завершена. Устаревших ссылок не найдено.");
         }
     }
 
@@ -316,21 +399,56 @@ public class ShortLinkService {
     }
 
     /**
-     * Генерирует уникальный короткий идентификатор ссылки.
+     * Один проход очистки всех ссылок с ограничением на количество удалений.
+     * <p>
+     * Используется фоновым планировщиком {@link ExpiryScheduler}. Сообщение выводится,
+     * только если что-то было удалено, чтобы не засорять консоль.
      *
-     * @return строка с уникальным идентификатором
+     * @param maxDeletions максимальное количество удаляемых ссылок
+     * @return количество удалённых ссылок
      */
-    private String generateShortId() {
-        String chars = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789";
-        StringBuilder shortId = new StringBuilder();
-        Random random = new Random();
-
-        // Генерируем строку длиной 6 символов
-        for (int i = 0; i < 6; i++) {
-            shortId.append(chars.charAt(random.nextInt(chars.length())));
+    public int cleanUpExpiredLinks(int maxDeletions) {
+        int removedCount = cleanUp(null, maxDeletions);
+        if (removedCount > 0) {
+            Log.info("Фоновая очистка: удалено {} устаревших ссылок.", removedCount);
         }
+        return removedCount;
+    }
+
+    /**
+     * Удаляет устаревшие ссылки пользователя (или все, если UUID не указан).
+     *
+     * @param userUuid     UUID пользователя (если null, проверяются все ссылки)
+     * @param maxDeletions максимальное количество удаляемых ссылок
+     * @return количество удалённых ссылок
+     */
+    private int cleanUp(UUID userUuid, int maxDeletions) {
+        long currentTime = System.currentTimeMillis();
+        // Берём ссылки пользователя из индекса или кандидатов из индекса сроков
+        List<ShortLink> links = userUuid != null
+                ? shortLinkRepository.findByUserUuid(userUuid)
+                : shortLinkRepository.findExpired(currentTime, maxDeletions);
+        int removedCount = 0;
+
+        for (ShortLink link : links) {
+            if (removedCount >= maxDeletions) {
+                break;
+            }
+            // Проверяем срок действия и лимит переходов
+            if (currentTime > link.getExpiryTime() || link.getCurrentCount() >= link.getLimit()) {
+                // Уведомляем пользователя об удалении
+                notifyUser("Удалена ссылка с идентификатором " + link.getShortId() +
+                        (currentTime > link.getExpiryTime() ? " (истёк срок действия)." : " (достигнут лимит переходов)."));
 
-        return shortId.toString();
+                // Удаляем ссылку
+                shortLinkRepository.deleteByShortId(link.getShortId());
+                removedCount++;
+            } else if (userUuid == null) {
+                // Ссылку изменили без сохранения — переносим её в актуальную корзину индекса
+                shortLinkRepository.save(link);
+            }
+        }
+        return removedCount;
     }
 
     /**
@@ -340,7 +458,7 @@ public class ShortLinkService {
      */
     private void notifyUser(String message) {
         notifications.add(message); // Добавляем сообщение в список
-        System.out.println("Добавлено уведомление: " + message);
+        Log.info("Добавлено уведомление: {}", message);
     }
 
     /**
@@ -352,8 +470,11 @@ public class ShortLinkService {
      * @return список строковых сообщений уведомлений
      */
     public List<String> getNotifications() {
-        System.out.println("Текущие уведомления: " + notifications);
-        return notifications; // Метод для получения уведомлений
+        synchronized (notifications) {
+            List<String> copy = new ArrayList<>(notifications); // Возвращаем копию, чтобы обход был безопасным
+            Log.debug("Текущие уведомления: {}", copy);
+            return copy;
+        }
     }
 
     /**
@@ -366,6 +487,16 @@ public class ShortLinkService {
         notifications.clear();
     }
 
+    /**
+     * Подписывает на удаление ссылок: вручную, по истечении срока, при исчерпании лимита
+     * и при очистке. Нужен кэшам, которые хранят производные от ссылки данные.
+     *
+     * @param listener подписчик, получающий shortId удалённой ссылки
+     */
+    public void addRemovalListener(Consumer<String> listener) {
+        shortLinkRepository.addRemovalListener(listener);
+    }
+
     /**
      * Открывает оригинальный URL в браузере.
      *
@@ -375,12 +506,12 @@ public class ShortLinkService {
         if (Desktop.isDesktopSupported()) {
             try {
                 Desktop.getDesktop().browse(new URI(url));
-                System.out.println("Ссылка открыта в браузере: " + url);
+                Log.info("Ссылка открыта в браузере: {}", url);
             } catch (IOException | URISyntaxException e) {
-                System.err.println("Ошибка при попытке открыть ссылку: " + e.getMessage());
+                Log.error("Ошибка при попытке открыть ссылку: {}", e.getMessage());
             }
         } else {
-            System.err.println("Операция Desktop не поддерживается на данной системе.");
+            Log.error("Операция Desktop не поддерживается на данной системе.");
         }
     }
 
@@ -391,12 +522,7 @@ public class ShortLinkService {
      * @param printLinks Если true, ссылки будут выведены в консоль
      */
     public void getUserLinks(UUID userUuid, boolean printLinks) {
-        List<ShortLink> userLinks = new ArrayList<>();
-        for (ShortLink link : shortLinkRepository.findAll()) {
-            if (link.getUserUuid().equals(userUuid)) {
-                userLinks.add(link);
-            }
-        }
+        List<ShortLink> userLinks = shortLinkRepository.findByUserUuid(userUuid);
 
         if (printLinks) {
             if (userLinks.isEmpty()) {
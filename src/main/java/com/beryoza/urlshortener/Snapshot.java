@@ -0,0 +1,128 @@
+package com.beryoza.urlshortener;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32C;
+
+/**
+ * Снимок ссылок и пользователей на диске: с него начинается восстановление,
+ * после чего воспроизводится только хвост журнала изменений.
+ * <p>
+ * Снимок записывается в формате журнала ({@link WriteAheadLog}): заголовок с номером
+ * первого файла журнала, который нужно воспроизвести поверх снимка, и счётчиком
+ * генератора идентификаторов; затем записи сохранения ссылок и пользователей; в конце —
+ * запись с их числом. Файл сначала пишется во временный, сбрасывается на диск и только
+ * потом переименовывается, поэтому снимок на диске всегда целый. Снимок без завершающей
+ * записи или с повреждённой записью считается ошибкой, а не обрезается, как хвост журнала.
+ * <p>
+ * Снимок снимается без остановки записи и может содержать часть изменений, уже
+ * попавших в следующий файл журнала. Это безопасно, потому что записи журнала идемпотентны.
+ * <p>
+ * При загрузке файл отображается в память ({@link FileChannel#map}) окнами до
+ * {@value #MAP_WINDOW_BYTES} байт и разбирается без промежуточного копирования.
+ */
+public class Snapshot {
+
+    /** Размер окна отображения файла в память. */
+    private static final int MAP_WINDOW_BYTES = 1 << 30;
+
+    /**
+     * Заголовок снимка.
+     *
+     * @param firstLogGeneration номер первого файла журнала, который воспроизводится поверх снимка
+     * @param nextCounter        следующее значение счётчика генератора идентификаторов
+     */
+    public record Header(long firstLogGeneration, long nextCounter) {
+    }
+
+    private Snapshot() {
+    }
+
+    /**
+     * Записывает снимок репозиториев.
+     *
+     * @param file                путь к файлу снимка (заменяется атомарно)
+     * @param header              заголовок снимка
+     * @param shortLinkRepository репозиторий ссылок
+     * @param userRepository      репозиторий пользователей
+     * @return число записанных ссылок и пользователей
+     * @throws IOException если снимок не удалось записать
+     */
+    public static long write(Path file, Header header, ShortLinkRepository shortLinkRepository,
+                             UserRepository userRepository) throws IOException {
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.deleteIfExists(temporary);
+        long[] records = new long[1];
+        try (WriteAheadLog out = new WriteAheadLog(temporary, WriteAheadLog.FsyncPolicy.NEVER, 0)) {
+            out.logLongs(WriteAheadLog.SNAPSHOT_HEADER, header.firstLogGeneration(), header.nextCounter());
+            shortLinkRepository.forEachLink(link -> {
+                out.logLinkSave(Base62.decode(link.getShortId()), link);
+                records[0]++;
+            });
+            for (User user : userRepository.findAll()) {
+                out.logUserSave(user);
+                records[0]++;
+            }
+            out.logLongs(WriteAheadLog.SNAPSHOT_END, records[0]);
+            out.sync();
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return records[0];
+    }
+
+    /**
+     * Загружает снимок, передавая его ссылки и пользователей получателю.
+     *
+     * @param file    путь к файлу снимка
+     * @param visitor получатель записей
+     * @return заголовок снимка или null, если снимка нет
+     * @throws IOException если снимок не удалось прочитать или он повреждён
+     */
+    public static Header load(Path file, WriteAheadLog.Visitor visitor) throws IOException {
+        if (!Files.exists(file)) {
+            return null;
+        }
+        try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+            CRC32C checksum = new CRC32C();
+            long size = in.size();
+            long position = 0;
+            long records = 0;
+            Header header = null;
+            while (position < size) {
+                MappedByteBuffer window = in.map(FileChannel.MapMode.READ_ONLY, position,
+                        Math.min(size - position, MAP_WINDOW_BYTES));
+                int consumed = 0;
+                int recordBytes;
+                while ((recordBytes = WriteAheadLog.checkRecord(window, checksum)) > 0) {
+                    window.position(consumed + WriteAheadLog.HEADER_BYTES);
+                    byte type = window.get(window.position());
+                    if (type == WriteAheadLog.SNAPSHOT_HEADER) {
+                        window.get();
+                        header = new Header(window.getLong(), window.getLong());
+                    } else if (type == WriteAheadLog.SNAPSHOT_END) {
+                        window.get();
+                        if (header == null || window.getLong() != records) {
+                            throw new IOException("Снимок " + file + " повреждён: не совпадает число записей");
+                        }
+                        return header;
+                    } else {
+                        WriteAheadLog.apply(window, visitor);
+                        records++;
+                    }
+                    consumed += recordBytes;
+                    window.position(consumed);
+                }
+                if (consumed == 0) {
+                    break;
+                }
+                position += consumed;
+            }
+            throw new IOException("Снимок " + file + " повреждён или не завершён");
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.beryoza.urlshortener;
+
+import java.io.IOException;
+
+/**
+ * Хранилище сервиса: репозитории ссылок и пользователей и генератор идентификаторов,
+ * согласованный с уже выданными ссылками.
+ * <p>
+ * Реализация выбирается свойством <code>config.storage.backend</code>:
+ * <ul>
+ *   <li>{@code memory} — {@link MemoryStorage}, всё в куче, без сохранения;</li>
+ *   <li>{@code file} — {@link DurableStorage}, снимок и журнал изменений в каталоге
+ *       <code>config.storage.dir</code> (по умолчанию);</li>
+ *   <li>{@code jdbc} — {@link JdbcStorage}, таблицы в базе данных <code>config.jdbc.url</code>.</li>
+ * </ul>
+ * <p>
+ * Пример:
+ * {@code
+ * try (Storage storage = Storage.open()) {
+ *     ShortLinkService service = new ShortLinkService(storage.getShortLinkRepository(), storage.getShortIdGenerator());
+ * }
+ * }
+ */
+public interface Storage extends AutoCloseable {
+
+    /** Возвращает репозиторий ссылок. */
+    ShortLinkRepository getShortLinkRepository();
+
+    /** Возвращает репозиторий пользователей. */
+    UserRepository getUserRepository();
+
+    /** Возвращает генератор идентификаторов, не повторяющий уже выданные. */
+    ShortIdGenerator getShortIdGenerator();
+
+    /**
+     * Можно ли переходить по ссылкам из цикла событий ({@link ShortLinkService#resolveNonBlocking}):
+     * поиск ссылки не ждёт ни сети, ни других потоков. По умолчанию — да.
+     */
+    default boolean supportsNonBlockingResolve() {
+        return true;
+    }
+
+    /**
+     * Закрывает хранилище, дождавшись сохранения уже выполненных изменений.
+     */
+    @Override
+    void close();
+
+    /**
+     * Открывает хранилище, выбранное в <code>config.storage.backend</code>.
+     *
+     * @return открытое хранилище
+     * @throws IOException              если хранилище на диске не удалось прочитать или открыть
+     * @throws IllegalArgumentException если вид хранилища неизвестен
+     */
+    static Storage open() throws IOException {
+        return switch (Config.getStorageBackend()) {
+            case "memory" -> new MemoryStorage();
+            case "file" -> DurableStorage.open();
+            case "jdbc" -> JdbcStorage.open();
+            default -> throw new IllegalArgumentException("Неизвестный вид хранилища: " + Config.getStorageBackend());
+        };
+    }
+}
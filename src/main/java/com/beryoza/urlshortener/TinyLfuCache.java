@@ -0,0 +1,519 @@
+package com.beryoza.urlshortener;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.BooleanSupplier;
+import java.util.function.ToIntFunction;
+
+/**
+ * Кэш с ключом {@code long} и политикой вытеснения W-TinyLFU.
+ * <p>
+ * Новые записи сначала попадают в небольшое окно LRU (около 1% бюджета), которое
+ * сглаживает всплески обращений к свежим ключам. Выпавшая из окна запись проходит
+ * в основную область, только если по частотному скетчу к её ключу обращались чаще,
+ * чем к кандидату на вытеснение. Поэтому однократный обход множества редких ключей
+ * не выталкивает из кэша популярные ссылки, как это происходит в обычном LRU.
+ * Основная область — сегментированный LRU: испытательная часть (20%) и защищённая
+ * (80%), куда записи переходят после повторного обращения.
+ * <p>
+ * Частоты хранятся в count-min скетче с 4-битными счётчиками; после определённого
+ * числа обращений все счётчики делятся пополам, чтобы старая популярность забывалась.
+ * <p>
+ * Кэш разбит на сегменты со своей {@link StampedLock}. Поиск выполняется оптимистично
+ * и блокировку записи не берёт: ключ прочитанной записи (и промаха) кладётся в небольшой
+ * кольцевой буфер обращений сегмента без блокировок. Буфер применяется к порядку и частотам
+ * пачкой раз в {@value #READ_DRAIN_BATCH} обращений — под блокировкой записи, если её удалось
+ * взять сразу, — и перед каждой вставкой. Буфер с потерями: обращения, которые не успели
+ * применить до его переполнения, пропускаются, это лишь немного огрубляет статистику.
+ * Поэтому оптимистичные чтения сбиваются не на каждом обращении, а раз в пачку, и чтение
+ * ждёт только вставок и удалений.
+ *
+ * @param <V> тип значений
+ */
+public class TinyLfuCache<V> {
+
+    /** Количество сегментов (степень двойки). */
+    private static final int SEGMENT_COUNT = 16;
+
+    /** Доля окна в бюджете сегмента (в процентах). */
+    private static final int WINDOW_PERCENT = 1;
+
+    /** Доля защищённой части в основной области (в процентах). */
+    private static final int PROTECTED_PERCENT = 80;
+
+    /** Размер буфера обращений сегмента (степень двойки). */
+    private static final int READ_BUFFER_SIZE = 128;
+
+    /** Раз в сколько обращений буфер применяется (степень двойки, не больше буфера). */
+    private static final int READ_DRAIN_BATCH = 32;
+
+    // Сегменты кэша
+    private final Segment<V>[] segments;
+    // Вес одного значения
+    private final ToIntFunction<V> weigher;
+
+    // Счётчики обращений
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Создаёт кэш, ограниченный числом записей.
+     *
+     * @param maxEntries максимальное число записей
+     */
+    public TinyLfuCache(long maxEntries) {
+        this(maxEntries, value -> 1, maxEntries);
+    }
+
+    /**
+     * Создаёт кэш, ограниченный суммарным весом значений.
+     *
+     * @param maxWeight       максимальный суммарный вес
+     * @param weigher         вес одного значения (например, размер в байтах)
+     * @param expectedEntries ожидаемое число записей — по нему выбирается размер скетча
+     */
+    public TinyLfuCache(long maxWeight, ToIntFunction<V> weigher, long expectedEntries) {
+        if (maxWeight <= 0) {
+            throw new IllegalArgumentException("Размер кэша должен быть положительным");
+        }
+        this.weigher = weigher;
+        // Массив обобщённого типа создать нельзя: создаём Segment<?>[] и приводим
+        @SuppressWarnings("unchecked")
+        Segment<V>[] created = (Segment<V>[]) new Segment<?>[SEGMENT_COUNT];
+        this.segments = created;
+        long segmentWeight = Math.max(1, maxWeight / SEGMENT_COUNT);
+        int segmentEntries = (int) Math.min(1 << 24, Math.max(16, expectedEntries / SEGMENT_COUNT));
+        for (int i = 0; i < SEGMENT_COUNT; i++) {
+            segments[i] = new Segment<>(segmentWeight, segmentEntries);
+        }
+    }
+
+    /**
+     * Возвращает значение по ключу и учитывает обращение.
+     *
+     * @param key ключ
+     * @return значение или null, если его нет в кэше
+     */
+    public V get(long key) {
+        long hash = LongObjectMap.hash(key);
+        Segment<V> segment = segmentFor(hash);
+        Node<V> node = segment.find(key);
+        if (node != null) {
+            hits.increment();
+        } else {
+            misses.increment();
+        }
+        // Порядок и частоты обновляются пачкой, только если сегмент свободен
+        if (segment.recordRead(key)) {
+            long stamp = segment.lock.tryWriteLock();
+            if (stamp != 0) {
+                try {
+                    segment.drainReads();
+                } finally {
+                    segment.lock.unlockWrite(stamp);
+                }
+            }
+        }
+        return node != null ? node.value : null;
+    }
+
+    /**
+     * Кладёт значение в кэш.
+     * <p>
+     * Условие проверяется под блокировкой сегмента непосредственно перед вставкой.
+     * Так загрузчик может отказаться от вставки, если значение успело устареть,
+     * пока оно читалось из хранилища.
+     *
+     * @param key        ключ
+     * @param value      значение
+     * @param stillValid условие, при котором значение ещё можно класть
+     */
+    public void put(long key, V value, BooleanSupplier stillValid) {
+        int weight = weigher.applyAsInt(value);
+        long hash = LongObjectMap.hash(key);
+        Segment<V> segment = segmentFor(hash);
+        if (weight > segment.maxWeight) {
+            return; // Значение не поместится никогда
+        }
+        long stamp = segment.lock.writeLock();
+        try {
+            if (!stillValid.getAsBoolean()) {
+                return;
+            }
+            // Накопленные обращения нужны свежими: по частотам решается, кого вытеснить
+            segment.drainReads();
+            segment.remove(key);
+            segment.insert(new Node<>(key, hash, value, weight));
+            evictions.add(segment.evict());
+        } finally {
+            segment.lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Кладёт значение в кэш без дополнительных условий.
+     *
+     * @param key   ключ
+     * @param value значение
+     */
+    public void put(long key, V value) {
+        put(key, value, () -> true);
+    }
+
+    /**
+     * Удаляет значение из кэша.
+     *
+     * @param key ключ
+     */
+    public void invalidate(long key) {
+        Segment<V> segment = segmentFor(LongObjectMap.hash(key));
+        long stamp = segment.lock.writeLock();
+        try {
+            segment.remove(key);
+        } finally {
+            segment.lock.unlockWrite(stamp);
+        }
+    }
+
+    /** Возвращает число попаданий в кэш. */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /** Возвращает число промахов. */
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /** Возвращает число записей, вытесненных политикой (без учёта явных удалений). */
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    /**
+     * Возвращает количество записей в кэше.
+     */
+    public int size() {
+        int size = 0;
+        for (Segment<V> segment : segments) {
+            long stamp = segment.lock.readLock();
+            try {
+                size += segment.nodes.size();
+            } finally {
+                segment.lock.unlockRead(stamp);
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Возвращает суммарный вес записей в кэше.
+     */
+    public long weightedSize() {
+        long weight = 0;
+        for (Segment<V> segment : segments) {
+            long stamp = segment.lock.readLock();
+            try {
+                weight += segment.windowWeight + segment.probationWeight + segment.protectedWeight;
+            } finally {
+                segment.lock.unlockRead(stamp);
+            }
+        }
+        return weight;
+    }
+
+    private Segment<V> segmentFor(long hash) {
+        return segments[(int) (hash >>> 32) & (SEGMENT_COUNT - 1)];
+    }
+
+    /** Область кэша, в которой находится запись. */
+    private enum Queue { WINDOW, PROBATION, PROTECTED }
+
+    /**
+     * Запись кэша — узел двусвязного списка своей области.
+     */
+    private static final class Node<V> {
+        final long key;
+        final long hash;
+        final V value;
+        final int weight;
+        Queue queue;
+        Node<V> prev;
+        Node<V> next;
+        // Запись уже убрана из таблицы; меняется под блокировкой
+        boolean removed;
+
+        Node(long key, long hash, V value, int weight) {
+            this.key = key;
+            this.hash = hash;
+            this.value = value;
+            this.weight = weight;
+        }
+
+        /** Создаёт пустой узел-заголовок списка. */
+        static <V> Node<V> sentinel() {
+            Node<V> head = new Node<>(0, 0, null, 0);
+            head.prev = head;
+            head.next = head;
+            return head;
+        }
+    }
+
+    /**
+     * Сегмент кэша: таблица записей, три списка LRU и частотный скетч.
+     * Все изменения выполняются под блокировкой записи.
+     */
+    private static final class Segment<V> {
+        final StampedLock lock = new StampedLock();
+        final LongObjectMap<Node<V>> nodes = new LongObjectMap<>();
+        final FrequencySketch sketch;
+
+        // Списки областей; у каждого голова — самая старая запись, хвост — самая свежая
+        final Node<V> window = Node.sentinel();
+        final Node<V> probation = Node.sentinel();
+        final Node<V> protectedQueue = Node.sentinel();
+
+        // Бюджеты
+        final long maxWeight;
+        final long maxWindowWeight;
+        final long maxProtectedWeight;
+
+        // Текущие веса областей
+        long windowWeight;
+        long probationWeight;
+        long protectedWeight;
+
+        // Буфер обращений: ключи в кольце и число записанных; запись без блокировок
+        final AtomicLongArray readBuffer = new AtomicLongArray(READ_BUFFER_SIZE);
+        final AtomicLong readsRecorded = new AtomicLong();
+        // Сколько обращений уже применено; меняется под блокировкой записи
+        long readsDrained;
+
+        Segment(long maxWeight, int expectedEntries) {
+            this.maxWeight = maxWeight;
+            this.maxWindowWeight = Math.max(1, maxWeight * WINDOW_PERCENT / 100);
+            this.maxProtectedWeight = (maxWeight - maxWindowWeight) * PROTECTED_PERCENT / 100;
+            this.sketch = new FrequencySketch(expectedEntries);
+        }
+
+        Node<V> find(long key) {
+            long stamp = lock.tryOptimisticRead();
+            if (stamp != 0) {
+                Node<V> node = nodes.get(key);
+                if (lock.validate(stamp)) {
+                    return node;
+                }
+            }
+            stamp = lock.readLock();
+            try {
+                return nodes.get(key);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        /**
+         * Записывает обращение к ключу в буфер.
+         *
+         * @return true, если набралась пачка и буфер пора применить
+         */
+        boolean recordRead(long key) {
+            long n = readsRecorded.getAndIncrement();
+            readBuffer.lazySet((int) n & (READ_BUFFER_SIZE - 1), key);
+            return (n & (READ_DRAIN_BATCH - 1)) == READ_DRAIN_BATCH - 1;
+        }
+
+        /**
+         * Применяет накопленные обращения к частотам и порядку. Если записано больше,
+         * чем помещается в буфер, старые обращения теряются; ячейку, которую писатель
+         * ещё не заполнил, можно прочитать устаревшей — для статистики это допустимо.
+         * Вызывается под блокировкой записи.
+         */
+        void drainReads() {
+            long recorded = readsRecorded.get();
+            for (long n = Math.max(readsDrained, recorded - READ_BUFFER_SIZE); n < recorded; n++) {
+                long key = readBuffer.get((int) n & (READ_BUFFER_SIZE - 1));
+                sketch.increment(LongObjectMap.hash(key));
+                Node<V> node = nodes.get(key);
+                if (node != null) {
+                    onHit(node);
+                }
+            }
+            readsDrained = recorded;
+        }
+
+        /**
+         * Переставляет запись после попадания: в окне и защищённой части — в конец
+         * своего списка, из испытательной — в защищённую часть.
+         */
+        void onHit(Node<V> node) {
+            switch (node.queue) {
+                case WINDOW -> moveToTail(window, node);
+                case PROTECTED -> moveToTail(protectedQueue, node);
+                case PROBATION -> {
+                    unlink(node);
+                    probationWeight -= node.weight;
+                    node.queue = Queue.PROTECTED;
+                    linkLast(protectedQueue, node);
+                    protectedWeight += node.weight;
+                    // Переполненная защищённая часть отдаёт старые записи обратно
+                    while (protectedWeight > maxProtectedWeight && protectedQueue.next != node) {
+                        Node<V> demoted = protectedQueue.next;
+                        unlink(demoted);
+                        protectedWeight -= demoted.weight;
+                        demoted.queue = Queue.PROBATION;
+                        linkLast(probation, demoted);
+                        probationWeight += demoted.weight;
+                    }
+                }
+            }
+        }
+
+        void insert(Node<V> node) {
+            nodes.put(node.key, node);
+            node.queue = Queue.WINDOW;
+            linkLast(window, node);
+            windowWeight += node.weight;
+            sketch.increment(node.hash);
+        }
+
+        void remove(long key) {
+            Node<V> node = nodes.remove(key);
+            if (node != null) {
+                detach(node);
+            }
+        }
+
+        /**
+         * Выводит записи из переполненного окна и решает, кого оставить: запись из окна
+         * или кандидата на вытеснение из основной области.
+         *
+         * @return число вытесненных записей
+         */
+        int evict() {
+            int evicted = 0;
+            while (windowWeight > maxWindowWeight) {
+                Node<V> candidate = window.next;
+                unlink(candidate);
+                windowWeight -= candidate.weight;
+                candidate.queue = Queue.PROBATION;
+                linkLast(probation, candidate);
+                probationWeight += candidate.weight;
+            }
+            // Сравниваем самого свежего кандидата с самой старой записью основной области
+            while (windowWeight + probationWeight + protectedWeight > maxWeight) {
+                Node<V> victim = probation.next != probation ? probation.next : protectedQueue.next;
+                Node<V> candidate = probation.prev;
+                if (victim == candidate || candidate.queue != Queue.PROBATION) {
+                    evictNode(victim);
+                } else if (sketch.frequency(candidate.hash) > sketch.frequency(victim.hash)) {
+                    evictNode(victim);
+                } else {
+                    evictNode(candidate);
+                }
+                evicted++;
+            }
+            return evicted;
+        }
+
+        private void evictNode(Node<V> node) {
+            nodes.remove(node.key);
+            detach(node);
+        }
+
+        private void detach(Node<V> node) {
+            node.removed = true;
+            unlink(node);
+            switch (node.queue) {
+                case WINDOW -> windowWeight -= node.weight;
+                case PROBATION -> probationWeight -= node.weight;
+                case PROTECTED -> protectedWeight -= node.weight;
+            }
+        }
+
+        private static <V> void moveToTail(Node<V> head, Node<V> node) {
+            unlink(node);
+            linkLast(head, node);
+        }
+
+        private static <V> void linkLast(Node<V> head, Node<V> node) {
+            node.prev = head.prev;
+            node.next = head;
+            head.prev.next = node;
+            head.prev = node;
+        }
+
+        private static <V> void unlink(Node<V> node) {
+            node.prev.next = node.next;
+            node.next.prev = node.prev;
+            node.prev = node;
+            node.next = node;
+        }
+    }
+
+    /**
+     * Count-min скетч частот с четырьмя 4-битными счётчиками на ключ.
+     * <p>
+     * В одном {@code long} помещается 16 счётчиков. Когда число увеличений достигает
+     * десятикратного размера выборки, все счётчики делятся пополам.
+     */
+    private static final class FrequencySketch {
+        private static final long RESET_MASK = 0x7777777777777777L;
+
+        final long[] table;
+        final int sampleSize;
+        int additions;
+
+        FrequencySketch(int expectedEntries) {
+            int size = Integer.highestOneBit(Math.max(4, expectedEntries - 1) << 1);
+            this.table = new long[size];
+            this.sampleSize = 10 * expectedEntries;
+        }
+
+        int frequency(long hash) {
+            int frequency = Integer.MAX_VALUE;
+            for (int i = 0; i < 4; i++) {
+                int index = indexOf(hash, i);
+                int offset = counterOffset(hash, i);
+                frequency = Math.min(frequency, (int) ((table[index] >>> offset) & 0xfL));
+            }
+            return frequency;
+        }
+
+        void increment(long hash) {
+            boolean added = false;
+            for (int i = 0; i < 4; i++) {
+                int index = indexOf(hash, i);
+                int offset = counterOffset(hash, i);
+                if (((table[index] >>> offset) & 0xfL) != 0xfL) {
+                    table[index] += 1L << offset;
+                    added = true;
+                }
+            }
+            if (added && ++additions >= sampleSize) {
+                for (int i = 0; i < table.length; i++) {
+                    table[i] = (table[i] >>> 1) & RESET_MASK;
+                }
+                additions /= 2;
+            }
+        }
+
+        private int indexOf(long hash, int i) {
+            long h = (hash + SEEDS[i]) * SEEDS[i];
+            h += h >>> 32;
+            return (int) h & (table.length - 1);
+        }
+
+        private static int counterOffset(long hash, int i) {
+            // Номер счётчика внутри long (0..15), для каждой хеш-функции свой
+            return (int) ((hash >>> (i << 3)) & 0xf) << 2;
+        }
+
+        private static final long[] SEEDS = {
+                0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L
+        };
+    }
+}
@@ -0,0 +1,166 @@
+package com.beryoza.urlshortener;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Компактное представление исходных URL ссылок.
+ * <p>
+ * URL делится на начало — схему и хост с портом ({@code https://example.com}) —
+ * и остаток: путь, запрос и фрагмент. Начала повторяются у тысяч ссылок, поэтому
+ * хранятся в словаре одной общей строкой на хост. Остаток хранится массивом байтов
+ * UTF-8 (вдвое меньше строки с символами вне Latin-1 и без заголовка объекта
+ * {@link String}) и превращается в строку только тогда, когда URL нужен целиком.
+ * <p>
+ * Одинаковые остатки (одну и ту же страницу сокращают многие пользователи) делят
+ * один массив: недавно встреченные остатки лежат в таблице прямого отображения
+ * без блокировок, как в {@link NegativeLookupCache}. Таблица вытесняет прежний
+ * массив при коллизии, поэтому её размер фиксирован, а дубликаты находятся тем
+ * надёжнее, чем популярнее URL.
+ * <p>
+ * Словарь хостов ограничен <code>config.url.origin.dictionary.size</code> записями:
+ * когда он заполнен, начала новых хостов хранятся в ссылках собственными строками.
+ */
+public final class UrlDictionary {
+
+    /** Пустой остаток (URL без пути). */
+    private static final byte[] EMPTY = new byte[0];
+
+    /** Начало URL → та же строка, общая для всех ссылок. */
+    private static final ConcurrentHashMap<String, String> ORIGINS = new ConcurrentHashMap<>();
+
+    /** Предельное число хостов в словаре. */
+    private static final int MAX_ORIGINS = Config.getUrlOriginDictionarySize();
+
+    /** Недавно встреченные остатки URL по хешу содержимого. */
+    private static final AtomicReferenceArray<byte[]> PATHS =
+            new AtomicReferenceArray<>(Integer.highestOneBit(Math.max(1, Config.getUrlDedupSize() - 1) << 1));
+
+    /** Маска номера ячейки таблицы остатков. */
+    private static final int PATH_MASK = PATHS.length() - 1;
+
+    private UrlDictionary() {
+    }
+
+    /**
+     * Возвращает длину начала URL (схема, "://" и хост с портом) в байтах UTF-8 —
+     * до первого '/', '?' или '#' после "://". Разделители — символы ASCII, поэтому
+     * граница ищется прямо в байтах.
+     *
+     * @param utf8 URL в UTF-8
+     * @return длина начала; 0, если URL не начинается со схемы
+     */
+    static int originLength(byte[] utf8) {
+        int scheme = 0;
+        while (scheme < utf8.length && isSchemeChar(utf8[scheme])) {
+            scheme++;
+        }
+        if (scheme == 0 || scheme + 3 > utf8.length
+                || utf8[scheme] != ':' || utf8[scheme + 1] != '/' || utf8[scheme + 2] != '/') {
+            return 0;
+        }
+        int end = scheme + 3;
+        while (end < utf8.length && utf8[end] != '/' && utf8[end] != '?' && utf8[end] != '#') {
+            end++;
+        }
+        return end;
+    }
+
+    /**
+     * Возвращает общую строку начала URL из словаря, добавляя новое начало, пока словарь
+     * не заполнен.
+     *
+     * @param utf8   URL в UTF-8
+     * @param length длина начала (см. {@link #originLength})
+     * @return строка начала ("" для URL без схемы)
+     */
+    static String origin(byte[] utf8, int length) {
+        if (length == 0) {
+            return "";
+        }
+        String origin = new String(utf8, 0, length, StandardCharsets.UTF_8);
+        String shared = ORIGINS.get(origin);
+        if (shared != null) {
+            return shared;
+        }
+        if (ORIGINS.size() >= MAX_ORIGINS) {
+            return origin;
+        }
+        shared = ORIGINS.putIfAbsent(origin, origin);
+        return shared != null ? shared : origin;
+    }
+
+    /**
+     * Возвращает остаток URL после начала: массив, уже встреченный у другой ссылки,
+     * если содержимое совпадает, иначе новую копию (и запоминает её).
+     * Возвращённый массив общий, изменять его нельзя.
+     *
+     * @param utf8 URL в UTF-8
+     * @param from начало остатка (длина начала URL)
+     * @return остаток URL в UTF-8
+     */
+    static byte[] path(byte[] utf8, int from) {
+        int length = utf8.length - from;
+        if (length == 0) {
+            return EMPTY;
+        }
+        int hash = 1;
+        for (int i = from; i < utf8.length; i++) {
+            hash = 31 * hash + utf8[i];
+        }
+        int slot = (hash ^ (hash >>> 16)) & PATH_MASK;
+        byte[] known = PATHS.get(slot);
+        if (known != null && Arrays.equals(known, 0, known.length, utf8, from, utf8.length)) {
+            return known;
+        }
+        byte[] path = Arrays.copyOfRange(utf8, from, utf8.length);
+        PATHS.lazySet(slot, path);
+        return path;
+    }
+
+    /**
+     * Кодирует URL для заголовка Location: байты UTF-8 вне печатного ASCII, пробел
+     * и управляющие символы заменяются на {@code %XX}. Результат — чистый ASCII, поэтому
+     * заголовок не искажается кодировкой ISO-8859-1 и не может быть разорван CR/LF.
+     *
+     * @param utf8 URL в UTF-8
+     * @return значение заголовка Location
+     */
+    static String toLocation(byte[] utf8) {
+        StringBuilder location = new StringBuilder(utf8.length + 16);
+        appendLocation(location, utf8);
+        return location.toString();
+    }
+
+    /**
+     * Дописывает URL, закодированный как в {@link #toLocation(byte[])}.
+     *
+     * @param target куда дописать
+     * @param utf8   URL в UTF-8
+     */
+    static void appendLocation(StringBuilder target, byte[] utf8) {
+        for (byte b : utf8) {
+            int c = b & 0xff;
+            if (c <= 0x20 || c >= 0x7f) {
+                target.append('%').append(Character.toUpperCase(Character.forDigit(c >> 4, 16)))
+                        .append(Character.toUpperCase(Character.forDigit(c & 0xf, 16)));
+            } else {
+                target.append((char) c);
+            }
+        }
+    }
+
+    /**
+     * Возвращает число хостов в словаре.
+     */
+    static int originCount() {
+        return ORIGINS.size();
+    }
+
+    private static boolean isSchemeChar(byte b) {
+        return (b >= 'a' && b <= 'z') || (b >= 'A' && b <= 'Z') || (b >= '0' && b <= '9')
+                || b == '+' || b == '-' || b == '.';
+    }
+}
@@ -0,0 +1,203 @@
+package com.beryoza.urlshortener;
+
+import java.util.Arrays;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Словарь пользователей: UUID ↔ плотный номер (0, 1, 2, ...).
+ * <p>
+ * Записи ссылок в хранилищах ({@link MappedLinkStore}, {@link LsmLinkStore},
+ * {@link ColumnarLinkStore}) и индексы по владельцу хранят номер владельца ({@code int})
+ * вместо UUID, а UUID восстанавливается по номеру чтением массива. Для каждого номера
+ * словарь держит один общий экземпляр {@link UUID}: ссылки в куче ссылаются на него,
+ * а не на собственные копии.
+ * <p>
+ * Словарь принадлежит хранилищу ({@link Storage}): оно передаёт один и тот же словарь
+ * репозиториям и хранилищу ссылок. Номера действуют, пока жив словарь: на диск и в базу
+ * записываются UUID, а номера назначаются заново при загрузке.
+ * <p>
+ * Номер держат зарегистрированный пользователь ({@link #register(UUID)}) и ссылки
+ * владельца, учтённые репозиторием ({@link #acquire(UUID)} / {@link #release(int)}).
+ * Когда удаляется последняя ссылка незарегистрированного владельца, номер освобождается
+ * и достаётся следующему новому UUID, поэтому словарь не растёт от владельцев, которых
+ * больше нет.
+ * <p>
+ * Чтение номера и UUID идёт без блокировок; выдача, учёт и освобождение номеров — под
+ * монитором словаря.
+ */
+public final class UserIds {
+
+    /** Нет номера (ссылка без владельца или неизвестный UUID). */
+    public static final int NONE = -1;
+
+    /** Начальный размер таблиц. */
+    private static final int INITIAL_CAPACITY = 1024;
+
+    // UUID → номер
+    private final ConcurrentHashMap<UUID, Integer> ids = new ConcurrentHashMap<>();
+    // Выдача, учёт и освобождение номеров
+    private final Object lock = new Object();
+    // Номер → общий экземпляр UUID; массив заменяется целиком при росте
+    private volatile UUID[] uuids = new UUID[INITIAL_CAPACITY];
+    // Число ссылок на номер; меняется под монитором
+    private int[] links = new int[INITIAL_CAPACITY];
+    // Зарегистрирован ли пользователь; меняется под монитором
+    private boolean[] registered = new boolean[INITIAL_CAPACITY];
+    // Освобождённые номера для повторной выдачи; меняются под монитором
+    private int[] free = new int[16];
+    private int freeCount;
+    // Следующий ни разу не выданный номер; меняется под монитором
+    private int next;
+
+    /**
+     * Возвращает номер пользователя, выдавая новый при первой встрече UUID.
+     * Номер не учитывается: его освободит первый же {@link #release(int)} без ссылок.
+     *
+     * @param uuid UUID пользователя (null — {@link #NONE})
+     * @return номер пользователя
+     */
+    int idOf(UUID uuid) {
+        if (uuid == null) {
+            return NONE;
+        }
+        Integer id = ids.get(uuid);
+        if (id != null) {
+            return id;
+        }
+        synchronized (lock) {
+            return assign(uuid);
+        }
+    }
+
+    /**
+     * Возвращает номер пользователя, не выдавая новый.
+     *
+     * @param uuid UUID пользователя
+     * @return номер или {@link #NONE}, если UUID в словаре нет
+     */
+    int find(UUID uuid) {
+        Integer id = uuid != null ? ids.get(uuid) : null;
+        return id != null ? id : NONE;
+    }
+
+    /**
+     * Возвращает общий экземпляр UUID по номеру. Номер, прочитанный оптимистично
+     * (возможно, мусор), безопасен: вне таблицы ответ — null.
+     *
+     * @param id номер, полученный из словаря
+     * @return UUID или null для {@link #NONE} и свободного номера
+     */
+    UUID uuidOf(int id) {
+        UUID[] table = uuids;
+        return id >= 0 && id < table.length ? table[id] : null;
+    }
+
+    /**
+     * Учитывает ссылку владельца: номер не освободится, пока ссылка не снята {@link #release(int)}.
+     *
+     * @param uuid UUID владельца (null — {@link #NONE})
+     * @return номер владельца
+     */
+    int acquire(UUID uuid) {
+        if (uuid == null) {
+            return NONE;
+        }
+        synchronized (lock) {
+            int id = assign(uuid);
+            links[id]++;
+            return id;
+        }
+    }
+
+    /**
+     * Снимает учтённую ссылку владельца. Номер без ссылок и без регистрации освобождается.
+     *
+     * @param id номер из {@link #acquire(UUID)} ({@link #NONE} игнорируется)
+     */
+    void release(int id) {
+        if (id == NONE) {
+            return;
+        }
+        synchronized (lock) {
+            if (links[id] > 0) {
+                links[id]--;
+            }
+            freeIfUnused(id);
+        }
+    }
+
+    /**
+     * Регистрирует пользователя: его номер не освобождается, даже когда ссылок нет.
+     *
+     * @param uuid UUID пользователя
+     * @return номер пользователя
+     */
+    int register(UUID uuid) {
+        synchronized (lock) {
+            int id = assign(uuid);
+            registered[id] = true;
+            return id;
+        }
+    }
+
+    /**
+     * Снимает регистрацию; номер освобождается, если у пользователя нет ссылок.
+     *
+     * @param uuid UUID пользователя
+     */
+    void unregister(UUID uuid) {
+        synchronized (lock) {
+            int id = find(uuid);
+            if (id != NONE) {
+                registered[id] = false;
+                freeIfUnused(id);
+            }
+        }
+    }
+
+    /**
+     * Возвращает число занятых номеров.
+     */
+    int count() {
+        return ids.size();
+    }
+
+    /**
+     * Возвращает номер UUID, выдавая новый (сначала из освобождённых). Вызывается под монитором.
+     */
+    private int assign(UUID uuid) {
+        Integer known = ids.get(uuid);
+        if (known != null) {
+            return known;
+        }
+        int id = freeCount > 0 ? free[--freeCount] : next++;
+        UUID[] table = uuids;
+        if (id == table.length) {
+            table = Arrays.copyOf(table, id * 2);
+            links = Arrays.copyOf(links, id * 2);
+            registered = Arrays.copyOf(registered, id * 2);
+        }
+        // UUID виден в таблице раньше, чем номер в словаре
+        table[id] = uuid;
+        uuids = table;
+        ids.put(uuid, id);
+        return id;
+    }
+
+    /**
+     * Освобождает номер без ссылок и регистрации. Вызывается под монитором.
+     */
+    private void freeIfUnused(int id) {
+        UUID uuid = uuids[id];
+        if (uuid == null || links[id] > 0 || registered[id]) {
+            return;
+        }
+        ids.remove(uuid);
+        uuids[id] = null;
+        if (freeCount == free.length) {
+            free = Arrays.copyOf(free, freeCount * 2);
+        }
+        free[freeCount++] = id;
+    }
+}
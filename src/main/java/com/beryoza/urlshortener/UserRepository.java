@@ -1,18 +1,20 @@
 package com.beryoza.urlshortener;
 
-import java.util.*;
+import java.util.Collection;
+import java.util.UUID;
 
 /**
- * Репозиторий для хранения пользователей в памяти (in-memory).
- * Используем Map, где ключ — UUID пользователя, а значение — сам User.
+ * Репозиторий пользователей — то, через что {@link UserService} работает с хранилищем.
+ * <p>
+ * Реализации выбираются вместе с репозиторием ссылок (см. {@link Storage}):
+ * {@link InMemoryUserRepository} или {@link JdbcUserRepository}. Реализации должны быть
+ * потокобезопасными.
+ * <p>
+ * Репозиторий же выдаёт пользователям плотные номера ({@link #getUserId(UUID)}) из словаря
+ * {@link UserIds} своего хранилища: ими владелец записан в ссылках и индексах, а UUID
+ * восстанавливается только на границе API.
  */
-public class UserRepository {
-
-    /**
-     * Хранилище. Ключ — это userUuid (UUID),
-     * значение — объект User.
-     */
-    private final Map<UUID, User> storage = new HashMap<>();
+public interface UserRepository {
 
     /**
      * Сохраняем пользователя в хранилище. Если пользователь
@@ -21,10 +23,7 @@ public class UserRepository {
      * @param user объект пользователя, должен иметь уникальный userUuid
      * @return тот же user (просто возвращаем для удобства)
      */
-    public User saveUser(User user) {
-        storage.put(user.getUserUuid(), user);
-        return user;
-    }
+    User saveUser(User user);
 
     /**
      * Ищем пользователя по его UUID.
@@ -32,9 +31,7 @@ public class UserRepository {
      * @param uuid идентификатор пользователя
      * @return найденный User или null, если такого нет
      */
-    public User findUser(UUID uuid) {
-        return storage.get(uuid);
-    }
+    User findUser(UUID uuid);
 
     /**
      * Удаляем пользователя по его UUID.
@@ -42,17 +39,29 @@ public class UserRepository {
      *
      * @param uuid идентификатор пользователя
      */
-    public void deleteUser(UUID uuid) {
-        storage.remove(uuid);
-    }
+    void deleteUser(UUID uuid);
+
+    /**
+     * Возвращает всех пользователей (например, для отладки или снимка).
+     *
+     * @return коллекция User
+     */
+    Collection<User> findAll();
+
+    /**
+     * Возвращает плотный номер пользователя, под которым ссылки и индексы в памяти хранят
+     * владельца вместо UUID; номер выдаётся при первом обращении (см. {@link UserIds}).
+     *
+     * @param uuid идентификатор пользователя
+     * @return номер пользователя
+     */
+    int getUserId(UUID uuid);
 
     /**
-     * Возвращает всех пользователей (например, для отладки).
+     * Возвращает UUID пользователя по номеру из {@link #getUserId(UUID)}.
      *
-     * @return коллекция User из внутреннего хранилища
+     * @param userId номер пользователя
+     * @return UUID пользователя или null, если номер свободен
      */
-    @SuppressWarnings("unused")
-    public Collection<User> findAll() {
-        return storage.values();
-    }
+    UUID getUserUuid(int userId);
 }
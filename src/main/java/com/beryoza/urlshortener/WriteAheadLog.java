@@ -0,0 +1,786 @@
+package com.beryoza.urlshortener;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32C;
+
+/**
+ * Журнал изменений (write-ahead log): файл, в конец которого дописывается каждое
+ * изменение ссылок и пользователей. При запуске журнал воспроизводится
+ * ({@link #replay(Path, Visitor)}), и хранилища восстанавливаются в состояние
+ * на момент остановки.
+ * <p>
+ * Формат записи — двоичный:
+ * <pre>
+ * int   длина (тип + данные)
+ * int   CRC32C типа и данных
+ * byte  тип записи
+ * ...   данные
+ * </pre>
+ * Ключ ссылки хранится числом ({@link Base62#decode}), UUID — двумя {@code long},
+ * строки — длиной и байтами UTF-8. Запись перехода ({@link #logClick}) занимает 21 байт.
+ * <p>
+ * Все записи идемпотентны: сохранение несёт полное состояние ссылки, а переход — значение
+ * счётчика после него, которое при воспроизведении применяется как максимум. Поэтому хвост
+ * журнала можно воспроизводить поверх снимка ({@link Snapshot}), уже частично его содержащего.
+ * <p>
+ * Записи сначала собираются в буфере, а на диск попадают по политике {@link FsyncPolicy}.
+ * Если процесс упал посреди записи, повреждённый хвост при воспроизведении
+ * обнаруживается по длине или CRC и отрезается.
+ * <p>
+ * При политике {@link FsyncPolicy#ALWAYS} используется групповая фиксация: метод записи
+ * только кладёт запись в буфер и возвращает её номер, а вызывающий, сняв свои блокировки,
+ * ждёт её в {@link #awaitDurable(long)}. Первый ждущий становится ведущим: он выжидает,
+ * пока наберётся {@code groupCommitSize} записей (но не дольше {@code groupCommitLingerMicros}),
+ * и одним {@link FileChannel#write} и одним {@link FileChannel#force} сбрасывает всё,
+ * что накопилось, после чего будит всех, чьи записи попали в группу. Поэтому один
+ * {@code fsync} подтверждает сразу много изменений, и пропускная способность
+ * не упирается в задержку диска.
+ * <p>
+ * Тот, кому нельзя блокироваться (цикл событий {@link NioRedirectServer}), вместо ожидания
+ * вызывает {@link #requestDurable(long)}: сброс выполняет фоновый поток журнала, а запись
+ * становится устойчивой с задержкой одной группы.
+ */
+public class WriteAheadLog implements AutoCloseable {
+
+    /**
+     * Когда записанное попадает на диск.
+     */
+    public enum FsyncPolicy {
+        /** Каждая запись оказывается на диске до возврата из {@link #awaitDurable(long)}. */
+        ALWAYS,
+        /** Буфер сбрасывается на диск фоновым потоком раз в заданный интервал. */
+        INTERVAL,
+        /** Буфер передаётся ОС раз в интервал, на диск её кэш сбрасывает сама ОС. */
+        NEVER
+    }
+
+    /**
+     * Получатель записей при воспроизведении журнала.
+     */
+    public interface Visitor {
+        /** Ссылка сохранена (создана или изменена). */
+        void linkSaved(ShortLink link);
+
+        /** Ссылка удалена. */
+        void linkDeleted(long key);
+
+        /** По ссылке выполнен переход; счётчик достиг значения не меньше {@code count}. */
+        void linkClicked(long key, int count);
+
+        /** Пользователь сохранён. */
+        void userSaved(User user);
+
+        /** Пользователь удалён. */
+        void userDeleted(UUID userUuid);
+    }
+
+    /** Типы записей. */
+    static final byte LINK_SAVE = 1;
+    static final byte LINK_DELETE = 2;
+    static final byte LINK_CLICK = 3;
+    static final byte USER_SAVE = 4;
+    static final byte USER_DELETE = 5;
+    static final byte SNAPSHOT_HEADER = 6;
+    static final byte SNAPSHOT_END = 7;
+
+    /** Размер заголовка записи: длина и CRC. */
+    static final int HEADER_BYTES = 8;
+
+    /** Максимальный размер записи; длина больше этой считается повреждением. */
+    static final int MAX_RECORD_BYTES = 1 << 20;
+
+    /** Размер буфера записи. */
+    private static final int WRITE_BUFFER_BYTES = 1 << 20;
+
+    /** Размер буфера чтения при воспроизведении. */
+    private static final int READ_BUFFER_BYTES = 4 << 20;
+
+    // Файл журнала; меняется при ротации под блокировкой
+    private FileChannel channel;
+    // Политика сброса на диск
+    private final FsyncPolicy policy;
+    // Защищает буфер и запись в файл
+    private final ReentrantLock lock = new ReentrantLock();
+    // Записи, ещё не переданные в файл
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(WRITE_BUFFER_BYTES);
+    // Контрольная сумма; используется под блокировкой
+    private final CRC32C crc = new CRC32C();
+    // Упорядочивает сброс на диск, ротацию и закрытие файла; берётся до lock
+    private final ReentrantLock forceLock = new ReentrantLock();
+    // Номер последней записи в буфере; меняется под lock
+    private volatile long appendedSequence;
+    // Сколько записей ведущий группы ждёт перед сбросом и сколько ждёт их (в нс)
+    private final int groupCommitSize;
+    private final long groupCommitLingerNanos;
+    // Состояние групповой фиксации
+    private final ReentrantLock groupLock = new ReentrantLock();
+    private final Condition groupFull = groupLock.newCondition();
+    private final Condition groupSynced = groupLock.newCondition();
+    // Номер последней записи, сброшенной на диск; меняется под groupLock
+    private long durableSequence;
+    // Ведущий группы сейчас сбрасывает журнал; меняется под groupLock
+    private boolean groupSyncing;
+    // Число сбросов файла на диск
+    private final LongAdder syncs = new LongAdder();
+    // Фоновый сброс буфера (INTERVAL, NEVER) или фоновое ожидание групп (ALWAYS)
+    private final ScheduledExecutorService syncer;
+    // Наибольший номер записи, сброс которой поручен фоновому потоку
+    private final AtomicLong requestedSequence = new AtomicLong();
+    // Фоновое ожидание уже поставлено в очередь
+    private final AtomicBoolean durableRequestQueued = new AtomicBoolean();
+    // В файл записаны данные, ещё не сброшенные на диск
+    private boolean unsynced;
+    // Журнал закрыт
+    private boolean closed;
+
+    /**
+     * Открывает журнал на дозапись (файл создаётся, если его нет).
+     *
+     * @param path               путь к файлу журнала
+     * @param policy             политика сброса на диск
+     * @param syncIntervalMillis интервал фонового сброса (в мс) для INTERVAL и NEVER;
+     *                           для NEVER значение 0 означает "только при заполнении буфера и закрытии"
+     * @throws IOException если файл не удалось открыть
+     */
+    public WriteAheadLog(Path path, FsyncPolicy policy, long syncIntervalMillis) throws IOException {
+        this(path, policy, syncIntervalMillis, 1, 0);
+    }
+
+    /**
+     * Открывает журнал на дозапись с параметрами групповой фиксации (для политики ALWAYS).
+     *
+     * @param path                    путь к файлу журнала
+     * @param policy                  политика сброса на диск
+     * @param syncIntervalMillis      интервал фонового сброса (в мс) для INTERVAL и NEVER
+     * @param groupCommitSize         сколько записей ведущий группы ждёт перед сбросом
+     * @param groupCommitLingerMicros сколько ведущий ждёт их (в мкс); 0 — сбрасывать сразу то, что есть
+     * @throws IOException если файл не удалось открыть
+     */
+    public WriteAheadLog(Path path, FsyncPolicy policy, long syncIntervalMillis,
+                         int groupCommitSize, long groupCommitLingerMicros) throws IOException {
+        if (syncIntervalMillis < 0 || (policy == FsyncPolicy.INTERVAL && syncIntervalMillis == 0)) {
+            throw new IllegalArgumentException("Интервал сброса журнала должен быть положительным");
+        }
+        if (groupCommitSize <= 0 || groupCommitLingerMicros < 0) {
+            throw new IllegalArgumentException("Размер группы должен быть положительным, а время ожидания — неотрицательным");
+        }
+        this.channel = openForAppend(path);
+        this.policy = policy;
+        this.groupCommitSize = groupCommitSize;
+        this.groupCommitLingerNanos = TimeUnit.MICROSECONDS.toNanos(groupCommitLingerMicros);
+        if (policy != FsyncPolicy.ALWAYS && syncIntervalMillis == 0) {
+            this.syncer = null;
+        } else {
+            this.syncer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "wal-sync");
+                thread.setDaemon(true);
+                return thread;
+            });
+            if (policy != FsyncPolicy.ALWAYS) {
+                syncer.scheduleWithFixedDelay(this::backgroundSync, syncIntervalMillis, syncIntervalMillis,
+                        TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    /**
+     * Записывает сохранение ссылки (со всеми полями, включая счётчик переходов).
+     *
+     * @param key  ключ ссылки
+     * @param link ссылка
+     * @return номер записи для {@link #awaitDurable(long)}
+     */
+    public long logLinkSave(long key, ShortLink link) {
+        byte[] url = link.getOriginalUrlBytes();
+        UUID owner = link.getUserUuid();
+        lock.lock();
+        try {
+            ByteBuffer out = begin(LINK_SAVE, 8 + 8 + 8 + 4 + 4 + 16 + 4 + url.length);
+            out.putLong(key)
+                    .putLong(link.getCreatedAt())
+                    .putLong(link.getExpiryTime())
+                    .putInt(link.getLimit())
+                    .putInt(link.getCurrentCount())
+                    .putLong(owner.getMostSignificantBits())
+                    .putLong(owner.getLeastSignificantBits())
+                    .putInt(url.length)
+                    .put(url);
+            return commit();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Записывает удаление ссылки.
+     *
+     * @param key ключ ссылки
+     * @return номер записи для {@link #awaitDurable(long)}
+     */
+    public long logLinkDelete(long key) {
+        return logKey(LINK_DELETE, key);
+    }
+
+    /**
+     * Записывает переход по ссылке.
+     *
+     * @param key   ключ ссылки
+     * @param count значение счётчика переходов после этого перехода
+     * @return номер записи для {@link #awaitDurable(long)}
+     */
+    public long logClick(long key, int count) {
+        lock.lock();
+        try {
+            begin(LINK_CLICK, 8 + 4).putLong(key).putInt(count);
+            return commit();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Записывает сохранение пользователя.
+     *
+     * @param user пользователь
+     * @return номер записи для {@link #awaitDurable(long)}
+     */
+    public long logUserSave(User user) {
+        byte[] name = user.getUserName() != null ? user.getUserName().getBytes(StandardCharsets.UTF_8) : null;
+        lock.lock();
+        try {
+            ByteBuffer out = begin(USER_SAVE, 16 + 4 + (name != null ? name.length : 0));
+            putUuid(out, user.getUserUuid());
+            if (name != null) {
+                out.putInt(name.length).put(name);
+            } else {
+                out.putInt(-1);
+            }
+            return commit();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Записывает удаление пользователя.
+     *
+     * @param userUuid UUID пользователя
+     * @return номер записи для {@link #awaitDurable(long)}
+     */
+    public long logUserDelete(UUID userUuid) {
+        lock.lock();
+        try {
+            putUuid(begin(USER_DELETE, 16), userUuid);
+            return commit();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Записывает служебную запись из нескольких чисел (например, заголовок снимка).
+     */
+    void logLongs(byte type, long... values) {
+        lock.lock();
+        try {
+            ByteBuffer out = begin(type, 8 * values.length);
+            for (long value : values) {
+                out.putLong(value);
+            }
+            commit();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Завершает текущий файл журнала (сбрасывает его на диск) и продолжает запись в новый.
+     * Записи, сделанные после возврата из метода, попадают только в новый файл.
+     *
+     * @param next путь к новому файлу журнала
+     * @throws IOException если новый файл не удалось открыть или старый — сбросить
+     */
+    public void rotate(Path next) throws IOException {
+        forceLock.lock();
+        lock.lock();
+        try {
+            ensureOpen();
+            flushBuffer();
+            force();
+            FileChannel opened = openForAppend(next);
+            channel.close();
+            channel = opened;
+        } finally {
+            lock.unlock();
+            forceLock.unlock();
+        }
+    }
+
+    /**
+     * Дожидается, пока запись с указанным номером окажется на диске. Действует только
+     * при политике ALWAYS; при остальных возвращается сразу.
+     * <p>
+     * Вызывается без собственных блокировок вызывающего, иначе изменения, ждущие
+     * сброса, задерживали бы друг друга ещё и на них.
+     *
+     * @param sequence номер записи, который вернул метод записи
+     * @throws UncheckedIOException если журнал не удалось сбросить на диск
+     */
+    public void awaitDurable(long sequence) {
+        if (policy != FsyncPolicy.ALWAYS) {
+            return;
+        }
+        groupLock.lock();
+        try {
+            while (durableSequence < sequence) {
+                if (groupSyncing) {
+                    // Группу уже собирают: будим ведущего, если она набралась, и ждём сброса
+                    if (appendedSequence - durableSequence >= groupCommitSize) {
+                        groupFull.signal();
+                    }
+                    groupSynced.awaitUninterruptibly();
+                    continue;
+                }
+                groupSyncing = true;
+                long synced = durableSequence;
+                try {
+                    lingerForGroup();
+                    groupLock.unlock();
+                    try {
+                        synced = flushAndForce(true);
+                    } finally {
+                        groupLock.lock();
+                    }
+                } finally {
+                    durableSequence = Math.max(durableSequence, synced);
+                    groupSyncing = false;
+                    groupSynced.signalAll();
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось записать журнал изменений", e);
+        } finally {
+            groupLock.unlock();
+        }
+    }
+
+    /**
+     * Поручает фоновому потоку дождаться, пока запись окажется на диске, и сразу возвращается.
+     * Действует только при политике ALWAYS: при остальных запись и так сбрасывается фоном.
+     * <p>
+     * Фоновый поток участвует в групповой фиксации как обычный ждущий, поэтому записи,
+     * поручённые ему за время одного сброса, подтверждаются следующим сбросом вместе.
+     * До этого момента запись может потеряться при падении процесса.
+     *
+     * @param sequence номер записи, который вернул метод записи
+     */
+    public void requestDurable(long sequence) {
+        if (policy != FsyncPolicy.ALWAYS) {
+            return;
+        }
+        requestedSequence.accumulateAndGet(sequence, Math::max);
+        if (durableRequestQueued.compareAndSet(false, true)) {
+            try {
+                syncer.execute(this::syncRequested);
+            } catch (RejectedExecutionException e) {
+                durableRequestQueued.set(false); // Журнал закрыт: закрытие уже сбросило всё записанное
+            }
+        }
+    }
+
+    /** Возвращает число сбросов файла на диск. */
+    public long getSyncCount() {
+        return syncs.sum();
+    }
+
+    /**
+     * Передаёт буфер в файл и сбрасывает файл на диск.
+     */
+    public void sync() {
+        lock.lock();
+        try {
+            ensureOpen();
+            flushBuffer();
+            force();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось сбросить журнал изменений на диск", e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Сбрасывает накопленные записи и закрывает файл.
+     */
+    @Override
+    public void close() {
+        if (syncer != null) {
+            // Не прерываем фоновый поток: прерывание посреди FileChannel.force закрыло бы файл.
+            // Периодический сброс отменяется, поручённые ожидания дорабатывают
+            syncer.shutdown();
+            boolean interrupted = false;
+            while (true) {
+                try {
+                    if (syncer.awaitTermination(1, TimeUnit.SECONDS)) {
+                        break;
+                    }
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        forceLock.lock();
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            flushBuffer();
+            if (policy != FsyncPolicy.NEVER) {
+                force();
+            }
+            channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось закрыть журнал изменений", e);
+        } finally {
+            lock.unlock();
+            forceLock.unlock();
+        }
+    }
+
+    /**
+     * Воспроизводит журнал, передавая записи получателю в порядке их записи.
+     * <p>
+     * Чтение останавливается на первой неполной или повреждённой записи: это хвост,
+     * недописанный при аварийной остановке. Он отрезается, чтобы новые записи
+     * ложились сразу за последней целой.
+     *
+     * @param path    путь к файлу журнала (если файла нет, ничего не происходит)
+     * @param visitor получатель записей
+     * @return число воспроизведённых записей
+     * @throws IOException если файл не удалось прочитать или в нём запись неизвестного типа
+     */
+    public static long replay(Path path, Visitor visitor) throws IOException {
+        if (!Files.exists(path)) {
+            return 0;
+        }
+        try (FileChannel in = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocate(READ_BUFFER_BYTES).flip();
+            CRC32C checksum = new CRC32C();
+            long validBytes = 0;
+            long records = 0;
+            while (fill(in, buffer, HEADER_BYTES)) {
+                int length = buffer.getInt(buffer.position());
+                if (length <= 0 || length > MAX_RECORD_BYTES || !fill(in, buffer, HEADER_BYTES + length)) {
+                    break;
+                }
+                int recordBytes = checkRecord(buffer, checksum);
+                if (recordBytes < 0) {
+                    break;
+                }
+                int start = buffer.position();
+                buffer.position(start + HEADER_BYTES);
+                apply(buffer, visitor);
+                buffer.position(start + recordBytes);
+                validBytes += recordBytes;
+                records++;
+            }
+            if (validBytes < in.size()) {
+                Log.warn("Журнал {}: отрезан повреждённый хвост, {} байт", path, in.size() - validBytes);
+                in.truncate(validBytes);
+            }
+            return records;
+        }
+    }
+
+    /**
+     * Проверяет запись, начинающуюся в текущей позиции буфера: длину и CRC.
+     * Позиция буфера не меняется.
+     *
+     * @return полный размер записи с заголовком или -1, если запись неполная или повреждена
+     */
+    static int checkRecord(ByteBuffer buffer, CRC32C checksum) {
+        int start = buffer.position();
+        if (buffer.remaining() < HEADER_BYTES) {
+            return -1;
+        }
+        int length = buffer.getInt(start);
+        if (length <= 0 || length > MAX_RECORD_BYTES || buffer.remaining() < HEADER_BYTES + length) {
+            return -1;
+        }
+        checksum.reset();
+        checksum.update(buffer.slice(start + HEADER_BYTES, length));
+        return (int) checksum.getValue() == buffer.getInt(start + 4) ? HEADER_BYTES + length : -1;
+    }
+
+    /**
+     * Разбирает данные записи (с позиции типа) и передаёт их получателю.
+     */
+    static void apply(ByteBuffer in, Visitor visitor) throws IOException {
+        byte type = in.get();
+        switch (type) {
+            case LINK_SAVE -> {
+                long key = in.getLong();
+                long createdAt = in.getLong();
+                long expiryTime = in.getLong();
+                int limit = in.getInt();
+                int currentCount = in.getInt();
+                UUID owner = getUuid(in);
+                String url = getString(in);
+                visitor.linkSaved(new ShortLink(Base62.encode(key), url, createdAt, expiryTime, limit, currentCount, owner));
+            }
+            case LINK_DELETE -> visitor.linkDeleted(in.getLong());
+            case LINK_CLICK -> visitor.linkClicked(in.getLong(), in.getInt());
+            case USER_SAVE -> {
+                UUID userUuid = getUuid(in);
+                visitor.userSaved(new User(userUuid, getString(in)));
+            }
+            case USER_DELETE -> visitor.userDeleted(getUuid(in));
+            default -> throw new IOException("Неизвестный тип записи журнала: " + type);
+        }
+    }
+
+    /**
+     * Дочитывает файл в буфер, пока в нём не окажется хотя бы {@code bytes} байт.
+     *
+     * @return false, если файл закончился раньше
+     */
+    private static boolean fill(FileChannel in, ByteBuffer buffer, int bytes) throws IOException {
+        if (buffer.remaining() >= bytes) {
+            return true;
+        }
+        buffer.compact();
+        while (buffer.position() < bytes) {
+            if (in.read(buffer) < 0) {
+                break;
+            }
+        }
+        buffer.flip();
+        return buffer.remaining() >= bytes;
+    }
+
+    /**
+     * Открывает файл журнала на дозапись, создавая его и родительские каталоги при необходимости.
+     */
+    private static FileChannel openForAppend(Path path) throws IOException {
+        Path parent = path.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        FileChannel opened = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        opened.position(opened.size());
+        return opened;
+    }
+
+    private long logKey(byte type, long key) {
+        lock.lock();
+        try {
+            begin(type, 8).putLong(key);
+            return commit();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Начинает запись в буфере: оставляет место под заголовок и пишет тип.
+     * Вызывается под блокировкой.
+     *
+     * @param payloadBytes размер данных без типа
+     * @return буфер, в который следует дописать данные
+     */
+    private ByteBuffer begin(byte type, int payloadBytes) {
+        ensureOpen();
+        int length = 1 + payloadBytes;
+        if (length > MAX_RECORD_BYTES) {
+            throw new IllegalArgumentException("Запись журнала слишком велика: " + length + " байт");
+        }
+        if (buffer.remaining() < HEADER_BYTES + length) {
+            try {
+                flushBuffer();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Не удалось записать журнал изменений", e);
+            }
+        }
+        buffer.mark();
+        buffer.position(buffer.position() + HEADER_BYTES);
+        return buffer.put(type);
+    }
+
+    /**
+     * Заполняет заголовок только что записанной в буфер записи. Вызывается под блокировкой.
+     *
+     * @return номер записи
+     */
+    private long commit() {
+        int end = buffer.position();
+        buffer.reset();
+        int start = buffer.position();
+        int length = end - start - HEADER_BYTES;
+        crc.reset();
+        crc.update(buffer.slice(start + HEADER_BYTES, length));
+        buffer.putInt(start, length).putInt(start + 4, (int) crc.getValue());
+        buffer.position(end);
+        return ++appendedSequence;
+    }
+
+    /**
+     * Передаёт содержимое буфера в файл. Вызывается под блокировкой.
+     */
+    private void flushBuffer() throws IOException {
+        if (buffer.position() == 0) {
+            return;
+        }
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+        unsynced = true;
+    }
+
+    /**
+     * Сбрасывает файл на диск, если в него что-то писалось. Вызывается под блокировкой.
+     */
+    private void force() throws IOException {
+        if (unsynced) {
+            channel.force(false);
+            syncs.increment();
+            unsynced = false;
+        }
+    }
+
+    /**
+     * Фоновое ожидание записей, поручённых {@link #requestDurable(long)}. Флаг очереди
+     * снимается до чтения номера, поэтому номер, поручённый позже, поставит новую задачу.
+     */
+    private void syncRequested() {
+        durableRequestQueued.set(false);
+        try {
+            awaitDurable(requestedSequence.get());
+        } catch (UncheckedIOException e) {
+            Log.error("Ошибка сброса журнала изменений: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Периодический сброс. Ошибки перехватываются, иначе планировщик перестал бы его запускать.
+     */
+    private void backgroundSync() {
+        try {
+            flushAndForce(policy == FsyncPolicy.INTERVAL);
+        } catch (IOException e) {
+            Log.error("Ошибка сброса журнала изменений: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Передаёт буфер в файл и при необходимости сбрасывает файл на диск. Сам сброс идёт
+     * вне блокировки буфера, поэтому новые записи в это время не останавливаются.
+     *
+     * @param force сбрасывать ли файл на диск
+     * @return номер последней записи, переданной в файл
+     */
+    private long flushAndForce(boolean force) throws IOException {
+        forceLock.lock();
+        try {
+            FileChannel target;
+            long sequence;
+            boolean needForce;
+            lock.lock();
+            try {
+                sequence = appendedSequence;
+                if (closed) {
+                    return sequence; // Закрытие уже передало и сбросило всё записанное
+                }
+                flushBuffer();
+                needForce = force && unsynced;
+                if (needForce) {
+                    unsynced = false;
+                }
+                target = channel;
+            } finally {
+                lock.unlock();
+            }
+            if (needForce) {
+                try {
+                    target.force(false);
+                    syncs.increment();
+                } catch (IOException e) {
+                    lock.lock();
+                    unsynced = true; // Следующая попытка должна сбросить файл снова
+                    lock.unlock();
+                    throw e;
+                }
+            }
+            return sequence;
+        } finally {
+            forceLock.unlock();
+        }
+    }
+
+    /**
+     * Ведущий группы ждёт, пока наберётся {@code groupCommitSize} записей, но не дольше
+     * заданного времени. Вызывается под groupLock.
+     */
+    private void lingerForGroup() {
+        long remaining = groupCommitLingerNanos;
+        try {
+            while (remaining > 0 && appendedSequence - durableSequence < groupCommitSize) {
+                remaining = groupFull.awaitNanos(remaining);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt(); // Перестаём ждать и сбрасываем то, что есть
+        }
+    }
+
+    private void ensureOpen() {
+        if (closed) {
+            throw new IllegalStateException("Журнал изменений закрыт");
+        }
+    }
+
+    private static void putUuid(ByteBuffer out, UUID uuid) {
+        out.putLong(uuid.getMostSignificantBits()).putLong(uuid.getLeastSignificantBits());
+    }
+
+    private static UUID getUuid(ByteBuffer in) {
+        return new UUID(in.getLong(), in.getLong());
+    }
+
+    private static String getString(ByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0) {
+            return null;
+        }
+        if (!in.hasArray()) {
+            byte[] bytes = new byte[length];
+            in.get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+        String value = new String(in.array(), in.arrayOffset() + in.position(), length, StandardCharsets.UTF_8);
+        in.position(in.position() + length);
+        return value;
+    }
+}
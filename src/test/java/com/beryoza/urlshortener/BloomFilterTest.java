@@ -0,0 +1,35 @@
+package com.beryoza.urlshortener;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Тесты фильтра Блума.
+ */
+public class BloomFilterTest {
+
+    /**
+     * Проверяет отсутствие ложноотрицательных ответов и долю ложноположительных (около 1%
+     * при десяти битах на ключ).
+     */
+    @Test
+    public void testMembership() {
+        BloomFilter filter = new BloomFilter(100_000, 10);
+        for (long key = 0; key < 100_000; key++) {
+            filter.add(key * 7919);
+        }
+        for (long key = 0; key < 100_000; key++) {
+            assertTrue(filter.mightContain(key * 7919));
+        }
+
+        int falsePositives = 0;
+        for (long key = 0; key < 1_000_000; key++) {
+            if (filter.mightContain(key * 7919 + 1)) {
+                falsePositives++;
+            }
+        }
+        assertTrue(falsePositives < 15_000, "Ложных срабатываний: " + falsePositives);
+        assertThrows(IllegalArgumentException.class, () -> new BloomFilter(10, 0));
+    }
+}
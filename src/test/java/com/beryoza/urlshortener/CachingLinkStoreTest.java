@@ -0,0 +1,177 @@
+package com.beryoza.urlshortener;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Тесты кэша ссылок перед хранилищем.
+ */
+public class CachingLinkStoreTest {
+
+    /**
+     * Хранилище в памяти, которое считает чтения.
+     */
+    private static class CountingLinkStore extends MemoryLinkStore {
+        final AtomicInteger reads = new AtomicInteger();
+
+        @Override
+        public ShortLink get(long key) {
+            reads.incrementAndGet();
+            return super.get(key);
+        }
+    }
+
+    /**
+     * Проверяет, что повторное чтение обслуживается кэшем без обращения к хранилищу.
+     */
+    @Test
+    public void testRepeatedReadsHitCache() {
+        CountingLinkStore backing = new CountingLinkStore();
+        CachingLinkStore store = new CachingLinkStore(backing, 1_000, 0);
+        ShortLinkService service = new ShortLinkService(new InMemoryShortLinkRepository(store));
+        String shortId = service.createShortLink("https://vk.com/amasovich", UUID.randomUUID(), 24, 100);
+        int readsBefore = backing.reads.get();
+
+        for (int i = 0; i < 10; i++) {
+            assertEquals("https://vk.com/amasovich", service.getOriginalUrl(shortId).getOriginalUrl());
+        }
+        assertEquals(readsBefore + 1, backing.reads.get());
+        assertEquals(9, store.getHitCount());
+    }
+
+    /**
+     * Проверяет, что сохранение и удаление через репозиторий не оставляют в кэше старых ссылок.
+     */
+    @Test
+    public void testCoherentWithSaveAndDelete() {
+        CachingLinkStore store = new CachingLinkStore(new MemoryLinkStore(), 1_000, 0);
+        ShortLinkRepository repository = new InMemoryShortLinkRepository(store);
+        UUID owner = UUID.randomUUID();
+        repository.save(new ShortLink("abc123", "https://example.com/old", 0, Long.MAX_VALUE, 10, 0, owner));
+        assertEquals("https://example.com/old", repository.findByShortId("abc123").getOriginalUrl());
+
+        repository.save(new ShortLink("abc123", "https://example.com/new", 0, Long.MAX_VALUE, 10, 0, owner));
+        assertEquals("https://example.com/new", repository.findByShortId("abc123").getOriginalUrl());
+
+        repository.deleteByShortId("abc123");
+        assertNull(repository.findByShortId("abc123"));
+        assertEquals(0, store.getCachedCount());
+    }
+
+    /**
+     * Проверяет, что загрузка, начатая до записи, не возвращает в кэш устаревшую ссылку.
+     */
+    @Test
+    public void testLoadRacingWithWriteIsDropped() {
+        UUID owner = UUID.randomUUID();
+        ShortLink oldLink = new ShortLink("abc123", "https://example.com/old", 0, Long.MAX_VALUE, 10, 0, owner);
+        ShortLink newLink = new ShortLink("abc123", "https://example.com/new", 0, Long.MAX_VALUE, 10, 0, owner);
+        long key = Base62.decode("abc123");
+        CachingLinkStore[] store = new CachingLinkStore[1];
+        MemoryLinkStore backing = new MemoryLinkStore() {
+            @Override
+            public ShortLink get(long k) {
+                ShortLink link = super.get(k);
+                if (link == oldLink) {
+                    store[0].put(key, newLink); // Запись успевает пройти, пока идёт чтение
+                }
+                return link;
+            }
+        };
+        backing.put(key, oldLink);
+        store[0] = new CachingLinkStore(backing, 1_000, 0);
+
+        assertSame(oldLink, store[0].get(key));
+        assertSame(newLink, store[0].get(key));
+    }
+
+    /**
+     * Проверяет, что одновременные промахи по одному ключу дают одно чтение хранилища.
+     */
+    @Test
+    public void testConcurrentMissesAreCoalesced() throws Exception {
+        int callers = 50;
+        CountDownLatch release = new CountDownLatch(1);
+        CountingLinkStore backing = new CountingLinkStore() {
+            @Override
+            public ShortLink get(long key) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.get(key);
+            }
+        };
+        long key = Base62.decode("abc123");
+        backing.put(key, new ShortLink("abc123", "https://example.com", 0, Long.MAX_VALUE, 10, 0, UUID.randomUUID()));
+        CachingLinkStore store = new CachingLinkStore(backing, 1_000, 0);
+
+        List<Future<ShortLink>> results = new ArrayList<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < callers; i++) {
+                results.add(executor.submit(() -> store.get(key)));
+            }
+            // Отпускаем загрузку, когда все остальные вызовы её ждут
+            while (store.getCoalescedCount() < callers - 1) {
+                Thread.sleep(1);
+            }
+            release.countDown();
+            for (Future<ShortLink> result : results) {
+                assertEquals("https://example.com", result.get().getOriginalUrl());
+            }
+        }
+        assertEquals(1, backing.reads.get());
+        assertEquals(1, store.getLoadCount());
+        assertEquals(callers - 1, store.getCoalescedCount());
+    }
+
+    /**
+     * Проверяет, что чтение без ожидания не присоединяется к зависшей чужой загрузке,
+     * а читает хранилище само.
+     */
+    @Test
+    public void testReadWithoutWaitingSkipsRunningLoad() throws Exception {
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicBoolean first = new AtomicBoolean(true);
+        CountingLinkStore backing = new CountingLinkStore() {
+            @Override
+            public ShortLink get(long key) {
+                if (first.getAndSet(false)) {
+                    loading.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                return super.get(key);
+            }
+        };
+        long key = Base62.decode("abc123");
+        backing.put(key, new ShortLink("abc123", "https://example.com", 0, Long.MAX_VALUE, 10, 0, UUID.randomUUID()));
+        CachingLinkStore store = new CachingLinkStore(backing, 1_000, 0);
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            Future<ShortLink> blocked = executor.submit(() -> store.get(key));
+            loading.await();
+            assertEquals("https://example.com", store.getWithoutWaiting(key).getOriginalUrl());
+            assertEquals(0, store.getCoalescedCount());
+            release.countDown();
+            assertEquals("https://example.com", blocked.get().getOriginalUrl());
+        }
+        assertEquals(2, store.getLoadCount());
+    }
+}
@@ -0,0 +1,270 @@
+package com.beryoza.urlshortener;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Тесты хранилища ссылок по столбцам.
+ * <p>
+ * Бенчмарк запускается только по запросу: {@code mvn test -Dbenchmark=true}.
+ */
+public class ColumnarLinkStoreTest {
+
+    @TempDir
+    Path directory;
+
+    /**
+     * Проверяет сохранение, изменение и удаление ссылок, а также то, что представление
+     * удалённой ссылки не затрагивает строку, отданную новой.
+     */
+    @Test
+    public void testPutGetRemove() {
+        UUID owner = UUID.randomUUID();
+        ColumnarLinkStore store = new ColumnarLinkStore();
+        ShortLink original = new ShortLink(Base62.encode(42), "https://vk.com/amasovich", 100L, 200L, 5, 2, owner);
+        assertNull(store.put(42, original));
+
+        ShortLink stored = store.get(42);
+        assertEquals(original.getShortId(), stored.getShortId());
+        assertEquals("https://vk.com/amasovich", stored.getOriginalUrl());
+        assertEquals(100L, stored.getCreatedAt());
+        assertEquals(200L, stored.getExpiryTime());
+        assertEquals(5, stored.getLimit());
+        assertEquals(2, stored.getCurrentCount());
+        assertEquals(owner, stored.getUserUuid());
+        assertNull(store.get(43));
+
+        // Переход через представление виден в столбце, а изменение лимита его не затирает
+        assertTrue(stored.tryReserveClick());
+        stored.setLimit(10);
+        assertNotNull(store.put(42, stored));
+        assertEquals(10, store.get(42).getLimit());
+        assertEquals(3, store.get(42).getCurrentCount());
+        assertEquals(1, store.size());
+
+        ShortLink removed = store.get(42);
+        assertNotNull(store.remove(42));
+        assertNull(store.get(42));
+        assertEquals(0, store.size());
+
+        // Строка переиспользуется, а прежнее представление от неё отвязано
+        store.put(7, new ShortLink(Base62.encode(7), "https://example.com/", 1L, 2L, 100, 0, owner));
+        assertTrue(removed.tryReserveClick());
+        assertEquals(0, store.get(7).getCurrentCount());
+    }
+
+    /**
+     * Сверяет хранилище со словарём на случайных вставках, заменах и удалениях —
+     * в несколько блоков строк и с уплотнениями буфера URL.
+     */
+    @Test
+    public void testRandomOperationsMatchMap() {
+        Random random = new Random(7);
+        UUID[] owners = {UUID.randomUUID(), UUID.randomUUID(), UUID.randomUUID()};
+        String padding = "p".repeat(200);
+        ColumnarLinkStore store = new ColumnarLinkStore();
+        Map<Long, ShortLink> expected = new HashMap<>();
+        for (int step = 0; step < 300_000; step++) {
+            long key = random.nextInt(100_000);
+            if (random.nextInt(4) == 0) {
+                assertEquals(expected.remove(key) != null, store.remove(key) != null);
+            } else {
+                ShortLink link = new ShortLink(Base62.encode(key), "https://example.com/" + step + "/" + padding,
+                        step, random.nextInt(1000), 1 + random.nextInt(5), random.nextInt(5), owners[random.nextInt(3)]);
+                assertEquals(expected.put(key, link) != null, store.put(key, link) != null);
+            }
+        }
+        assertEquals(expected.size(), store.size());
+        for (long key = 0; key < 100_000; key++) {
+            ShortLink want = expected.get(key);
+            ShortLink got = store.get(key);
+            if (want == null) {
+                assertNull(got);
+            } else {
+                assertEquals(want.getOriginalUrl(), got.getOriginalUrl());
+                assertEquals(want.getCreatedAt(), got.getCreatedAt());
+                assertEquals(want.getExpiryTime(), got.getExpiryTime());
+                assertEquals(want.getLimit(), got.getLimit());
+                assertEquals(want.getCurrentCount(), got.getCurrentCount());
+                assertEquals(want.getUserUuid(), got.getUserUuid());
+            }
+        }
+        AtomicInteger visited = new AtomicInteger();
+        store.forEach(link -> visited.incrementAndGet());
+        assertEquals(expected.size(), visited.get());
+        AtomicLong keySum = new AtomicLong();
+        store.forEachKey(keySum::addAndGet);
+        assertEquals(expected.keySet().stream().mapToLong(Long::longValue).sum(), keySum.get());
+
+        // Проходы по столбцам совпадают с проверкой объектов
+        long now = 500;
+        long[] due = expected.entrySet().stream()
+                .filter(entry -> entry.getValue().getExpiryTime() < now || entry.getValue().isExhausted())
+                .mapToLong(Map.Entry::getKey).sorted().toArray();
+        long[] found = store.findDue(now, Integer.MAX_VALUE);
+        Arrays.sort(found);
+        assertArrayEquals(due, found);
+        assertEquals(due.length, store.countDue(now));
+        assertEquals(10, store.findDue(now, 10).length);
+
+        long[] owned = expected.entrySet().stream()
+                .filter(entry -> entry.getValue().getUserUuid().equals(owners[1]))
+                .mapToLong(Map.Entry::getKey).sorted().toArray();
+        long[] byUser = store.findByUser(owners[1]);
+        Arrays.sort(byUser);
+        assertArrayEquals(owned, byUser);
+        assertEquals(0, store.findByUser(UUID.randomUUID()).length);
+    }
+
+    /**
+     * Проверяет, что переходы увеличивают счётчик прямо в столбце, параллельные переходы
+     * не превышают лимит, а исчерпанная ссылка попадает в проход по условию очистки —
+     * и в поиск репозитория.
+     */
+    @Test
+    public void testClicksUpdateColumnInPlace() throws Exception {
+        ColumnarLinkStore store = new ColumnarLinkStore();
+        ShortLinkRepository repository = new InMemoryShortLinkRepository(store);
+        ShortLinkService service = new ShortLinkService(repository, new FeistelShortIdGenerator());
+        UUID owner = UUID.randomUUID();
+        String shortId = service.createShortLink("https://example.com/clicks", owner, 24, 100);
+        assertEquals(0, store.countDue(System.currentTimeMillis()));
+
+        AtomicInteger reserved = new AtomicInteger();
+        Thread[] threads = new Thread[8];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 500; i++) {
+                    if (repository.findByShortId(shortId).tryReserveClick()) {
+                        reserved.incrementAndGet();
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(100, reserved.get());
+        assertEquals(100, repository.findByShortId(shortId).getCurrentCount());
+        assertArrayEquals(new long[]{Base62.decode(shortId)}, store.findDue(System.currentTimeMillis(), 10));
+        // Репозиторий ищет по сроку и владельцу проходом по столбцам, без своих индексов
+        assertEquals(shortId, repository.findExpired(System.currentTimeMillis(), 10).get(0).getShortId());
+        assertEquals(shortId, repository.findByUserUuid(owner).get(0).getShortId());
+        assertTrue(repository.findByUserUuid(UUID.randomUUID()).isEmpty());
+    }
+
+    /**
+     * Проверяет полный цикл {@link DurableStorage} поверх хранилища по столбцам:
+     * снимок, хвост журнала и перезапуск.
+     */
+    @Test
+    public void testDurableStorageRoundTrip() throws IOException {
+        UUID owner;
+        String clicked;
+        String deleted;
+        String afterSnapshot;
+        try (DurableStorage storage = DurableStorage.open(directory, WriteAheadLog.FsyncPolicy.NEVER, 10, 0, "columnar")) {
+            ShortLinkService service = new ShortLinkService(storage.getShortLinkRepository(), storage.getShortIdGenerator());
+            owner = storage.getUserRepository().saveUser(new User(UUID.randomUUID(), "Алиса")).getUserUuid();
+            clicked = service.createShortLink("https://example.com/clicked", owner, 24, 10);
+            deleted = service.createShortLink("https://example.com/deleted", owner, 24, 10);
+            service.resolve(clicked);
+            storage.snapshot();
+
+            service.resolve(clicked);
+            service.deleteShortLink(deleted, owner);
+            afterSnapshot = service.createShortLink("https://example.com/after", owner, 24, 10);
+        }
+
+        try (DurableStorage storage = DurableStorage.open(directory, WriteAheadLog.FsyncPolicy.NEVER, 10, 0, "columnar")) {
+            ShortLinkRepository repository = storage.getShortLinkRepository();
+            assertEquals(2, repository.findByShortId(clicked).getCurrentCount());
+            assertNull(repository.findByShortId(deleted));
+            assertEquals("https://example.com/after", repository.findByShortId(afterSnapshot).getOriginalUrl());
+            assertEquals(2, repository.findByUserUuid(owner).size());
+        }
+    }
+
+    /**
+     * Бенчмарк: 2 миллиона ссылок — полный проход по условию очистки по столбцам
+     * против обхода объектов {@link MemoryLinkStore}, и занятая куча на ссылку.
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    public void benchmarkColumnarScan() {
+        int links = 2_000_000;
+        UUID[] owners = new UUID[10_000];
+        for (int i = 0; i < owners.length; i++) {
+            owners[i] = UUID.randomUUID();
+        }
+        long now = 10_000;
+
+        // Объекты ссылок создаются при записи, чтобы в замер кучи попали и они
+        long before = usedHeap();
+        MemoryLinkStore objects = new MemoryLinkStore();
+        Random random = new Random(1);
+        for (int i = 0; i < links; i++) {
+            objects.put(i, randomLink(i, random, owners));
+        }
+        long objectBytes = usedHeap() - before;
+        before = usedHeap();
+        ColumnarLinkStore columns = new ColumnarLinkStore();
+        random = new Random(1);
+        for (int i = 0; i < links; i++) {
+            columns.put(i, randomLink(i, random, owners));
+        }
+        long columnBytes = usedHeap() - before;
+        System.out.printf("Куча на ссылку: объекты %d Б, столбцы %d Б%n", objectBytes / links, columnBytes / links);
+
+        for (int round = 0; round < 5; round++) {
+            long started = System.nanoTime();
+            AtomicLong due = new AtomicLong();
+            objects.forEach(link -> {
+                if (link.getExpiryTime() < now || link.isExhausted()) {
+                    due.incrementAndGet();
+                }
+            });
+            double objectMillis = (System.nanoTime() - started) / 1e6;
+
+            started = System.nanoTime();
+            long counted = columns.countDue(now);
+            double countMillis = (System.nanoTime() - started) / 1e6;
+
+            started = System.nanoTime();
+            int found = columns.findDue(now, Integer.MAX_VALUE).length;
+            double findMillis = (System.nanoTime() - started) / 1e6;
+
+            assertEquals(due.get(), counted);
+            assertEquals(counted, found);
+            System.out.printf("Проход %d: объекты %.1f мс, countDue %.1f мс, findDue %.1f мс (%d ссылок)%n",
+                    round, objectMillis, countMillis, findMillis, counted);
+        }
+    }
+
+    private static ShortLink randomLink(int key, Random random, UUID[] owners) {
+        return new ShortLink(Base62.encode(key), "https://example.com/page/" + key, 1L, random.nextInt(1_000_000),
+                10, random.nextInt(11), owners[random.nextInt(owners.length)]);
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
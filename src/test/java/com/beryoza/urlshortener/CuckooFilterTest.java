@@ -0,0 +1,83 @@
+package com.beryoza.urlshortener;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Тесты фильтра Cuckoo.
+ */
+public class CuckooFilterTest {
+
+    /**
+     * Проверяет отсутствие ложноотрицательных ответов, долю ложноположительных и удаление.
+     */
+    @Test
+    public void testMembershipAndRemoval() {
+        CuckooFilter filter = new CuckooFilter(100_000);
+        for (long key = 0; key < 100_000; key++) {
+            assertTrue(filter.add(key));
+        }
+        for (long key = 0; key < 100_000; key++) {
+            assertTrue(filter.mightContain(key));
+        }
+
+        int falsePositives = 0;
+        for (long key = 1_000_000; key < 2_000_000; key++) {
+            if (filter.mightContain(key)) {
+                falsePositives++;
+            }
+        }
+        assertTrue(falsePositives < 1_000, "Ложных срабатываний: " + falsePositives);
+
+        for (long key = 0; key < 50_000; key++) {
+            filter.remove(key);
+        }
+        int remaining = 0;
+        for (long key = 0; key < 50_000; key++) {
+            if (filter.mightContain(key)) {
+                remaining++;
+            }
+        }
+        assertTrue(remaining < 100, "Удалённых ключей осталось: " + remaining);
+        for (long key = 50_000; key < 100_000; key++) {
+            assertTrue(filter.mightContain(key));
+        }
+    }
+
+    /**
+     * Проверяет, что переполненный фильтр не даёт ложноотрицательных ответов.
+     */
+    @Test
+    public void testOverflowNeverLosesKeys() {
+        CuckooFilter filter = new CuckooFilter(64);
+        boolean overflowed = false;
+        for (long key = 0; key < 10_000; key++) {
+            overflowed |= !filter.add(key);
+        }
+        assertTrue(overflowed);
+        for (long key = 0; key < 10_000; key++) {
+            assertTrue(filter.mightContain(key));
+        }
+    }
+
+    /**
+     * Проверяет, что удаление из переполненного фильтра не стирает отпечатки:
+     * отпечаток удаляемого ключа мог быть потерян, и тогда стёрся бы чужой.
+     */
+    @Test
+    public void testRemoveIsNoOpWhileSaturated() {
+        CuckooFilter filter = new CuckooFilter(64);
+        for (long key = 0; key < 10_000; key++) {
+            filter.add(key);
+        }
+        long fingerprints = filter.countFingerprints();
+        for (long key = 0; key < 10_000; key += 2) {
+            filter.remove(key);
+        }
+        assertEquals(fingerprints, filter.countFingerprints());
+        for (long key = 1; key < 10_000; key += 2) {
+            assertTrue(filter.mightContain(key));
+        }
+    }
+}
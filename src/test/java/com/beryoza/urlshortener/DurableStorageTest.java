@@ -0,0 +1,20 @@
+package com.beryoza.urlshortener;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Общие тесты хранилищ для хранилища на диске (снимок и журнал изменений).
+ */
+public class DurableStorageTest extends StorageContractTest {
+
+    @Override
+    protected Storage openStorage(Path directory) throws IOException {
+        return DurableStorage.open(directory, WriteAheadLog.FsyncPolicy.NEVER, 10, 0, "memory");
+    }
+
+    @Override
+    protected boolean isPersistent() {
+        return true;
+    }
+}
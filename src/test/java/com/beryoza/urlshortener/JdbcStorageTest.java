@@ -0,0 +1,19 @@
+package com.beryoza.urlshortener;
+
+import java.nio.file.Path;
+
+/**
+ * Общие тесты хранилищ для хранилища в базе данных: встроенная H2 в файле временного каталога.
+ */
+public class JdbcStorageTest extends StorageContractTest {
+
+    @Override
+    protected Storage openStorage(Path directory) {
+        return JdbcStorage.open("jdbc:h2:" + directory.resolve("db").toAbsolutePath(), "", "", 4, 256);
+    }
+
+    @Override
+    protected boolean isPersistent() {
+        return true;
+    }
+}
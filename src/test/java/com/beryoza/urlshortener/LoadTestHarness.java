@@ -0,0 +1,261 @@
+package com.beryoza.urlshortener;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Нагрузочный клиент для HTTP-сервера перенаправлений.
+ * <p>
+ * Открывает заданное число keep-alive соединений и в каждом отправляет {@code GET /{shortId}}
+ * по кругу из переданного набора идентификаторов — по одному или пачками конвейером (pipelining).
+ * Время каждого запроса (от отправки пачки до полного чтения его ответа) записывается, по итогам считаются
+ * запросы в секунду и перцентили задержки. Клиент работает на "сырых" сокетах,
+ * чтобы сам не был узким местом замера, а каждое соединение обслуживает свой виртуальный
+ * поток — так можно держать десятки тысяч соединений.
+ * <p>
+ * Запуск против работающего сервера:
+ * {@code
+ * java -cp target/classes:target/test-classes com.beryoza.urlshortener.LoadTestHarness localhost 8080 64 10 abc123 def456
+ * }
+ * Аргументы: хост, порт, число соединений, длительность в секундах, идентификаторы ссылок.
+ */
+public class LoadTestHarness {
+
+    /**
+     * Итоги нагрузочного прогона.
+     *
+     * @param requests      количество выполненных запросов
+     * @param errors        количество ответов с неожиданным кодом или оборванных соединений
+     * @param seconds       фактическая длительность прогона
+     * @param p50Micros     медиана задержки (в мкс)
+     * @param p99Micros     99-й перцентиль задержки (в мкс)
+     * @param maxMicros     максимальная задержка (в мкс)
+     */
+    public record Report(long requests, long errors, double seconds, long p50Micros, long p99Micros, long maxMicros) {
+
+        /** Запросов в секунду. */
+        public double requestsPerSecond() {
+            return requests / seconds;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d запросов за %.1f с: %.0f запросов/с, p50 %d мкс, p99 %d мкс, max %d мкс, ошибок %d",
+                    requests, seconds, requestsPerSecond(), p50Micros, p99Micros, maxMicros, errors);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 5) {
+            System.out.println("Использование: LoadTestHarness <хост> <порт> <соединений> <секунд> <shortId>...");
+            return;
+        }
+        String[] shortIds = Arrays.copyOfRange(args, 4, args.length);
+        Report report = run(new InetSocketAddress(args[0], Integer.parseInt(args[1])),
+                Integer.parseInt(args[2]), Integer.parseInt(args[3]) * 1000L, shortIds);
+        System.out.println(report);
+    }
+
+    /**
+     * Выполняет нагрузочный прогон.
+     *
+     * @param address        адрес сервера
+     * @param connections    число параллельных keep-alive соединений
+     * @param durationMillis длительность прогона (в мс)
+     * @param shortIds       идентификаторы, по которым идут запросы
+     * @return итоги прогона
+     */
+    public static Report run(InetSocketAddress address, int connections, long durationMillis, String... shortIds)
+            throws Exception {
+        return runPipelined(address, connections, 1, durationMillis, shortIds);
+    }
+
+    /**
+     * Выполняет нагрузочный прогон, отправляя запросы пачками без ожидания ответов (pipelining).
+     *
+     * @param address        адрес сервера
+     * @param connections    число параллельных keep-alive соединений
+     * @param pipeline       число запросов в одной пачке
+     * @param durationMillis длительность прогона (в мс)
+     * @param shortIds       идентификаторы, по которым идут запросы
+     * @return итоги прогона
+     */
+    public static Report runPipelined(InetSocketAddress address, int connections, int pipeline, long durationMillis,
+                                      String... shortIds) throws Exception {
+        ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+        long deadline = System.nanoTime() + durationMillis * 1_000_000L;
+        long start = System.nanoTime();
+        try {
+            List<Future<Worker>> futures = new ArrayList<>();
+            for (int i = 0; i < connections; i++) {
+                Worker worker = new Worker(address, shortIds, i, pipeline, deadline);
+                futures.add(executor.submit(() -> {
+                    worker.run();
+                    return worker;
+                }));
+            }
+
+            // Собираем задержки всех соединений в один массив
+            long[] all = new long[0];
+            long errors = 0;
+            for (Future<Worker> future : futures) {
+                Worker worker = future.get();
+                int offset = all.length;
+                all = Arrays.copyOf(all, offset + worker.count);
+                System.arraycopy(worker.latencies, 0, all, offset, worker.count);
+                errors += worker.errors;
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+            Arrays.sort(all);
+            return new Report(all.length, errors, seconds,
+                    percentile(all, 0.50) / 1000, percentile(all, 0.99) / 1000,
+                    all.length == 0 ? 0 : all[all.length - 1] / 1000);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Возвращает перцентиль отсортированного массива.
+     */
+    private static long percentile(long[] sorted, double fraction) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        return sorted[Math.min(sorted.length - 1, (int) (sorted.length * fraction))];
+    }
+
+    /**
+     * Одно keep-alive соединение, отправляющее запросы до истечения срока.
+     */
+    private static final class Worker {
+        private final InetSocketAddress address;
+        private final byte[][] requests;
+        private final int pipeline;
+        private final long deadline;
+        private int next;
+        private long[] latencies = new long[1024];
+        private int count;
+        private long errors;
+
+        Worker(InetSocketAddress address, String[] shortIds, int offset, int pipeline, long deadline) {
+            this.address = address;
+            this.pipeline = pipeline;
+            this.deadline = deadline;
+            this.next = offset;
+            // Запросы готовим заранее, чтобы не тратить время клиента на сборку строк
+            this.requests = new byte[shortIds.length][];
+            for (int i = 0; i < shortIds.length; i++) {
+                this.requests[i] = ("GET /" + shortIds[i] + " HTTP/1.1\r\nHost: " + address.getHostString()
+                        + "\r\nConnection: keep-alive\r\n\r\n").getBytes(StandardCharsets.US_ASCII);
+            }
+        }
+
+        void run() {
+            while (System.nanoTime() < deadline) {
+                try (Socket socket = new Socket()) {
+                    socket.setTcpNoDelay(true);
+                    socket.connect(address);
+                    OutputStream out = socket.getOutputStream();
+                    InputStream in = new BufferedInputStream(socket.getInputStream());
+                    StringBuilder line = new StringBuilder();
+                    byte[] batch = new byte[0];
+                    while (System.nanoTime() < deadline) {
+                        // Собираем пачку запросов и отправляем её одной записью
+                        int length = 0;
+                        for (int i = 0; i < pipeline; i++) {
+                            byte[] request = requests[next++ % requests.length];
+                            if (length + request.length > batch.length) {
+                                batch = Arrays.copyOf(batch, (length + request.length) * 2);
+                            }
+                            System.arraycopy(request, 0, batch, length, request.length);
+                            length += request.length;
+                        }
+                        long start = System.nanoTime();
+                        out.write(batch, 0, length);
+                        for (int i = 0; i < pipeline; i++) {
+                            int status = readResponse(in, line);
+                            record(System.nanoTime() - start);
+                            if (status != 302 && status != 404 && status != 410) {
+                                errors++;
+                            }
+                        }
+                    }
+                } catch (IOException e) {
+                    errors++; // Соединение оборвано — переподключаемся
+                }
+            }
+        }
+
+        private void record(long nanos) {
+            if (count == latencies.length) {
+                latencies = Arrays.copyOf(latencies, count * 2);
+            }
+            latencies[count++] = nanos;
+        }
+
+        /**
+         * Читает один HTTP-ответ целиком и возвращает его код.
+         * Тело пропускается по Content-Length или по chunked-кодированию.
+         */
+        private static int readResponse(InputStream in, StringBuilder line) throws IOException {
+            int status = Integer.parseInt(readLine(in, line).substring(9, 12));
+            long contentLength = 0;
+            boolean chunked = false;
+            String header;
+            while (!(header = readLine(in, line)).isEmpty()) {
+                if (header.regionMatches(true, 0, "Content-Length:", 0, 15)) {
+                    contentLength = Long.parseLong(header.substring(15).trim());
+                } else if (header.regionMatches(true, 0, "Transfer-Encoding:", 0, 18)) {
+                    chunked = header.toLowerCase().contains("chunked");
+                }
+            }
+            if (!chunked) {
+                skip(in, contentLength);
+                return status;
+            }
+            long chunkSize;
+            while ((chunkSize = Long.parseLong(readLine(in, line).trim(), 16)) > 0) {
+                skip(in, chunkSize + 2); // Данные и завершающий \r\n
+            }
+            readLine(in, line); // Пустая строка после последнего блока
+            return status;
+        }
+
+        /**
+         * Читает строку до \r\n (без самого разделителя).
+         */
+        private static String readLine(InputStream in, StringBuilder line) throws IOException {
+            line.setLength(0);
+            int c;
+            while ((c = in.read()) != '\n') {
+                if (c < 0) {
+                    throw new IOException("Сервер закрыл соединение");
+                }
+                if (c != '\r') {
+                    line.append((char) c);
+                }
+            }
+            return line.toString();
+        }
+
+        private static void skip(InputStream in, long bytes) throws IOException {
+            for (long i = 0; i < bytes; i++) {
+                if (in.read() < 0) {
+                    throw new IOException("Сервер закрыл соединение");
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.beryoza.urlshortener;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Тесты кольцевого буфера асинхронного журнала.
+ */
+public class LogRingBufferTest {
+
+    /**
+     * Проверяет порядок элементов, переполнение и повторное использование ячеек.
+     */
+    @Test
+    public void testFifoOrderAndOverflow() {
+        LogRingBuffer<Integer> buffer = new LogRingBuffer<>(3);
+        assertEquals(4, buffer.capacity(), "Ёмкость округляется до степени двойки.");
+        assertTrue(buffer.isEmpty());
+        assertNull(buffer.poll());
+
+        for (int i = 0; i < 4; i++) {
+            assertTrue(buffer.offer(i));
+        }
+        assertFalse(buffer.offer(4), "Полный буфер не должен принимать элементы.");
+
+        for (int round = 0; round < 10; round++) {
+            assertEquals(round, buffer.poll());
+            assertTrue(buffer.offer(round + 4), "Освободившаяся ячейка должна использоваться снова.");
+        }
+        assertFalse(buffer.isEmpty());
+    }
+
+    /**
+     * Несколько писателей одновременно с читателем: каждый элемент
+     * должен быть прочитан ровно один раз, а порядок каждого писателя — сохранён.
+     */
+    @Test
+    public void testConcurrentProducersLoseNothing() throws Exception {
+        int producers = 8;
+        int perProducer = 20_000;
+        LogRingBuffer<long[]> buffer = new LogRingBuffer<>(1024);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            int producer = p;
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < perProducer; i++) {
+                    long[] element = {producer, i};
+                    while (!buffer.offer(element)) {
+                        Thread.yield(); // Ждём, пока читатель освободит место
+                    }
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+
+        start.countDown();
+        long[] nextExpected = new long[producers];
+        int received = 0;
+        while (received < producers * perProducer) {
+            long[] element = buffer.poll();
+            if (element == null) {
+                Thread.yield();
+                continue;
+            }
+            int producer = (int) element[0];
+            assertEquals(nextExpected[producer], element[1], "Нарушен порядок элементов писателя " + producer);
+            nextExpected[producer]++;
+            received++;
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertTrue(buffer.isEmpty());
+    }
+}
@@ -0,0 +1,48 @@
+package com.beryoza.urlshortener;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Тесты множества чисел {@code long} с открытой адресацией.
+ */
+public class LongHashSetTest {
+
+    /**
+     * Сравнивает поведение множества с {@link HashSet} на случайной последовательности
+     * добавлений, удалений и проверок (включая удаления со сдвигом цепочек и рост таблицы).
+     */
+    @Test
+    public void testMatchesHashSetOnRandomOperations() {
+        LongHashSet set = new LongHashSet();
+        Set<Long> expected = new HashSet<>();
+        Random random = new Random(11);
+
+        for (int i = 0; i < 200_000; i++) {
+            long key = random.nextInt(5_000);
+            switch (random.nextInt(3)) {
+                case 0 -> assertEquals(expected.add(key), set.add(key));
+                case 1 -> assertEquals(expected.remove(key), set.remove(key));
+                default -> assertEquals(expected.contains(key), set.contains(key));
+            }
+            assertEquals(expected.size(), set.size());
+        }
+        long[] elements = set.toArray();
+        Arrays.sort(elements);
+        assertArrayEquals(expected.stream().mapToLong(Long::longValue).sorted().toArray(), elements);
+    }
+
+    /**
+     * Проверяет, что отрицательные элементы (метка свободной ячейки) отклоняются.
+     */
+    @Test
+    public void testNegativeKeysAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new LongHashSet().add(-1));
+    }
+}
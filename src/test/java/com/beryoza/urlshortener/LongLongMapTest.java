@@ -0,0 +1,43 @@
+package com.beryoza.urlshortener;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Тесты хеш-таблицы {@code long → long} с открытой адресацией.
+ */
+public class LongLongMapTest {
+
+    /**
+     * Сравнивает поведение таблицы с {@link HashMap} на случайной последовательности
+     * вставок, замен и удалений, в том числе значений {@link Long#MIN_VALUE}.
+     */
+    @Test
+    public void testMatchesHashMapOnRandomOperations() {
+        LongLongMap map = new LongLongMap();
+        Map<Long, Long> expected = new HashMap<>();
+        Random random = new Random(13);
+
+        for (int i = 0; i < 200_000; i++) {
+            long key = random.nextInt(5_000);
+            long value = i % 7 == 0 ? Long.MIN_VALUE : random.nextLong();
+            switch (random.nextInt(3)) {
+                case 0 -> {
+                    expected.put(key, value);
+                    map.put(key, value);
+                }
+                case 1 -> assertEquals(expected.remove(key) != null, map.remove(key));
+                default -> {
+                    assertEquals(expected.containsKey(key), map.containsKey(key));
+                    assertEquals(expected.getOrDefault(key, 42L), map.getOrDefault(key, 42L));
+                }
+            }
+            assertEquals(expected.size(), map.size());
+        }
+    }
+}
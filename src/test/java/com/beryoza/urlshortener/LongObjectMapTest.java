@@ -0,0 +1,138 @@
+package com.beryoza.urlshortener;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Тесты хеш-таблицы с ключами {@code long} и открытой адресацией.
+ * <p>
+ * Бенчмарк запускается только по запросу: {@code mvn test -Dbenchmark=true}.
+ */
+public class LongObjectMapTest {
+
+    /** Количество ссылок в бенчмарке. */
+    private static final int BENCHMARK_LINKS = 1_000_000;
+
+    /**
+     * Сравнивает поведение таблицы с {@link HashMap} на случайной последовательности
+     * вставок, замен и удалений (включая удаления со сдвигом цепочек).
+     */
+    @Test
+    public void testMatchesHashMapOnRandomOperations() {
+        LongObjectMap<String> map = new LongObjectMap<>();
+        Map<Long, String> expected = new HashMap<>();
+        Random random = new Random(7);
+
+        for (int i = 0; i < 200_000; i++) {
+            long key = random.nextInt(5_000); // Узкий диапазон — много повторов и удалений
+            switch (random.nextInt(3)) {
+                case 0 -> assertEquals(expected.put(key, "v" + i), map.put(key, "v" + i));
+                case 1 -> assertEquals(expected.remove(key), map.remove(key));
+                default -> assertEquals(expected.get(key), map.get(key));
+            }
+            assertEquals(expected.size(), map.size());
+        }
+        for (long key = 0; key < 5_000; key++) {
+            assertEquals(expected.get(key), map.get(key), "Расхождение по ключу " + key);
+        }
+        int[] count = {0};
+        map.forEachValue(value -> count[0]++);
+        assertEquals(expected.size(), count[0]);
+    }
+
+    /**
+     * Проверяет рост таблицы и граничные значения ключей.
+     */
+    @Test
+    public void testGrowsAndKeepsAllKeys() {
+        LongObjectMap<Long> map = new LongObjectMap<>();
+        for (long key = 0; key < 100_000; key++) {
+            map.put(key * 62, key);
+        }
+        map.put(Base62.KEYSPACE - 1, -1L);
+        assertEquals(100_001, map.size());
+        for (long key = 0; key < 100_000; key++) {
+            assertEquals(key, map.get(key * 62));
+        }
+        assertEquals(-1L, map.get(Base62.KEYSPACE - 1));
+        assertNull(map.get(1));
+        assertThrows(IllegalArgumentException.class, () -> map.put(1, null));
+    }
+
+    /**
+     * Бенчмарк: память на ссылку и задержка поиска по сравнению с {@code HashMap<String, ShortLink>}.
+     * Память оценивается по разнице занятой кучи, поэтому результат приблизительный.
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    public void benchmarkAgainstHashMap() {
+        FeistelShortIdGenerator generator = new FeistelShortIdGenerator(42L, 0);
+        String[] ids = new String[BENCHMARK_LINKS];
+        long[] keys = new long[BENCHMARK_LINKS];
+        ShortLink[] links = new ShortLink[BENCHMARK_LINKS];
+        for (int i = 0; i < BENCHMARK_LINKS; i++) {
+            keys[i] = generator.permute(i);
+            links[i] = new ShortLink(null, null, 0, 0, 0, 0, null);
+        }
+
+        // Память: строки-ключи создаются вместе с таблицей, как при реальной загрузке
+        long before = usedHeap();
+        Map<String, ShortLink> hashMap = new HashMap<>();
+        for (int i = 0; i < BENCHMARK_LINKS; i++) {
+            ids[i] = Base62.encode(keys[i]);
+            hashMap.put(ids[i], links[i]);
+        }
+        long hashMapBytes = usedHeap() - before;
+
+        before = usedHeap();
+        LongObjectMap<ShortLink> longMap = new LongObjectMap<>();
+        for (int i = 0; i < BENCHMARK_LINKS; i++) {
+            longMap.put(keys[i], links[i]);
+        }
+        long longMapBytes = usedHeap() - before;
+        System.out.printf("Память на ссылку: HashMap<String> %.1f байт, LongObjectMap %.1f байт%n",
+                (double) hashMapBytes / BENCHMARK_LINKS, (double) longMapBytes / BENCHMARK_LINKS);
+
+        // Задержка поиска: поиск идёт по строке из запроса, для LongObjectMap она декодируется в число
+        for (int round = 0; round < 2; round++) { // Первый проход — прогрев
+            long start = System.nanoTime();
+            int hits = 0;
+            for (String id : ids) {
+                if (hashMap.get(id) != null) {
+                    hits++;
+                }
+            }
+            long hashMapNanos = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (String id : ids) {
+                if (longMap.get(Base62.decode(id)) != null) {
+                    hits++;
+                }
+            }
+            long longMapNanos = System.nanoTime() - start;
+            assertEquals(2 * BENCHMARK_LINKS, hits);
+            if (round == 1) {
+                System.out.printf("Поиск: HashMap<String> %.1f нс, LongObjectMap %.1f нс%n",
+                        (double) hashMapNanos / BENCHMARK_LINKS, (double) longMapNanos / BENCHMARK_LINKS);
+            }
+        }
+    }
+
+    /**
+     * Возвращает занятый объём кучи после сборки мусора.
+     */
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
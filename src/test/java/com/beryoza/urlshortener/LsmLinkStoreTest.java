@@ -0,0 +1,291 @@
+package com.beryoza.urlshortener;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Тесты хранилища ссылок на LSM-дереве.
+ * <p>
+ * Бенчмарк запускается только по запросу: {@code mvn test -Dbenchmark=true};
+ * число ссылок задаётся свойством {@code -Dbenchmark.links} (по умолчанию 10 миллионов).
+ */
+public class LsmLinkStoreTest {
+
+    /** Маленькая памятная таблица, чтобы тесты проходили через сброс и сжатие. */
+    private static final long SMALL_MEMTABLE = 64 * 1024;
+
+    @TempDir
+    Path directory;
+
+    /**
+     * Сверяет хранилище со словарём после случайных записей, перезаписей и удалений,
+     * которые расходятся по памятной таблице и многим сегментам, а затем сжимаются.
+     */
+    @Test
+    public void testRandomOperationsAcrossFlushesAndCompactions() throws IOException {
+        UUID owner = UUID.randomUUID();
+        Map<Long, String> expected = new HashMap<>();
+        Random random = new Random(42);
+        try (LsmLinkStore store = new LsmLinkStore(directory, SMALL_MEMTABLE, 2, 10)) {
+            for (int i = 0; i < 60_000; i++) {
+                long key = random.nextInt(20_000);
+                if (random.nextInt(4) == 0) {
+                    assertEquals(expected.remove(key) != null, store.remove(key) != null);
+                } else {
+                    String url = "https://example.com/" + key + "/" + i;
+                    ShortLink previous = store.put(key, new ShortLink(Base62.encode(key), url, i, Long.MAX_VALUE, 10, 0, owner));
+                    String expectedPrevious = expected.put(key, url);
+                    assertEquals(expectedPrevious, previous == null ? null : previous.getOriginalUrl());
+                }
+            }
+            store.flush();
+            assertTrue(store.segmentCount() < 10, store.stats());
+
+            assertEquals(expected.size(), store.size());
+            for (long key = 0; key < 20_000; key++) {
+                ShortLink link = store.get(key);
+                assertEquals(expected.get(key), link == null ? null : link.getOriginalUrl());
+            }
+            Set<Long> visited = new HashSet<>();
+            store.forEach(link -> assertTrue(visited.add(Base62.decode(link.getShortId()))));
+            assertEquals(expected.keySet(), visited);
+            Set<Long> keys = new HashSet<>();
+            store.forEachKey(keys::add);
+            assertEquals(expected.keySet(), keys);
+        }
+    }
+
+    /**
+     * Проверяет, что сброс и сжатие выбрасывают просроченные ссылки и надгробия, а репозиторий
+     * узнаёт о выброшенных ссылках и убирает их из индексов.
+     */
+    @Test
+    public void testCompactionEvictsExpiredLinks() throws IOException {
+        try (LsmLinkStore store = new LsmLinkStore(directory, SMALL_MEMTABLE, 2, 10)) {
+            ShortLinkRepository repository = new InMemoryShortLinkRepository(store);
+            List<String> removed = Collections.synchronizedList(new ArrayList<>());
+            repository.addRemovalListener(removed::add);
+            UUID owner = UUID.randomUUID();
+            long now = System.currentTimeMillis();
+            for (long key = 0; key < 3_000; key++) {
+                // Каждая третья ссылка уже просрочена
+                long expiry = key % 3 == 0 ? now - 1 : now + 3_600_000;
+                repository.save(new ShortLink(Base62.encode(key), "https://example.com/" + key, now, expiry, 10, 0, owner));
+            }
+            store.flush();
+
+            assertEquals(2_000, store.size(), store.stats());
+            assertEquals(1_000, removed.size());
+            assertEquals(2_000, repository.findByUserUuid(owner).size());
+            assertNull(repository.findByShortId(Base62.encode(3)));
+            assertTrue(repository.findExpired(System.currentTimeMillis(), 10).isEmpty());
+            assertEquals("https://example.com/4", repository.findByShortId(Base62.encode(4)).getOriginalUrl());
+
+            // Удалённые ссылки оставляют надгробия, но слияния с самым старым сегментом они не переживают
+            for (long key = 0; key < 3_000; key++) {
+                repository.deleteByShortId(Base62.encode(key));
+            }
+            store.compactFully();
+            assertEquals(0, store.size());
+            assertEquals(0, store.segmentCount(), store.stats());
+        }
+    }
+
+    /**
+     * Проверяет, что параллельные переходы через разные представления не превышают лимит,
+     * пока хранилище сбрасывает таблицы и сжимает сегменты, а изменение счётчика
+     * через представление сохраняется.
+     */
+    @Test
+    public void testClicksAcrossFlushes() throws Exception {
+        try (LsmLinkStore store = new LsmLinkStore(directory, 4 * 1024, 2, 10)) {
+            UUID owner = UUID.randomUUID();
+            store.put(1, new ShortLink(Base62.encode(1), "https://example.com/clicks", 1L, Long.MAX_VALUE, 2_000, 0, owner));
+            AtomicInteger reserved = new AtomicInteger();
+            Thread[] threads = new Thread[4];
+            for (int t = 0; t < threads.length; t++) {
+                threads[t] = new Thread(() -> {
+                    for (int i = 0; i < 1_000; i++) {
+                        if (store.get(1).tryReserveClick()) {
+                            reserved.incrementAndGet();
+                        }
+                    }
+                });
+                threads[t].start();
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            store.flush();
+            assertEquals(2_000, reserved.get());
+            ShortLink link = store.get(1);
+            assertEquals(2_000, link.getCurrentCount());
+            assertFalse(link.tryReserveClick());
+            assertTrue(link.isExhausted());
+
+            link.setCurrentCount(5);
+            assertEquals(5, store.get(1).getCurrentCount());
+            // Сохранение того же представления не откатывает чужие переходы
+            ShortLink other = store.get(1);
+            assertTrue(other.tryReserveClick());
+            store.put(1, link);
+            assertEquals(6, store.get(1).getCurrentCount());
+
+            // Представление удалённой ссылки считает переходы у себя
+            ShortLink removed = store.get(1);
+            assertNotNull(store.remove(1));
+            assertTrue(removed.tryReserveClick());
+            assertNull(store.get(1));
+        }
+    }
+
+    /**
+     * Проверяет, что переходы не пишут в дерево, а живой счётчик не теряет переходов,
+     * когда его выводят заморозки от параллельных записей других ключей.
+     */
+    @Test
+    public void testClicksDoNotWriteToTree() throws Exception {
+        try (LsmLinkStore store = new LsmLinkStore(directory, 4 * 1024, 2, 10)) {
+            UUID owner = UUID.randomUUID();
+            store.put(1, new ShortLink(Base62.encode(1), "https://example.com/clicks", 1L, Long.MAX_VALUE, 3_000, 0, owner));
+            store.flush();
+            int segments = store.segmentCount();
+            ShortLink view = store.get(1);
+            for (int i = 0; i < 1_000; i++) {
+                assertTrue(view.tryReserveClick());
+            }
+            assertEquals(segments, store.segmentCount(), store.stats());
+            assertEquals(1_000, store.get(1).getCurrentCount());
+
+            AtomicInteger reserved = new AtomicInteger();
+            Thread writer = new Thread(() -> {
+                for (long key = 2; key < 3_000; key++) {
+                    store.put(key, new ShortLink(Base62.encode(key), "https://example.com/" + key, 1L, Long.MAX_VALUE, 1, 0, owner));
+                }
+            });
+            Thread[] clickers = new Thread[3];
+            for (int t = 0; t < clickers.length; t++) {
+                clickers[t] = new Thread(() -> {
+                    ShortLink own = store.get(1);
+                    for (int i = 0; i < 1_000; i++) {
+                        if (own.tryReserveClick()) {
+                            reserved.incrementAndGet();
+                        }
+                    }
+                });
+            }
+            writer.start();
+            for (Thread clicker : clickers) {
+                clicker.start();
+            }
+            writer.join();
+            for (Thread clicker : clickers) {
+                clicker.join();
+            }
+            store.flush();
+            assertEquals(2_000, reserved.get());
+            assertEquals(3_000, store.get(1).getCurrentCount());
+            assertFalse(view.tryReserveClick());
+        }
+    }
+
+    /**
+     * Проверяет полный цикл {@link DurableStorage} поверх LSM-хранилища: снимок, хвост журнала
+     * и перезапуск, при котором сегменты создаются заново.
+     */
+    @Test
+    public void testDurableStorageRoundTrip() throws IOException {
+        UUID owner;
+        String clicked;
+        String deleted;
+        String afterSnapshot;
+        try (DurableStorage storage = DurableStorage.open(directory, WriteAheadLog.FsyncPolicy.NEVER, 10, 0, "lsm")) {
+            ShortLinkService service = new ShortLinkService(storage.getShortLinkRepository(), storage.getShortIdGenerator());
+            owner = storage.getUserRepository().saveUser(new User(UUID.randomUUID(), "Алиса")).getUserUuid();
+            clicked = service.createShortLink("https://example.com/clicked", owner, 24, 10);
+            deleted = service.createShortLink("https://example.com/deleted", owner, 24, 10);
+            service.resolve(clicked);
+            storage.snapshot();
+
+            service.resolve(clicked);
+            service.deleteShortLink(deleted, owner);
+            afterSnapshot = service.createShortLink("https://example.com/after", owner, 24, 10);
+        }
+
+        for (int restart = 0; restart < 2; restart++) {
+            try (DurableStorage storage = DurableStorage.open(directory, WriteAheadLog.FsyncPolicy.NEVER, 10, 0, "lsm")) {
+                ShortLinkRepository repository = storage.getShortLinkRepository();
+                assertEquals(2, repository.findByShortId(clicked).getCurrentCount());
+                assertNull(repository.findByShortId(deleted));
+                assertEquals("https://example.com/after", repository.findByShortId(afterSnapshot).getOriginalUrl());
+                assertEquals(2, repository.findByUserUuid(owner).size());
+                storage.snapshot();
+            }
+        }
+    }
+
+    /**
+     * Бенчмарк: скорость записи (вместе с фоновыми сбросом и сжатием) и задержка точечного
+     * чтения существующих и отсутствующих ключей.
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    public void benchmarkLsmStore() throws IOException {
+        int links = Integer.getInteger("benchmark.links", 10_000_000);
+        UUID owner = UUID.randomUUID();
+        try (LsmLinkStore store = new LsmLinkStore(directory)) {
+            // Ключи в случайном порядке, как у генератора идентификаторов
+            FeistelShortIdGenerator generator = new FeistelShortIdGenerator();
+            long started = System.nanoTime();
+            long[] keys = new long[links];
+            for (int i = 0; i < links; i++) {
+                keys[i] = Base62.decode(generator.nextId());
+                store.put(keys[i], new ShortLink(Base62.encode(keys[i]), "https://example.com/page/" + i, 1L, Long.MAX_VALUE,
+                        100, 0, owner));
+            }
+            double seconds = (System.nanoTime() - started) / 1e9;
+            System.out.printf("Запись: %d ссылок за %.2f с (%.0f/с)%n", links, seconds, links / seconds);
+            started = System.nanoTime();
+            store.flush();
+            System.out.printf("Досжатие: %.2f с; %s%n", (System.nanoTime() - started) / 1e9, store.stats());
+
+            int reads = 1_000_000;
+            long[] latencies = new long[reads];
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            for (int i = 0; i < reads; i++) {
+                long key = keys[random.nextInt(links)];
+                long start = System.nanoTime();
+                store.get(key);
+                latencies[i] = System.nanoTime() - start;
+            }
+            printLatencies("Чтение существующих", latencies);
+            for (int i = 0; i < reads; i++) {
+                long key = random.nextLong(Base62.KEYSPACE);
+                long start = System.nanoTime();
+                store.get(key);
+                latencies[i] = System.nanoTime() - start;
+            }
+            printLatencies("Чтение отсутствующих", latencies);
+
+            System.gc();
+            Runtime runtime = Runtime.getRuntime();
+            System.out.printf("Куча после сборки: %d МБ%n", (runtime.totalMemory() - runtime.freeMemory()) >> 20);
+        }
+    }
+
+    private static void printLatencies(String title, long[] latencies) {
+        Arrays.sort(latencies);
+        System.out.printf("%s: p50 %.1f мкс, p99 %.1f мкс, p99.9 %.1f мкс%n", title,
+                latencies[latencies.length / 2] / 1e3, latencies[(int) (latencies.length * 0.99)] / 1e3,
+                latencies[(int) (latencies.length * 0.999)] / 1e3);
+    }
+}
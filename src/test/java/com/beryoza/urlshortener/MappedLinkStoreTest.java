@@ -0,0 +1,263 @@
+package com.beryoza.urlshortener;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Тесты хранилища ссылок вне кучи.
+ * <p>
+ * Бенчмарк запускается только по запросу: {@code mvn test -Dbenchmark=true}.
+ */
+public class MappedLinkStoreTest {
+
+    @TempDir
+    Path directory;
+
+    /**
+     * Проверяет сохранение, изменение и удаление ссылок, а также то, что представление
+     * удалённой ссылки не затрагивает ячейку, отданную новой.
+     */
+    @Test
+    public void testPutGetRemove() throws IOException {
+        UUID owner = UUID.randomUUID();
+        try (MappedLinkStore store = new MappedLinkStore(directory)) {
+            ShortLink original = new ShortLink(Base62.encode(42), "https://vk.com/amasovich", 100L, 200L, 5, 2, owner);
+            assertNull(store.put(42, original));
+
+            ShortLink stored = store.get(42);
+            assertEquals(original.getShortId(), stored.getShortId());
+            assertEquals("https://vk.com/amasovich", stored.getOriginalUrl());
+            assertEquals(100L, stored.getCreatedAt());
+            assertEquals(200L, stored.getExpiryTime());
+            assertEquals(5, stored.getLimit());
+            assertEquals(2, stored.getCurrentCount());
+            assertEquals(owner, stored.getUserUuid());
+            assertNull(store.get(43));
+
+            // Изменение лимита через представление сохраняется в ячейке
+            stored.setLimit(10);
+            assertNotNull(store.put(42, stored));
+            assertEquals(10, store.get(42).getLimit());
+            assertEquals(1, store.size());
+
+            ShortLink removed = store.get(42);
+            assertNotNull(store.remove(42));
+            assertNull(store.get(42));
+            assertEquals(0, store.size());
+
+            // Ячейка переиспользуется, а прежнее представление от неё отвязано
+            store.put(7, new ShortLink(Base62.encode(7), "https://example.com/", 1L, 2L, 100, 0, owner));
+            assertTrue(removed.tryReserveClick());
+            assertEquals(0, store.get(7).getCurrentCount());
+        }
+    }
+
+    /**
+     * Проверяет, что переходы через сервис увеличивают счётчик прямо в ячейке и что
+     * параллельные переходы через разные представления не превышают лимит.
+     */
+    @Test
+    public void testClicksUpdateSlotInPlace() throws Exception {
+        try (MappedLinkStore store = new MappedLinkStore(directory)) {
+            ShortLinkRepository repository = new InMemoryShortLinkRepository(store);
+            ShortLinkService service = new ShortLinkService(repository, new FeistelShortIdGenerator());
+            UUID owner = UUID.randomUUID();
+            String shortId = service.createShortLink("https://example.com/clicks", owner, 24, 100);
+
+            for (int i = 0; i < 3; i++) {
+                assertEquals("https://example.com/clicks", service.getOriginalUrl(shortId).getOriginalUrl());
+            }
+            assertEquals(3, repository.findByShortId(shortId).getCurrentCount());
+
+            AtomicInteger reserved = new AtomicInteger();
+            Thread[] threads = new Thread[8];
+            for (int t = 0; t < threads.length; t++) {
+                threads[t] = new Thread(() -> {
+                    for (int i = 0; i < 500; i++) {
+                        if (repository.findByShortId(shortId).tryReserveClick()) {
+                            reserved.incrementAndGet();
+                        }
+                    }
+                });
+                threads[t].start();
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            assertEquals(97, reserved.get());
+            assertEquals(100, repository.findByShortId(shortId).getCurrentCount());
+            assertTrue(repository.findByShortId(shortId).isExhausted());
+        }
+    }
+
+    /**
+     * Проверяет рост индекса и файлов, удаление половины ссылок и обход оставшихся
+     * (ссылок и одних ключей).
+     */
+    @Test
+    public void testGrowthAndForEach() throws IOException {
+        int count = 200_000;
+        UUID owner = UUID.randomUUID();
+        try (MappedLinkStore store = new MappedLinkStore(directory)) {
+            for (int i = 0; i < count; i++) {
+                store.put(i * 31L, new ShortLink(Base62.encode(i * 31L), "https://example.com/" + i, i, i, 10, 0, owner));
+            }
+            for (int i = 0; i < count; i += 2) {
+                assertNotNull(store.remove(i * 31L));
+            }
+            assertEquals(count / 2, store.size());
+            for (int i = 0; i < count; i++) {
+                ShortLink link = store.get(i * 31L);
+                if (i % 2 == 0) {
+                    assertNull(link);
+                } else {
+                    assertEquals("https://example.com/" + i, link.getOriginalUrl());
+                }
+            }
+            AtomicInteger visited = new AtomicInteger();
+            store.forEach(link -> visited.incrementAndGet());
+            assertEquals(count / 2, visited.get());
+            AtomicInteger oddKeys = new AtomicInteger();
+            store.forEachKey(key -> {
+                if (key % 31 == 0 && key / 31 % 2 == 1) {
+                    oddKeys.incrementAndGet();
+                }
+            });
+            assertEquals(count / 2, oddKeys.get());
+        }
+    }
+
+    /**
+     * Проверяет оптимистичные чтения во время записи: пока писатель добавляет ссылки
+     * (индекс растёт) и перезаписывает одну ссылку длинными URL (файл URL растёт окнами),
+     * читатели не видят ни пропавших ссылок, ни ссылок со смешанными полями.
+     */
+    @Test
+    public void testOptimisticReadsDuringGrowth() throws Exception {
+        UUID owner = UUID.randomUUID();
+        String padding = "x".repeat(2_000);
+        try (MappedLinkStore store = new MappedLinkStore(directory)) {
+            store.put(0, new ShortLink(Base62.encode(0), "https://example.com/0/" + padding, 0, 0, 1, 0, owner));
+            AtomicInteger inserted = new AtomicInteger(1);
+            AtomicInteger failures = new AtomicInteger();
+            int rewrites = 40_000; // ~80 МБ URL: больше одного окна отображения
+            Thread writer = new Thread(() -> {
+                for (int n = 1; n <= rewrites; n++) {
+                    store.put(0, new ShortLink(Base62.encode(0), "https://example.com/" + n + "/" + padding, n, n, n, 0, owner));
+                    for (int i = 0; i < 8; i++) {
+                        long key = inserted.get();
+                        store.put(key, new ShortLink(Base62.encode(key), "https://example.com/key/" + key, key, key, 1, 0, owner));
+                        inserted.incrementAndGet();
+                    }
+                }
+            });
+            Thread[] readers = new Thread[2];
+            for (int r = 0; r < readers.length; r++) {
+                readers[r] = new Thread(() -> {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    while (writer.isAlive()) {
+                        ShortLink link = store.get(0);
+                        long n = link.getCreatedAt();
+                        if (link.getExpiryTime() != n || link.getLimit() != Math.max(1, n)
+                                || !link.getOriginalUrl().startsWith("https://example.com/" + n + "/")) {
+                            failures.incrementAndGet();
+                        }
+                        long key = 1 + random.nextInt(Math.max(1, inserted.get() - 1));
+                        ShortLink other = store.get(key);
+                        if (key < inserted.get() && (other == null
+                                || !other.getOriginalUrl().equals("https://example.com/key/" + key))) {
+                            failures.incrementAndGet();
+                        }
+                    }
+                });
+                readers[r].start();
+            }
+            writer.start();
+            writer.join();
+            for (Thread reader : readers) {
+                reader.join();
+            }
+            assertEquals(0, failures.get());
+            assertEquals(inserted.get(), store.size());
+        }
+    }
+
+    /**
+     * Проверяет полный цикл {@link DurableStorage} поверх хранилища вне кучи (с кэшем
+     * {@link CachingLinkStore} перед ним): снимок, хвост журнала и перезапуск, при котором
+     * файлы хранилища создаются заново.
+     */
+    @Test
+    public void testDurableStorageRoundTrip() throws IOException {
+        UUID owner;
+        String clicked;
+        String deleted;
+        String afterSnapshot;
+        try (DurableStorage storage = DurableStorage.open(directory, WriteAheadLog.FsyncPolicy.NEVER, 10, 0, "mapped")) {
+            ShortLinkService service = new ShortLinkService(storage.getShortLinkRepository(), storage.getShortIdGenerator());
+            owner = storage.getUserRepository().saveUser(new User(UUID.randomUUID(), "Алиса")).getUserUuid();
+            clicked = service.createShortLink("https://example.com/clicked", owner, 24, 10);
+            deleted = service.createShortLink("https://example.com/deleted", owner, 24, 10);
+            service.resolve(clicked);
+            storage.snapshot();
+
+            service.resolve(clicked);
+            service.deleteShortLink(deleted, owner);
+            afterSnapshot = service.createShortLink("https://example.com/after", owner, 24, 10);
+        }
+
+        for (int restart = 0; restart < 2; restart++) {
+            try (DurableStorage storage = DurableStorage.open(directory, WriteAheadLog.FsyncPolicy.NEVER, 10, 0, "mapped")) {
+                ShortLinkRepository repository = storage.getShortLinkRepository();
+                assertEquals(2, repository.findByShortId(clicked).getCurrentCount());
+                // Перед хранилищем стоит кэш: повторное чтение отдаёт тот же объект
+                assertSame(repository.findByShortId(clicked), repository.findByShortId(clicked));
+                assertNull(repository.findByShortId(deleted));
+                assertEquals("https://example.com/after", repository.findByShortId(afterSnapshot).getOriginalUrl());
+                assertEquals(2, repository.findByUserUuid(owner).size());
+                assertEquals("Алиса", storage.getUserRepository().findUser(owner).getUserName());
+                storage.snapshot();
+            }
+        }
+    }
+
+    /**
+     * Бенчмарк: 10 миллионов ссылок — запись, случайные чтения и занятая куча.
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    public void benchmarkMappedStore() throws IOException {
+        int links = 10_000_000;
+        UUID owner = UUID.randomUUID();
+        try (MappedLinkStore store = new MappedLinkStore(directory)) {
+            long started = System.nanoTime();
+            for (int i = 0; i < links; i++) {
+                store.put(i, new ShortLink(Base62.encode(i), "https://example.com/page/" + i, 1L, Long.MAX_VALUE, 100, 0, owner));
+            }
+            double seconds = (System.nanoTime() - started) / 1e9;
+            System.out.printf("Запись: %d ссылок за %.2f с (%.0f/с)%n", links, seconds, links / seconds);
+
+            int reads = 2_000_000;
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            started = System.nanoTime();
+            for (int i = 0; i < reads; i++) {
+                store.get(random.nextInt(links)).tryReserveClick();
+            }
+            seconds = (System.nanoTime() - started) / 1e9;
+            System.out.printf("Чтение с переходом: %.0f/с%n", reads / seconds);
+
+            System.gc();
+            Runtime runtime = Runtime.getRuntime();
+            System.out.printf("Куча после сборки: %d МБ%n", (runtime.totalMemory() - runtime.freeMemory()) >> 20);
+        }
+    }
+}
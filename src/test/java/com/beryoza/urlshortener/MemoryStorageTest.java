@@ -0,0 +1,19 @@
+package com.beryoza.urlshortener;
+
+import java.nio.file.Path;
+
+/**
+ * Общие тесты хранилищ для хранилища в памяти.
+ */
+public class MemoryStorageTest extends StorageContractTest {
+
+    @Override
+    protected Storage openStorage(Path directory) {
+        return new MemoryStorage();
+    }
+
+    @Override
+    protected boolean isPersistent() {
+        return false;
+    }
+}
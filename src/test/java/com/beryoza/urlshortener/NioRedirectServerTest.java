@@ -0,0 +1,196 @@
+package com.beryoza.urlshortener;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Тесты NIO-сервера перенаправлений.
+ * <p>
+ * Бенчмарк запускается только по запросу: {@code mvn test -Dbenchmark=true}.
+ */
+public class NioRedirectServerTest {
+
+    private ShortLinkRepository shortLinkRepository;
+    private ShortLinkService shortLinkService;
+    private NioRedirectServer server;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        shortLinkRepository = new InMemoryShortLinkRepository();
+        shortLinkService = new ShortLinkService(shortLinkRepository);
+        server = new NioRedirectServer(shortLinkService, new InetSocketAddress("127.0.0.1", 0), 2,
+                new RedirectResponseCache(1 << 20));
+        server.start();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        server.close();
+    }
+
+    /**
+     * Проверяет ответы обычного HTTP-клиента: 302 с Location, 404 и 410 после исчерпания лимита.
+     */
+    @Test
+    public void testRedirectStatuses() throws Exception {
+        String shortId = shortLinkService.createShortLink("https://vk.com/amasovich", UUID.randomUUID(), 24, 1);
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .followRedirects(HttpClient.Redirect.NEVER)
+                .build();
+
+        HttpResponse<String> found = client.send(request("/" + shortId), HttpResponse.BodyHandlers.ofString());
+        assertEquals(302, found.statusCode());
+        assertEquals("https://vk.com/amasovich", found.headers().firstValue("Location").orElse(null));
+
+        assertEquals(410, client.send(request("/" + shortId), HttpResponse.BodyHandlers.ofString()).statusCode());
+        assertEquals(404, client.send(request("/zzzzzz?utm=1"), HttpResponse.BodyHandlers.ofString()).statusCode());
+    }
+
+    /**
+     * Проверяет, что запросы, отправленные одним пакетом, получают ответы по порядку
+     * в том же соединении, а переходы учитываются в лимите.
+     */
+    @Test
+    public void testPipelinedRequestsOnKeepAlive() throws Exception {
+        String first = shortLinkService.createShortLink("https://example.com/1", UUID.randomUUID(), 24, 10);
+        String second = shortLinkService.createShortLink("https://example.com/2", UUID.randomUUID(), 24, 10);
+
+        try (Socket socket = new Socket("127.0.0.1", server.getPort())) {
+            String requests = "GET /" + first + " HTTP/1.1\r\nHost: x\r\n\r\n"
+                    + "GET /zzzzzz HTTP/1.1\r\nHost: x\r\n\r\n"
+                    + "GET /" + second + " HTTP/1.1\r\nHost: x\r\n\r\n";
+            socket.getOutputStream().write(requests.getBytes(StandardCharsets.US_ASCII));
+
+            String responses = readAtLeast(socket.getInputStream(), 3);
+            int firstAt = responses.indexOf("Location: https://example.com/1");
+            int notFoundAt = responses.indexOf("404 Not Found");
+            int secondAt = responses.indexOf("Location: https://example.com/2");
+            assertTrue(firstAt >= 0 && firstAt < notFoundAt && notFoundAt < secondAt, responses);
+
+            // Соединение остаётся открытым для следующего запроса
+            socket.getOutputStream().write(("GET /" + first + " HTTP/1.1\r\nHost: x\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+            assertTrue(readAtLeast(socket.getInputStream(), 1).contains("302 Found"));
+        }
+        assertEquals(2, shortLinkRepository.findByShortId(first).getCurrentCount());
+    }
+
+    /**
+     * Проверяет, что неподдерживаемые методы и "Connection: close" закрывают соединение.
+     */
+    @Test
+    public void testUnsupportedMethodAndConnectionClose() throws Exception {
+        try (Socket socket = new Socket("127.0.0.1", server.getPort())) {
+            socket.getOutputStream().write("POST /abc123 HTTP/1.1\r\nHost: x\r\n\r\n".getBytes(StandardCharsets.US_ASCII));
+            String response = new String(socket.getInputStream().readAllBytes(), StandardCharsets.US_ASCII);
+            assertTrue(response.startsWith("HTTP/1.1 405"), response);
+        }
+        try (Socket socket = new Socket("127.0.0.1", server.getPort())) {
+            socket.getOutputStream().write("GET /zzzzzz HTTP/1.1\r\nConnection: Close\r\n\r\n".getBytes(StandardCharsets.US_ASCII));
+            String response = new String(socket.getInputStream().readAllBytes(), StandardCharsets.US_ASCII);
+            assertTrue(response.startsWith("HTTP/1.1 404"), response);
+        }
+    }
+
+    /**
+     * Проверяет NIO-сервер поверх журнала с политикой ALWAYS: цикл событий не ждёт
+     * сброса каждого перехода (пачка переходов подтверждается меньшим числом сбросов),
+     * а сами переходы всё равно попадают на диск фоновым потоком журнала.
+     */
+    @Test
+    public void testClicksUnderAlwaysFsyncAreEventuallyDurable(@TempDir Path directory) throws Exception {
+        int clicks = 20;
+        String shortId;
+        try (DurableStorage storage = DurableStorage.open(directory, WriteAheadLog.FsyncPolicy.ALWAYS, 0, 0)) {
+            ShortLinkService service = new ShortLinkService(storage.getShortLinkRepository(), storage.getShortIdGenerator());
+            shortId = service.createShortLink("https://example.com/durable", UUID.randomUUID(), 24, 100);
+            WriteAheadLog log = storage.getWriteAheadLog();
+            try (NioRedirectServer durableServer = new NioRedirectServer(service,
+                    new InetSocketAddress("127.0.0.1", 0), 1, new RedirectResponseCache(1 << 20));
+                 Socket socket = new Socket("127.0.0.1", startAndGetPort(durableServer))) {
+                long syncsBefore = log.getSyncCount();
+                String request = "GET /" + shortId + " HTTP/1.1\r\nHost: x\r\n\r\n";
+                socket.getOutputStream().write(request.repeat(clicks).getBytes(StandardCharsets.US_ASCII));
+                String responses = readAtLeast(socket.getInputStream(), clicks);
+                assertEquals(clicks, responses.split("302 Found", -1).length - 1, responses);
+
+                // Переходы сбрасываются на диск фоном, группами
+                long deadline = System.currentTimeMillis() + 5_000;
+                while (log.getSyncCount() == syncsBefore && System.currentTimeMillis() < deadline) {
+                    Thread.sleep(10);
+                }
+                long syncs = log.getSyncCount() - syncsBefore;
+                assertTrue(syncs > 0 && syncs < clicks, "Сбросов журнала: " + syncs);
+            }
+        }
+
+        try (DurableStorage storage = DurableStorage.open(directory, WriteAheadLog.FsyncPolicy.ALWAYS, 0, 0)) {
+            assertEquals(clicks, storage.getShortLinkRepository().findByShortId(shortId).getCurrentCount());
+        }
+    }
+
+    /**
+     * Нагрузочный бенчмарк перенаправлений с keep-alive и конвейерными запросами.
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    public void benchmarkPipelinedRedirects() throws Exception {
+        UUID owner = UUID.randomUUID();
+        String[] shortIds = new String[1_000];
+        for (int i = 0; i < shortIds.length; i++) {
+            shortIds[i] = shortLinkService.createShortLink("https://example.com/page/" + i, owner, 24, 10);
+            ShortLink link = shortLinkRepository.findByShortId(shortIds[i]);
+            link.setLimit(Integer.MAX_VALUE); // Все запросы должны заканчиваться перенаправлением
+            shortLinkRepository.save(link);
+        }
+        InetSocketAddress address = new InetSocketAddress("127.0.0.1", server.getPort());
+        for (int pipeline : new int[]{1, 16}) {
+            LoadTestHarness.runPipelined(address, 16, pipeline, 2_000, shortIds); // Прогрев JIT
+            LoadTestHarness.Report report = LoadTestHarness.runPipelined(address, 16, pipeline, 5_000, shortIds);
+            System.out.println("NIO-перенаправления, конвейер " + pipeline + ": " + report);
+            assertEquals(0, report.errors());
+        }
+    }
+
+    private static int startAndGetPort(NioRedirectServer server) {
+        server.start();
+        return server.getPort();
+    }
+
+    private HttpRequest request(String path) {
+        return HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + server.getPort() + path)).GET().build();
+    }
+
+    /**
+     * Читает из сокета, пока не получит заданное число полных ответов без тела.
+     */
+    private static String readAtLeast(InputStream in, int responses) throws IOException {
+        StringBuilder text = new StringBuilder();
+        byte[] buffer = new byte[4096];
+        while (text.toString().split("\r\n\r\n", -1).length <= responses) {
+            int read = in.read(buffer);
+            if (read < 0) {
+                break;
+            }
+            text.append(new String(buffer, 0, read, StandardCharsets.US_ASCII));
+        }
+        return text.toString();
+    }
+}
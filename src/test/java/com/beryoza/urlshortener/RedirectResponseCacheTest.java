@@ -0,0 +1,112 @@
+package com.beryoza.urlshortener;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Тесты кэша готовых ответов 302.
+ */
+public class RedirectResponseCacheTest {
+
+    /**
+     * Проверяет, что повторный переход получает тот же закодированный ответ.
+     */
+    @Test
+    public void testHitReturnsSameResponse() {
+        RedirectResponseCache cache = new RedirectResponseCache(1 << 20);
+        ShortLink link = link("abc123", "https://vk.com/amasovich");
+
+        ByteBuffer first = cache.get(link);
+        assertSame(first, cache.get(link));
+        assertTrue(text(first).contains("Location: https://vk.com/amasovich\r\n"));
+        assertEquals(1, cache.size());
+    }
+
+    /**
+     * Проверяет, что удаление и истечение ссылки в сервисе убирают ответ из кэша.
+     */
+    @Test
+    public void testInvalidatedOnDeleteAndExpiry() {
+        ShortLinkRepository repository = new InMemoryShortLinkRepository();
+        ShortLinkService service = new ShortLinkService(repository);
+        RedirectResponseCache cache = new RedirectResponseCache(1 << 20);
+        service.addRemovalListener(cache::invalidate);
+        UUID owner = UUID.randomUUID();
+
+        String deleted = service.createShortLink("https://example.com/deleted", owner, 24, 10);
+        String expired = service.createShortLink("https://example.com/expired", owner, 24, 10);
+        cache.get(repository.findByShortId(deleted));
+        cache.get(repository.findByShortId(expired));
+        assertEquals(2, cache.size());
+
+        service.deleteShortLink(deleted, owner);
+        assertEquals(1, cache.size());
+
+        ShortLink link = repository.findByShortId(expired);
+        link.setExpiryTime(System.currentTimeMillis() - 1);
+        repository.save(link);
+        assertEquals(ResolveResult.Status.EXPIRED, service.resolve(expired).getStatus());
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.sizeInBytes());
+    }
+
+    /**
+     * Проверяет, что ответ, построенный для другого объекта ссылки с тем же shortId,
+     * не выдаётся, даже если сообщение об удалении не пришло.
+     */
+    @Test
+    public void testReplacedLinkIsNotServedStaleResponse() {
+        RedirectResponseCache cache = new RedirectResponseCache(1 << 20);
+        cache.get(link("abc123", "https://old.example.com"));
+
+        ByteBuffer response = cache.get(link("abc123", "https://new.example.com"));
+        assertTrue(text(response).contains("Location: https://new.example.com\r\n"));
+        assertEquals(1, cache.size());
+    }
+
+    /**
+     * Проверяет, что суммарный размер не превышает бюджет, а часто используемая запись
+     * переживает вытеснение.
+     */
+    @Test
+    public void testBoundedByBytes() {
+        long budget = 64 * 1024;
+        RedirectResponseCache cache = new RedirectResponseCache(budget);
+        String longPath = "x".repeat(200);
+        ShortLink hot = link(Base62.encode(0), "https://example.com/hot/" + longPath);
+
+        for (int i = 1; i <= 10_000; i++) {
+            cache.get(hot);
+            cache.get(link(Base62.encode(i), "https://example.com/" + i + "/" + longPath));
+            assertTrue(cache.sizeInBytes() <= budget, "Превышен бюджет: " + cache.sizeInBytes());
+        }
+        assertTrue(cache.size() < 10_000);
+        ByteBuffer hotResponse = cache.get(hot);
+        assertSame(hotResponse, cache.get(hot), "Популярная ссылка должна оставаться в кэше.");
+    }
+
+    /**
+     * Проверяет, что управляющие символы в URL не попадают в заголовки ответа.
+     */
+    @Test
+    public void testEncodingEscapesControlCharacters() {
+        String text = text(RedirectResponseCache.encode("https://example.com/a b\r\nSet-Cookie: x=1"));
+        assertTrue(text.contains("Location: https://example.com/a%20b%0D%0ASet-Cookie:%20x=1\r\n"), text);
+    }
+
+    private static ShortLink link(String shortId, String url) {
+        return new ShortLink(shortId, url, System.currentTimeMillis(), System.currentTimeMillis() + 3_600_000L,
+                10, 0, UUID.randomUUID());
+    }
+
+    private static String text(ByteBuffer response) {
+        byte[] bytes = new byte[response.remaining()];
+        response.duplicate().get(bytes);
+        return new String(bytes, StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,112 @@
+package com.beryoza.urlshortener;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Тесты генераторов коротких идентификаторов.
+ * <p>
+ * Бенчмарки запускаются только по запросу: {@code mvn test -Dbenchmark=true}.
+ */
+public class ShortIdGeneratorTest {
+
+    /** Количество идентификаторов для проверки уникальности. */
+    private static final int SAMPLE_SIZE = 1_000_000;
+
+    /** Количество вызовов генератора в одном замере бенчмарка. */
+    private static final int BENCHMARK_ITERATIONS = 2_000_000;
+
+    /**
+     * Проверяет, что генератор на сети Фейстеля не выдаёт повторов
+     * и все идентификаторы состоят из шести символов base62.
+     */
+    @Test
+    public void testFeistelIdsAreUniqueAndWellFormed() {
+        ShortIdGenerator generator = new FeistelShortIdGenerator(42L, 0);
+        Set<String> seen = new HashSet<>();
+        for (int i = 0; i < SAMPLE_SIZE; i++) {
+            String shortId = generator.nextId();
+            assertTrue(shortId.matches("[a-zA-Z0-9]{6}"), "Некорректный идентификатор: " + shortId);
+            assertTrue(seen.add(shortId), "Повтор идентификатора: " + shortId);
+        }
+    }
+
+    /**
+     * Проверяет, что перестановка не оставляет диапазон 62^6 и соседние значения
+     * счётчика дают непохожие идентификаторы.
+     */
+    @Test
+    public void testPermutationStaysInKeyspaceAndLooksRandom() {
+        FeistelShortIdGenerator generator = new FeistelShortIdGenerator(42L, 0);
+        long sequentialNeighbours = 0;
+        long previous = generator.permute(0);
+        for (long value = 1; value < 10_000; value++) {
+            long permuted = generator.permute(value);
+            assertTrue(permuted >= 0 && permuted < Base62.KEYSPACE);
+            if (Math.abs(permuted - previous) <= 62) {
+                sequentialNeighbours++;
+            }
+            previous = permuted;
+        }
+        assertTrue(sequentialNeighbours < 10, "Соседние значения счётчика не должны давать соседние идентификаторы.");
+    }
+
+    /**
+     * Проверяет, что разные ключи дают разный порядок идентификаторов,
+     * а последний элемент пространства всё ещё кодируется.
+     */
+    @Test
+    public void testKeyChangesOrderAndKeyspaceEdge() {
+        assertNotEquals(new FeistelShortIdGenerator(1L, 0).nextId(), new FeistelShortIdGenerator(2L, 0).nextId());
+
+        ShortIdGenerator last = new FeistelShortIdGenerator(1L, Base62.KEYSPACE - 1);
+        assertEquals(Base62.LENGTH, last.nextId().length());
+        assertThrows(IllegalStateException.class, last::nextId, "После исчерпания пространства должна быть ошибка.");
+    }
+
+    /**
+     * Проверяет, что обратная перестановка восстанавливает значение счётчика.
+     */
+    @Test
+    public void testCounterOfInvertsPermutation() {
+        FeistelShortIdGenerator generator = new FeistelShortIdGenerator(42L, 0);
+        for (long value = 0; value < 100_000; value++) {
+            assertEquals(value, generator.counterOf(generator.permute(value)));
+        }
+        long last = Base62.KEYSPACE - 1;
+        assertEquals(last, generator.counterOf(generator.permute(last)));
+    }
+
+    /**
+     * Микробенчмарк: сравнение исходного случайного генератора и генератора на сети Фейстеля.
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    public void benchmarkGenerators() {
+        ShortIdGenerator[] generators = {new RandomShortIdGenerator(), new FeistelShortIdGenerator(42L, 0)};
+        for (ShortIdGenerator generator : generators) {
+            measure(generator); // Прогрев JIT
+            double nanosPerId = measure(generator);
+            System.out.printf("%s: %.1f нс на идентификатор%n", generator.getClass().getSimpleName(), nanosPerId);
+        }
+    }
+
+    /**
+     * Замеряет среднее время генерации одного идентификатора.
+     */
+    private static double measure(ShortIdGenerator generator) {
+        int checksum = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < BENCHMARK_ITERATIONS; i++) {
+            checksum += generator.nextId().charAt(0);
+        }
+        long elapsed = System.nanoTime() - start;
+        assertTrue(checksum != 0); // Не даём JIT выбросить цикл
+        return (double) elapsed / BENCHMARK_ITERATIONS;
+    }
+}
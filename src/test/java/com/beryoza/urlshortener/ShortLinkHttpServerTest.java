@@ -0,0 +1,210 @@
+package com.beryoza.urlshortener;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Тесты встроенного HTTP-сервера: перенаправления и JSON API.
+ * <p>
+ * Нагрузочный бенчмарк запускается только по запросу: {@code mvn test -Dbenchmark=true}.
+ */
+public class ShortLinkHttpServerTest {
+
+    private ShortLinkRepository shortLinkRepository;
+    private ShortLinkService shortLinkService;
+    private ShortLinkHttpServer server;
+    private HttpClient client;
+    private String baseUrl;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        shortLinkRepository = new InMemoryShortLinkRepository();
+        shortLinkService = new ShortLinkService(shortLinkRepository);
+        server = new ShortLinkHttpServer(shortLinkService, new InetSocketAddress("127.0.0.1", 0),
+                ShortLinkHttpServer.ExecutorMode.VIRTUAL, 0);
+        server.start();
+        baseUrl = "http://127.0.0.1:" + server.getPort();
+        // Перенаправления не выполняем, чтобы видеть ответ сервера как есть
+        client = HttpClient.newBuilder().followRedirects(HttpClient.Redirect.NEVER).build();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        server.close();
+    }
+
+    /**
+     * Проверяет ответы на переходы: 302 с Location, 404 для неизвестной ссылки
+     * и 410 после исчерпания лимита.
+     */
+    @Test
+    public void testRedirectStatuses() throws Exception {
+        String shortId = shortLinkService.createShortLink("https://vk.com/amasovich", UUID.randomUUID(), 24, 1);
+
+        HttpResponse<String> found = get("/" + shortId);
+        assertEquals(302, found.statusCode());
+        assertEquals("https://vk.com/amasovich", found.headers().firstValue("Location").orElse(null));
+
+        assertEquals(410, get("/" + shortId).statusCode(), "Лимит исчерпан — ссылка больше недоступна.");
+        assertEquals(404, get("/zzzzzz").statusCode());
+        assertEquals(404, get("/не-ссылка").statusCode());
+
+        // Пробелы и не-ASCII попадают в Location в виде %XX, а не искажаются
+        String cyrillic = shortLinkService.createShortLink("https://пример.рф/путь a", UUID.randomUUID(), 24, 1);
+        assertEquals("https://%D0%BF%D1%80%D0%B8%D0%BC%D0%B5%D1%80.%D1%80%D1%84/%D0%BF%D1%83%D1%82%D1%8C%20a",
+                get("/" + cyrillic).headers().firstValue("Location").orElse(null));
+    }
+
+    /**
+     * Проверяет создание, изменение и удаление ссылки через JSON API.
+     */
+    @Test
+    public void testJsonApiLifecycle() throws Exception {
+        UUID owner = UUID.randomUUID();
+
+        HttpResponse<String> created = send("POST", "/api/links",
+                "{\"url\": \"https://vk.com/amasovich\", \"userUuid\": \"" + owner + "\", \"ttl\": 24, \"limit\": 5}");
+        assertEquals(201, created.statusCode());
+        String shortId = (String) Json.parseObject(created.body()).get("shortId");
+        assertNotNull(shortLinkService.getOriginalUrl(shortId));
+
+        HttpResponse<String> edited = send("PUT", "/api/links/" + shortId,
+                "{\"userUuid\": \"" + owner + "\", \"limit\": 7}");
+        assertEquals(204, edited.statusCode());
+
+        HttpResponse<String> foreign = send("DELETE", "/api/links/" + shortId,
+                "{\"userUuid\": \"" + UUID.randomUUID() + "\"}");
+        assertEquals(403, foreign.statusCode(), "Чужую ссылку удалить нельзя.");
+
+        HttpResponse<String> deleted = send("DELETE", "/api/links/" + shortId, "{\"userUuid\": \"" + owner + "\"}");
+        assertEquals(204, deleted.statusCode());
+        assertEquals(404, get("/" + shortId).statusCode());
+
+        HttpResponse<String> missing = send("DELETE", "/api/links/" + shortId, "{\"userUuid\": \"" + owner + "\"}");
+        assertEquals(404, missing.statusCode());
+    }
+
+    /**
+     * Проверяет, что некорректные запросы получают 400 с описанием ошибки.
+     */
+    @Test
+    public void testInvalidRequestsAreRejected() throws Exception {
+        HttpResponse<String> broken = send("POST", "/api/links", "{\"url\": ");
+        assertEquals(400, broken.statusCode());
+        assertTrue(Json.parseObject(broken.body()).containsKey("error"));
+
+        HttpResponse<String> noUser = send("POST", "/api/links", "{\"url\": \"https://vk.com\"}");
+        assertEquals(400, noUser.statusCode());
+
+        HttpResponse<String> badUser = send("POST", "/api/links",
+                "{\"url\": \"https://vk.com\", \"userUuid\": \"не-uuid\"}");
+        assertEquals(400, badUser.statusCode());
+
+        HttpResponse<String> badLimit = send("POST", "/api/links",
+                "{\"url\": \"https://vk.com\", \"userUuid\": \"" + UUID.randomUUID() + "\", \"limit\": \"10\"}");
+        assertEquals(400, badLimit.statusCode());
+
+        for (String url : new String[]{"javascript:alert(1)", "vk.com", "https://", "https://vk.com/a\\r\\nSet-Cookie: x=1"}) {
+            HttpResponse<String> badUrl = send("POST", "/api/links",
+                    "{\"url\": \"" + url + "\", \"userUuid\": \"" + UUID.randomUUID() + "\"}");
+            assertEquals(400, badUrl.statusCode(), url);
+        }
+
+        // Путь лишь начинается с префикса API, но не является ни коллекцией, ни ссылкой
+        HttpResponse<String> wrongPath = send("POST", "/api/linksXYZ",
+                "{\"url\": \"https://vk.com\", \"userUuid\": \"" + UUID.randomUUID() + "\"}");
+        assertEquals(404, wrongPath.statusCode());
+        assertEquals(0, shortLinkRepository.findAll().size());
+    }
+
+    /**
+     * Нагрузочный бенчмарк перенаправлений: запросы в секунду и p99.
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    public void benchmarkRedirects() throws Exception {
+        String[] shortIds = createUnlimitedLinks(shortLinkRepository, shortLinkService, 1_000);
+        InetSocketAddress address = new InetSocketAddress("127.0.0.1", server.getPort());
+        LoadTestHarness.run(address, 16, 2_000, shortIds); // Прогрев JIT
+        LoadTestHarness.Report report = LoadTestHarness.run(address, 16, 5_000, shortIds);
+        System.out.println("HTTP-перенаправления: " + report);
+        assertEquals(0, report.errors());
+    }
+
+    /**
+     * Сравнивает пул платформенных потоков и виртуальные потоки при 10 000 одновременных
+     * соединений (число можно изменить свойством {@code benchmark.connections}). Каждый переход
+     * имитирует медленное обращение к хранилищу, блокируя поток на 2 мс.
+     * Клиент работает в том же процессе, поэтому лимит открытых файлов ({@code ulimit -n})
+     * должен быть больше удвоенного числа соединений.
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    public void benchmarkPlatformVersusVirtualThreads() throws Exception {
+        int connections = Integer.getInteger("benchmark.connections", 10_000);
+        for (ShortLinkHttpServer.ExecutorMode mode : ShortLinkHttpServer.ExecutorMode.values()) {
+            ShortLinkRepository repository = new InMemoryShortLinkRepository();
+            ShortLinkService slowService = new ShortLinkService(repository) {
+                @Override
+                public ResolveResult resolve(CharSequence shortId) {
+                    try {
+                        Thread.sleep(2); // Медленное хранилище или уведомление
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return super.resolve(shortId);
+                }
+            };
+            String[] shortIds = createUnlimitedLinks(repository, slowService, 1_000);
+            try (ShortLinkHttpServer slowServer = new ShortLinkHttpServer(slowService,
+                    new InetSocketAddress("127.0.0.1", 0), mode, Config.getHttpThreads())) {
+                slowServer.start();
+                InetSocketAddress address = new InetSocketAddress("127.0.0.1", slowServer.getPort());
+                LoadTestHarness.run(address, connections, 3_000, shortIds); // Прогрев и установка соединений
+                LoadTestHarness.Report report = LoadTestHarness.run(address, connections, 10_000, shortIds);
+                System.out.println(mode + ", " + connections + " соединений: " + report);
+            }
+        }
+    }
+
+    /**
+     * Создаёт ссылки без ограничения на число переходов.
+     */
+    private static String[] createUnlimitedLinks(ShortLinkRepository repository, ShortLinkService service, int count) {
+        UUID owner = UUID.randomUUID();
+        String[] shortIds = new String[count];
+        for (int i = 0; i < count; i++) {
+            shortIds[i] = service.createShortLink("https://example.com/page/" + i, owner, 24, 10);
+            // Снимаем ограничение конфигурации на лимит, чтобы все запросы заканчивались перенаправлением
+            ShortLink link = repository.findByShortId(shortIds[i]);
+            link.setLimit(Integer.MAX_VALUE);
+            repository.save(link);
+        }
+        return shortIds;
+    }
+
+    private HttpResponse<String> get(String path) throws Exception {
+        return client.send(HttpRequest.newBuilder(URI.create(baseUrl + path)).GET().build(),
+                HttpResponse.BodyHandlers.ofString());
+    }
+
+    private HttpResponse<String> send(String method, String path, String body) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .header("Content-Type", "application/json")
+                .method(method, HttpRequest.BodyPublishers.ofString(body))
+                .build();
+        return client.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+}
@@ -0,0 +1,391 @@
+package com.beryoza.urlshortener;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Тесты репозитория коротких ссылок.
+ * Проверяется корректность работы хранилища при параллельном доступе из нескольких потоков.
+ * <p>
+ * Нагрузочный тест запускается только по запросу: {@code mvn test -Dbenchmark=true}.
+ */
+public class ShortLinkRepositoryTest {
+
+    /** Количество ссылок, заранее загруженных в репозиторий для нагрузочного теста. */
+    private static final int PRELOADED_LINKS = 10_000;
+
+    /** Количество операций, которое выполняет каждый поток. */
+    private static final int OPERATIONS_PER_THREAD = 200_000;
+
+    private ShortLinkRepository shortLinkRepository;
+
+    /**
+     * Инициализация перед каждым тестом: создаётся пустой репозиторий.
+     */
+    @BeforeEach
+    public void setUp() {
+        shortLinkRepository = new InMemoryShortLinkRepository();
+    }
+
+    /**
+     * Проверяет, что параллельные записи разных ссылок не теряются.
+     */
+    @Test
+    public void testConcurrentWritesAreNotLost() throws Exception {
+        int threads = Math.max(4, Runtime.getRuntime().availableProcessors());
+        int linksPerThread = 5_000;
+        UUID user = UUID.randomUUID();
+
+        runConcurrently(threads, threadIndex -> {
+            for (int i = 0; i < linksPerThread; i++) {
+                shortLinkRepository.save(newLink(Base62.encode(threadIndex * 1_000_000L + i), user));
+            }
+        });
+
+        assertEquals(threads * linksPerThread, shortLinkRepository.findAll().size(),
+                "Все ссылки, сохранённые из разных потоков, должны оказаться в репозитории.");
+        assertNotNull(shortLinkRepository.findByShortId(Base62.encode(0)));
+    }
+
+    /**
+     * Проверяет, что поиск несуществующих идентификаторов почти не доходит до хранилища,
+     * а повторный поиск того же идентификатора не доходит совсем.
+     */
+    @Test
+    public void testUnknownIdsDoNotReachStore() {
+        AtomicInteger reads = new AtomicInteger();
+        ShortLinkRepository repository = new InMemoryShortLinkRepository(new MemoryLinkStore() {
+            @Override
+            public ShortLink get(long key) {
+                reads.incrementAndGet();
+                return super.get(key);
+            }
+        });
+        UUID user = UUID.randomUUID();
+        for (int i = 0; i < 1_000; i++) {
+            repository.save(newLink(Base62.encode(i), user));
+        }
+
+        for (long id = 1_000_000; id < 1_100_000; id++) {
+            assertNull(repository.findByShortId(Base62.encode(id)));
+        }
+        int readsAfterScan = reads.get();
+        assertTrue(readsAfterScan < 100, "Обращений к хранилищу: " + readsAfterScan);
+        for (long id = 1_000_000; id < 1_100_000; id++) {
+            assertNull(repository.findByShortId(Base62.encode(id)));
+        }
+        assertEquals(readsAfterScan, reads.get());
+
+        assertNotNull(repository.findByShortId(Base62.encode(999)));
+    }
+
+    /**
+     * Проверяет, что переполненный фильтр пересобирается и не теряет ни одной ссылки,
+     * а удалённые и вновь созданные ссылки находятся правильно.
+     */
+    @Test
+    public void testFilterGrowsAndFollowsDeletes() {
+        ShortLinkRepository repository = new InMemoryShortLinkRepository(new MemoryLinkStore(), 64);
+        UUID user = UUID.randomUUID();
+        for (int i = 0; i < 20_000; i++) {
+            repository.save(newLink(Base62.encode(i), user));
+        }
+        for (int i = 0; i < 20_000; i++) {
+            assertNotNull(repository.findByShortId(Base62.encode(i)));
+        }
+
+        repository.deleteByShortId(Base62.encode(7));
+        assertNull(repository.findByShortId(Base62.encode(7)));
+        // Промах запомнен, но новая ссылка с тем же идентификатором видна сразу
+        repository.save(newLink(Base62.encode(7), user));
+        assertNotNull(repository.findByShortId(Base62.encode(7)));
+    }
+
+    /**
+     * Проверяет, что индекс по пользователю следует за сохранением и удалением ссылок.
+     */
+    @Test
+    public void testUserIndexTracksSaveAndDelete() {
+        UUID user1 = UUID.randomUUID();
+        UUID user2 = UUID.randomUUID();
+        shortLinkRepository.save(newLink("aaaaa1", user1));
+        shortLinkRepository.save(newLink("aaaaa2", user1));
+        shortLinkRepository.save(newLink("bbbbb1", user2));
+
+        assertEquals(2, shortLinkRepository.findByUserUuid(user1).size());
+        assertEquals(1, shortLinkRepository.findByUserUuid(user2).size());
+
+        shortLinkRepository.deleteByShortId("aaaaa1");
+        List<ShortLink> user1Links = shortLinkRepository.findByUserUuid(user1);
+        assertEquals(1, user1Links.size(), "Удалённая ссылка не должна попадать в индекс.");
+        assertEquals("aaaaa2", user1Links.get(0).getShortId());
+
+        shortLinkRepository.deleteByShortId("aaaaa2");
+        assertTrue(shortLinkRepository.findByUserUuid(user1).isEmpty());
+        assertTrue(shortLinkRepository.findByUserUuid(UUID.randomUUID()).isEmpty());
+    }
+
+    /**
+     * Проверяет индекс по номерам пользователей: смену владельца ссылки и одновременные
+     * добавления и удаления ссылок одних и тех же пользователей из разных потоков
+     * (опустевший набор снимается с ячейки, а новый занимает её заново).
+     */
+    @Test
+    public void testUserIndexFollowsOwnerChangeAndConcurrentChurn() throws Exception {
+        UUID before = UUID.randomUUID();
+        UUID after = UUID.randomUUID();
+        shortLinkRepository.save(newLink("ccccc1", before));
+        shortLinkRepository.save(newLink("ccccc1", after));
+        assertTrue(shortLinkRepository.findByUserUuid(before).isEmpty());
+        assertEquals("ccccc1", shortLinkRepository.findByUserUuid(after).get(0).getShortId());
+        assertEquals(after, shortLinkRepository.findByShortId("ccccc1").getUserUuid());
+
+        UUID[] users = {UUID.randomUUID(), UUID.randomUUID()};
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            int thread = t;
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 2_000; i++) {
+                    String shortId = Base62.encode(1_000_000L * (thread + 1) + i % 3);
+                    shortLinkRepository.save(new ShortLink(shortId, "https://example.com/" + i,
+                            System.currentTimeMillis(), Long.MAX_VALUE, 10, 0, users[i % 2]));
+                    shortLinkRepository.deleteByShortId(shortId);
+                }
+                // Последняя ссылка потока остаётся
+                shortLinkRepository.save(new ShortLink(Base62.encode(1_000_000L * (thread + 1)), "https://example.com/",
+                        System.currentTimeMillis(), Long.MAX_VALUE, 10, 0, users[thread % 2]));
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(2, shortLinkRepository.findByUserUuid(users[0]).size());
+        assertEquals(2, shortLinkRepository.findByUserUuid(users[1]).size());
+    }
+
+    /**
+     * Проверяет, что строки, которые не могут быть идентификатором base62,
+     * не сохраняются и не ищутся в хранилище.
+     */
+    @Test
+    public void testMalformedShortIdsAreRejected() {
+        UUID user = UUID.randomUUID();
+        assertThrows(IllegalArgumentException.class, () -> shortLinkRepository.save(newLink("abc", user)));
+        assertThrows(IllegalArgumentException.class, () -> shortLinkRepository.save(newLink("abc-12", user)));
+
+        shortLinkRepository.save(newLink("abc123", user));
+        assertNotNull(shortLinkRepository.findByShortId("abc123"));
+        assertNull(shortLinkRepository.findByShortId("abc1234"));
+        assertNull(shortLinkRepository.findByShortId("abc12/"));
+        assertNull(shortLinkRepository.findByShortId(null));
+        shortLinkRepository.deleteByShortId("не-id");
+        assertEquals(1, shortLinkRepository.findAll().size());
+    }
+
+    /**
+     * Проверяет, что индекс сроков отдаёт только просроченные или исчерпанные ссылки
+     * и корректно переносит ссылку при изменении срока действия.
+     */
+    @Test
+    public void testExpiryIndexReturnsOnlyDueLinks() {
+        UUID user = UUID.randomUUID();
+        long now = System.currentTimeMillis();
+        ShortLink active = newLink("actv01", user);
+        ShortLink expired = newLink("expd01", user);
+        expired.setExpiryTime(now - 5_000L);
+        ShortLink exhausted = newLink("lim001", user);
+        exhausted.setCurrentCount(exhausted.getLimit());
+        shortLinkRepository.save(active);
+        shortLinkRepository.save(expired);
+        shortLinkRepository.save(exhausted);
+
+        List<String> due = shortLinkRepository.findExpired(now, Integer.MAX_VALUE).stream()
+                .map(ShortLink::getShortId).sorted().toList();
+        assertEquals(List.of("expd01", "lim001"), due);
+
+        // Продлеваем срок: ссылка должна уйти из просроченных
+        expired.setExpiryTime(now + 3_600_000L);
+        shortLinkRepository.save(expired);
+        // Сокращаем срок активной ссылки: она должна стать просроченной
+        active.setExpiryTime(now - 1L);
+        shortLinkRepository.save(active);
+
+        due = shortLinkRepository.findExpired(now, Integer.MAX_VALUE).stream()
+                .map(ShortLink::getShortId).sorted().toList();
+        assertEquals(List.of("actv01", "lim001"), due);
+
+        shortLinkRepository.deleteByShortId("lim001");
+        assertEquals(1, shortLinkRepository.findExpired(now, Integer.MAX_VALUE).size());
+        assertEquals(1, shortLinkRepository.findExpired(now, 1).size());
+    }
+
+    /**
+     * Проверяет, что параллельные переносы ссылок между корзинами индекса сроков
+     * (в том числе в одни и те же корзины) не теряют и не дублируют ссылки.
+     */
+    @Test
+    public void testExpiryIndexConcurrentReschedule() throws Exception {
+        ExpiryIndex index = new ExpiryIndex(1);
+        int threads = 4;
+        int perThread = 2_000;
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            int offset = t * perThread;
+            workers[t] = new Thread(() -> {
+                for (int round = 0; round < 5; round++) {
+                    for (int i = 0; i < perThread; i++) {
+                        // Ссылки разных потоков делят корзины: 0..9
+                        index.schedule(offset + i, (i + round) % 10);
+                    }
+                }
+                for (int i = 0; i < perThread; i += 2) {
+                    index.remove(offset + i);
+                }
+            });
+            workers[t].start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        assertEquals(threads * perThread / 2, index.size());
+        assertEquals(threads * perThread / 2, index.findDue(100, Integer.MAX_VALUE).length);
+    }
+
+    /**
+     * Нагрузочный тест: смесь чтений (90%) и записей (10%) на 1..N потоках.
+     * <p>
+     * Для каждого числа потоков выводится пропускная способность, чтобы было видно,
+     * как она масштабируется с ростом числа ядер. Заодно проверяется, что ни одно
+     * чтение заранее загруженной ссылки не вернуло null.
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    public void testReadWriteThroughputScalesWithThreads() throws Exception {
+        UUID user = UUID.randomUUID();
+        String[] ids = new String[PRELOADED_LINKS];
+        for (int i = 0; i < PRELOADED_LINKS; i++) {
+            ids[i] = Base62.encode(i);
+            shortLinkRepository.save(newLink(ids[i], user));
+        }
+
+        int maxThreads = Math.max(4, Runtime.getRuntime().availableProcessors());
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            long start = System.nanoTime();
+            runConcurrently(threads, threadIndex -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i = 0; i < OPERATIONS_PER_THREAD; i++) {
+                    String id = ids[random.nextInt(ids.length)];
+                    if (i % 10 == 0) {
+                        shortLinkRepository.save(newLink(id, user));
+                    } else if (shortLinkRepository.findByShortId(id) == null) {
+                        throw new AssertionError("Ссылка " + id + " пропала из репозитория");
+                    }
+                }
+            });
+            long elapsed = System.nanoTime() - start;
+            double opsPerSecond = threads * (double) OPERATIONS_PER_THREAD * 1_000_000_000L / elapsed;
+            System.out.printf("Потоков: %d, операций в секунду: %.0f%n", threads, opsPerSecond);
+        }
+
+        assertEquals(PRELOADED_LINKS, shortLinkRepository.findAll().size(),
+                "Перезапись существующих ссылок не должна менять их количество.");
+    }
+
+    /**
+     * Бенчмарк памяти: сколько байт кучи на ссылку занимают сами объекты ссылок
+     * и сколько добавляет репозиторий (хранилище, индекс пользователей, индекс сроков,
+     * фильтр). Миллион ссылок тысячи пользователей со сроками, разнесёнными на сутки.
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    public void benchmarkHeapPerLink() {
+        int links = 1_000_000;
+        UUID[] users = new UUID[1_000];
+        for (int i = 0; i < users.length; i++) {
+            users[i] = UUID.randomUUID();
+        }
+        long baseline = usedHeap();
+        long now = System.currentTimeMillis();
+        ShortLink[] created = new ShortLink[links];
+        for (int i = 0; i < links; i++) {
+            String shortId = Base62.encode(i * 56_800L);
+            created[i] = new ShortLink(shortId, "https://example.com/" + shortId, now,
+                    now + (i % 86_400) * 1000L, 100, 0, users[i % users.length]);
+        }
+        long withLinks = usedHeap();
+        ShortLinkRepository repository = new InMemoryShortLinkRepository(new MemoryLinkStore(), links);
+        for (ShortLink link : created) {
+            repository.save(link);
+        }
+        long withRepository = usedHeap();
+        System.out.printf("Объекты ссылок: %d байт на ссылку%n", (withLinks - baseline) / links);
+        System.out.printf("Репозиторий с индексами: %d байт на ссылку%n", (withRepository - withLinks) / links);
+        assertEquals(links / users.length, repository.findByUserUuid(users[0]).size());
+    }
+
+    /**
+     * Занятая куча после сборки мусора.
+     */
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /**
+     * Создаёт тестовую ссылку с заданным идентификатором.
+     */
+    private static ShortLink newLink(String shortId, UUID user) {
+        long now = System.currentTimeMillis();
+        return new ShortLink(shortId, "https://example.com/" + shortId, now, now + 3_600_000L, 10, 0, user);
+    }
+
+    /**
+     * Запускает задачу одновременно в нескольких потоках и дожидается завершения.
+     * Исключения из потоков пробрасываются в тест.
+     */
+    private static void runConcurrently(int threads, ThreadTask task) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            CountDownLatch startSignal = new CountDownLatch(1);
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int threadIndex = t;
+                futures.add(executor.submit(() -> {
+                    startSignal.await();
+                    task.run(threadIndex);
+                    return null;
+                }));
+            }
+            startSignal.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Задача, выполняемая в отдельном потоке.
+     */
+    private interface ThreadTask {
+        void run(int threadIndex) throws Exception;
+    }
+}
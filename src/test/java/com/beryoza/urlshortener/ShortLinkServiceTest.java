@@ -3,8 +3,14 @@ package com.beryoza.urlshortener;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -23,7 +29,7 @@ public class ShortLinkServiceTest {
      */
     @BeforeEach
     public void setUp() {
-        shortLinkRepository = new ShortLinkRepository();
+        shortLinkRepository = new InMemoryShortLinkRepository();
         shortLinkService = new ShortLinkService(shortLinkRepository);
         shortLinkService.clearNotifications(); // Очищаем уведомления перед каждым тестом
     }
@@ -63,6 +69,28 @@ public class ShortLinkServiceTest {
                 "Ссылка должна блокироваться при превышении лимита переходов.");
     }
 
+    /**
+     * Проверяет, что сервис, созданный над непустым репозиторием, не выдаёт
+     * идентификаторы, которые там уже заняты.
+     */
+    @Test
+    public void testServiceOverExistingLinksDoesNotReuseIds() {
+        UUID user = UUID.randomUUID();
+        List<String> existing = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            existing.add(shortLinkService.createShortLink("https://vk.com/amasovich/" + i, user, 24, 10));
+        }
+
+        ShortLinkService restarted = new ShortLinkService(shortLinkRepository);
+        for (int i = 0; i < 100; i++) {
+            String shortId = restarted.createShortLink("https://example.com/" + i, user, 24, 10);
+            assertFalse(existing.contains(shortId), "Идентификатор выдан повторно: " + shortId);
+        }
+        assertEquals("https://vk.com/amasovich/0",
+                shortLinkRepository.findByShortId(existing.get(0)).getOriginalUrl());
+        assertEquals(200, shortLinkRepository.findByUserUuid(user).size());
+    }
+
     /**
      * Проверяет, что ссылка удаляется после истечения срока действия.
      */
@@ -111,4 +139,144 @@ public class ShortLinkServiceTest {
         assertTrue(notifications.stream().anyMatch(msg -> msg.contains("превысила лимит переходов")),
                 "Одно из уведомлений должно содержать текст о превышении лимита переходов.");
     }
+
+    /**
+     * Проверяет, что просроченная ссылка не отдаётся и удаляется при первом же обращении,
+     * не дожидаясь фоновой очистки.
+     */
+    @Test
+    public void testExpiredLinkIsRemovedOnAccess() {
+        UUID user = UUID.randomUUID();
+        String shortId = shortLinkService.createShortLink("https://vk.com/amasovich", user, 1, 10);
+
+        ShortLink link = shortLinkRepository.findByShortId(shortId);
+        link.setExpiryTime(System.currentTimeMillis() - 1000);
+
+        RuntimeException exception = assertThrows(RuntimeException.class, () -> shortLinkService.getOriginalUrl(shortId));
+        assertTrue(exception.getMessage().contains("истек"), "Просроченная ссылка не должна отдаваться.");
+        assertNull(shortLinkRepository.findByShortId(shortId), "Просроченная ссылка должна удаляться при обращении.");
+    }
+
+    /**
+     * Проверяет, что фоновый планировщик удаляет просроченные ссылки без участия createShortLink.
+     */
+    @Test
+    public void testExpirySchedulerRemovesLinksInBackground() throws InterruptedException {
+        UUID user = UUID.randomUUID();
+        String shortId = shortLinkService.createShortLink("https://vk.com/amasovich", user, 1, 10);
+        ShortLink link = shortLinkRepository.findByShortId(shortId);
+        link.setExpiryTime(System.currentTimeMillis() - 1000);
+        shortLinkRepository.save(link);
+
+        try (ExpiryScheduler scheduler = new ExpiryScheduler(shortLinkService, 10, 100)) {
+            scheduler.start();
+            long deadline = System.currentTimeMillis() + 5000;
+            while (shortLinkRepository.findByShortId(shortId) != null && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+        }
+
+        assertNull(shortLinkRepository.findByShortId(shortId), "Фоновая очистка должна удалить просроченную ссылку.");
+    }
+
+    /**
+     * Проверяет, что resolve сообщает о недоступности ссылки статусом, без исключений
+     * и уведомлений, и использует заранее созданные результаты.
+     */
+    @Test
+    public void testResolveReportsStatusWithoutExceptions() {
+        UUID user = UUID.randomUUID();
+        String shortId = shortLinkService.createShortLink("https://vk.com/amasovich", user, 1, 1);
+
+        ResolveResult found = shortLinkService.resolve(shortId);
+        assertEquals(ResolveResult.Status.FOUND, found.getStatus());
+        assertEquals("https://vk.com/amasovich", found.getLink().getOriginalUrl());
+
+        assertSame(ResolveResult.LIMIT_EXCEEDED, shortLinkService.resolve(shortId));
+        assertSame(ResolveResult.NOT_FOUND, shortLinkService.resolve("zzzzzz"));
+        assertSame(ResolveResult.NOT_FOUND, shortLinkService.resolve("не-идентификатор"));
+
+        String expiring = shortLinkService.createShortLink("https://vk.com/amasovich", user, 1, 10);
+        shortLinkRepository.findByShortId(expiring).setExpiryTime(System.currentTimeMillis() - 1000);
+        assertSame(ResolveResult.EXPIRED, shortLinkService.resolve(expiring));
+        assertSame(ResolveResult.NOT_FOUND, shortLinkService.resolve(expiring), "Просроченная ссылка удаляется при обращении.");
+
+        assertTrue(shortLinkService.getNotifications().isEmpty(), "resolve не должен создавать уведомления.");
+    }
+
+    /**
+     * Проверяет, что при 64 параллельных потоках число успешных переходов
+     * ровно равно лимиту: клики не теряются и лимит не превышается.
+     */
+    @Test
+    public void testConcurrentClicksNeverOvershootLimit() throws Exception {
+        int threads = 64;
+        UUID user = UUID.randomUUID();
+        String shortId = shortLinkService.createShortLink("https://vk.com/amasovich", user, 1, Config.getMaxLimit());
+        ShortLink link = shortLinkRepository.findByShortId(shortId);
+
+        AtomicInteger successes = new AtomicInteger();
+        runConcurrently(threads, () -> {
+            for (int i = 0; i < 5; i++) {
+                try {
+                    shortLinkService.getOriginalUrl(shortId);
+                    successes.incrementAndGet();
+                } catch (RuntimeException e) {
+                    // Лимит исчерпан — ожидаемо для части потоков
+                }
+            }
+        });
+
+        assertEquals(link.getLimit(), successes.get(), "Успешных переходов должно быть ровно столько, сколько позволяет лимит.");
+        assertEquals(link.getLimit(), link.getCurrentCount(), "Счётчик не должен терять клики или превышать лимит.");
+    }
+
+    /**
+     * То же на уровне {@link ShortLink}: 64 потока резервируют переходы напрямую,
+     * без вывода в консоль, чтобы конкуренция за счётчик была максимальной.
+     */
+    @Test
+    public void testReserveClickIsAtomicUnderContention() throws Exception {
+        int threads = 64;
+        int limit = 100_000;
+        ShortLink link = new ShortLink("abc123", "https://vk.com/amasovich", 0, Long.MAX_VALUE, limit, 0, UUID.randomUUID());
+
+        AtomicInteger successes = new AtomicInteger();
+        runConcurrently(threads, () -> {
+            for (int i = 0; i < 2 * limit / threads; i++) {
+                if (link.tryReserveClick()) {
+                    successes.incrementAndGet();
+                }
+            }
+        });
+
+        assertEquals(limit, successes.get());
+        assertEquals(limit, link.getCurrentCount());
+        assertTrue(link.isExhausted());
+        assertFalse(link.tryReserveClick());
+    }
+
+    /**
+     * Запускает задачу одновременно в нескольких потоках и дожидается завершения.
+     */
+    private static void runConcurrently(int threads, Runnable task) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            CountDownLatch startSignal = new CountDownLatch(1);
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                futures.add(executor.submit(() -> {
+                    startSignal.await();
+                    task.run();
+                    return null;
+                }));
+            }
+            startSignal.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
 }
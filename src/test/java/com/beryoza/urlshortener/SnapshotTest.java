@@ -0,0 +1,164 @@
+package com.beryoza.urlshortener;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Тесты снимков хранилища и сжатия журнала.
+ * <p>
+ * Бенчмарк запускается только по запросу: {@code mvn test -Dbenchmark=true}.
+ */
+public class SnapshotTest {
+
+    @TempDir
+    Path directory;
+
+    /**
+     * Проверяет, что после снимка старые файлы журнала удаляются, а восстановление
+     * из снимка и хвоста журнала даёт то же состояние.
+     */
+    @Test
+    public void testRestoreFromSnapshotAndTail() throws IOException {
+        UUID owner;
+        String beforeSnapshot;
+        String afterSnapshot;
+        try (DurableStorage storage = DurableStorage.open(directory, WriteAheadLog.FsyncPolicy.NEVER, 10, 0)) {
+            ShortLinkService service = new ShortLinkService(storage.getShortLinkRepository(), storage.getShortIdGenerator());
+            owner = storage.getUserRepository().saveUser(new User(UUID.randomUUID(), "Алиса")).getUserUuid();
+            beforeSnapshot = service.createShortLink("https://example.com/before", owner, 24, 10);
+            service.resolve(beforeSnapshot);
+            String deleted = service.createShortLink("https://example.com/deleted", owner, 24, 10);
+            service.deleteShortLink(deleted, owner);
+
+            storage.snapshot();
+            assertEquals(1, countLogFiles(), "Файлы журнала до снимка должны быть удалены");
+
+            afterSnapshot = service.createShortLink("https://example.com/after", owner, 24, 10);
+            service.resolve(beforeSnapshot);
+        }
+
+        try (DurableStorage storage = DurableStorage.open(directory, WriteAheadLog.FsyncPolicy.NEVER, 10, 0)) {
+            ShortLinkRepository repository = storage.getShortLinkRepository();
+            assertEquals(2, repository.findByShortId(beforeSnapshot).getCurrentCount());
+            assertEquals("https://example.com/after", repository.findByShortId(afterSnapshot).getOriginalUrl());
+            assertEquals(2, repository.findByUserUuid(owner).size());
+            assertEquals("Алиса", storage.getUserRepository().findUser(owner).getUserName());
+
+            String next = storage.getShortIdGenerator().nextId();
+            assertNotEquals(beforeSnapshot, next);
+            assertNotEquals(afterSnapshot, next);
+        }
+    }
+
+    /**
+     * Проверяет, что изменения, идущие параллельно со снимком, не теряются.
+     */
+    @Test
+    public void testWritesDuringSnapshotAreKept() throws Exception {
+        UUID owner = UUID.randomUUID();
+        List<String> created = new ArrayList<>();
+        try (DurableStorage storage = DurableStorage.open(directory, WriteAheadLog.FsyncPolicy.NEVER, 10, 0)) {
+            ShortLinkService service = new ShortLinkService(storage.getShortLinkRepository(), storage.getShortIdGenerator());
+            AtomicBoolean running = new AtomicBoolean(true);
+            Thread snapshotter = new Thread(() -> {
+                try {
+                    while (running.get()) {
+                        storage.snapshot();
+                    }
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            });
+            snapshotter.start();
+            for (int i = 0; i < 5_000; i++) {
+                created.add(service.createShortLink("https://example.com/" + i, owner, 24, 10));
+            }
+            running.set(false);
+            snapshotter.join();
+        }
+
+        try (DurableStorage storage = DurableStorage.open(directory, WriteAheadLog.FsyncPolicy.NEVER, 10, 0)) {
+            for (int i = 0; i < created.size(); i++) {
+                ShortLink link = storage.getShortLinkRepository().findByShortId(created.get(i));
+                assertNotNull(link, "Ссылка потеряна: " + created.get(i));
+                assertEquals("https://example.com/" + i, link.getOriginalUrl());
+            }
+        }
+    }
+
+    /**
+     * Проверяет, что повреждённый снимок не загружается молча.
+     */
+    @Test
+    public void testCorruptSnapshotIsRejected() throws IOException {
+        try (DurableStorage storage = DurableStorage.open(directory, WriteAheadLog.FsyncPolicy.NEVER, 10, 0)) {
+            new ShortLinkService(storage.getShortLinkRepository(), storage.getShortIdGenerator())
+                    .createShortLink("https://example.com/", UUID.randomUUID(), 24, 10);
+            storage.snapshot();
+        }
+        Path snapshot = directory.resolve(DurableStorage.SNAPSHOT_FILE);
+        byte[] bytes = Files.readAllBytes(snapshot);
+        bytes[bytes.length / 2] ^= 1;
+        Files.write(snapshot, bytes);
+
+        assertThrows(IOException.class,
+                () -> DurableStorage.open(directory, WriteAheadLog.FsyncPolicy.NEVER, 10, 0).close());
+    }
+
+    /**
+     * Бенчмарк запуска: миллион ссылок с 10 миллионами переходов восстанавливается
+     * из полного журнала и из снимка.
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    public void benchmarkStartup() throws IOException {
+        int links = 1_000_000;
+        int clicks = 10_000_000;
+        UUID owner = UUID.randomUUID();
+        try (WriteAheadLog log = new WriteAheadLog(directory.resolve("log-000000000000.wal"),
+                WriteAheadLog.FsyncPolicy.NEVER, 0)) {
+            for (int i = 0; i < links; i++) {
+                log.logLinkSave(i, new ShortLink(Base62.encode(i), "https://example.com/page/" + i,
+                        1L, Long.MAX_VALUE, 100, 0, owner));
+            }
+            for (int i = 0; i < clicks; i++) {
+                log.logClick(i % links, i / links + 1);
+            }
+        }
+
+        long started = System.nanoTime();
+        try (DurableStorage storage = DurableStorage.open(directory, WriteAheadLog.FsyncPolicy.NEVER, 0, 0)) {
+            System.out.printf("Запуск из журнала: %.2f с%n", (System.nanoTime() - started) / 1e9);
+            started = System.nanoTime();
+            storage.snapshot();
+            System.out.printf("Снимок: %.2f с, %d МБ%n", (System.nanoTime() - started) / 1e9,
+                    Files.size(directory.resolve(DurableStorage.SNAPSHOT_FILE)) >> 20);
+        }
+
+        for (int run = 0; run < 3; run++) {
+            started = System.nanoTime();
+            try (DurableStorage storage = DurableStorage.open(directory, WriteAheadLog.FsyncPolicy.NEVER, 0, 0)) {
+                System.out.printf("Запуск из снимка: %.2f с%n", (System.nanoTime() - started) / 1e9);
+                assertEquals(clicks / links, storage.getShortLinkRepository().findByShortId(Base62.encode(7)).getCurrentCount());
+            }
+        }
+    }
+
+    private long countLogFiles() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.getFileName().toString().endsWith(".wal")).count();
+        }
+    }
+}
@@ -0,0 +1,326 @@
+package com.beryoza.urlshortener;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Общие тесты хранилищ ({@link Storage}): каждый вид хранилища запускает их
+ * в своём подклассе, поэтому репозитории ведут себя одинаково, чем бы ни были устроены.
+ * <p>
+ * Бенчмарк запускается только по запросу: {@code mvn test -Dbenchmark=true};
+ * число ссылок задаётся свойством {@code -Dbenchmark.links} (по умолчанию 100 тысяч).
+ */
+public abstract class StorageContractTest {
+
+    @TempDir
+    Path directory;
+
+    private Storage storage;
+
+    /**
+     * Открывает хранилище проверяемого вида.
+     *
+     * @param directory временный каталог теста (один и тот же при повторном открытии)
+     */
+    protected abstract Storage openStorage(Path directory) throws IOException;
+
+    /**
+     * Сохраняет ли хранилище данные между открытиями.
+     */
+    protected abstract boolean isPersistent();
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        storage = openStorage(directory);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        storage.close();
+    }
+
+    /**
+     * Проверяет сохранение, поиск, обновление и удаление ссылки.
+     */
+    @Test
+    public void testSaveFindUpdateDelete() {
+        ShortLinkRepository repository = storage.getShortLinkRepository();
+        UUID owner = UUID.randomUUID();
+        long now = System.currentTimeMillis();
+        repository.save(new ShortLink("abc123", "https://example.com/старый", now, now + 60_000, 5, 1, owner));
+
+        ShortLink found = repository.findByShortId("abc123");
+        assertNotNull(found);
+        assertEquals("abc123", found.getShortId());
+        assertEquals("https://example.com/старый", found.getOriginalUrl());
+        assertEquals(now, found.getCreatedAt());
+        assertEquals(now + 60_000, found.getExpiryTime());
+        assertEquals(5, found.getLimit());
+        assertEquals(1, found.getCurrentCount());
+        assertEquals(owner, found.getUserUuid());
+
+        found.setLimit(7);
+        found.setExpiryTime(now + 120_000);
+        repository.save(found);
+        ShortLink updated = repository.findByShortId("abc123");
+        assertEquals(7, updated.getLimit());
+        assertEquals(now + 120_000, updated.getExpiryTime());
+
+        assertNull(repository.findByShortId("zzz999"));
+        assertNull(repository.findByShortId("не-id"));
+        assertThrows(IllegalArgumentException.class,
+                () -> repository.save(new ShortLink("не-id", "https://example.com", now, now, 1, 0, owner)));
+
+        repository.deleteByShortId("abc123");
+        assertNull(repository.findByShortId("abc123"));
+        repository.deleteByShortId("abc123"); // Повторное удаление ничего не делает
+        assertTrue(repository.findAll().isEmpty());
+    }
+
+    /**
+     * Проверяет выборку ссылок по владельцу и обход всех ссылок.
+     */
+    @Test
+    public void testFindByUserAndForEach() {
+        ShortLinkRepository repository = storage.getShortLinkRepository();
+        UUID alice = UUID.randomUUID();
+        UUID bob = UUID.randomUUID();
+        long expiry = System.currentTimeMillis() + 60_000;
+        for (long key = 0; key < 2_500; key++) {
+            repository.save(new ShortLink(Base62.encode(key), "https://example.com/" + key, 1L, expiry, 10, 0,
+                    key % 5 == 0 ? bob : alice));
+        }
+
+        assertEquals(2_000, repository.findByUserUuid(alice).size());
+        assertEquals(500, repository.findByUserUuid(bob).size());
+        assertTrue(repository.findByUserUuid(UUID.randomUUID()).isEmpty());
+
+        repository.deleteByShortId(Base62.encode(0));
+        assertEquals(499, repository.findByUserUuid(bob).size());
+
+        Set<String> visited = new HashSet<>();
+        repository.forEachLink(link -> assertTrue(visited.add(link.getShortId())));
+        assertEquals(2_499, visited.size());
+        assertEquals(visited, repository.findAll().stream().map(ShortLink::getShortId).collect(Collectors.toSet()));
+    }
+
+    /**
+     * Проверяет, что очистка находит просроченные ссылки и ссылки с исчерпанным лимитом,
+     * но не трогает живые.
+     */
+    @Test
+    public void testFindExpired() {
+        ShortLinkRepository repository = storage.getShortLinkRepository();
+        UUID owner = UUID.randomUUID();
+        long now = System.currentTimeMillis();
+        repository.save(new ShortLink("expir1", "https://example.com/1", now, now - 1_000, 5, 0, owner));
+        repository.save(new ShortLink("exhau1", "https://example.com/2", now, now + 60_000, 5, 5, owner));
+        repository.save(new ShortLink("alive1", "https://example.com/3", now, now + 60_000, 5, 4, owner));
+
+        Set<String> expired = repository.findExpired(now, 10).stream()
+                .map(ShortLink::getShortId).collect(Collectors.toSet());
+        assertEquals(Set.of("expir1", "exhau1"), expired);
+        assertEquals(1, repository.findExpired(now, 1).size());
+
+        ShortLinkService service = new ShortLinkService(repository, storage.getShortIdGenerator());
+        assertEquals(2, service.cleanUpExpiredLinks(10));
+        assertNotNull(repository.findByShortId("alive1"));
+        assertTrue(repository.findExpired(now, 10).isEmpty());
+    }
+
+    /**
+     * Проверяет, что параллельные переходы через сервис не превышают лимит,
+     * а ссылка с исчерпанным лимитом попадает в очередь на очистку.
+     */
+    @Test
+    public void testConcurrentClicksRespectLimit() throws Exception {
+        ShortLinkRepository repository = storage.getShortLinkRepository();
+        ShortLinkService service = new ShortLinkService(repository, storage.getShortIdGenerator());
+        long now = System.currentTimeMillis();
+        repository.save(new ShortLink("click1", "https://example.com/clicks", now, now + 60_000, 300, 0,
+                UUID.randomUUID()));
+
+        AtomicInteger found = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 100; i++) {
+                        if (service.resolve("click1").isFound()) {
+                            found.incrementAndGet();
+                        }
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertEquals(300, found.get());
+        assertEquals(300, repository.findByShortId("click1").getCurrentCount());
+        assertEquals(ResolveResult.Status.LIMIT_EXCEEDED, service.resolve("click1").getStatus());
+        assertEquals(List.of("click1"),
+                repository.findExpired(now, 10).stream().map(ShortLink::getShortId).toList());
+    }
+
+    /**
+     * Проверяет, что подписчик узнаёт об удалении ссылки.
+     */
+    @Test
+    public void testRemovalListener() {
+        ShortLinkRepository repository = storage.getShortLinkRepository();
+        List<String> removed = Collections.synchronizedList(new ArrayList<>());
+        repository.addRemovalListener(removed::add);
+        long now = System.currentTimeMillis();
+        repository.save(new ShortLink("remov1", "https://example.com", now, now + 60_000, 5, 0, UUID.randomUUID()));
+
+        repository.deleteByShortId("remov1");
+        assertTrue(removed.contains("remov1"));
+        removed.clear();
+        repository.deleteByShortId("remov1");
+        assertTrue(removed.isEmpty(), "Удаление отсутствующей ссылки не оповещает подписчиков");
+    }
+
+    /**
+     * Проверяет сохранение, поиск, переименование и удаление пользователей.
+     */
+    @Test
+    public void testUsers() {
+        UserRepository repository = storage.getUserRepository();
+        UUID alice = UUID.randomUUID();
+        UUID bob = UUID.randomUUID();
+        repository.saveUser(new User(alice, "Алиса"));
+        repository.saveUser(new User(bob, "Боб"));
+
+        assertEquals("Алиса", repository.findUser(alice).getUserName());
+        repository.saveUser(new User(alice, "Алиса Петровна"));
+        assertEquals("Алиса Петровна", repository.findUser(alice).getUserName());
+        assertEquals(2, repository.findAll().size());
+
+        repository.deleteUser(bob);
+        assertNull(repository.findUser(bob));
+        repository.deleteUser(bob);
+        assertEquals(1, repository.findAll().size());
+    }
+
+    /**
+     * Проверяет, что после повторного открытия ссылки и пользователи на месте,
+     * а генератор не повторяет выданные идентификаторы.
+     */
+    @Test
+    public void testReopenKeepsDataAndIds() throws IOException {
+        assumeTrue(isPersistent());
+        UUID owner = storage.getUserRepository().saveUser(new User(UUID.randomUUID(), "Алиса")).getUserUuid();
+        ShortLinkService service = new ShortLinkService(storage.getShortLinkRepository(), storage.getShortIdGenerator());
+        Set<String> issued = new HashSet<>();
+        for (int i = 0; i < 20; i++) {
+            issued.add(service.createShortLink("https://example.com/" + i, owner, 24, 10));
+        }
+        String clicked = issued.iterator().next();
+        service.resolve(clicked);
+        storage.close();
+
+        storage = openStorage(directory);
+        ShortLinkRepository repository = storage.getShortLinkRepository();
+        assertEquals("Алиса", storage.getUserRepository().findUser(owner).getUserName());
+        assertEquals(20, repository.findByUserUuid(owner).size());
+        assertEquals(1, repository.findByShortId(clicked).getCurrentCount());
+        for (int i = 0; i < 20; i++) {
+            assertTrue(issued.add(storage.getShortIdGenerator().nextId()), "Идентификатор выдан повторно");
+        }
+    }
+
+    /**
+     * Бенчмарк: запись ссылок из нескольких потоков, задержка поиска и скорость переходов.
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    public void benchmarkStorage() throws Exception {
+        int links = Integer.getInteger("benchmark.links", 100_000);
+        int threads = 4;
+        ShortLinkRepository repository = storage.getShortLinkRepository();
+        ShortIdGenerator generator = storage.getShortIdGenerator();
+        UUID owner = UUID.randomUUID();
+        long expiry = System.currentTimeMillis() + 3_600_000;
+        String[] ids = new String[links];
+        for (int i = 0; i < links; i++) {
+            ids[i] = generator.nextId();
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            long started = System.nanoTime();
+            runInParallel(executor, threads, thread -> {
+                for (int i = thread; i < links; i += threads) {
+                    repository.save(new ShortLink(ids[i], "https://example.com/page/" + i, 1L, expiry, 1_000_000, 0, owner));
+                }
+            });
+            double seconds = (System.nanoTime() - started) / 1e9;
+            System.out.printf("%s: запись %d ссылок в %d потоков за %.2f с (%.0f/с)%n", getClass().getSimpleName(),
+                    links, threads, seconds, links / seconds);
+
+            int reads = Math.min(links, 100_000);
+            long[] latencies = new long[reads];
+            Random random = new Random(1);
+            for (int i = 0; i < reads; i++) {
+                String id = ids[random.nextInt(links)];
+                long start = System.nanoTime();
+                assertNotNull(repository.findByShortId(id));
+                latencies[i] = System.nanoTime() - start;
+            }
+            Arrays.sort(latencies);
+            System.out.printf("%s: поиск p50 %.1f мкс, p99 %.1f мкс%n", getClass().getSimpleName(),
+                    latencies[reads / 2] / 1e3, latencies[(int) (reads * 0.99)] / 1e3);
+
+            ShortLinkService service = new ShortLinkService(repository, generator);
+            started = System.nanoTime();
+            runInParallel(executor, threads, thread -> {
+                for (int i = thread; i < reads; i += threads) {
+                    assertTrue(service.resolve(ids[i % links]).isFound());
+                }
+            });
+            seconds = (System.nanoTime() - started) / 1e9;
+            System.out.printf("%s: %d переходов в %d потоков за %.2f с (%.0f/с)%n", getClass().getSimpleName(),
+                    reads, threads, seconds, reads / seconds);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private interface ThreadBody {
+        void run(int thread) throws Exception;
+    }
+
+    private static void runInParallel(ExecutorService executor, int threads, ThreadBody body) throws Exception {
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+            futures.add(executor.submit(() -> {
+                body.run(thread);
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.beryoza.urlshortener;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Тесты кэша W-TinyLFU.
+ */
+public class TinyLfuCacheTest {
+
+    /**
+     * Проверяет, что однократный обход множества редких ключей не вытесняет популярные.
+     */
+    @Test
+    public void testHotKeysSurviveScan() {
+        TinyLfuCache<String> cache = new TinyLfuCache<>(1_600);
+        for (int round = 0; round < 5; round++) {
+            for (long key = 0; key < 800; key++) {
+                if (cache.get(key) == null) {
+                    cache.put(key, "hot-" + key);
+                }
+            }
+        }
+        for (long key = 1_000_000; key < 1_100_000; key++) {
+            if (cache.get(key) == null) {
+                cache.put(key, "cold-" + key);
+            }
+        }
+
+        int survived = 0;
+        for (long key = 0; key < 800; key++) {
+            if (cache.get(key) != null) {
+                survived++;
+            }
+        }
+        assertTrue(survived > 700, "Популярных ключей осталось: " + survived);
+        assertTrue(cache.size() <= 1_600);
+    }
+
+    /**
+     * Проверяет соблюдение бюджета по весу, счётчики и удаление.
+     */
+    @Test
+    public void testWeightBudgetAndCounters() {
+        TinyLfuCache<String> cache = new TinyLfuCache<>(16 * 1_000, String::length, 16 * 10);
+        for (long key = 0; key < 10_000; key++) {
+            cache.put(key, "x".repeat(100));
+        }
+        assertTrue(cache.weightedSize() <= 16 * 1_000, "Вес кэша: " + cache.weightedSize());
+        assertTrue(cache.getEvictionCount() > 0);
+
+        cache.put(42, "value");
+        assertEquals("value", cache.get(42));
+        assertNull(cache.get(-7));
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+
+        cache.invalidate(42);
+        assertNull(cache.get(42));
+    }
+
+    /**
+     * Проверяет, что вставка отменяется, если условие уже не выполняется.
+     */
+    @Test
+    public void testConditionalPut() {
+        TinyLfuCache<String> cache = new TinyLfuCache<>(100);
+        cache.put(1, "stale", () -> false);
+        assertNull(cache.get(1));
+        assertEquals(0, cache.size());
+    }
+}
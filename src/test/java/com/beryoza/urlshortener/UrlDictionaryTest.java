@@ -0,0 +1,176 @@
+package com.beryoza.urlshortener;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.lang.management.ManagementFactory;
+import java.lang.ref.Reference;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Тесты компактного представления URL.
+ * <p>
+ * Бенчмарк запускается только по запросу: {@code mvn test -Dbenchmark=true}.
+ */
+public class UrlDictionaryTest {
+
+    private static final String VIDEO_ID_CHARS =
+            "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789-_";
+
+    /**
+     * Проверяет, что URL любого вида восстанавливается без изменений — и строкой, и в UTF-8.
+     */
+    @Test
+    public void testRoundTrip() {
+        String[] urls = {
+                "https://example.com/a/b?c=d#e",
+                "https://example.com",
+                "http://localhost:8080?q=1",
+                "HTTPS://Example.COM/Path",
+                "https://пример.рф/путь/к/странице?запрос=да",
+                "mailto:someone@example.com",
+                "example.com/no-scheme",
+                "://broken",
+                "",
+        };
+        for (String url : urls) {
+            ShortLink link = new ShortLink("abcdef", url, 0, 0, 1, 0, UUID.randomUUID());
+            assertEquals(url, link.getOriginalUrl());
+            assertArrayEquals(url.getBytes(StandardCharsets.UTF_8), link.getOriginalUrlBytes());
+        }
+        assertNull(new ShortLink().getOriginalUrl());
+    }
+
+    /**
+     * Проверяет, что ссылки одного хоста делят строку начала, а одинаковые URL — ещё
+     * и массив остатка, в том числе когда URL прочитан хранилищем из байтов.
+     */
+    @Test
+    public void testSharing() {
+        UUID owner = UUID.randomUUID();
+        ShortLink first = new ShortLink("aaaaaa", "https://example.org/page?id=1", 0, 0, 1, 0, owner);
+        ShortLink same = new ShortLink("aaaaab", "https://example.org/page?id=1", 0, 0, 1, 0, owner);
+        ShortLink other = new ShortLink("aaaaac", "https://example.org/other", 0, 0, 1, 0, owner);
+        ShortLink fromBytes = new ShortLink("aaaaad", 0, 0, 1, 0, owner,
+                "https://example.org/page?id=1".getBytes(StandardCharsets.UTF_8));
+
+        assertEquals("https://example.org", first.getUrlOrigin());
+        assertSame(first.getUrlOrigin(), same.getUrlOrigin());
+        assertSame(first.getUrlOrigin(), other.getUrlOrigin());
+        assertSame(first.getUrlPath(), same.getUrlPath());
+        assertSame(first.getUrlPath(), fromBytes.getUrlPath());
+        assertNotSame(first.getUrlPath(), other.getUrlPath());
+        assertArrayEquals("/page?id=1".getBytes(StandardCharsets.UTF_8), first.getUrlPath());
+    }
+
+    /**
+     * Бенчмарк: байты на URL ссылки до (своя строка у каждой ссылки) и после
+     * (общее начало и общий остаток в UTF-8) на корпусе, похожем на реальный поток:
+     * популярные хосты встречаются чаще, треть URL — повторы популярных страниц,
+     * часть путей на кириллице, много меток utm.
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    public void benchmarkBytesPerLink() {
+        int links = 500_000;
+        String[] corpus = corpus(links, new Random(5));
+
+        long stringBytes = retainedBytes(() -> {
+            String[] strings = new String[links];
+            for (int i = 0; i < links; i++) {
+                // Каждая ссылка приходит в своём запросе — строка у каждой своя
+                strings[i] = new String(corpus[i].getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8);
+            }
+            return strings;
+        });
+        long compactBytes = retainedBytes(() -> {
+            String[] origins = new String[links];
+            byte[][] paths = new byte[links][];
+            for (int i = 0; i < links; i++) {
+                byte[] url = corpus[i].getBytes(StandardCharsets.UTF_8);
+                int originLength = UrlDictionary.originLength(url);
+                origins[i] = UrlDictionary.origin(url, originLength);
+                paths[i] = UrlDictionary.path(url, originLength);
+            }
+            for (int i = 0; i < links; i++) {
+                assertEquals(corpus[i], origins[i] + new String(paths[i], StandardCharsets.UTF_8));
+            }
+            return new Object[]{origins, paths};
+        });
+        System.out.printf("URL на ссылку: строки %.1f Б, компактно %.1f Б (хостов в словаре: %d)%n",
+                (double) stringBytes / links, (double) compactBytes / links, UrlDictionary.originCount());
+    }
+
+    /**
+     * Корпус URL: хосты с убывающей популярностью и несколько видов путей.
+     */
+    private static String[] corpus(int size, Random random) {
+        String[] popular = {"https://www.youtube.com", "https://vk.com", "https://t.me", "https://ru.wikipedia.org",
+                "https://www.ozon.ru", "https://www.wildberries.ru", "https://habr.com", "https://github.com",
+                "https://docs.google.com", "https://yandex.ru", "https://lenta.ru", "https://www.avito.ru"};
+        String[] words = {"новости", "обзор", "java", "performance", "как", "сделать", "лучший", "2024",
+                "гайд", "spring", "kotlin", "скидки", "рецепт", "погода", "футбол", "music"};
+        String[] pool = new String[2_000];
+        String[] urls = new String[size];
+        for (int i = 0; i < size; i++) {
+            if (i >= pool.length && random.nextInt(3) == 0) {
+                // Повтор одной из популярных страниц
+                urls[i] = pool[(int) Math.min(pool.length - 1, Math.abs(random.nextGaussian()) * pool.length / 4)];
+                continue;
+            }
+            String host = random.nextInt(10) < 7
+                    ? popular[(int) Math.min(popular.length - 1, Math.abs(random.nextGaussian()) * 3)]
+                    : "https://site" + random.nextInt(20_000) + ".example.ru";
+            StringBuilder url = new StringBuilder(host);
+            switch (random.nextInt(4)) {
+                case 0 -> {
+                    url.append("/watch?v=");
+                    for (int c = 0; c < 11; c++) {
+                        url.append(VIDEO_ID_CHARS.charAt(random.nextInt(VIDEO_ID_CHARS.length())));
+                    }
+                }
+                case 1 -> {
+                    url.append("/wiki/");
+                    for (int w = 0; w < 2 + random.nextInt(3); w++) {
+                        url.append(w > 0 ? "_" : "").append(words[random.nextInt(words.length)]);
+                    }
+                }
+                case 2 -> url.append("/catalog/").append(words[random.nextInt(words.length)]).append("/item-")
+                        .append(random.nextInt(1_000_000))
+                        .append("?utm_source=telegram&utm_medium=social&utm_campaign=")
+                        .append(words[random.nextInt(words.length)]);
+                default -> url.append("/2024/").append(1 + random.nextInt(12)).append('/')
+                        .append(words[random.nextInt(words.length)]).append('-')
+                        .append(words[random.nextInt(words.length)]).append('-').append(random.nextInt(10_000)).append('/');
+            }
+            urls[i] = url.toString();
+            if (i < pool.length) {
+                pool[i] = urls[i];
+            }
+        }
+        return urls;
+    }
+
+    /**
+     * Замеряет, сколько байтов кучи удерживает построенная структура.
+     */
+    private static long retainedBytes(Supplier<Object> build) {
+        long before = usedHeap();
+        Object built = build.get();
+        long retained = usedHeap() - before;
+        Reference.reachabilityFence(built);
+        return retained;
+    }
+
+    private static long usedHeap() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+}
@@ -0,0 +1,122 @@
+package com.beryoza.urlshortener;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Тесты словаря пользователей.
+ */
+public class UserIdsTest {
+
+    /**
+     * Проверяет, что номера выдаются подряд, один раз на UUID, и переводятся обратно
+     * в общий экземпляр UUID, а репозиторий пользователей выдаёт номера своего словаря.
+     */
+    @Test
+    public void testDenseIdsRoundTrip() {
+        UserIds ids = new UserIds();
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+        assertEquals(UserIds.NONE, ids.find(first));
+
+        int firstId = ids.idOf(first);
+        int secondId = ids.idOf(second);
+        assertEquals(0, firstId);
+        assertEquals(1, secondId);
+        assertEquals(firstId, ids.idOf(new UUID(first.getMostSignificantBits(), first.getLeastSignificantBits())));
+        assertEquals(firstId, ids.find(first));
+        assertSame(first, ids.uuidOf(firstId));
+        assertNull(ids.uuidOf(UserIds.NONE));
+        assertNull(ids.uuidOf(Integer.MAX_VALUE));
+
+        UserRepository users = new InMemoryUserRepository(ids);
+        UUID registered = users.saveUser(new User(UUID.randomUUID(), "Алиса")).getUserUuid();
+        assertEquals(2, ids.find(registered));
+        assertEquals(registered, users.getUserUuid(users.getUserId(registered)));
+    }
+
+    /**
+     * Проверяет, что номер владельца освобождается вместе с последней ссылкой, если владелец
+     * не зарегистрирован, и достаётся следующему новому UUID, а ссылки владельца делят
+     * один экземпляр UUID.
+     */
+    @Test
+    public void testReleaseWithLastLink() {
+        UserIds ids = new UserIds();
+        InMemoryUserRepository users = new InMemoryUserRepository(ids);
+        ShortLinkRepository links = new InMemoryShortLinkRepository(new MemoryLinkStore(), null, ids);
+        UUID owner = UUID.randomUUID();
+        UUID registered = users.saveUser(new User(UUID.randomUUID(), "Боб")).getUserUuid();
+
+        ShortLink firstLink = new ShortLink("aaaaaa", "https://example.com/1", 0, 0, 1, 0, owner);
+        ShortLink secondLink = new ShortLink("aaaaab", "https://example.com/2", 0, 0, 1, 0,
+                new UUID(owner.getMostSignificantBits(), owner.getLeastSignificantBits()));
+        links.save(firstLink);
+        links.save(secondLink);
+        links.save(new ShortLink("aaaaac", "https://example.com/3", 0, 0, 1, 0, registered));
+        assertSame(firstLink.getUserUuid(), secondLink.getUserUuid());
+        int ownerId = ids.find(owner);
+        assertEquals(2, ids.count());
+
+        // Замена ссылки тем же владельцем номер не освобождает
+        links.save(new ShortLink("aaaaaa", "https://example.com/1b", 0, 0, 1, 0, owner));
+        links.deleteByShortId("aaaaaa");
+        assertEquals(ownerId, ids.find(owner));
+        links.deleteByShortId("aaaaab");
+        assertEquals(UserIds.NONE, ids.find(owner));
+        assertNull(ids.uuidOf(ownerId));
+        assertEquals(1, ids.count());
+
+        // Номер зарегистрированного пользователя держится без ссылок и до удаления пользователя
+        links.deleteByShortId("aaaaac");
+        int registeredId = ids.find(registered);
+        assertNotEquals(UserIds.NONE, registeredId);
+        users.deleteUser(registered);
+        assertEquals(UserIds.NONE, ids.find(registered));
+
+        // Освобождённые номера выдаются снова
+        Set<Integer> reused = Set.of(ids.idOf(UUID.randomUUID()), ids.idOf(UUID.randomUUID()));
+        assertEquals(Set.of(ownerId, registeredId), reused);
+    }
+
+    /**
+     * Проверяет, что одновременная регистрация одних и тех же UUID из разных потоков
+     * выдаёт каждому UUID ровно один номер.
+     */
+    @Test
+    public void testConcurrentAssignment() throws Exception {
+        UserIds dictionary = new UserIds();
+        UUID[] uuids = new UUID[5_000];
+        for (int i = 0; i < uuids.length; i++) {
+            uuids[i] = UUID.randomUUID();
+        }
+        int[][] ids = new int[4][uuids.length];
+        Thread[] threads = new Thread[ids.length];
+        for (int t = 0; t < threads.length; t++) {
+            int thread = t;
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < uuids.length; i++) {
+                    ids[thread][i] = dictionary.idOf(uuids[i]);
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        Set<Integer> distinct = new HashSet<>();
+        for (int i = 0; i < uuids.length; i++) {
+            for (int[] threadIds : ids) {
+                assertEquals(ids[0][i], threadIds[i]);
+            }
+            assertEquals(uuids[i], dictionary.uuidOf(ids[0][i]));
+            distinct.add(ids[0][i]);
+        }
+        assertEquals(uuids.length, distinct.size());
+    }
+}
@@ -0,0 +1,246 @@
+package com.beryoza.urlshortener;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.IntConsumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Тесты журнала изменений и восстановления хранилищ после перезапуска.
+ * <p>
+ * Бенчмарк запускается только по запросу: {@code mvn test -Dbenchmark=true}.
+ */
+public class WriteAheadLogTest {
+
+    @TempDir
+    Path directory;
+
+    /**
+     * Проверяет, что после перезапуска восстанавливаются ссылки, счётчики переходов,
+     * удаления и пользователи, а новые идентификаторы не повторяют выданные.
+     */
+    @Test
+    public void testReplayRestoresState() throws IOException {
+        UUID owner;
+        String kept;
+        String deleted;
+        Set<String> issued = new HashSet<>();
+        try (DurableStorage storage = DurableStorage.open(directory, WriteAheadLog.FsyncPolicy.ALWAYS, 10, 0)) {
+            ShortLinkService service = new ShortLinkService(storage.getShortLinkRepository(), storage.getShortIdGenerator());
+            owner = storage.getUserRepository().saveUser(new User(UUID.randomUUID(), "Алиса")).getUserUuid();
+            UUID removedUser = storage.getUserRepository().saveUser(new User(UUID.randomUUID(), "Боб")).getUserUuid();
+            storage.getUserRepository().deleteUser(removedUser);
+
+            kept = service.createShortLink("https://vk.com/amasovich", owner, 24, 10);
+            deleted = service.createShortLink("https://example.com/deleted", owner, 24, 10);
+            issued.add(kept);
+            issued.add(deleted);
+            for (int i = 0; i < 3; i++) {
+                assertEquals(ResolveResult.Status.FOUND, service.resolve(kept).getStatus());
+            }
+            service.deleteShortLink(deleted, owner);
+        }
+
+        try (DurableStorage storage = DurableStorage.open(directory, WriteAheadLog.FsyncPolicy.NEVER, 10, 0)) {
+            ShortLink link = storage.getShortLinkRepository().findByShortId(kept);
+            assertEquals("https://vk.com/amasovich", link.getOriginalUrl());
+            assertEquals(3, link.getCurrentCount());
+            assertEquals(owner, link.getUserUuid());
+            assertNull(storage.getShortLinkRepository().findByShortId(deleted));
+            assertEquals(1, storage.getShortLinkRepository().findByUserUuid(owner).size());
+
+            assertEquals("Алиса", storage.getUserRepository().findUser(owner).getUserName());
+            assertEquals(1, storage.getUserRepository().findAll().size());
+
+            for (int i = 0; i < 1_000; i++) {
+                assertTrue(issued.add(storage.getShortIdGenerator().nextId()), "Идентификатор выдан повторно");
+            }
+        }
+    }
+
+    /**
+     * Проверяет, что недописанная запись в конце журнала отрезается,
+     * а следующие записи ложатся за последней целой.
+     */
+    @Test
+    public void testTornTailIsTruncated() throws IOException {
+        Path path = directory.resolve("torn.wal");
+        UUID owner = UUID.randomUUID();
+        try (WriteAheadLog log = new WriteAheadLog(path, WriteAheadLog.FsyncPolicy.NEVER, 10)) {
+            for (int i = 0; i < 10; i++) {
+                log.logLinkSave(i, link(i, owner));
+            }
+        }
+        // Отрезаем часть последней записи, как при падении посреди записи
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 5);
+        }
+        assertEquals(9, countRecords(path));
+
+        try (WriteAheadLog log = new WriteAheadLog(path, WriteAheadLog.FsyncPolicy.NEVER, 10)) {
+            log.logLinkDelete(0);
+        }
+        assertEquals(10, countRecords(path));
+
+        // Испорченный байт данных обнаруживается по CRC
+        byte[] bytes = Files.readAllBytes(path);
+        bytes[bytes.length - 1] ^= 1;
+        Files.write(path, bytes);
+        assertEquals(9, countRecords(path));
+    }
+
+    /**
+     * Проверяет групповую фиксацию: одновременные сохранения при политике ALWAYS
+     * сбрасываются на диск группами, и после перезапуска все на месте.
+     */
+    @Test
+    public void testGroupCommitBatchesConcurrentWrites() throws Exception {
+        Path path = directory.resolve("group.wal");
+        int threads = 16;
+        int perThread = 200;
+        UUID owner = UUID.randomUUID();
+        try (WriteAheadLog log = new WriteAheadLog(path, WriteAheadLog.FsyncPolicy.ALWAYS, 0, threads, 2_000)) {
+            ShortLinkRepository repository = new InMemoryShortLinkRepository(new MemoryLinkStore(), log);
+            runConcurrently(threads, thread -> {
+                for (int i = 0; i < perThread; i++) {
+                    repository.save(link((long) thread * perThread + i, owner));
+                }
+            });
+            assertTrue(log.getSyncCount() < threads * perThread,
+                    "Сбросов на диск должно быть меньше, чем записей: " + log.getSyncCount());
+        }
+        assertEquals(threads * perThread, countRecords(path));
+    }
+
+    /**
+     * Бенчмарк групповой фиксации: пропускная способность сохранений ссылок при политике
+     * ALWAYS в зависимости от размера группы и времени ожидания.
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    public void benchmarkGroupCommit() throws Exception {
+        int threads = 64;
+        int perThread = 500;
+        UUID owner = UUID.randomUUID();
+        int[][] settings = {{1, 0}, {16, 0}, {16, 200}, {64, 500}, {256, 2_000}};
+        for (int[] setting : settings) {
+            Path path = directory.resolve("group-" + setting[0] + "-" + setting[1] + ".wal");
+            try (WriteAheadLog log = new WriteAheadLog(path, WriteAheadLog.FsyncPolicy.ALWAYS, 0,
+                    setting[0], setting[1])) {
+                ShortLinkRepository repository = new InMemoryShortLinkRepository(new MemoryLinkStore(), log);
+                long started = System.nanoTime();
+                runConcurrently(threads, thread -> {
+                    for (int i = 0; i < perThread; i++) {
+                        repository.save(link((long) thread * perThread + i, owner));
+                    }
+                });
+                double seconds = (System.nanoTime() - started) / 1e9;
+                System.out.printf("Группа %d, ожидание %d мкс: %.0f сохранений/с, %.1f записей на fsync%n",
+                        setting[0], setting[1], threads * perThread / seconds,
+                        (double) threads * perThread / log.getSyncCount());
+            }
+        }
+
+        // Для сравнения: один поток, каждое сохранение со своим fsync
+        try (WriteAheadLog log = new WriteAheadLog(directory.resolve("single.wal"), WriteAheadLog.FsyncPolicy.ALWAYS, 0)) {
+            ShortLinkRepository repository = new InMemoryShortLinkRepository(new MemoryLinkStore(), log);
+            long started = System.nanoTime();
+            for (int i = 0; i < perThread; i++) {
+                repository.save(link(i, owner));
+            }
+            double seconds = (System.nanoTime() - started) / 1e9;
+            System.out.printf("Один поток: %.0f сохранений/с%n", perThread / seconds);
+        }
+    }
+
+    /**
+     * Бенчмарк воспроизведения журнала из 10 миллионов записей: сохранения ссылок и переходы.
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    public void benchmarkReplay() throws IOException {
+        Path path = directory.resolve("log-000000000000.wal");
+        int links = 1_000_000;
+        int records = 10_000_000;
+        UUID owner = UUID.randomUUID();
+        long writeStarted = System.nanoTime();
+        try (WriteAheadLog log = new WriteAheadLog(path, WriteAheadLog.FsyncPolicy.NEVER, 1_000)) {
+            for (int i = 0; i < records; i++) {
+                if (i < links) {
+                    log.logLinkSave(i, link(i, owner));
+                } else {
+                    log.logClick(i % links, i / links);
+                }
+            }
+        }
+        double writeSeconds = (System.nanoTime() - writeStarted) / 1e9;
+        System.out.printf("Запись журнала: %d записей, %d МБ за %.2f с (%.0f записей/с)%n",
+                records, Files.size(path) >> 20, writeSeconds, records / writeSeconds);
+
+        for (int run = 0; run < 3; run++) {
+            long started = System.nanoTime();
+            try (DurableStorage storage = DurableStorage.open(directory, WriteAheadLog.FsyncPolicy.NEVER, 1_000, 0)) {
+                double seconds = (System.nanoTime() - started) / 1e9;
+                System.out.printf("Воспроизведение: %.2f с (%.0f записей/с)%n", seconds, records / seconds);
+                assertEquals(links, storage.getShortLinkRepository().findAll().size());
+            }
+        }
+    }
+
+    private static void runConcurrently(int threads, IntConsumer task) throws InterruptedException {
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+            workers[t] = new Thread(() -> task.accept(thread));
+            workers[t].start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+    }
+
+    private static ShortLink link(long key, UUID owner) {
+        return new ShortLink(Base62.encode(key), "https://example.com/page/" + key, 1L, Long.MAX_VALUE, 100, 0, owner);
+    }
+
+    private static long countRecords(Path path) throws IOException {
+        long[] count = new long[1];
+        return WriteAheadLog.replay(path, new WriteAheadLog.Visitor() {
+            @Override
+            public void linkSaved(ShortLink link) {
+                count[0]++;
+            }
+
+            @Override
+            public void linkDeleted(long key) {
+                count[0]++;
+            }
+
+            @Override
+            public void linkClicked(long key, int clicks) {
+                count[0]++;
+            }
+
+            @Override
+            public void userSaved(User user) {
+                count[0]++;
+            }
+
+            @Override
+            public void userDeleted(UUID userUuid) {
+                count[0]++;
+            }
+        });
+    }
+}